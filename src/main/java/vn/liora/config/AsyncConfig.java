@@ -0,0 +1,114 @@
+package vn.liora.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    /**
+     * Executor có giới hạn cho xử lý sau đặt hàng (lượt dùng mã giảm giá; email đã chuyển sang EmailOutbox).
+     * Khi hàng đợi đầy, luồng gọi tự chạy tác vụ (CallerRunsPolicy) thay vì bỏ mất lượt dùng mã giảm giá.
+     */
+    @Bean(name = "orderPipelineExecutor")
+    public ThreadPoolTaskExecutor orderPipelineExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${order.pipeline.core-size:2}") int coreSize,
+            @Value("${order.pipeline.max-size:4}") int maxSize,
+            @Value("${order.pipeline.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("order-pipeline-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "orderPipeline", Tags.empty())
+                .bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Executor gửi tin nhắn chat ra WebSocket. Mỗi session chỉ có tối đa một tác vụ gửi tại một thời điểm,
+     * nên một client chậm chỉ chiếm một luồng, không chặn luồng nhận tin hay các session khác.
+     */
+    @Bean(name = "chatOutboundExecutor")
+    public ThreadPoolTaskExecutor chatOutboundExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${chat.outbound.core-size:4}") int coreSize,
+            @Value("${chat.outbound.max-size:16}") int maxSize,
+            @Value("${chat.outbound.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("chat-outbound-");
+        // Không dùng CallerRunsPolicy: lần gửi có thể bị chặn bởi client chậm, không được chạy trên luồng gọi.
+        // Hàng đợi đầy thì từ chối (TaskRejectedException), ChatSessionRegistry đóng session đó
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "chatOutbound", Tags.empty())
+                .bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Executor nhỏ cho việc làm mới dữ liệu GHN ở nền (báo giá, danh mục địa chỉ). Hàng đợi đầy thì từ chối
+     * (AbortPolicy, TaskRejectedException): nơi gọi phải tự dọn trạng thái "đang làm mới" của mình,
+     * dữ liệu cũ vẫn được dùng.
+     */
+    @Bean(name = "ghnQuoteExecutor")
+    public ThreadPoolTaskExecutor ghnQuoteExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${ghn.quote-cache.refresh-threads:2}") int threads,
+            @Value("${ghn.quote-cache.refresh-queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ghn-quote-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "ghnQuote", Tags.empty())
+                .bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Pool tạo các bản ảnh upload (giải mã, thu nhỏ, nén). Việc này tốn CPU nên số luồng nhỏ và cố định;
+     * hàng đợi đầy thì luồng gọi tự xử lý (CallerRunsPolicy), không làm mất ảnh đã nhận.
+     */
+    @Bean(name = "imagePipelineExecutor")
+    public ThreadPoolTaskExecutor imagePipelineExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${image.pipeline.threads:2}") int threads,
+            @Value("${image.pipeline.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-pipeline-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "imagePipeline", Tags.empty())
+                .bindTo(meterRegistry);
+        return executor;
+    }
+}
@@ -1,6 +1,7 @@
 package vn.liora.config;
 
-import com.nimbusds.jose.JOSEException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
@@ -9,45 +10,80 @@ import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.stereotype.Component;
-import vn.liora.dto.request.IntrospectRequest;
-import vn.liora.service.IAuthenticationService;
+import vn.liora.service.impl.TokenRevocationRegistry;
+import vn.liora.util.TtlCache;
 
 import javax.crypto.spec.SecretKeySpec;
-import java.text.ParseException;
-import java.util.Objects;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 
+/**
+ * Giải mã JWT cho mỗi request: chỉ kiểm tra chữ ký một lần (Nimbus), kiểm tra thu hồi trong bộ nhớ.
+ * Token đã kiểm tra được cache theo SHA-256 của token; lần sau chỉ cần kiểm tra hạn dùng
+ * và danh sách thu hồi, không parse/verify lại và không truy vấn DB.
+ */
 @Component
 public class CustomJwtDecoder implements JwtDecoder {
     @Value("${jwt.signerKey}")
     private String signerKey;
 
+    @Value("${jwt.verification-cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    @Value("${jwt.verification-cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    @Autowired
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
     @Autowired
-    private IAuthenticationService authenticationService;
+    private MeterRegistry meterRegistry;
 
-    private NimbusJwtDecoder nimbusJwtDecoder = null;
+    private NimbusJwtDecoder nimbusJwtDecoder;
+
+    private TtlCache<String, Jwt> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS512");
+        nimbusJwtDecoder = NimbusJwtDecoder
+                .withSecretKey(secretKeySpec)
+                .macAlgorithm(MacAlgorithm.HS512)
+                .build();
+        verifiedTokens = new TtlCache<String, Jwt>(cacheMaxSize, Duration.ofSeconds(cacheTtlSeconds))
+                .bindTo(meterRegistry, "jwtVerification");
+    }
 
     @Override
     public Jwt decode(String token) throws JwtException {
-
-        try {
-            var response = authenticationService.introspect(IntrospectRequest.builder()
-                    .token(token)
-                    .build());
-
-            if (!response.isValid())
-                throw new JwtException("Token invalid");
-        } catch (JOSEException | ParseException e) {
-            throw new JwtException(e.getMessage());
+        String key = hash(token);
+        Jwt jwt = verifiedTokens.getIfPresent(key);
+        if (jwt == null) {
+            // Kiểm tra chữ ký, thuật toán và hạn dùng
+            jwt = nimbusJwtDecoder.decode(token);
+            verifiedTokens.put(key, jwt);
+        } else if (jwt.getExpiresAt() != null && !jwt.getExpiresAt().isAfter(Instant.now())) {
+            // Cache sống lâu hơn token: hết hạn thì bỏ, không dùng nữa
+            verifiedTokens.invalidate(key);
+            throw new JwtException("Token expired");
         }
 
-        if (Objects.isNull(nimbusJwtDecoder)) {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS512");
-            nimbusJwtDecoder = NimbusJwtDecoder
-                    .withSecretKey(secretKeySpec)
-                    .macAlgorithm(MacAlgorithm.HS512)
-                    .build();
-        }
+        if (tokenRevocationRegistry.isRevoked(jwt.getId()))
+            throw new JwtException("Token invalid");
 
-        return nimbusJwtDecoder.decode(token);
+        return jwt;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,8 @@ package vn.liora.config;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import vn.liora.entity.Permission;
 import vn.liora.entity.Role;
@@ -16,6 +18,8 @@ import java.util.Set;
 @Slf4j
 @Component
 @RequiredArgsConstructor
+// Chạy trước ApplicationInitConfig (tạo user admin cần role ADMIN) khi CSDL còn trống
+@Order(Ordered.HIGHEST_PRECEDENCE)
 public class DataInitializer implements CommandLineRunner {
 
     private final PermissionRepository permissionRepository;
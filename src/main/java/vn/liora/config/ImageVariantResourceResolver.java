@@ -0,0 +1,146 @@
+package vn.liora.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+import vn.liora.util.ImageVariants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+/**
+ * Chọn bản ảnh nhỏ nhất mà client chấp nhận cho /uploads/**: ảnh gốc abc.jpg hoặc abc.jpg.avif / abc.jpg.webp
+ * (ghi bởi ImageOptimizationServiceImpl), xem ImageVariants.selectVariant.
+ * Phản hồi ảnh luôn kèm Vary: Accept để cache trung gian lưu riêng theo Accept.
+ */
+class ImageVariantResourceResolver extends AbstractResourceResolver {
+
+    @Override
+    protected Resource resolveResourceInternal(@Nullable HttpServletRequest request, @NonNull String requestPath,
+            @NonNull List<? extends Resource> locations, @NonNull ResourceResolverChain chain) {
+        Resource resource = chain.resolveResource(request, requestPath, locations);
+        if (resource == null || request == null || !ImageVariants.hasVariants(resource.getFilename())) {
+            return resource;
+        }
+
+        Resource best = ImageVariants.selectVariant(resource, request.getHeader(HttpHeaders.ACCEPT));
+        return new VaryAcceptResource(best);
+    }
+
+    @Override
+    protected String resolveUrlPathInternal(@NonNull String resourceUrlPath,
+            @NonNull List<? extends Resource> locations, @NonNull ResourceResolverChain chain) {
+        return chain.resolveUrlPath(resourceUrlPath, locations);
+    }
+
+    /**
+     * Bọc resource để ResourceHttpRequestHandler thêm header Vary: Accept vào phản hồi.
+     */
+    private static final class VaryAcceptResource extends AbstractResource implements HttpResource {
+
+        private final Resource delegate;
+
+        VaryAcceptResource(Resource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public HttpHeaders getResponseHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            return headers;
+        }
+
+        @Override
+        public boolean exists() {
+            return delegate.exists();
+        }
+
+        @Override
+        public boolean isReadable() {
+            return delegate.isReadable();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public boolean isFile() {
+            return delegate.isFile();
+        }
+
+        @Override
+        public URL getURL() throws IOException {
+            return delegate.getURL();
+        }
+
+        @Override
+        public URI getURI() throws IOException {
+            return delegate.getURI();
+        }
+
+        @Override
+        public File getFile() throws IOException {
+            return delegate.getFile();
+        }
+
+        @Override
+        public ReadableByteChannel readableChannel() throws IOException {
+            return delegate.readableChannel();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return delegate.lastModified();
+        }
+
+        @Override
+        public Resource createRelative(String relativePath) throws IOException {
+            return delegate.createRelative(relativePath);
+        }
+
+        @Override
+        public String getFilename() {
+            // Tên file quyết định Content-Type (abc.jpg.webp -> image/webp)
+            return delegate.getFilename();
+        }
+
+        @Override
+        public String getDescription() {
+            return delegate.getDescription();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return delegate.getInputStream();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof VaryAcceptResource that && delegate.equals(that.delegate);
+        }
+
+        @Override
+        public int hashCode() {
+            return delegate.hashCode();
+        }
+    }
+}
@@ -1,22 +1,62 @@
 package vn.liora.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
+import vn.liora.util.CircuitBreaker;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Mỗi dịch vụ ngoài có RestTemplate riêng: HttpClient riêng (pool kết nối keep-alive riêng),
+ * timeout riêng, bulkhead và circuit breaker riêng (xem UpstreamGuardInterceptor).
+ * GHN chậm hoặc lỗi không chiếm chỗ của các lời gọi thanh toán MoMo.
+ * Cấu hình: http.client.{upstream}.connect-timeout-ms, read-timeout-ms, max-concurrent,
+ * acquire-timeout-ms, breaker.failure-threshold, breaker.open-seconds.
+ */
 @Configuration
 public class RestTemplateConfig {
 
-    @Value("${momo.timeout:30000}")
-    private int momoTimeout;
+    @Bean(name = "momoRestTemplate")
+    public RestTemplate momoRestTemplate(RestTemplateBuilder builder, Environment env, MeterRegistry meterRegistry) {
+        return build("momo", builder, env, meterRegistry);
+    }
+
+    @Bean(name = "ghnRestTemplate")
+    public RestTemplate ghnRestTemplate(RestTemplateBuilder builder, Environment env, MeterRegistry meterRegistry) {
+        return build("ghn", builder, env, meterRegistry);
+    }
+
+    private RestTemplate build(String upstream, RestTemplateBuilder builder, Environment env,
+            MeterRegistry meterRegistry) {
+        String prefix = "http.client." + upstream + ".";
+        Duration connectTimeout = Duration.ofMillis(env.getProperty(prefix + "connect-timeout-ms", Long.class, 5000L));
+        Duration readTimeout = Duration.ofMillis(env.getProperty(prefix + "read-timeout-ms", Long.class, 30000L));
+        int maxConcurrent = env.getProperty(prefix + "max-concurrent", Integer.class, 20);
+        Duration acquireTimeout = Duration.ofMillis(env.getProperty(prefix + "acquire-timeout-ms", Long.class, 100L));
+        int failureThreshold = env.getProperty(prefix + "breaker.failure-threshold", Integer.class, 5);
+        Duration openDuration = Duration.ofSeconds(env.getProperty(prefix + "breaker.open-seconds", Long.class, 30L));
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+
+        UpstreamGuardInterceptor guard = new UpstreamGuardInterceptor(upstream, maxConcurrent, acquireTimeout,
+                new CircuitBreaker(failureThreshold, openDuration), meterRegistry);
 
-    @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(momoTimeout);
-        factory.setReadTimeout(momoTimeout);
-        return new RestTemplate(factory);
+        // RestTemplateBuilder của Spring Boot gắn sẵn metrics http.client.requests
+        return builder
+                .requestFactory(() -> requestFactory)
+                .additionalInterceptors(guard)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -77,7 +77,7 @@ public class SecurityConfig {
                                 // Generic static resources
                                 "/css/**", "/js/**", "/images/**", "/fonts/**", "/vendors/**", "/webjars/**",
                                 // Upload endpoints (for file uploads)
-                                "/uploads/**",
+                                "/uploads/**", "/img/**",
                                 // User registration endpoints (for public access)
                                 "/users", "/users/send-registration-otp", "/users/verify-registration-otp",
                                 "/users/register-with-otp", "/users/send-password-reset-otp",
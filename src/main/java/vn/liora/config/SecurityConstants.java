@@ -68,7 +68,8 @@ public final class SecurityConstants {
         };
 
         public static final String[] UPLOAD_ENDPOINTS = {
-                        "/uploads/**"
+                        "/uploads/**",
+                        "/img/**"
         };
 
         public static final String[] CART_API_ENDPOINTS = {
@@ -0,0 +1,105 @@
+package vn.liora.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import vn.liora.util.CircuitBreaker;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bảo vệ lời gọi tới một dịch vụ ngoài (MoMo, GHN...):
+ * - Bulkhead: tối đa maxConcurrent lời gọi cùng lúc, chờ chỗ trống tối đa acquireTimeout rồi từ chối,
+ *   để dịch vụ chậm không giữ hết luồng xử lý request.
+ * - Circuit breaker: lỗi kết nối/5xx liên tiếp thì ngừng gọi một thời gian.
+ * - Metrics http.client.upstream (histogram thời gian, tag upstream/outcome).
+ * Lời gọi bị từ chối ném ResourceAccessException như lỗi kết nối thông thường.
+ */
+class UpstreamGuardInterceptor implements ClientHttpRequestInterceptor {
+
+    private final String upstream;
+    private final Semaphore permits;
+    private final long acquireTimeoutMillis;
+    private final CircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+
+    UpstreamGuardInterceptor(String upstream, int maxConcurrent, Duration acquireTimeout,
+            CircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+        this.upstream = upstream;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+        this.circuitBreaker = circuitBreaker;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("http.client.upstream.in_flight", permits, p -> Math.max(1, maxConcurrent) - p.availablePermits())
+                .tag("upstream", upstream)
+                .description("Số lời gọi đang chạy tới dịch vụ ngoài")
+                .register(meterRegistry);
+        Gauge.builder("http.client.upstream.circuit_open", circuitBreaker,
+                        cb -> cb.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .tag("upstream", upstream)
+                .description("1 nếu circuit breaker của dịch vụ ngoài đang mở")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        if (!acquirePermit()) {
+            record("REJECTED", 0);
+            throw new ResourceAccessException("Too many concurrent requests to " + upstream);
+        }
+        try {
+            if (!circuitBreaker.tryAcquire()) {
+                record("CIRCUIT_OPEN", 0);
+                throw new ResourceAccessException("Circuit breaker open for " + upstream);
+            }
+            long start = System.nanoTime();
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                int status = response.getStatusCode().value();
+                if (status >= 500) {
+                    circuitBreaker.onFailure();
+                    record("SERVER_ERROR", System.nanoTime() - start);
+                } else {
+                    circuitBreaker.onSuccess();
+                    record(status >= 400 ? "CLIENT_ERROR" : "SUCCESS", System.nanoTime() - start);
+                }
+                return response;
+            } catch (IOException | RuntimeException e) {
+                circuitBreaker.onFailure();
+                record("IO_ERROR", System.nanoTime() - start);
+                throw e;
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean acquirePermit() {
+        try {
+            return permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void record(String outcome, long nanos) {
+        Timer.builder("http.client.upstream")
+                .tag("upstream", upstream)
+                .tag("outcome", outcome)
+                .description("Thời gian gọi dịch vụ ngoài")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
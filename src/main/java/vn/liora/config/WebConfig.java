@@ -60,10 +60,13 @@ public class WebConfig implements WebMvcConfigurer {
                                 .setCachePeriod(3600);
 
                 // Upload files (specific path) with fallback
+                // Không cache kết quả resolve (resourceChain(false)): bản WebP/AVIF được chọn theo Accept
+                // của từng request, cache mặc định chỉ phân biệt theo Accept-Encoding
                 registry.addResourceHandler("/uploads/**")
                                 .addResourceLocations("file:" + storageLocation + "/")
                                 .setCachePeriod(3600)
-                                .resourceChain(true)
+                                .resourceChain(false)
+                                .addResolver(new ImageVariantResourceResolver())
                                 .addResolver(new org.springframework.web.servlet.resource.PathResourceResolver() {
                                         @Override
                                         protected org.springframework.core.io.Resource getResource(
@@ -2,13 +2,18 @@ package vn.liora.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import vn.liora.dto.response.GhnDistrictResponse;
 import vn.liora.dto.response.GhnProvinceResponse;
 import vn.liora.dto.response.GhnWardResponse;
 import vn.liora.service.IGhnLocationService;
 
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -19,15 +24,21 @@ public class GhnLocationController {
 
     private final IGhnLocationService ghnLocationService;
 
+    @Value("${ghn.location.max-age-seconds:86400}")
+    private long maxAgeSeconds;
+
     /**
      * Lấy danh sách tất cả tỉnh/thành phố
      */
     @GetMapping("/provinces")
-    public ResponseEntity<List<GhnProvinceResponse>> getProvinces() {
+    public ResponseEntity<List<GhnProvinceResponse>> getProvinces(WebRequest webRequest) {
         try {
-            log.info("Fetching provinces from GHN");
+            String etag = etag("provinces");
+            if (etag != null && webRequest.checkNotModified(etag)) {
+                return notModified(etag);
+            }
             List<GhnProvinceResponse> provinces = ghnLocationService.getProvinces();
-            return ResponseEntity.ok(provinces);
+            return cached(etag, provinces);
         } catch (Exception e) {
             log.error("Error fetching provinces: {}", e.getMessage());
             return ResponseEntity.internalServerError().build();
@@ -38,11 +49,15 @@ public class GhnLocationController {
      * Lấy danh sách quận/huyện theo tỉnh/thành phố
      */
     @GetMapping("/districts/{provinceId}")
-    public ResponseEntity<List<GhnDistrictResponse>> getDistricts(@PathVariable Integer provinceId) {
+    public ResponseEntity<List<GhnDistrictResponse>> getDistricts(@PathVariable Integer provinceId,
+                                                                  WebRequest webRequest) {
         try {
-            log.info("Fetching districts for province {} from GHN", provinceId);
+            String etag = etag("districts-" + provinceId);
+            if (etag != null && webRequest.checkNotModified(etag)) {
+                return notModified(etag);
+            }
             List<GhnDistrictResponse> districts = ghnLocationService.getDistricts(provinceId);
-            return ResponseEntity.ok(districts);
+            return cached(etag, districts);
         } catch (Exception e) {
             log.error("Error fetching districts for province {}: {}", provinceId, e.getMessage());
             return ResponseEntity.internalServerError().build();
@@ -53,14 +68,44 @@ public class GhnLocationController {
      * Lấy danh sách phường/xã theo quận/huyện
      */
     @GetMapping("/wards/{districtId}")
-    public ResponseEntity<List<GhnWardResponse>> getWards(@PathVariable Integer districtId) {
+    public ResponseEntity<List<GhnWardResponse>> getWards(@PathVariable Integer districtId,
+                                                          WebRequest webRequest) {
         try {
-            log.info("Fetching wards for district {} from GHN", districtId);
+            String etag = etag("wards-" + districtId);
+            if (etag != null && webRequest.checkNotModified(etag)) {
+                return notModified(etag);
+            }
             List<GhnWardResponse> wards = ghnLocationService.getWards(districtId);
-            return ResponseEntity.ok(wards);
+            return cached(etag, wards);
         } catch (Exception e) {
             log.error("Error fetching wards for district {}: {}", districtId, e.getMessage());
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    // ========== HELPER METHODS ==========
+    /**
+     * ETag theo version snapshot danh mục; null khi chưa có snapshot (dữ liệu lấy thẳng từ GHN).
+     */
+    private String etag(String resource) {
+        String version = ghnLocationService.getSnapshotVersion();
+        return version != null ? "\"" + version + "-" + resource + "\"" : null;
+    }
+
+    private <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic())
+                .build();
+    }
+
+    private <T> ResponseEntity<T> cached(String etag, T body) {
+        if (etag == null) {
+            return ResponseEntity.ok(body);
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic())
+                .body(body);
+    }
 }
@@ -0,0 +1,128 @@
+package vn.liora.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.util.UriUtils;
+import vn.liora.service.IImageResizeService;
+import vn.liora.util.ImageVariants;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Ảnh thu nhỏ theo yêu cầu: /img/400x400/products/2025/01/01/abc.jpg (chấp nhận cả /img/400x400/uploads/...).
+ * Chỉ các kích thước trong image.resize.allowed-sizes; bản WebP được chọn theo header Accept như /uploads/**.
+ */
+@RestController
+@RequestMapping("/img")
+@RequiredArgsConstructor
+@Slf4j
+public class ImageResizeController {
+
+    private static final Pattern SIZE = Pattern.compile("(\\d{1,4})x(\\d{1,4})");
+
+    private final IImageResizeService imageResizeService;
+
+    @Value("${image.resize.max-age-seconds:604800}")
+    private long maxAgeSeconds;
+
+    @GetMapping("/{size}/**")
+    public ResponseEntity<Resource> getResizedImage(@PathVariable String size, HttpServletRequest request,
+            WebRequest webRequest) {
+        Matcher matcher = SIZE.matcher(size);
+        if (!matcher.matches()) {
+            return ResponseEntity.badRequest().build();
+        }
+        int width = Integer.parseInt(matcher.group(1));
+        int height = Integer.parseInt(matcher.group(2));
+        if (!imageResizeService.isAllowedSize(width, height)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String relativePath = imagePath(request, size);
+        if (relativePath.isEmpty() || relativePath.contains("..")) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Optional<IImageResizeService.ResizedImage> resized;
+        try {
+            resized = imageResizeService.resize(relativePath, width, height);
+        } catch (Exception e) {
+            // Không tạo được bản thu nhỏ: trả ảnh gốc để trang vẫn hiển thị
+            log.warn("Cannot resize {} to {}: {}", relativePath, size, e.getMessage());
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create("/uploads/" + UriUtils.encodePath(relativePath, StandardCharsets.UTF_8)))
+                    .build();
+        }
+        if (resized.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Resource resource = ImageVariants.selectVariant(new FileSystemResource(resized.get().file()),
+                request.getHeader(HttpHeaders.ACCEPT));
+        // Mỗi định dạng một ETag vì cùng URL trả nội dung khác nhau theo Accept
+        String etag = "\"" + resized.get().key() + formatSuffix(resource.getFilename()) + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl())
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(mediaType(resource.getFilename()))
+                .body(resource);
+    }
+
+    // ========== HELPER METHODS ==========
+    // /img/400x400/uploads/products/abc.jpg -> products/abc.jpg
+    private String imagePath(HttpServletRequest request, String size) {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        String prefix = "/img/" + size + "/";
+        if (!uri.startsWith(prefix)) {
+            return "";
+        }
+        String path = UriUtils.decode(uri.substring(prefix.length()), StandardCharsets.UTF_8);
+        if (path.startsWith("uploads/")) {
+            path = path.substring("uploads/".length());
+        }
+        return path;
+    }
+
+    private String formatSuffix(String filename) {
+        for (String format : ImageVariants.MODERN_FORMATS) {
+            if (filename != null && filename.endsWith("." + format)) {
+                return "-" + format;
+            }
+        }
+        return "";
+    }
+
+    private MediaType mediaType(String filename) {
+        if (filename != null && filename.endsWith(".avif")) {
+            return MediaType.parseMediaType("image/avif");
+        }
+        return MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    private CacheControl cacheControl() {
+        return CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+    }
+}
@@ -238,11 +238,8 @@ public class AdminCategoryController {
     public ResponseEntity<ApiResponse<List<CategoryResponse>>> getCategoryTree() {
         ApiResponse<List<CategoryResponse>> response = new ApiResponse<>();
         try {
-            // Lấy TẤT CẢ root categories (cả active và inactive)
-            List<Category> rootCategories = categoryService.findAllRootCategories();
-            List<CategoryResponse> categoryResponses = rootCategories.stream()
-                    .map(this::buildCategoryTree)
-                    .toList();
+            // Cây TẤT CẢ danh mục (cả active và inactive), từ bộ nhớ
+            List<CategoryResponse> categoryResponses = categoryService.getFullCategoryTree();
             response.setResult(categoryResponses);
             response.setMessage("Lấy cây danh mục thành công");
             return ResponseEntity.ok(response);
@@ -253,21 +250,6 @@ public class AdminCategoryController {
         }
     }
 
-    private CategoryResponse buildCategoryTree(Category category) {
-        CategoryResponse response = categoryMapper.toCategoryResponse(category);
-
-        // Lấy TẤT CẢ danh mục con (cả active và inactive)
-        List<Category> children = categoryService.findChildCategories(category.getCategoryId());
-        if (!children.isEmpty()) {
-            List<CategoryResponse> childResponses = children.stream()
-                    .map(this::buildCategoryTree)
-                    .toList();
-            response.setChildren(childResponses);
-        }
-
-        return response;
-    }
-
     private Pageable createSortedPageable(Pageable pageable, String sortBy) {
         // Implement sorting logic based on sortBy parameter
         // This is a simplified version - you might want to add more sorting options
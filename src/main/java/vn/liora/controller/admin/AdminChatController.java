@@ -1,6 +1,9 @@
 package vn.liora.controller.admin;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -14,7 +17,9 @@ import vn.liora.entity.Message;
 import vn.liora.entity.User;
 import vn.liora.mapper.ChatMessageMapper;
 import vn.liora.repository.UserRepository;
+import vn.liora.service.IChatRoomService;
 import vn.liora.service.MessageService;
+import vn.liora.service.impl.ChatUserProfileCache;
 import vn.liora.websocket.handler.ChatWebSocketHandler;
 
 import java.util.HashMap;
@@ -32,14 +37,36 @@ public class AdminChatController {
     private final MessageService messageService;
     private final UserRepository userRepository;
     private final ChatWebSocketHandler chatWebSocketHandler;
+    private final ChatUserProfileCache chatUserProfileCache;
+    private final IChatRoomService chatRoomService;
 
     @GetMapping("/chat-list")
-    public String chatList(Model model) {
-        List<ChatRoomInfo> rooms = messageService.findAllRoomsWithUserInfo();
-        model.addAttribute("rooms", rooms);
+    public String chatList(@RequestParam(defaultValue = "0") int page,
+                           @RequestParam(defaultValue = "50") int size,
+                           Model model) {
+        Page<ChatRoomInfo> rooms = chatRoomService.findRooms(roomPage(page, size));
+        model.addAttribute("rooms", rooms.getContent());
+        model.addAttribute("roomPage", rooms);
         return "admin/websocket/chat-list";
     }
 
+    /**
+     * Danh sách phòng dạng JSON (phân trang), phòng có tin mới nhất trước.
+     */
+    @GetMapping("/rooms")
+    @ResponseBody
+    public ResponseEntity<Page<ChatRoomInfo>> getRooms(@RequestParam(defaultValue = "0") int page,
+                                                       @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(chatRoomService.findRooms(roomPage(page, size)));
+    }
+
+    @PostMapping("/chat-room/{roomId}/read")
+    @ResponseBody
+    public ResponseEntity<Void> markRead(@PathVariable String roomId) {
+        chatRoomService.markRead(roomId);
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/chat-room/{roomId}")
     @ResponseBody
     public ResponseEntity<Map<String, Object>> getChatRoom(@PathVariable String roomId) {
@@ -48,26 +75,41 @@ public class AdminChatController {
         // Lấy messages của room và map thành DTOs với avatar
         List<Message> messages = messageService.findRecentByRoom(roomId, 50);
         List<ChatMessageResponse> messageResponses = messages.stream()
-                .map(m -> ChatMessageMapper.toResponse(m, "CHAT", userRepository))
+                .map(m -> ChatMessageMapper.toResponse(m, "CHAT", chatUserProfileCache.avatarOf(m.getSenderId())))
                 .toList();
         
         response.put("roomId", roomId);
         response.put("messages", messageResponses);
         
-        // Lấy thông tin user từ room
-        List<ChatRoomInfo> allRooms = messageService.findAllRoomsWithUserInfo();
-        ChatRoomInfo roomInfo = allRooms.stream()
-                .filter(r -> r.getRoomId().equals(roomId))
-                .findFirst()
-                .orElse(ChatRoomInfo.builder()
-                        .roomId(roomId)
-                        .displayName(roomId)
-                        .build());
-        response.put("roomInfo", roomInfo);
+        // Lấy thông tin user từ room; mở phòng tức là đã đọc
+        chatRoomService.markRead(roomId);
+        response.put("roomInfo", chatRoomService.getRoom(roomId));
         
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Cuộn ngược lịch sử theo keyset: ?before=<messageId>&limit=30, mới nhất ở đầu.
+     * nextBefore là id để tải trang tiếp theo (null khi hết).
+     */
+    @GetMapping("/chat-room/{roomId}/messages")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getChatHistory(
+            @PathVariable String roomId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "30") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, 100));
+        List<ChatMessageResponse> messages = messageService.findBefore(roomId, before, pageSize).stream()
+                .map(m -> ChatMessageMapper.toResponse(m, "CHAT", chatUserProfileCache.avatarOf(m.getSenderId())))
+                .toList();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("roomId", roomId);
+        response.put("messages", messages);
+        response.put("nextBefore", messages.size() == pageSize ? messages.get(messages.size() - 1).getId() : null);
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/chat-list")
     @ResponseBody
     public ResponseEntity<Map<String, Object>> sendMessage(
@@ -102,7 +144,8 @@ public class AdminChatController {
 
             // Broadcast tin nhắn qua WebSocket để user nhận được ngay lập tức
             try {
-                ChatMessageResponse chatResponse = ChatMessageMapper.toResponse(savedMessage, "CHAT", userRepository);
+                ChatMessageResponse chatResponse = ChatMessageMapper.toResponse(savedMessage, "CHAT",
+                        chatUserProfileCache.avatarOf(savedMessage.getSenderId()));
                 chatWebSocketHandler.broadcastMessage(room, chatResponse);
             } catch (Exception e) {
                 System.err.println("Error broadcasting message: " + e.getMessage());
@@ -120,6 +163,10 @@ public class AdminChatController {
         }
     }
 
+    private static Pageable roomPage(int page, int size) {
+        return PageRequest.of(Math.max(0, page), Math.max(1, Math.min(size, 200)));
+    }
+
     /**
      * Tìm user từ authentication, hỗ trợ cả JWT và OAuth2
      */
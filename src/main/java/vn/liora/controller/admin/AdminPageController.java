@@ -8,11 +8,14 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import vn.liora.dto.response.DashboardSnapshotResponse;
 import vn.liora.dto.response.TopCustomerResponse;
 import vn.liora.service.IBrandService;
 import vn.liora.service.ICategoryService;
 import vn.liora.service.IDashboardService;
+import vn.liora.service.ISalesRollupService;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -28,6 +31,7 @@ public class AdminPageController {
     private final ICategoryService categoryService;
     private final IBrandService brandService;
     private final IDashboardService dashboardService;
+    private final ISalesRollupService salesRollupService;
 
     private void addCurrentUserToModel(Model model) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -444,6 +448,30 @@ public class AdminPageController {
         return "admin/permissions/manage";
     }
 
+    // API lấy toàn bộ chỉ số Analytics trong một lần gọi (thay cho các API /analytics/* riêng lẻ)
+    @GetMapping("/analytics/snapshot")
+    @ResponseBody
+    public DashboardSnapshotResponse getAnalyticsSnapshot(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "10") int limit) {
+        return dashboardService.getSnapshot(startDate, endDate, limit);
+    }
+
+    // API tính lại bảng tổng hợp doanh số theo ngày (backfill / sửa lệch)
+    @PostMapping("/analytics/rollup/rebuild")
+    @ResponseBody
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> rebuildSalesRollup(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate) {
+        salesRollupService.rebuild(fromDate, toDate);
+        Map<String, Object> result = new HashMap<>();
+        result.put("fromDate", fromDate);
+        result.put("toDate", toDate);
+        return result;
+    }
+
     // Analytics
     @GetMapping("/analytics")
     public String analytics(Model model) {
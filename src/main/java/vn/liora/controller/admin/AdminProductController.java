@@ -14,6 +14,7 @@ import java.util.Collections;
 
 import vn.liora.dto.request.ApiResponse;
 import vn.liora.dto.request.ProductCreationRequest;
+import vn.liora.dto.request.ProductSearchCriteria;
 import vn.liora.dto.request.ProductUpdateRequest;
 import vn.liora.dto.response.ImageResponse;
 import vn.liora.dto.response.ProductResponse;
@@ -151,186 +152,62 @@ public class AdminProductController {
             Pageable pageable) {
         ApiResponse<Page<ProductResponse>> response = new ApiResponse<>();
         try {
-            // Xử lý sort - không cần tạo sortPageable vì đã áp dụng sorting sau khi lọc
+            // Tìm kiếm, lọc, sắp xếp và phân trang trong một truy vấn DB (kèm câu đếm)
+            ProductSearchCriteria.ProductSearchCriteriaBuilder criteria = ProductSearchCriteria.builder()
+                    .keyword(search)
+                    .active(parseFlag(status, "active", "inactive"))
+                    .inStock(parseFlag(stockStatus, "IN_STOCK", "OUT_OF_STOCK"))
+                    .available(parseFlag(available, "true", "false"))
+                    .minPrice(minPrice)
+                    .maxPrice(maxPrice)
+                    .minStock(minStock)
+                    .maxStock(maxStock)
+                    .brandIds(brandId != null ? List.of(brandId) : null)
+                    .categoryIds(categoryId != null ? List.of(categoryId) : null);
 
-            // Tìm kiếm và lọc - lấy tất cả sản phẩm trước khi lọc
-            Page<Product> allProducts;
-            if (search != null && !search.trim().isEmpty()) {
-                allProducts = productService.findByNameContaining(search.trim(), Pageable.unpaged());
-            } else {
-                allProducts = productService.findAll(Pageable.unpaged());
-            }
-
-            List<Product> filteredProducts = new ArrayList<>(allProducts.getContent());
-
-            // Lọc theo trạng thái (active/inactive)
-            if (status != null && !status.isEmpty()) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            if ("active".equals(status))
-                                return product.getIsActive();
-                            if ("inactive".equals(status))
-                                return !product.getIsActive();
-                            return true;
-                        })
-                        .toList();
-            }
-
-            // Lọc theo trạng thái tồn kho
-            if (stockStatus != null && !stockStatus.isEmpty()) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            if ("IN_STOCK".equals(stockStatus))
-                                return product.getStock() > 0;
-                            if ("OUT_OF_STOCK".equals(stockStatus))
-                                return product.getStock() == 0 || product.getStock() == null;
-                            return true;
-                        })
-                        .toList();
-            }
-
-            // Lọc theo available
-            if (available != null && !available.isEmpty()) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            if ("true".equals(available))
-                                return product.getAvailable();
-                            if ("false".equals(available))
-                                return !product.getAvailable();
-                            return true;
-                        })
-                        .toList();
-            }
-
-            // lọc theo giá
-            if (minPrice != null || maxPrice != null) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            BigDecimal price = product.getPrice();
-                            if (minPrice != null && price.compareTo(minPrice) < 0)
-                                return false;
-                            if (maxPrice != null && price.compareTo(maxPrice) > 0)
-                                return false;
-                            return true;
-                        })
-                        .toList();
-            }
-
-            // lọc theo stock
-            if (minStock != null || maxStock != null) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            Integer stock = product.getStock();
-                            if (minStock != null && stock < minStock)
-                                return false;
-                            if (maxStock != null && stock > maxStock)
-                                return false;
-                            return true;
-                        })
-                        .toList();
-            }
-
-            // lọc theo brand
-            if (brandId != null) {
-                filteredProducts = filteredProducts.stream()
-                    .filter(product -> product.getBrand().getBrandId().equals(brandId))
-                    .toList();
+            // Lọc theo thời gian tạo (createdDate)
+            LocalDate filterStartDate = startDate;
+            LocalDate filterEndDate = endDate;
+            // Nếu có dateFilter preset nhưng chưa có startDate/endDate, tính toán từ preset
+            if (dateFilter != null && !dateFilter.isEmpty() && (filterStartDate == null || filterEndDate == null)) {
+                LocalDate today = LocalDate.now();
+                switch (dateFilter) {
+                    case "TODAY":
+                        filterStartDate = today;
+                        filterEndDate = today;
+                        break;
+                    case "THIS_WEEK":
+                        filterStartDate = today.minusDays(today.getDayOfWeek().getValue() - 1);
+                        filterEndDate = today;
+                        break;
+                    case "THIS_MONTH":
+                        filterStartDate = today.withDayOfMonth(1);
+                        filterEndDate = today;
+                        break;
+                    case "THIS_YEAR":
+                        filterStartDate = today.withDayOfYear(1);
+                        filterEndDate = today;
+                        break;
+                }
             }
-
-            // lọc theo category
-            if (categoryId != null) {
-                filteredProducts = filteredProducts.stream()
-                    .filter(product -> product.getCategory().getCategoryId().equals(categoryId))
-                    .toList();
+            if (filterStartDate != null) {
+                criteria.createdFrom(filterStartDate.atStartOfDay());
             }
-
-            // Lọc theo thời gian tạo (createdDate)
-            if (dateFilter != null && !dateFilter.isEmpty() || startDate != null || endDate != null) {
-                filteredProducts = filteredProducts.stream()
-                    .filter(product -> {
-                        if (product.getCreatedDate() == null) {
-                            return false;
-                        }
-                        
-                        LocalDate productDate = product.getCreatedDate().toLocalDate();
-                        LocalDate filterStartDate = startDate;
-                        LocalDate filterEndDate = endDate;
-                        
-                        // Nếu có dateFilter preset nhưng chưa có startDate/endDate, tính toán từ preset
-                        if (dateFilter != null && !dateFilter.isEmpty() && (filterStartDate == null || filterEndDate == null)) {
-                            LocalDate today = LocalDate.now();
-                            switch (dateFilter) {
-                                case "TODAY":
-                                    filterStartDate = today;
-                                    filterEndDate = today;
-                                    break;
-                                case "THIS_WEEK":
-                                    filterStartDate = today.minusDays(today.getDayOfWeek().getValue() - 1);
-                                    filterEndDate = today;
-                                    break;
-                                case "THIS_MONTH":
-                                    filterStartDate = today.withDayOfMonth(1);
-                                    filterEndDate = today;
-                                    break;
-                                case "THIS_YEAR":
-                                    filterStartDate = today.withDayOfYear(1);
-                                    filterEndDate = today;
-                                    break;
-                            }
-                        }
-                        
-                        // Filter logic
-                        if (filterStartDate != null && productDate.isBefore(filterStartDate)) {
-                            return false;
-                        }
-                        if (filterEndDate != null && productDate.isAfter(filterEndDate)) {
-                            return false;
-                        }
-                        
-                        return true;
-                    })
-                    .toList();
+            if (filterEndDate != null) {
+                criteria.createdBefore(filterEndDate.plusDays(1).atStartOfDay());
             }
 
-            // Áp dụng sorting sau khi lọc
+            // sortBy dạng "price" / "price_desc"
             if (sortBy != null && !sortBy.isEmpty()) {
-                filteredProducts = this.applySorting(filteredProducts, sortBy);
-            }
-
-            // Tạo PageImpl cuối cùng với pagination
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), filteredProducts.size());
-            
-            // Kiểm tra start có hợp lệ không
-            List<Product> pageContent;
-            if (start >= filteredProducts.size() || start < 0) {
-                // Nếu start vượt quá size hoặc âm, trả về danh sách rỗng
-                pageContent = Collections.emptyList();
-            } else {
-                // Lấy sublist an toàn
-                pageContent = filteredProducts.subList(start, end);
+                boolean desc = sortBy.endsWith("_desc");
+                criteria.sortBy(desc ? sortBy.substring(0, sortBy.length() - "_desc".length()) : sortBy)
+                        .sortDir(desc ? "desc" : "asc");
             }
-            
-            Page<Product> products = new PageImpl<>(
-                    pageContent, pageable, filteredProducts.size()
-            );
-
-            Page<ProductResponse> productResponses = products.map(product -> {
-                ProductResponse productResponse = productMapper.toProductResponse(product);
 
-                // Load main image
-                try {
-                    Optional<Image> mainImage = imageService.findMainImageByProductId(product.getProductId());
-                    if (mainImage.isPresent()) {
-                        productResponse.setMainImageUrl(mainImage.get().getImageUrl());
-                    }
-                } catch (Exception e) {
-                    System.err.println(
-                            "Error loading image for product " + product.getProductId() + ": " + e.getMessage());
-                }
+            Page<Product> products = productService.search(criteria.build(), pageable);
 
-                return productResponse;
-            });
+            // Ảnh chính do mapper lấy từ images (nạp theo lô, không truy vấn riêng từng sản phẩm)
+            Page<ProductResponse> productResponses = products.map(productMapper::toProductResponse);
             response.setResult(productResponses);
             response.setMessage("Lấy danh sách sản phẩm thành công");
             return ResponseEntity.ok(response);
@@ -815,63 +692,14 @@ public class AdminProductController {
     }
 
     // ========== HELPER METHODS ==========
-    private List<Product> applySorting(List<Product> products, String sortBy) {
-        if (sortBy == null || sortBy.trim().isEmpty()) {
-            return products;
-        }
-        
-        switch (sortBy) {
-            case "id_desc":
-                return products.stream()
-                        .sorted((p1, p2) -> Long.compare(p2.getProductId(), p1.getProductId()))
-                        .toList();
-            case "id":
-                return products.stream()
-                        .sorted((p1, p2) -> Long.compare(p1.getProductId(), p2.getProductId()))
-                        .toList();
-            case "name_desc":
-                return products.stream()
-                        .sorted((p1, p2) -> p2.getName().compareToIgnoreCase(p1.getName()))
-                        .toList();
-            case "name":
-                return products.stream()
-                        .sorted((p1, p2) -> p1.getName().compareToIgnoreCase(p2.getName()))
-                        .toList();
-            case "price_desc":
-                return products.stream()
-                        .sorted((p1, p2) -> p2.getPrice().compareTo(p1.getPrice()))
-                        .toList();
-            case "price":
-                return products.stream()
-                        .sorted((p1, p2) -> p1.getPrice().compareTo(p2.getPrice()))
-                        .toList();
-            case "stock_desc":
-                return products.stream()
-                        .sorted((p1, p2) -> Integer.compare(p2.getStock(), p1.getStock()))
-                        .toList();
-            case "stock":
-                return products.stream()
-                        .sorted((p1, p2) -> Integer.compare(p1.getStock(), p2.getStock()))
-                        .toList();
-            case "soldCount_desc":
-                return products.stream()
-                        .sorted((p1, p2) -> Integer.compare(p2.getSoldCount(), p1.getSoldCount()))
-                        .toList();
-            case "soldCount":
-                return products.stream()
-                        .sorted((p1, p2) -> Integer.compare(p1.getSoldCount(), p2.getSoldCount()))
-                        .toList();
-            case "createdDate_desc":
-                return products.stream()
-                        .sorted((p1, p2) -> p2.getCreatedDate().compareTo(p1.getCreatedDate()))
-                        .toList();
-            case "createdDate":
-                return products.stream()
-                        .sorted((p1, p2) -> p1.getCreatedDate().compareTo(p2.getCreatedDate()))
-                        .toList();
-            default:
-                return products;
-        }
+    /**
+     * Tham số lọc dạng chuỗi -> Boolean (không phân biệt hoa thường):
+     * trueValue -> true, falseValue -> false, khác -> không lọc
+     */
+    private Boolean parseFlag(String value, String trueValue, String falseValue) {
+        if (trueValue.equalsIgnoreCase(value)) return true;
+        if (falseValue.equalsIgnoreCase(value)) return false;
+        return null;
     }
 
     private Pageable createSortedPageable(Pageable pageable, String sortBy) {
@@ -1,6 +1,7 @@
 package vn.liora.controller.admin;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -8,14 +9,19 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import vn.liora.dto.request.ApiResponse;
+import vn.liora.dto.response.ImageUploadJobResponse;
 import vn.liora.entity.Image;
-import vn.liora.entity.Product;
+import vn.liora.event.ProductChangedEvent;
 import vn.liora.repository.ImageRepository;
 import vn.liora.repository.ProductRepository;
 import vn.liora.service.IImageOptimizationService;
+import vn.liora.service.IImageService;
+import vn.liora.service.IImagePipelineService;
+import vn.liora.service.IImagePipelineService.ImageSource;
 import vn.liora.service.IStorageService;
 import vn.liora.service.IDirectoryStructureService;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -42,61 +48,31 @@ public class UploadFileController {
     @Autowired
     private IDirectoryStructureService directoryStructureService;
 
-    // Cấu hình kích thước và chất lượng mặc định
-    private static final int MAX_WIDTH = 1200;
-    private static final int MAX_HEIGHT = 1200;
-    private static final int THUMBNAIL_SIZE = 300;
-    private static final float QUALITY = 0.8f;
+    @Autowired
+    private IImagePipelineService imagePipelineService;
+
+    @Autowired
+    private IImageService imageService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Kích thước/chất lượng ảnh cấu hình trong image.optimization.* (xem ImagePipelineServiceImpl)
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
 
     /**
-     * Upload ảnh cho thương hiệu
+     * Upload ảnh cho thương hiệu. Xử lý ngay trong request (một ảnh, giải mã một lần),
+     * nên URL trả về luôn trỏ tới file đã được tạo.
      */
     @PostMapping(value = "/brands", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<ApiResponse<Map<String, String>>> uploadBrandImage(
+    public ResponseEntity<ApiResponse<Map<String, Object>>> uploadBrandImage(
             @RequestParam("file") MultipartFile file) {
-        try {
-            System.out.println("=== UPLOAD BRAND IMAGE START ===");
-            System.out.println("File name: " + file.getOriginalFilename());
-            System.out.println("File size: " + file.getSize() + " bytes");
-            System.out.println("Content type: " + file.getContentType());
-
-            // Validation
-            if (!validateFile(file)) {
-                System.err.println("File validation failed");
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("File không hợp lệ hoặc quá lớn"));
-            }
-
-            // Tạo đường dẫn có tổ chức
-            String filename = generateUniqueFilename(file.getOriginalFilename());
-            String relativePath = directoryStructureService.createFullPath("brands", filename, false);
-            String thumbnailPath = directoryStructureService.createFullPath("brands", filename, true);
-
-            // Tối ưu hóa ảnh chính
-            Path mainImagePath = Paths.get(storageService.getStorageLocation(), relativePath);
-            imageOptimizationService.optimizeImage(file, mainImagePath, MAX_WIDTH, MAX_HEIGHT, QUALITY);
-
-            // Tạo thumbnail
-            Path thumbnailImagePath = Paths.get(storageService.getStorageLocation(), thumbnailPath);
-            Files.createDirectories(thumbnailImagePath.getParent());
-            imageOptimizationService.createThumbnail(file, thumbnailImagePath, THUMBNAIL_SIZE);
-
-            Map<String, String> result = new HashMap<>();
-            result.put("originalUrl", "/uploads/" + relativePath);
-            result.put("thumbnailUrl", "/uploads/" + thumbnailPath);
-            result.put("filename", filename);
-
-            return ResponseEntity.ok(ApiResponse.success("Upload thành công", result));
-
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("Lỗi khi upload: " + e.getMessage()));
-        }
+        return uploadSingleImage("brands", file);
     }
 
     /**
-     * Upload ảnh cho sản phẩm
+     * Upload ảnh cho sản phẩm. Các file được xử lý song song ở nền; bản ghi Image được lưu
+     * khi ảnh tương ứng xử lý xong. Trả về ngay jobId cùng URL dự kiến của từng ảnh.
      */
     @PostMapping(value = "/products", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<ApiResponse<Map<String, Object>>> uploadProductImages(
@@ -108,54 +84,31 @@ public class UploadFileController {
                         .body(ApiResponse.error("Không có file nào được chọn"));
             }
 
-            List<Map<String, String>> uploadedImages = new ArrayList<>();
-
+            List<ImageSource> sources = new ArrayList<>();
             for (MultipartFile file : files) {
                 if (!validateFile(file)) {
                     continue; // Bỏ qua file không hợp lệ
                 }
+                sources.add(imagePipelineService.prepare("products",
+                        generateUniqueFilename(file.getOriginalFilename()), file, true));
+            }
 
-                String filename = generateUniqueFilename(file.getOriginalFilename());
-                String relativePath = directoryStructureService.createFullPath("products", filename, false);
-                String thumbnailPath = directoryStructureService.createFullPath("products", filename, true);
-
-                // Tối ưu hóa ảnh chính
-                Path mainImagePath = Paths.get(storageService.getStorageLocation(), relativePath);
-                imageOptimizationService.optimizeImage(file, mainImagePath, MAX_WIDTH, MAX_HEIGHT, QUALITY);
-
-                // Tạo thumbnail
-                Path thumbnailImagePath = Paths.get(storageService.getStorageLocation(), thumbnailPath);
-                Files.createDirectories(thumbnailImagePath.getParent());
-                imageOptimizationService.createThumbnail(file, thumbnailImagePath, THUMBNAIL_SIZE);
-
-                // Lưu vào database nếu có productId
-                if (productId != null) {
-                    Product product = productRepository.findById(productId).orElse(null);
-                    if (product != null) {
-                        Image image = new Image();
-                        image.setImageUrl("/uploads/" + relativePath);
-                        image.setProduct(product);
-
-                        // Set displayOrder dựa trên số ảnh hiện tại của sản phẩm
-                        Long currentImageCount = imageRepository.countByProductProductId(productId);
-                        image.setDisplayOrder(currentImageCount.intValue()); // 0, 1, 2, 3...
-
-                        imageRepository.save(image);
-                    }
+            // Lưu vào database nếu có productId, khi từng ảnh xử lý xong. Thứ tự hiển thị được tính lúc lưu
+            // (dưới khóa sản phẩm) nên các lần upload chồng nhau không trùng thứ tự
+            boolean hasProduct = productId != null && productRepository.existsById(productId);
+            ImageUploadJobResponse job = imagePipelineService.submit(sources, source -> {
+                if (hasProduct) {
+                    imageService.appendProductImage(productId, source.url());
                 }
-
-                Map<String, String> imageInfo = new HashMap<>();
-                imageInfo.put("originalUrl", "/uploads/" + relativePath);
-                imageInfo.put("thumbnailUrl", "/uploads/" + thumbnailPath);
-                imageInfo.put("filename", filename);
-                uploadedImages.add(imageInfo);
-            }
+            });
 
             Map<String, Object> result = new HashMap<>();
-            result.put("images", uploadedImages);
-            result.put("count", uploadedImages.size());
+            result.put("jobId", job.getJobId());
+            result.put("status", job.getStatus());
+            result.put("images", job.getImages());
+            result.put("count", job.getTotal());
 
-            return ResponseEntity.ok(ApiResponse.success("Upload thành công", result));
+            return ResponseEntity.ok(ApiResponse.success("Đã nhận ảnh, đang xử lý", result));
 
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -164,41 +117,23 @@ public class UploadFileController {
     }
 
     /**
-     * Upload ảnh cho danh mục
+     * Upload ảnh cho danh mục (xử lý ngay như ảnh thương hiệu)
      */
     @PostMapping(value = "/categories", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<ApiResponse<Map<String, String>>> uploadCategoryImage(
+    public ResponseEntity<ApiResponse<Map<String, Object>>> uploadCategoryImage(
             @RequestParam("file") MultipartFile file) {
-        try {
-            if (!validateFile(file)) {
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("File không hợp lệ hoặc quá lớn"));
-            }
-
-            String filename = generateUniqueFilename(file.getOriginalFilename());
-            String relativePath = directoryStructureService.createFullPath("categories", filename, false);
-            String thumbnailPath = directoryStructureService.createFullPath("categories", filename, true);
-
-            // Tối ưu hóa ảnh chính
-            Path mainImagePath = Paths.get(storageService.getStorageLocation(), relativePath);
-            imageOptimizationService.optimizeImage(file, mainImagePath, MAX_WIDTH, MAX_HEIGHT, QUALITY);
-
-            // Tạo thumbnail
-            Path thumbnailImagePath = Paths.get(storageService.getStorageLocation(), thumbnailPath);
-            Files.createDirectories(thumbnailImagePath.getParent());
-            imageOptimizationService.createThumbnail(file, thumbnailImagePath, THUMBNAIL_SIZE);
-
-            Map<String, String> result = new HashMap<>();
-            result.put("originalUrl", "/uploads/" + relativePath);
-            result.put("thumbnailUrl", "/uploads/" + thumbnailPath);
-            result.put("filename", filename);
-
-            return ResponseEntity.ok(ApiResponse.success("Upload thành công", result));
+        return uploadSingleImage("categories", file);
+    }
 
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("Lỗi khi upload: " + e.getMessage()));
-        }
+    /**
+     * Trạng thái job xử lý ảnh
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ApiResponse<ImageUploadJobResponse>> getUploadJob(@PathVariable String jobId) {
+        return imagePipelineService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(ApiResponse.success("Trạng thái xử lý ảnh", job)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Không tìm thấy job: " + jobId)));
     }
 
     /**
@@ -244,6 +179,9 @@ public class UploadFileController {
             for (Image image : images) {
                 if (image.getImageUrl().contains(filename)) {
                     imageRepository.delete(image);
+                    if (image.getProduct() != null) {
+                        eventPublisher.publishEvent(ProductChangedEvent.of(image.getProduct().getProductId()));
+                    }
                     break;
                 }
             }
@@ -284,6 +222,39 @@ public class UploadFileController {
         }
     }
 
+    /**
+     * Upload một ảnh có thumbnail và xử lý đồng bộ. Trang thương hiệu/danh mục lưu URL ngay sau khi nhận
+     * phản hồi, nên file không giải mã được phải báo lỗi ở đây thay vì hỏng ở job nền.
+     */
+    private ResponseEntity<ApiResponse<Map<String, Object>>> uploadSingleImage(String category, MultipartFile file) {
+        try {
+            if (!validateFile(file)) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("File không hợp lệ hoặc quá lớn"));
+            }
+
+            ImageSource source = imagePipelineService.prepare(category,
+                    generateUniqueFilename(file.getOriginalFilename()), file, true);
+            try {
+                imagePipelineService.process(source);
+            } catch (IOException e) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("Không đọc được file ảnh: " + e.getMessage()));
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("originalUrl", source.url());
+            result.put("thumbnailUrl", source.thumbnailUrl());
+            result.put("filename", source.filename());
+
+            return ResponseEntity.ok(ApiResponse.success("Upload thành công", result));
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Lỗi khi upload: " + e.getMessage()));
+        }
+    }
+
     /**
      * Validation file upload
      */
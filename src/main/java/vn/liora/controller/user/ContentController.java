@@ -1,39 +1,33 @@
 package vn.liora.controller.user;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import vn.liora.dto.response.BannerResponse;
+import org.springframework.web.context.request.WebRequest;
 import vn.liora.dto.response.StaticPageResponse;
-import vn.liora.entity.*;
-import vn.liora.service.BannerService;
+import vn.liora.entity.HeaderNavigationItem;
 import vn.liora.service.StaticPageService;
-import vn.liora.service.FooterService;
-import vn.liora.service.HeaderNavigationService;
+import vn.liora.service.impl.SiteChromeCache;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Controller
+@Slf4j
 @RequestMapping("/content")
 public class ContentController {
 
-    @Autowired
-    private BannerService bannerService;
-
     @Autowired
     private StaticPageService staticPageService;
 
     @Autowired
-    private FooterService footerService;
-
-    @Autowired
-    private HeaderNavigationService headerNavigationService;
+    private SiteChromeCache siteChromeCache;
 
     @GetMapping("/page/{slug}")
     public String viewStaticPage(@PathVariable String slug, Model model, HttpServletRequest request) {
@@ -53,59 +47,24 @@ public class ContentController {
         model.addAttribute("sectionSlug", sectionSlug);
         model.addAttribute("pages", pages);
 
-        // Tìm header nav item tương ứng với sectionSlug
+        // Tiêu đề lấy từ header nav item tương ứng với sectionSlug; không có thì dùng sectionSlug
+        String navItemTitle = sectionSlug;
         try {
-            List<HeaderNavigationItem> allItems = headerNavigationService.getAllActiveItems();
-            boolean found = false;
-
-            for (HeaderNavigationItem item : allItems) {
-                // Kiểm tra main item trước
-                if (item.getLinkType() == vn.liora.enums.FooterLinkType.PAGE_LIST) {
-                    String itemUrl = item.getUrl();
-                    if (itemUrl != null && itemUrl.equals("/content/list/" + sectionSlug)) {
-                        model.addAttribute("navItemTitle", item.getTitle());
-                        found = true;
-                        break;
-                    }
-                }
-
-                // Kiểm tra sub-items (load rõ ràng từ service để tránh lazy/không có dữ liệu)
-                if (!found) {
-                    List<HeaderNavigationItem> subItems = headerNavigationService.getSubItemsByParentId(item.getId());
-                    for (HeaderNavigationItem subItem : subItems) {
-                        if (subItem.getLinkType() == vn.liora.enums.FooterLinkType.PAGE_LIST) {
-                            String subItemUrl = subItem.getUrl();
-                            if (subItemUrl != null && subItemUrl.equals("/content/list/" + sectionSlug)) {
-                                model.addAttribute("navItemTitle", subItem.getTitle());
-                                found = true;
-                                break;
-                            }
-                        }
-                    }
-                }
-
-                if (found)
-                    break;
-            }
-
-            // Nếu không tìm thấy, sử dụng sectionSlug làm title mặc định
-            if (!found) {
-                model.addAttribute("navItemTitle", sectionSlug);
-            }
+            navItemTitle = siteChromeCache.current().pageListTitles()
+                    .getOrDefault("/content/list/" + sectionSlug, sectionSlug);
         } catch (Exception e) {
-            // Nếu có lỗi, sử dụng sectionSlug làm title mặc định
-            model.addAttribute("navItemTitle", sectionSlug);
+            log.warn("Cannot resolve nav title for section {}: {}", sectionSlug, e.getMessage());
         }
+        model.addAttribute("navItemTitle", navItemTitle);
 
         return "user/static-page-list";
     }
 
-    // API lấy danh sách banner active
+    // API lấy danh sách banner đang trong lịch hiển thị
     @GetMapping("/api/banners")
     @ResponseBody
-    public ResponseEntity<List<BannerResponse>> getActiveBanners() {
-        List<BannerResponse> banners = bannerService.getActiveBanners();
-        return ResponseEntity.ok(banners);
+    public ResponseEntity<byte[]> getActiveBanners(WebRequest webRequest) {
+        return serve(siteChromeCache.current().banners(), webRequest);
     }
 
     // API lấy static page theo slug
@@ -136,128 +95,53 @@ public class ContentController {
         return ResponseEntity.ok(staticPages);
     }
 
+    // API lấy toàn bộ site chrome (header, footer, banner, trang tĩnh) trong một tài liệu
+    @GetMapping("/api/site-chrome")
+    @ResponseBody
+    public ResponseEntity<byte[]> getSiteChrome(WebRequest webRequest) {
+        return serve(siteChromeCache.current().chrome(), webRequest);
+    }
+
     // API lấy thông tin trang chủ (banner + static pages)
     @GetMapping("/api/home")
     @ResponseBody
-    public ResponseEntity<Map<String, Object>> getHomeContent() {
-        Map<String, Object> homeContent = new HashMap<>();
-
-        // Lấy banner active
-        List<BannerResponse> banners = bannerService.getActiveBanners();
-        homeContent.put("banners", banners);
-
-        // Lấy static pages active
-        List<StaticPageResponse> staticPages = staticPageService.getActiveStaticPages();
-        homeContent.put("staticPages", staticPages);
-
-        return ResponseEntity.ok(homeContent);
+    public ResponseEntity<byte[]> getHomeContent(WebRequest webRequest) {
+        return serve(siteChromeCache.current().home(), webRequest);
     }
 
     // API lấy thông tin footer
     @GetMapping("/api/footer")
     @ResponseBody
-    public ResponseEntity<Map<String, Object>> getFooterContent() {
-        Map<String, Object> footerContent = new HashMap<>();
-
-        try {
-            Footer footer = footerService.getActiveFooter();
-            System.out.println("Footer found: " + (footer != null ? "Yes" : "No"));
-            if (footer != null) {
-                System.out.println("Footer ID: " + footer.getId());
-                System.out.println("Brand Name: " + footer.getBrandName());
-
-                // Tạo Map cho footer thay vì trả về object trực tiếp
-                Map<String, Object> footerData = new HashMap<>();
-                footerData.put("id", footer.getId());
-                footerData.put("brandName", footer.getBrandName());
-                footerData.put("brandDescription", footer.getBrandDescription());
-                footerData.put("isActive", footer.getIsActive());
-
-                footerContent.put("footer", footerData);
-
-                // Tạo DTO cho columns để tránh circular reference
-                List<Map<String, Object>> columnsData = new ArrayList<>();
-                List<FooterColumn> columns = footerService.getActiveColumns(footer.getId());
-                System.out.println("Columns count: " + columns.size());
-                for (FooterColumn column : columns) {
-                    Map<String, Object> columnData = new HashMap<>();
-                    columnData.put("id", column.getId());
-                    columnData.put("title", column.getTitle());
-                    columnData.put("sortOrder", column.getColumnOrder());
-
-                    // Tạo DTO cho items
-                    List<Map<String, Object>> itemsData = new ArrayList<>();
-                    if (column.getItems() != null) {
-                        for (FooterItem item : column.getItems()) {
-                            Map<String, Object> itemData = new HashMap<>();
-                            itemData.put("id", item.getId());
-                            itemData.put("title", item.getTitle());
-                            itemData.put("url", item.getUrl());
-                            itemData.put("linkType", item.getLinkType().toString());
-                            itemData.put("sortOrder", item.getItemOrder());
-                            itemsData.add(itemData);
-                        }
-                    }
-                    columnData.put("items", itemsData);
-                    columnsData.add(columnData);
-                }
-                footerContent.put("columns", columnsData);
-
-                // Tạo DTO cho social links
-                List<Map<String, Object>> socialLinksData = new ArrayList<>();
-                List<FooterSocialLink> socialLinks = footerService.getActiveSocialLinks(footer.getId());
-                System.out.println("Social links count: " + socialLinks.size());
-                for (FooterSocialLink link : socialLinks) {
-                    Map<String, Object> linkData = new HashMap<>();
-                    linkData.put("id", link.getId());
-                    linkData.put("platform", link.getPlatform());
-                    linkData.put("url", link.getUrl());
-                    linkData.put("iconClass", link.getIconClass());
-                    linkData.put("sortOrder", link.getDisplayOrder());
-                    socialLinksData.add(linkData);
-                }
-                footerContent.put("socialLinks", socialLinksData);
-
-            }
-            return ResponseEntity.ok(footerContent);
-        } catch (Exception e) {
-            System.err.println("Error loading footer content: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.ok(footerContent);
-        }
+    public ResponseEntity<byte[]> getFooterContent(WebRequest webRequest) {
+        return serve(siteChromeCache.current().footer(), webRequest);
     }
 
-    // API lấy thông tin header tầng dưới
+    // API lấy thông tin header tầng dưới (mỗi item kèm sẵn subItems)
     @GetMapping("/api/header-bottom")
     @ResponseBody
-    public ResponseEntity<Map<String, Object>> getHeaderNavigationContent() {
-        Map<String, Object> headerContent = new HashMap<>();
-
-        try {
-            System.out.println("=== DEBUG: getHeaderNavigationContent called ===");
-            List<HeaderNavigationItem> navigationItems = headerNavigationService.getAllActiveItems();
-            System.out.println("Found " + navigationItems.size() + " navigation items");
-            headerContent.put("navigationItems", navigationItems);
-            return ResponseEntity.ok(headerContent);
-        } catch (Exception e) {
-            System.err.println("Error loading header navigation content: " + e.getMessage());
-            e.printStackTrace();
-            // Return error response instead of empty content
-            headerContent.put("error", e.getMessage());
-            return ResponseEntity.status(500).body(headerContent);
-        }
+    public ResponseEntity<byte[]> getHeaderNavigationContent(WebRequest webRequest) {
+        return serve(siteChromeCache.current().header(), webRequest);
     }
 
     @GetMapping("/api/header-bottom/sub-items/{parentId}")
     @ResponseBody
     public ResponseEntity<List<HeaderNavigationItem>> getSubItems(@PathVariable Long parentId) {
-        try {
-            List<HeaderNavigationItem> subItems = headerNavigationService.getSubItemsByParentId(parentId);
-            return ResponseEntity.ok(subItems);
-        } catch (Exception e) {
-            System.err.println("Error loading sub-items: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.ok(new ArrayList<>());
+        return ResponseEntity.ok(siteChromeCache.current().subItems().getOrDefault(parentId, List.of()));
+    }
+
+    // ========== HELPER METHODS ==========
+    // Trả JSON đã serialize sẵn; client gửi If-None-Match trùng ETag thì trả 304
+    private ResponseEntity<byte[]> serve(SiteChromeCache.Part part, WebRequest webRequest) {
+        if (webRequest.checkNotModified(part.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(part.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
         }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(part.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(part.body());
     }
 }
@@ -33,6 +33,8 @@ import vn.liora.service.IDirectoryStructureService;
 import vn.liora.service.IStorageService;
 import vn.liora.service.IImageOptimizationService;
 import vn.liora.service.EmailService;
+import vn.liora.service.IChatRoomService;
+import vn.liora.service.impl.ChatUserProfileCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import com.nimbusds.jose.JOSEException;
@@ -58,6 +60,8 @@ public class UserController {
     private final IStorageService storageService;
     private final IImageOptimizationService imageOptimizationService;
     private final EmailService emailService;
+    private final ChatUserProfileCache chatUserProfileCache;
+    private final IChatRoomService chatRoomService;
     private final PasswordEncoder passwordEncoder;
 
     // Lưu trữ OTP tạm thời trong memory (có thể thay bằng Redis trong production)
@@ -435,6 +439,8 @@ public class UserController {
             String avatarUrl = "/uploads/" + relativePath;
             currentUser.setAvatar(avatarUrl);
             userRepository.save(currentUser);
+            chatUserProfileCache.invalidate(currentUser.getUserId());
+            chatRoomService.updateOwnerAvatar(currentUser.getUserId(), avatarUrl);
 
             Map<String, String> result = new HashMap<>();
             result.put("avatarUrl", avatarUrl);
@@ -1,11 +1,14 @@
 package vn.liora.controller.user;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import vn.liora.dto.request.ApiResponse;
+import vn.liora.dto.request.ProductSearchCriteria;
 import vn.liora.dto.response.ProductResponse;
+import vn.liora.dto.response.ProductSuggestResponse;
 import vn.liora.dto.response.BrandResponse;
 import vn.liora.dto.response.CategoryResponse;
 import vn.liora.entity.Image;
@@ -17,16 +20,21 @@ import vn.liora.repository.ImageRepository;
 import vn.liora.repository.DiscountRepository;
 import vn.liora.repository.ProductRepository;
 import vn.liora.service.IProductService;
+import vn.liora.service.IBrandService;
 import vn.liora.service.ICategoryService;
+import vn.liora.service.IProductCatalogService;
 import vn.liora.entity.Discount;
 import vn.liora.dto.response.DiscountResponse;
 import vn.liora.mapper.DiscountMapper;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -40,9 +48,15 @@ public class UserProductController {
     private final ProductMapper productMapper;
     private final ImageRepository imageRepository;
     private final ICategoryService categoryService;
+    private final IBrandService brandService;
     private final DiscountRepository discountRepository;
     private final DiscountMapper discountMapper;
     private final ProductRepository productRepository;
+    private final IProductCatalogService productCatalogService;
+
+    // false: tìm kiếm chạy trực tiếp trên DB (Specification) thay vì catalog index trong bộ nhớ
+    @Value("${catalog.search.in-memory:true}")
+    private boolean inMemorySearch;
 
     // ========== PRODUCT SEARCH & FILTERING ==========
     @GetMapping("/search")
@@ -63,108 +77,39 @@ public class UserProductController {
             Pageable pageable) {
         ApiResponse<Page<ProductResponse>> response = new ApiResponse<>();
         try {
-            // Tìm tất cả sản phẩm phù hợp trước (không phân trang)
-            List<Product> allProducts;
-            
-            if (q != null && !q.trim().isEmpty()) {
-                allProducts = productService.findByNameContaining(q.trim());
-                System.out.println("Search query: " + q.trim());
-                System.out.println("Found products: " + allProducts.size());
+            // brandId và brands cùng có mặt: sản phẩm phải thỏa cả hai
+            List<Long> brandIds = brandId != null ? List.of(brandId) : brands;
+            boolean noMatch = brandId != null && brands != null && !brands.isEmpty() && !brands.contains(brandId);
+
+            // Rating: thỏa minRating và ít nhất một mức trong ratings (= mức nhỏ nhất)
+            BigDecimal effectiveMinRating = minRating;
+            if (ratings != null && !ratings.isEmpty()) {
+                BigDecimal lowest = ratings.stream().min(BigDecimal::compareTo).get();
+                effectiveMinRating = minRating == null ? lowest : minRating.max(lowest);
+            }
+
+            ProductSearchCriteria criteria = ProductSearchCriteria.builder()
+                    .keyword(q)
+                    .categoryIds(categoryId != null ? List.of(categoryId) : null)
+                    .brandIds(brandIds)
+                    .minPrice(minPrice)
+                    .maxPrice(maxPrice)
+                    .minRating(effectiveMinRating)
+                    .ageRanges(ageRange)
+                    .sizes(sizeFilter)
+                    .origins(origin)
+                    .sortBy(sortBy)
+                    .sortDir(sortDir)
+                    .build();
+
+            Page<ProductResponse> productResponses;
+            if (noMatch) {
+                productResponses = Page.empty(pageable);
+            } else if (inMemorySearch) {
+                productResponses = productCatalogService.search(criteria, pageable);
             } else {
-                allProducts = productService.findAll();
-                System.out.println("No search query, getting all products: " + allProducts.size());
-            }
-
-            // Lọc sản phẩm theo các điều kiện
-            List<Product> filteredProducts = allProducts.stream()
-                    .filter(product -> {
-                        // Lọc theo category
-                        if (categoryId != null && !product.getCategory().getCategoryId().equals(categoryId)) {
-                            return false;
-                        }
-                        
-                        // Lọc theo brand (hỗ trợ cả single và multiple brands)
-                        if (brandId != null && !product.getBrand().getBrandId().equals(brandId)) {
-                            return false;
-                        }
-                        if (brands != null && !brands.isEmpty() && !brands.contains(product.getBrand().getBrandId())) {
-                            return false;
-                        }
-                        
-                        // Lọc theo giá
-                        if (minPrice != null && product.getPrice().compareTo(minPrice) < 0) {
-                            return false;
-                        }
-                        if (maxPrice != null && product.getPrice().compareTo(maxPrice) > 0) {
-                            return false;
-                        }
-                        
-                        // Lọc theo rating (hỗ trợ cả single và multiple ratings)
-                        if (minRating != null && (product.getAverageRating() == null || 
-                                product.getAverageRating().compareTo(minRating) < 0)) {
-                            return false;
-                        }
-                        if (ratings != null && !ratings.isEmpty()) {
-                            BigDecimal productRating = product.getAverageRating();
-                            if (productRating == null) {
-                                return false;
-                            }
-                            boolean matchesRating = ratings.stream().anyMatch(rating -> 
-                                productRating.compareTo(rating) >= 0);
-                            if (!matchesRating) {
-                                return false;
-                            }
-                        }
-                        
-                        // Lọc theo độ tuổi (Mom & Baby)
-                        if (ageRange != null && !ageRange.isEmpty()) {
-                            String productAgeRange = product.getAgeRange();
-                            if (productAgeRange == null || !ageRange.contains(productAgeRange)) {
-                                return false;
-                            }
-                        }
-                        
-                        // Lọc theo size (Mom & Baby)
-                        if (sizeFilter != null && !sizeFilter.isEmpty()) {
-                            String productSize = product.getSize();
-                            if (productSize == null || !sizeFilter.contains(productSize)) {
-                                return false;
-                            }
-                        }
-                        
-                        // Lọc theo xuất xứ (Mom & Baby)
-                        if (origin != null && !origin.isEmpty()) {
-                            String productOrigin = product.getOrigin();
-                            if (productOrigin == null || !origin.contains(productOrigin)) {
-                                return false;
-                            }
-                        }
-                        
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-
-            // Áp dụng sorting sau khi đã lọc
-            if (sortBy != null && !sortBy.isEmpty()) {
-                filteredProducts = this.applySorting(filteredProducts, sortBy, sortDir);
+                productResponses = productService.search(criteria, pageable).map(productMapper::toProductResponse);
             }
-
-            // Áp dụng pagination sau khi đã lọc và sắp xếp
-            int totalElements = filteredProducts.size();
-            int pageSize = pageable.getPageSize();
-            int currentPage = pageable.getPageNumber();
-            int startIndex = currentPage * pageSize;
-            int endIndex = Math.min(startIndex + pageSize, totalElements);
-            
-            List<Product> pageContent = startIndex < totalElements ? 
-                    filteredProducts.subList(startIndex, endIndex) : new ArrayList<>();
-
-            // Tạo page từ filtered và sorted
-            Page<Product> filteredPage = new PageImpl<>(
-                    pageContent, pageable, totalElements
-            );
-
-            Page<ProductResponse> productResponses = filteredPage.map(productMapper::toProductResponse);
             response.setCode(1000);
             response.setResult(productResponses);
             response.setMessage("Tìm kiếm sản phẩm thành công");
@@ -176,6 +121,25 @@ public class UserProductController {
         }
     }
 
+    // ========== SEARCH SUGGESTIONS ==========
+    // Gợi ý khi đang gõ (autocomplete), không cần gọi /search cho mỗi phím
+    @GetMapping("/suggest")
+    public ResponseEntity<ApiResponse<ProductSuggestResponse>> suggest(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "5") int limit) {
+        ApiResponse<ProductSuggestResponse> response = new ApiResponse<>();
+        try {
+            response.setCode(1000);
+            response.setResult(productCatalogService.suggest(q, limit));
+            response.setMessage("Lấy gợi ý tìm kiếm thành công");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.setCode(500);
+            response.setMessage("Lỗi khi lấy gợi ý tìm kiếm: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
     // ========== PRODUCT LISTING BY CATEGORY ==========
     @GetMapping("/category/{categoryId}")
     public ResponseEntity<ApiResponse<Page<ProductResponse>>> getProductsByCategory(
@@ -201,166 +165,38 @@ public class UserProductController {
                 return ResponseEntity.badRequest().body(response);
             }
 
-            // xử lý sort
-            if (sortBy != null && !sortBy.isEmpty()) {
-                pageable = this.createSortedPageable(pageable, sortBy, sortDir);
-            }
-
-            // lấy tất cả sản phẩm và filter
-            // Lấy tất cả sản phẩm (không pagination)
-            List<Product> allProducts = productService.findAll();
-            
-            // Filter tất cả sản phẩm theo category
-            List<Product> filteredProducts;
+            // Phạm vi danh mục: chính nó, hoặc cả cây con nếu includeChildren
+            List<Long> categoryIds = new ArrayList<>();
             if (includeChildren != null && includeChildren) {
-                // Lấy tất cả category IDs (bao gồm children và grandchildren)
-                List<Long> categoryIds = getAllChildCategoryIds(categoryId);
-                categoryIds.add(categoryId); // Thêm chính category hiện tại
-                
-                System.out.println("Include children mode - Category IDs: " + categoryIds);
-                
-                filteredProducts = allProducts.stream()
-                        .filter(product -> categoryIds.contains(product.getCategory().getCategoryId()))
-                        .toList();
-            } else {
-                // Chỉ lấy sản phẩm thuộc category hiện tại
-                filteredProducts = allProducts.stream()
-                        .filter(product -> product.getCategory().getCategoryId().equals(categoryId))
-                        .toList();
-            }
-            
-            System.out.println("Found " + filteredProducts.size() + " products for category " + categoryId);
-
-            // Apply price filter
-            if (minPrice != null || maxPrice != null) {
-                System.out.println("Applying price filter: min=" + minPrice + ", max=" + maxPrice);
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            BigDecimal price = product.getPrice();
-                            if (minPrice != null && price.compareTo(minPrice) < 0) return false;
-                            if (maxPrice != null && price.compareTo(maxPrice) > 0) return false;
-                            return true;
-                        })
-                        .toList();
-                System.out.println("After price filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply brand filter
-            if (brands != null && !brands.trim().isEmpty()) {
-                System.out.println("Applying brand filter: " + brands);
-                List<String> brandList = List.of(brands.split(","));
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> brandList.contains(product.getBrand().getName()))
-                        .toList();
-                System.out.println("After brand filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply category filter (level 3 categories)
-            if (categories != null && !categories.trim().isEmpty()) {
-                System.out.println("Applying category filter: " + categories);
-                List<Long> categoryList = List.of(categories.split(",")).stream()
-                        .map(Long::parseLong)
-                        .toList();
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> categoryList.contains(product.getCategory().getCategoryId()))
-                        .toList();
-                System.out.println("After category filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply rating filter
-            if (ratings != null && !ratings.trim().isEmpty()) {
-                System.out.println("Applying rating filter: " + ratings);
-                List<Integer> ratingList = List.of(ratings.split(",")).stream()
-                        .map(Integer::parseInt)
-                        .toList();
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            BigDecimal avgRating = product.getAverageRating();
-                            if (avgRating == null) return false;
-                            return ratingList.stream().anyMatch(rating -> 
-                                avgRating.compareTo(BigDecimal.valueOf(rating)) >= 0);
-                        })
-                        .toList();
-                System.out.println("After rating filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply age range filter (Mom & Baby)
-            if (ageRange != null && !ageRange.isEmpty()) {
-                System.out.println("Applying age range filter: " + ageRange);
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productAgeRange = product.getAgeRange();
-                            return productAgeRange != null && ageRange.contains(productAgeRange);
-                        })
-                        .toList();
-                System.out.println("After age range filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply size filter (Mom & Baby)
-            if (sizeFilter != null && !sizeFilter.isEmpty()) {
-                System.out.println("Applying size filter: " + sizeFilter);
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productSize = product.getSize();
-                            return productSize != null && sizeFilter.contains(productSize);
-                        })
-                        .toList();
-                System.out.println("After size filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply origin filter (Mom & Baby)
-            if (origin != null && !origin.isEmpty()) {
-                System.out.println("Applying origin filter: " + origin);
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productOrigin = product.getOrigin();
-                            return productOrigin != null && origin.contains(productOrigin);
-                        })
-                        .toList();
-                System.out.println("After origin filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply sorting to filtered products
-            if (sortBy != null && !sortBy.isEmpty()) {
-                System.out.println("Sorting products by: " + sortBy + " " + sortDir);
-                filteredProducts = this.applySorting(filteredProducts, sortBy, sortDir);
-                System.out.println("Sorted products count: " + filteredProducts.size());
-            } else {
-                // Default sorting: by createdDate DESC (newest first)
-                System.out.println("Applying default sorting: createdDate DESC");
-                filteredProducts = this.applySorting(filteredProducts, "created", "desc");
+                categoryIds.addAll(getAllChildCategoryIds(categoryId));
+            }
+            categoryIds.add(categoryId);
+
+            // Lọc thêm theo danh mục cấp 3 (giao với phạm vi trên)
+            List<Long> categoryFilter = parseIds(categories);
+            if (categoryFilter != null) {
+                categoryIds.retainAll(categoryFilter);
+                if (categoryIds.isEmpty()) {
+                    response.setResult(Page.empty(pageable));
+                    response.setMessage("Lấy sản phẩm theo danh mục thành công");
+                    return ResponseEntity.ok(response);
+                }
             }
 
-            // Tạo pagination cho filtered products
-            int totalElements = filteredProducts.size();
-            int pageSize = pageable.getPageSize();
-            int currentPage = pageable.getPageNumber();
-            int startIndex = currentPage * pageSize;
-            int endIndex = Math.min(startIndex + pageSize, totalElements);
-            
-            List<Product> pageContent = startIndex < totalElements ? 
-                    filteredProducts.subList(startIndex, endIndex) : new ArrayList<>();
-
-            Page<Product> filteredPage = new PageImpl<>(
-                    pageContent, pageable, totalElements
-            );
-
-            Page<ProductResponse> productResponses = filteredPage.map(product -> {
-                ProductResponse productResponse = productMapper.toProductResponse(product);
-                
-                // Load main image
-                try {
-                    Optional<Image> mainImage = imageRepository.findByProductProductIdAndIsMainTrue(product.getProductId());
-                    if (mainImage.isPresent()) {
-                        productResponse.setMainImageUrl(mainImage.get().getImageUrl());
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error loading image for product " + product.getProductId() + ": " + e.getMessage());
-                }
-                
-                return productResponse;
-            });
-            response.setResult(productResponses);
+            ProductSearchCriteria criteria = ProductSearchCriteria.builder()
+                    .categoryIds(categoryIds)
+                    .brandNames(splitCsv(brands))
+                    .minPrice(minPrice)
+                    .maxPrice(maxPrice)
+                    .minRating(parseMinRating(ratings))
+                    .ageRanges(ageRange)
+                    .sizes(sizeFilter)
+                    .origins(origin)
+                    .sortBy(hasText(sortBy) ? sortBy : "created") // Mặc định: mới nhất trước
+                    .sortDir(hasText(sortBy) ? sortDir : "desc")
+                    .build();
+
+            response.setResult(productCatalogService.search(criteria, pageable));
             response.setMessage("Lấy sản phẩm theo danh mục thành công");
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -394,125 +230,20 @@ public class UserProductController {
                 return ResponseEntity.badRequest().body(response);
             }
 
-            // xử lý sort
-            if (sortBy != null && !sortBy.isEmpty()) {
-                pageable = this.createSortedPageable(pageable, sortBy, sortDir);
-            }
-
-            // lấy tất cả sản phẩm và filter
-            List<Product> allProducts = productService.findAll();
-            List<Product> filteredProducts = allProducts.stream()
-                .filter(product -> product.getBrand().getBrandId().equals(brandId))
-                .toList();
-
-            // Apply price filter
-            if (minPrice != null || maxPrice != null) {
-                System.out.println("Applying price filter: min=" + minPrice + ", max=" + maxPrice);
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            BigDecimal price = product.getPrice();
-                            if (minPrice != null && price.compareTo(minPrice) < 0) return false;
-                            if (maxPrice != null && price.compareTo(maxPrice) > 0) return false;
-                            return true;
-                        })
-                        .toList();
-                System.out.println("After price filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply category filter
-            if (categories != null && !categories.trim().isEmpty()) {
-                System.out.println("Applying category filter: " + categories);
-                List<String> categoryList = List.of(categories.split(","));
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> categoryList.contains(product.getCategory().getName()))
-                        .toList();
-                System.out.println("After category filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply rating filter
-            if (ratings != null && !ratings.trim().isEmpty()) {
-                System.out.println("Applying rating filter: " + ratings);
-                List<Integer> ratingList = List.of(ratings.split(",")).stream()
-                        .map(Integer::parseInt)
-                        .toList();
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            BigDecimal avgRating = product.getAverageRating();
-                            if (avgRating == null) return false;
-                            return ratingList.stream().anyMatch(rating -> 
-                                avgRating.compareTo(BigDecimal.valueOf(rating)) >= 0);
-                        })
-                        .toList();
-                System.out.println("After rating filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply age range filter (Mom & Baby)
-            if (ageRange != null && !ageRange.isEmpty()) {
-                System.out.println("Applying age range filter: " + ageRange);
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productAgeRange = product.getAgeRange();
-                            return productAgeRange != null && ageRange.contains(productAgeRange);
-                        })
-                        .toList();
-                System.out.println("After age range filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply size filter (Mom & Baby)
-            if (sizeFilter != null && !sizeFilter.isEmpty()) {
-                System.out.println("Applying size filter: " + sizeFilter);
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productSize = product.getSize();
-                            return productSize != null && sizeFilter.contains(productSize);
-                        })
-                        .toList();
-                System.out.println("After size filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply origin filter (Mom & Baby)
-            if (origin != null && !origin.isEmpty()) {
-                System.out.println("Applying origin filter: " + origin);
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productOrigin = product.getOrigin();
-                            return productOrigin != null && origin.contains(productOrigin);
-                        })
-                        .toList();
-                System.out.println("After origin filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply sorting to filtered products
-            if (sortBy != null && !sortBy.isEmpty()) {
-                System.out.println("Sorting products by: " + sortBy + " " + sortDir);
-                filteredProducts = this.applySorting(filteredProducts, sortBy, sortDir);
-                System.out.println("Sorted products count: " + filteredProducts.size());
-            } else {
-                // Default sorting: by createdDate DESC (newest first)
-                System.out.println("Applying default sorting: createdDate DESC");
-                filteredProducts = this.applySorting(filteredProducts, "created", "desc");
-            }
-
-            Page<Product> filteredPage = new PageImpl<>(
-                    filteredProducts, pageable, filteredProducts.size()
-            );
-
-            Page<ProductResponse> productResponses = filteredPage.map(product -> {
-                ProductResponse productResponse = productMapper.toProductResponse(product);
-                
-                // Load main image
-                try {
-                    Optional<Image> mainImage = imageRepository.findByProductProductIdAndIsMainTrue(product.getProductId());
-                    if (mainImage.isPresent()) {
-                        productResponse.setMainImageUrl(mainImage.get().getImageUrl());
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error loading image for product " + product.getProductId() + ": " + e.getMessage());
-                }
-                
-                return productResponse;
-            });
-            response.setResult(productResponses);
+            ProductSearchCriteria criteria = ProductSearchCriteria.builder()
+                    .brandIds(List.of(brandId))
+                    .categoryNames(splitCsv(categories))
+                    .minPrice(minPrice)
+                    .maxPrice(maxPrice)
+                    .minRating(parseMinRating(ratings))
+                    .ageRanges(ageRange)
+                    .sizes(sizeFilter)
+                    .origins(origin)
+                    .sortBy(hasText(sortBy) ? sortBy : "created") // Mặc định: mới nhất trước
+                    .sortDir(hasText(sortBy) ? sortDir : "desc")
+                    .build();
+
+            response.setResult(productCatalogService.search(criteria, pageable));
             response.setMessage("Lấy sản phẩm theo thương hiệu thành công");
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -593,23 +324,9 @@ public class UserProductController {
             Pageable optimizedPageable = PageRequest.of(0, limit);
             List<Product> products = productService.findNewestProducts(optimizedPageable);
 
-            // Convert to response with images
+            // Ảnh chính do mapper lấy từ images (nạp theo lô, không truy vấn riêng từng sản phẩm)
             List<ProductResponse> productResponses = products.stream()
-                .map(product -> {
-                    ProductResponse productResponse = productMapper.toProductResponse(product);
-                    
-                    // Load main image
-                    try {
-                        Optional<Image> mainImage = imageRepository.findByProductProductIdAndIsMainTrue(product.getProductId());
-                        if (mainImage.isPresent()) {
-                            productResponse.setMainImageUrl(mainImage.get().getImageUrl());
-                        }
-                    } catch (Exception e) {
-                        // Silent fail for image loading
-                    }
-                    
-                    return productResponse;
-                })
+                .map(productMapper::toProductResponse)
                     .toList();
 
             response.setResult(productResponses);
@@ -670,132 +387,22 @@ public class UserProductController {
 
         ApiResponse<Page<ProductResponse>> response = new ApiResponse<>();
         try {
-            // Debug: Check all products first
-            List<Product> allProducts = productRepository.findAll();
-            System.out.println("=== DEBUG: Total products in database: " + allProducts.size());
-            if (!allProducts.isEmpty()) {
-                Product sample = allProducts.get(0);
-                System.out.println("Sample product: " + sample.getName() + 
-                    " - isActive: " + sample.getIsActive() + 
-                    " - available: " + sample.getAvailable() + 
-                    " - createdDate: " + sample.getCreatedDate());
-            }
-            
-            // Get all newest products first
-            List<Product> allNewestProducts = productService.findNewestProducts(PageRequest.of(0, 1000)); // Get more products for filtering
-            System.out.println("Newest Advanced - Found " + allNewestProducts.size() + " newest products");
-            
-            // Apply filters
-            List<Product> filteredProducts = allNewestProducts;
-
-            // Apply price filter
-            if (minPrice != null || maxPrice != null) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            BigDecimal price = product.getPrice();
-                            if (minPrice != null && price.compareTo(minPrice) < 0) return false;
-                            if (maxPrice != null && price.compareTo(maxPrice) > 0) return false;
-                            return true;
-                        })
-                        .toList();
-            }
-
-            // Apply brand filter
-            if (brands != null && !brands.trim().isEmpty()) {
-                System.out.println("Newest Advanced - Applying brand filter: " + brands);
-                List<String> brandList = List.of(brands.split(","));
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> brandList.contains(product.getBrand().getBrandId().toString()))
-                        .toList();
-                System.out.println("Newest Advanced - After brand filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply rating filter
-            if (ratings != null && !ratings.trim().isEmpty()) {
-                List<Integer> ratingList = List.of(ratings.split(",")).stream()
-                        .map(Integer::parseInt)
-                        .toList();
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            BigDecimal avgRating = product.getAverageRating();
-                            if (avgRating == null) return false;
-                            return ratingList.stream().anyMatch(rating -> 
-                                avgRating.compareTo(BigDecimal.valueOf(rating)) >= 0);
-                        })
-                        .toList();
-            }
-
-            // Apply age range filter (Mom & Baby)
-            if (ageRange != null && !ageRange.isEmpty()) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productAgeRange = product.getAgeRange();
-                            return productAgeRange != null && ageRange.contains(productAgeRange);
-                        })
-                        .toList();
-            }
-
-            // Apply size filter (Mom & Baby)
-            if (sizeFilter != null && !sizeFilter.isEmpty()) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productSize = product.getSize();
-                            return productSize != null && sizeFilter.contains(productSize);
-                        })
-                        .toList();
-            }
-
-            // Apply origin filter (Mom & Baby)
-            if (origin != null && !origin.isEmpty()) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productOrigin = product.getOrigin();
-                            return productOrigin != null && origin.contains(productOrigin);
-                        })
-                        .toList();
-            }
-
-            // Apply sorting to filtered products
-            if (sortBy != null && !sortBy.isEmpty()) {
-                System.out.println("Newest Advanced - Sorting products by: " + sortBy + " " + sortDir);
-                filteredProducts = this.applySorting(filteredProducts, sortBy, sortDir);
-                System.out.println("Newest Advanced - Sorted products count: " + filteredProducts.size());
-            } else {
-                // Default sorting: by createdDate DESC (newest first)
-                System.out.println("Newest Advanced - Applying default sorting: created DESC");
-                filteredProducts = this.applySorting(filteredProducts, "created", "desc");
-            }
-
-            // Apply pagination
-            int start = page * size;
-            int end = Math.min(start + size, filteredProducts.size());
-            List<Product> paginatedProducts = filteredProducts.subList(start, end);
-
-            // Convert to response with images
-            List<ProductResponse> productResponses = paginatedProducts.stream()
-                .map(product -> {
-                ProductResponse productResponse = productMapper.toProductResponse(product);
-                
-                // Load main image
-                try {
-                    Optional<Image> mainImage = imageRepository.findByProductProductIdAndIsMainTrue(product.getProductId());
-                    if (mainImage.isPresent()) {
-                        productResponse.setMainImageUrl(mainImage.get().getImageUrl());
-                    }
-                } catch (Exception e) {
-                        // Silent fail for image loading
-                }
-                
-                return productResponse;
-                })
-                .toList();
-
-            // Create paginated result
-            Page<ProductResponse> result = new PageImpl<>(
-                    productResponses, 
-                    PageRequest.of(page, size), 
-                    filteredProducts.size()
-            );
+            // Sản phẩm đang bán, lọc thương hiệu theo ID
+            ProductSearchCriteria criteria = ProductSearchCriteria.builder()
+                    .active(true)
+                    .available(true)
+                    .brandIds(parseIds(brands))
+                    .minPrice(minPrice)
+                    .maxPrice(maxPrice)
+                    .minRating(parseMinRating(ratings))
+                    .ageRanges(ageRange)
+                    .sizes(sizeFilter)
+                    .origins(origin)
+                    .sortBy(hasText(sortBy) ? sortBy : "created") // Mặc định: mới nhất trước
+                    .sortDir(hasText(sortBy) ? sortDir : "desc")
+                    .build();
+
+            Page<ProductResponse> result = productCatalogService.search(criteria, PageRequest.of(page, size));
 
             response.setCode(1000);
             response.setResult(result);
@@ -808,7 +415,6 @@ public class UserProductController {
             return ResponseEntity.internalServerError().body(response);
         }
     }
-
     // ========== BEST SELLING PRODUCTS (Simple - for homepage and cart) ==========
     @GetMapping("/best-selling")
     public ResponseEntity<ApiResponse<List<ProductResponse>>> getBestSellingProducts(
@@ -825,23 +431,9 @@ public class UserProductController {
             Pageable optimizedPageable = PageRequest.of(0, limit);
             List<Product> products = productService.findBestSellingProducts(optimizedPageable);
 
-            // Convert to response with images
+            // Ảnh chính do mapper lấy từ images (nạp theo lô, không truy vấn riêng từng sản phẩm)
             List<ProductResponse> productResponses = products.stream()
-                .map(product -> {
-                    ProductResponse productResponse = productMapper.toProductResponse(product);
-                    
-                    // Load main image
-                    try {
-                        Optional<Image> mainImage = imageRepository.findByProductProductIdAndIsMainTrue(product.getProductId());
-                        if (mainImage.isPresent()) {
-                            productResponse.setMainImageUrl(mainImage.get().getImageUrl());
-                        }
-                    } catch (Exception e) {
-                        // Silent fail for image loading
-                    }
-                    
-                    return productResponse;
-                })
+                .map(productMapper::toProductResponse)
                 .toList();
 
             response.setCode(1000);
@@ -952,120 +544,23 @@ public class UserProductController {
 
         ApiResponse<Page<ProductResponse>> response = new ApiResponse<>();
         try {
-            // Get all best selling products first
-            List<Product> allBestSellingProducts = productService.findBestSellingProducts(PageRequest.of(0, 1000)); // Get more products for filtering
-            
-            // Apply filters
-            List<Product> filteredProducts = allBestSellingProducts;
-
-            // Apply price filter
-            if (minPrice != null || maxPrice != null) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            BigDecimal price = product.getPrice();
-                            if (minPrice != null && price.compareTo(minPrice) < 0) return false;
-                            if (maxPrice != null && price.compareTo(maxPrice) > 0) return false;
-                            return true;
-                        })
-                        .toList();
-            }
-
-            // Apply brand filter
-            if (brands != null && !brands.trim().isEmpty()) {
-                System.out.println("Bestseller Advanced - Applying brand filter: " + brands);
-                List<String> brandList = List.of(brands.split(","));
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> brandList.contains(product.getBrand().getName()))
-                        .toList();
-                System.out.println("Bestseller Advanced - After brand filter: " + filteredProducts.size() + " products");
-            }
-
-            // Apply rating filter
-            if (ratings != null && !ratings.trim().isEmpty()) {
-                List<Integer> ratingList = List.of(ratings.split(",")).stream()
-                        .map(Integer::parseInt)
-                        .toList();
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            BigDecimal avgRating = product.getAverageRating();
-                            if (avgRating == null) return false;
-                            return ratingList.stream().anyMatch(rating -> 
-                                avgRating.compareTo(BigDecimal.valueOf(rating)) >= 0);
-                        })
-                        .toList();
-            }
-
-            // Apply age range filter (Mom & Baby)
-            if (ageRange != null && !ageRange.isEmpty()) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productAgeRange = product.getAgeRange();
-                            return productAgeRange != null && ageRange.contains(productAgeRange);
-                        })
-                        .toList();
-            }
-
-            // Apply size filter (Mom & Baby)
-            if (sizeFilter != null && !sizeFilter.isEmpty()) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productSize = product.getSize();
-                            return productSize != null && sizeFilter.contains(productSize);
-                        })
-                        .toList();
-            }
-
-            // Apply origin filter (Mom & Baby)
-            if (origin != null && !origin.isEmpty()) {
-                filteredProducts = filteredProducts.stream()
-                        .filter(product -> {
-                            String productOrigin = product.getOrigin();
-                            return productOrigin != null && origin.contains(productOrigin);
-                        })
-                        .toList();
-            }
-
-            // Apply sorting to filtered products
-            if (sortBy != null && !sortBy.isEmpty()) {
-                System.out.println("Bestseller Advanced - Sorting products by: " + sortBy + " " + sortDir);
-                filteredProducts = this.applySorting(filteredProducts, sortBy, sortDir);
-                System.out.println("Bestseller Advanced - Sorted products count: " + filteredProducts.size());
-            } else {
-                // Default sorting: by createdDate DESC (newest first)
-                System.out.println("Bestseller Advanced - Applying default sorting: created DESC");
-                filteredProducts = this.applySorting(filteredProducts, "created", "desc");
-            }
-
-            // Apply pagination
-            int start = page * size;
-            int end = Math.min(start + size, filteredProducts.size());
-            List<Product> paginatedProducts = filteredProducts.subList(start, end);
-
-            // Convert to response with images
-            List<ProductResponse> productResponses = paginatedProducts.stream()
-                .map(product -> {
-                ProductResponse productResponse = productMapper.toProductResponse(product);
-                
-                // Load main image
-                try {
-                    Optional<Image> mainImage = imageRepository.findByProductProductIdAndIsMainTrue(product.getProductId());
-                    if (mainImage.isPresent()) {
-                        productResponse.setMainImageUrl(mainImage.get().getImageUrl());
-                    }
-                } catch (Exception e) {
-                        // Silent fail for image loading
-                }
-                
-                return productResponse;
-                })
-                .toList();
-
-            // Create paginated result
-            Page<ProductResponse> result = new PageImpl<>(
-                    productResponses, 
-                    PageRequest.of(page, size), 
-                    filteredProducts.size()
-            );
+            // Sản phẩm đang bán và đã có lượt bán, lọc thương hiệu theo tên
+            ProductSearchCriteria criteria = ProductSearchCriteria.builder()
+                    .active(true)
+                    .available(true)
+                    .soldOnly(true)
+                    .brandNames(splitCsv(brands))
+                    .minPrice(minPrice)
+                    .maxPrice(maxPrice)
+                    .minRating(parseMinRating(ratings))
+                    .ageRanges(ageRange)
+                    .sizes(sizeFilter)
+                    .origins(origin)
+                    .sortBy(hasText(sortBy) ? sortBy : "created") // Mặc định: mới nhất trước
+                    .sortDir(hasText(sortBy) ? sortDir : "desc")
+                    .build();
+
+            Page<ProductResponse> result = productCatalogService.search(criteria, PageRequest.of(page, size));
 
             response.setResult(result);
             response.setMessage("Lấy sản phẩm bán chạy thành công");
@@ -1077,7 +572,6 @@ public class UserProductController {
         }
     }
 
-
     // ========== PRODUCT IMAGES ==========
     // Lấy hình ảnh của sản phẩm
     @GetMapping("/{id}/images")
@@ -1152,141 +646,37 @@ public class UserProductController {
 
             // Không kiểm tra isActive/available để cho phép xem sản phẩm bị deactivate
 
-            // Lấy tất cả sản phẩm để filter
-            List<Product> allProducts = productService.findAll();
-
-            // IMPROVED SIMILAR PRODUCTS LOGIC WITH FALLBACK
-            List<Product> similarProducts = getSimilarProductsWithFallback(allProducts, originalProduct, id);
-
-            // Apply price filter
-            if (minPrice != null || maxPrice != null) {
-                System.out.println("Applying price filter: min=" + minPrice + ", max=" + maxPrice);
-                similarProducts = similarProducts.stream()
-                        .filter(product -> {
-                            BigDecimal price = product.getPrice();
-                            if (minPrice != null && price.compareTo(minPrice) < 0) return false;
-                            if (maxPrice != null && price.compareTo(maxPrice) > 0) return false;
-                            return true;
-                        })
-                        .toList();
-                System.out.println("After price filter: " + similarProducts.size() + " products");
-            }
-
-            // Apply brand filter
-            if (brands != null && !brands.trim().isEmpty()) {
-                System.out.println("Applying brand filter: " + brands);
-                List<String> brandList = List.of(brands.split(","));
-                similarProducts = similarProducts.stream()
-                        .filter(product -> brandList.contains(product.getBrand().getName()))
-                        .toList();
-                System.out.println("After brand filter: " + similarProducts.size() + " products");
-            }
-
-            // Apply category filter
-            if (categories != null && !categories.trim().isEmpty()) {
-                System.out.println("Applying category filter: " + categories);
-                List<Long> categoryList = List.of(categories.split(",")).stream()
-                        .map(Long::parseLong)
-                        .toList();
+            // Tập sản phẩm tương tự (có fallback), sau đó áp dụng bộ lọc của người dùng
+            ProductSearchCriteria criteria = ProductSearchCriteria.builder()
+                    .productIds(productCatalogService.findSimilarProductIds(originalProduct))
+                    .brandNames(splitCsv(brands))
+                    .categoryIds(parseIds(categories))
+                    .minPrice(minPrice)
+                    .maxPrice(maxPrice)
+                    .minRating(parseMinRating(ratings))
+                    .ageRanges(ageRange)
+                    .sizes(sizeFilter)
+                    .origins(origin)
+                    .sortBy(sortBy)
+                    .sortDir(sortDir)
+                    .build();
+            List<ProductResponse> similarProducts = productCatalogService.findAll(criteria);
+
+            if (!hasText(sortBy)) {
+                // Mặc định: rating giảm dần, sau đó giá gần với sản phẩm gốc nhất
+                BigDecimal originalPrice = originalProduct.getPrice();
                 similarProducts = similarProducts.stream()
-                        .filter(product -> categoryList.contains(product.getCategory().getCategoryId()))
+                        .sorted(Comparator
+                                .comparing((ProductResponse p) -> p.getAverageRating() != null
+                                        ? p.getAverageRating() : BigDecimal.ZERO, Comparator.reverseOrder())
+                                .thenComparing(p -> p.getPrice().subtract(originalPrice).abs()))
                         .toList();
-                System.out.println("After category filter: " + similarProducts.size() + " products");
             }
 
-            // Apply rating filter
-            if (ratings != null && !ratings.trim().isEmpty()) {
-                System.out.println("Applying rating filter: " + ratings);
-                List<Integer> ratingList = List.of(ratings.split(",")).stream()
-                        .map(Integer::parseInt)
-                        .toList();
-                similarProducts = similarProducts.stream()
-                        .filter(product -> {
-                            BigDecimal avgRating = product.getAverageRating();
-                            if (avgRating == null) return false;
-                            return ratingList.stream().anyMatch(rating -> 
-                                avgRating.compareTo(BigDecimal.valueOf(rating)) >= 0);
-                        })
-                        .toList();
-                System.out.println("After rating filter: " + similarProducts.size() + " products");
-            }
-
-            // Apply age range filter (Mom & Baby)
-            if (ageRange != null && !ageRange.isEmpty()) {
-                System.out.println("Similar Products - Applying age range filter: " + ageRange);
-                similarProducts = similarProducts.stream()
-                        .filter(product -> {
-                            String productAgeRange = product.getAgeRange();
-                            return productAgeRange != null && ageRange.contains(productAgeRange);
-                        })
-                        .toList();
-                System.out.println("Similar Products - After age range filter: " + similarProducts.size() + " products");
-            }
-
-            // Apply size filter (Mom & Baby)
-            if (sizeFilter != null && !sizeFilter.isEmpty()) {
-                System.out.println("Similar Products - Applying size filter: " + sizeFilter);
-                similarProducts = similarProducts.stream()
-                        .filter(product -> {
-                            String productSize = product.getSize();
-                            return productSize != null && sizeFilter.contains(productSize);
-                        })
-                        .toList();
-                System.out.println("Similar Products - After size filter: " + similarProducts.size() + " products");
-            }
-
-            // Apply origin filter (Mom & Baby)
-            if (origin != null && !origin.isEmpty()) {
-                System.out.println("Similar Products - Applying origin filter: " + origin);
-                similarProducts = similarProducts.stream()
-                        .filter(product -> {
-                            String productOrigin = product.getOrigin();
-                            return productOrigin != null && origin.contains(productOrigin);
-                        })
-                        .toList();
-                System.out.println("Similar Products - After origin filter: " + similarProducts.size() + " products");
-            }
-
-            // Apply sorting to filtered products
-            if (sortBy != null && !sortBy.isEmpty()) {
-                System.out.println("Sorting products by: " + sortBy + " " + sortDir);
-                similarProducts = this.sortProducts(similarProducts, sortBy, sortDir);
-                System.out.println("Sorted products count: " + similarProducts.size());
-            } else {
-                // Default sorting: by rating DESC, then by price closest to original
-                System.out.println("Applying default sorting: rating DESC, then price closest");
-                similarProducts = similarProducts.stream()
-                        .sorted((p1, p2) -> {
-                            // Sắp xếp theo rating giảm dần, sau đó theo price gần nhất
-                            int ratingCompare = p2.getAverageRating().compareTo(p1.getAverageRating());
-                            if (ratingCompare != 0) return ratingCompare;
-
-                            BigDecimal priceDiff1 = p1.getPrice().subtract(originalProduct.getPrice()).abs();
-                            BigDecimal priceDiff2 = p2.getPrice().subtract(originalProduct.getPrice()).abs();
-                            return priceDiff1.compareTo(priceDiff2);
-                        })
-                        .toList();
-            }
-
-            Page<Product> filteredPage = new PageImpl<>(
-                    similarProducts, pageable, similarProducts.size()
-            );
-
-            Page<ProductResponse> productResponses = filteredPage.map(product -> {
-                ProductResponse productResponse = productMapper.toProductResponse(product);
-                
-                // Load main image
-                try {
-                    Optional<Image> mainImage = imageRepository.findByProductProductIdAndIsMainTrue(product.getProductId());
-                    if (mainImage.isPresent()) {
-                        productResponse.setMainImageUrl(mainImage.get().getImageUrl());
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error loading image for product " + product.getProductId() + ": " + e.getMessage());
-                }
-                
-                return productResponse;
-            });
+            int fromIndex = (int) Math.min(pageable.getOffset(), similarProducts.size());
+            int toIndex = Math.min(fromIndex + pageable.getPageSize(), similarProducts.size());
+            Page<ProductResponse> productResponses = new PageImpl<>(
+                    similarProducts.subList(fromIndex, toIndex), pageable, similarProducts.size());
 
             response.setResult(productResponses);
             response.setMessage("Lấy sản phẩm tương tự thành công");
@@ -1303,130 +693,30 @@ public class UserProductController {
         }
     }
 
-
-
-
-
     // ========== HELPER METHODS ==========
     
     /**
-     * Lấy tất cả category IDs của children và grandchildren (recursive)
+     * Lấy tất cả category IDs của children và grandchildren (từ cây danh mục trong bộ nhớ)
      */
     private List<Long> getAllChildCategoryIds(Long categoryId) {
-        List<Long> allChildIds = new ArrayList<>();
-        
-        try {
-            // Lấy direct children
-            List<Category> directChildren = categoryService.findChildCategories(categoryId);
-            System.out.println("Direct children for category " + categoryId + ": " + directChildren.size());
-            
-            for (Category child : directChildren) {
-                allChildIds.add(child.getCategoryId());
-                System.out.println("Added child category: " + child.getCategoryId() + " - " + child.getName());
-                
-                // Lấy grandchildren (recursive)
-                List<Long> grandChildren = getAllChildCategoryIds(child.getCategoryId());
-                allChildIds.addAll(grandChildren);
-            }
-            
-            System.out.println("All child category IDs for " + categoryId + ": " + allChildIds);
-        } catch (Exception e) {
-            System.err.println("Error getting child categories for " + categoryId + ": " + e.getMessage());
-        }
-        
-        return allChildIds;
+        List<Long> subtree = categoryService.getSubtreeIds(categoryId);
+        return subtree.isEmpty() ? new ArrayList<>() : new ArrayList<>(subtree.subList(1, subtree.size()));
     }
     
-    private List<Product> applySorting(List<Product> products, String sortBy, String sortDir) {
-        if (products == null || products.isEmpty()) {
-            return products;
-        }
-        
-        boolean ascending = sortDir == null || !sortDir.equalsIgnoreCase("desc");
-        
-        switch (sortBy.toLowerCase()) {
-            case "name":
-                return products.stream()
-                        .sorted((p1, p2) -> {
-                            int result = p1.getName().compareToIgnoreCase(p2.getName());
-                            return ascending ? result : -result;
-                        })
-                        .collect(Collectors.toList());
-                        
-            case "price":
-                return products.stream()
-                        .sorted((p1, p2) -> {
-                            int result = p1.getPrice().compareTo(p2.getPrice());
-                            return ascending ? result : -result;
-                        })
-                        .collect(Collectors.toList());
-                        
-            case "rating":
-                return products.stream()
-                        .sorted((p1, p2) -> {
-                            BigDecimal rating1 = p1.getAverageRating() != null ? p1.getAverageRating() : BigDecimal.ZERO;
-                            BigDecimal rating2 = p2.getAverageRating() != null ? p2.getAverageRating() : BigDecimal.ZERO;
-                            int result = rating1.compareTo(rating2);
-                            return ascending ? result : -result;
-                        })
-                        .collect(Collectors.toList());
-                        
-            case "sold":
-            case "soldcount":
-            case "sold_count":
-                return products.stream()
-                        .sorted((p1, p2) -> {
-                            Integer sold1 = p1.getSoldCount() != null ? p1.getSoldCount() : 0;
-                            Integer sold2 = p2.getSoldCount() != null ? p2.getSoldCount() : 0;
-                            int result = sold1.compareTo(sold2);
-                            return ascending ? result : -result;
-                        })
-                        .collect(Collectors.toList());
-                        
-            case "created":
-            case "createddate":
-            case "created_date":
-                return products.stream()
-                        .sorted((p1, p2) -> {
-                            if (p1.getCreatedDate() == null && p2.getCreatedDate() == null) return 0;
-                            if (p1.getCreatedDate() == null) return ascending ? 1 : -1;
-                            if (p2.getCreatedDate() == null) return ascending ? -1 : 1;
-                            int result = p1.getCreatedDate().compareTo(p2.getCreatedDate());
-                            return ascending ? result : -result;
-                        })
-                        .collect(Collectors.toList());
-                        
-            default:
-                // Mặc định sắp xếp theo tên
-                return products.stream()
-                        .sorted((p1, p2) -> {
-                            int result = p1.getName().compareToIgnoreCase(p2.getName());
-                            return ascending ? result : -result;
-                        })
-                        .collect(Collectors.toList());
-        }
-    }
-
     // ========== SEARCH BRANDS ==========
     @GetMapping("/search-brands")
     public ResponseEntity<ApiResponse<List<BrandResponse>>> getSearchBrands(@RequestParam(required = false) String q) {
         ApiResponse<List<BrandResponse>> response = new ApiResponse<>();
         try {
-            // Sử dụng cùng logic với API search chính
-            List<Product> allProducts = productService.findAll();
-            System.out.println("Total products for brands: " + allProducts.size());
-            
-            // Filter products by search query if provided - ĐỒNG BỘ với API search chính
-            List<Product> filteredProducts = allProducts;
-            if (q != null && !q.trim().isEmpty()) {
-                // Sử dụng cùng logic với API search chính (findByNameContaining)
-                filteredProducts = productService.findByNameContaining(q.trim());
-                System.out.println("Filtered products for query '" + q + "': " + filteredProducts.size());
-            }
-            
-            List<BrandResponse> brands = filteredProducts.stream()
-                    .map(Product::getBrand)
+            // Cùng chỉ mục toàn văn với API search chính (q rỗng = mọi sản phẩm)
+            List<Long> brandIds = productCatalogService.findAll(ProductSearchCriteria.builder().keyword(q).build())
+                    .stream()
+                    .map(ProductResponse::getBrandId)
+                    .filter(Objects::nonNull)
                     .distinct()
+                    .toList();
+
+            List<BrandResponse> brands = brandService.findAllById(brandIds).stream()
                     .map(brand -> BrandResponse.builder()
                             .brandId(brand.getBrandId())
                             .name(brand.getName())
@@ -1452,10 +742,10 @@ public class UserProductController {
     public ResponseEntity<ApiResponse<List<BrandResponse>>> getSimilarProductBrands(@PathVariable Long productId) {
         ApiResponse<List<BrandResponse>> response = new ApiResponse<>();
         try {
-            // Get all products and find similar products using existing logic
-            List<Product> allProducts = productService.findAll();
+            // Sản phẩm tương tự (có fallback) lấy từ catalog index
             ProductResponse originalProduct = productService.findById(productId);
-            List<Product> similarProducts = getSimilarProductsWithFallback(allProducts, originalProduct, productId);
+            List<Long> similarIds = productCatalogService.findSimilarProductIds(originalProduct);
+            List<Product> similarProducts = productService.findAllById(similarIds);
             
             // Extract unique brands from similar products
             List<BrandResponse> brands = similarProducts.stream()
@@ -1665,75 +955,42 @@ public class UserProductController {
     }
 
     // ========== HELPER METHODS ==========
-    private Pageable createSortedPageable(Pageable pageable, String sortBy, String sortDir) {
-        if (sortBy == null || sortBy.trim().isEmpty()) {
-            return pageable;
-        }
-
-        Sort.Direction direction = "desc".equalsIgnoreCase(sortDir) ?
-                Sort.Direction.DESC : Sort.Direction.ASC;
-
-        // Tạo Pageable mới với sort mới (không merge với pageable gốc)
-        return PageRequest.of(
-                pageable.getPageNumber(), 
-                pageable.getPageSize(), 
-                Sort.by(direction, getSortField(sortBy))
-        );
+    private static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
     }
 
-    private String getSortField(String sortBy) {
-        switch (sortBy.toLowerCase()) {
-            case "name": return "name";
-            case "price": return "price";
-            case "rating": return "averageRating";
-            case "created": return "createdDate";
-            case "sold": return "soldCount";
-            case "stock": return "stock";
-            default: return "createdDate";
+    /**
+     * Tách chuỗi CSV (VD: "Huggies,Bobby"), null nếu không có giá trị
+     */
+    private static List<String> splitCsv(String csv) {
+        if (!hasText(csv)) {
+            return null;
         }
+        return Arrays.stream(csv.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
     }
 
-    private List<Product> sortProducts(List<Product> products, String sortBy, String sortDir) {
-        if (sortBy == null || sortBy.trim().isEmpty()) {
-            return products;
-        }
-
-        boolean isDesc = "desc".equalsIgnoreCase(sortDir);
-        
-        return products.stream()
-                .sorted((p1, p2) -> {
-                    switch (sortBy.toLowerCase()) {
-                        case "name":
-                            return isDesc ? p2.getName().compareTo(p1.getName()) : p1.getName().compareTo(p2.getName());
-                        case "price":
-                            return isDesc ? p2.getPrice().compareTo(p1.getPrice()) : p1.getPrice().compareTo(p2.getPrice());
-                        case "rating":
-                            // Handle null averageRating
-                            if (p1.getAverageRating() == null && p2.getAverageRating() == null) return 0;
-                            if (p1.getAverageRating() == null) return isDesc ? 1 : -1;
-                            if (p2.getAverageRating() == null) return isDesc ? -1 : 1;
-                            return isDesc ? p2.getAverageRating().compareTo(p1.getAverageRating()) : p1.getAverageRating().compareTo(p2.getAverageRating());
-                        case "created":
-                            // Handle null createdDate
-                            if (p1.getCreatedDate() == null && p2.getCreatedDate() == null) return 0;
-                            if (p1.getCreatedDate() == null) return isDesc ? 1 : -1;
-                            if (p2.getCreatedDate() == null) return isDesc ? -1 : 1;
-                            return isDesc ? p2.getCreatedDate().compareTo(p1.getCreatedDate()) : p1.getCreatedDate().compareTo(p2.getCreatedDate());
-                        case "sold":
-                            // Handle null soldCount
-                            if (p1.getSoldCount() == null && p2.getSoldCount() == null) return 0;
-                            if (p1.getSoldCount() == null) return isDesc ? 1 : -1;
-                            if (p2.getSoldCount() == null) return isDesc ? -1 : 1;
-                            return isDesc ? p2.getSoldCount().compareTo(p1.getSoldCount()) : p1.getSoldCount().compareTo(p2.getSoldCount());
-                        case "stock":
-                            return isDesc ? p2.getStock().compareTo(p1.getStock()) : p1.getStock().compareTo(p2.getStock());
-                        default:
-                            return isDesc ? p2.getCreatedDate().compareTo(p1.getCreatedDate()) : p1.getCreatedDate().compareTo(p2.getCreatedDate());
-                    }
-                })
-                .toList();
+    private static List<Long> parseIds(String csv) {
+        List<String> values = splitCsv(csv);
+        return values == null ? null : values.stream().map(Long::parseLong).toList();
     }
 
+    /**
+     * "4,5" -> 4: sản phẩm đạt ít nhất một mức rating tức là đạt mức nhỏ nhất
+     */
+    private static BigDecimal parseMinRating(String csv) {
+        List<String> values = splitCsv(csv);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        return values.stream()
+                .map(Integer::parseInt)
+                .min(Integer::compare)
+                .map(BigDecimal::valueOf)
+                .orElse(null);
+    }
     // ========== CATEGORY INFO ==========
     @GetMapping("/categories/{categoryId}")
     public ResponseEntity<ApiResponse<CategoryResponse>> getCategoryInfo(@PathVariable Long categoryId) {
@@ -1778,242 +1035,4 @@ public class UserProductController {
             response.setMessage("Lỗi khi lấy danh sách mã giảm giá: " + e.getMessage());
             return ResponseEntity.internalServerError().body(response);
         }
-    }
-
-    // ========== IMPROVED SIMILAR PRODUCTS LOGIC ==========
-    
-    /**
-     * Tìm sản phẩm tương tự với fallback logic
-     * Level 1: Cùng category + brand + price range ±50%
-     * Level 2: Cùng category + price range ±50% (không cần cùng brand)
-     * Level 3: Cùng category (không cần cùng price range)
-     * Level 4: Cùng brand (fallback cuối cùng)
-     */
-    private List<Product> getSimilarProductsWithFallback(List<Product> allProducts, ProductResponse originalProduct, Long excludeId) {
-        System.out.println("🔍 Finding similar products for product ID: " + excludeId);
-        
-        // Level 1: Cùng category + brand + price range ±50%
-        List<Product> level1 = allProducts.stream()
-                .filter(product -> !product.getProductId().equals(excludeId))
-                .filter(product -> product.getAvailable()) // Chỉ lấy sản phẩm available
-                .filter(product -> {
-                    // Cùng category
-                    if (!product.getCategory().getCategoryId().equals(originalProduct.getCategoryId())) {
-                        return false;
-                    }
-                    
-                    // Cùng brand (nếu có)
-                    if (originalProduct.getBrandId() != null && product.getBrand() != null) {
-                        if (!product.getBrand().getBrandId().equals(originalProduct.getBrandId())) {
-                            return false;
-                        }
-                    }
-                    
-                    // Price range ±50%
-                    return isInPriceRange(product.getPrice(), originalProduct.getPrice(), 0.5);
-                })
-                .toList();
-        
-        System.out.println("📊 Level 1 (category + brand + price): " + level1.size() + " products");
-        
-        if (level1.size() >= 4) {
-            System.out.println("✅ Using Level 1 results");
-            return level1;
-        }
-        
-        // Level 2: Cùng category + price range ±50% (không cần cùng brand)
-        List<Product> level2 = allProducts.stream()
-                .filter(product -> !product.getProductId().equals(excludeId))
-                .filter(product -> product.getAvailable()) // Chỉ lấy sản phẩm available
-                .filter(product -> {
-                    // Cùng category
-                    if (!product.getCategory().getCategoryId().equals(originalProduct.getCategoryId())) {
-                        return false;
-                    }
-                    
-                    // Price range ±50%
-                    return isInPriceRange(product.getPrice(), originalProduct.getPrice(), 0.5);
-                })
-                .toList();
-        
-        System.out.println("📊 Level 2 (category + price): " + level2.size() + " products");
-        
-        if (level1.size() + level2.size() >= 4) {
-            System.out.println("✅ Using Level 1 + Level 2 results");
-            return combineTwoLists(level1, level2, 8);
-        }
-        
-        // Level 3: Cùng category + price range ±100% (range rộng hơn)
-        List<Product> level3 = allProducts.stream()
-                .filter(product -> !product.getProductId().equals(excludeId))
-                .filter(product -> product.getAvailable()) // Chỉ lấy sản phẩm available
-                .filter(product -> {
-                    // Cùng category
-                    if (!product.getCategory().getCategoryId().equals(originalProduct.getCategoryId())) {
-                        return false;
-                    }
-                    
-                    // Price range ±100% (range rộng hơn cho level 3)
-                    return isInPriceRange(product.getPrice(), originalProduct.getPrice(), 1.0);
-                })
-                .toList();
-        
-        System.out.println("📊 Level 3 (category + price ±100%): " + level3.size() + " products");
-        
-        if (level1.size() + level2.size() + level3.size() >= 4) {
-            System.out.println("✅ Using Level 1 + Level 2 + Level 3 results");
-            return combineThreeLists(level1, level2, level3, 8);
-        }
-        
-        // Level 4: Cùng brand + price range ±150% (fallback cuối cùng)
-        List<Product> level4 = allProducts.stream()
-                .filter(product -> !product.getProductId().equals(excludeId))
-                .filter(product -> product.getAvailable()) // Chỉ lấy sản phẩm available
-                .filter(product -> {
-                    // Cùng brand
-                    if (originalProduct.getBrandId() != null && product.getBrand() != null) {
-                        if (!product.getBrand().getBrandId().equals(originalProduct.getBrandId())) {
-                            return false;
-                        }
-                    } else {
-                        return false;
-                    }
-                    
-                    // Price range ±150% (range rất rộng cho level 4)
-                    return isInPriceRange(product.getPrice(), originalProduct.getPrice(), 1.5);
-                })
-                .toList();
-        
-        System.out.println("📊 Level 4 (brand + price ±150%): " + level4.size() + " products");
-        System.out.println("✅ Using all levels combined");
-        return combineFourLists(level1, level2, level3, level4, 8);
-    }
-    
-    /**
-     * Kiểm tra giá có trong khoảng cho phép không với dynamic range
-     */
-    private boolean isInPriceRange(BigDecimal productPrice, BigDecimal originalPrice, double rangePercent) {
-        // Dynamic price range based on product price
-        double dynamicRangePercent = getDynamicPriceRange(originalPrice);
-        BigDecimal range = originalPrice.multiply(BigDecimal.valueOf(dynamicRangePercent));
-        BigDecimal minPrice = originalPrice.subtract(range);
-        BigDecimal maxPrice = originalPrice.add(range);
-        
-        return productPrice.compareTo(minPrice) >= 0 && productPrice.compareTo(maxPrice) <= 0;
-    }
-    
-    /**
-     * Tính dynamic price range dựa trên giá sản phẩm
-     * - Sản phẩm rẻ (< 200k): ±50% (range rộng hơn)
-     * - Sản phẩm trung bình (200k-1M): ±40% 
-     * - Sản phẩm đắt (> 1M): ±30% (range hẹp hơn)
-     */
-    private double getDynamicPriceRange(BigDecimal price) {
-        if (price.compareTo(BigDecimal.valueOf(200000)) < 0) {
-            return 0.5; // ±50% for cheap items (< 200k)
-        } else if (price.compareTo(BigDecimal.valueOf(1000000)) < 0) {
-            return 0.4; // ±40% for medium items (200k-1M)
-        } else {
-            return 0.3; // ±30% for expensive items (> 1M)
-        }
-    }
-    
-    /**
-     * Kết hợp 2 danh sách sản phẩm
-     */
-    private List<Product> combineTwoLists(List<Product> list1, List<Product> list2, int limit) {
-        List<Product> combined = new ArrayList<>();
-        
-        // Add from list1 first
-        for (Product product : list1) {
-            if (combined.size() >= limit) break;
-            if (!combined.contains(product)) {
-                combined.add(product);
-            }
-        }
-        
-        // Add from list2 if space available
-        for (Product product : list2) {
-            if (combined.size() >= limit) break;
-            if (!combined.contains(product)) {
-                combined.add(product);
-            }
-        }
-        
-        return combined;
-    }
-    
-    /**
-     * Kết hợp 3 danh sách sản phẩm
-     */
-    private List<Product> combineThreeLists(List<Product> list1, List<Product> list2, List<Product> list3, int limit) {
-        List<Product> combined = new ArrayList<>();
-        
-        // Add from list1 first
-        for (Product product : list1) {
-            if (combined.size() >= limit) break;
-            if (!combined.contains(product)) {
-                combined.add(product);
-            }
-        }
-        
-        // Add from list2 if space available
-        for (Product product : list2) {
-            if (combined.size() >= limit) break;
-            if (!combined.contains(product)) {
-                combined.add(product);
-            }
-        }
-        
-        // Add from list3 if space available
-        for (Product product : list3) {
-            if (combined.size() >= limit) break;
-            if (!combined.contains(product)) {
-                combined.add(product);
-            }
-        }
-        
-        return combined;
-    }
-    
-    /**
-     * Kết hợp 4 danh sách sản phẩm
-     */
-    private List<Product> combineFourLists(List<Product> list1, List<Product> list2, List<Product> list3, List<Product> list4, int limit) {
-        List<Product> combined = new ArrayList<>();
-        
-        // Add from list1 first
-        for (Product product : list1) {
-            if (combined.size() >= limit) break;
-            if (!combined.contains(product)) {
-                combined.add(product);
-            }
-        }
-        
-        // Add from list2 if space available
-        for (Product product : list2) {
-            if (combined.size() >= limit) break;
-            if (!combined.contains(product)) {
-                combined.add(product);
-            }
-        }
-        
-        // Add from list3 if space available
-        for (Product product : list3) {
-            if (combined.size() >= limit) break;
-            if (!combined.contains(product)) {
-                combined.add(product);
-            }
-        }
-        
-        // Add from list4 if space available
-        for (Product product : list4) {
-            if (combined.size() >= limit) break;
-            if (!combined.contains(product)) {
-                combined.add(product);
-            }
-        }
-        
-        return combined;
-    }
-}
+    }}
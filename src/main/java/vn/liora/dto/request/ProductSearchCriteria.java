@@ -0,0 +1,60 @@
+package vn.liora.dto.request;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Bộ điều kiện lọc/sắp xếp sản phẩm dùng chung cho các API danh sách.
+ * Trường null hoặc collection rỗng = không lọc theo trường đó.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductSearchCriteria {
+    // Tên sản phẩm chứa keyword (không phân biệt hoa thường)
+    String keyword;
+
+    // Trạng thái
+    Boolean active;
+    Boolean available;
+    boolean soldOnly; // chỉ sản phẩm đã bán (soldCount > 0)
+
+    // Thương hiệu / danh mục theo ID hoặc theo tên
+    Collection<Long> brandIds;
+    Collection<String> brandNames;
+    Collection<Long> categoryIds;
+    Collection<String> categoryNames;
+
+    // Giới hạn trong tập sản phẩm cho trước (VD: sản phẩm tương tự); khác null = có giới hạn, kể cả rỗng
+    Collection<Long> productIds;
+    Long excludeProductId;
+
+    // Giá & đánh giá
+    BigDecimal minPrice;
+    BigDecimal maxPrice;
+    BigDecimal minRating;
+
+    // Tồn kho: inStock true = còn hàng (stock > 0), false = hết hàng
+    Boolean inStock;
+    Integer minStock;
+    Integer maxStock;
+
+    // Ngày tạo trong [createdFrom, createdBefore)
+    LocalDateTime createdFrom;
+    LocalDateTime createdBefore;
+
+    // Mom & Baby
+    Collection<String> ageRanges;
+    Collection<String> sizes;
+    Collection<String> origins;
+
+    // Sắp xếp: id | name | price | rating | sold | created | stock
+    String sortBy;
+    String sortDir;
+}
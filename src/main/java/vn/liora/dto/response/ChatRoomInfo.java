@@ -16,5 +16,8 @@ public class ChatRoomInfo {
     private String fullName; // firstname + lastname
     private String displayName; // username hoặc fullName nếu có
     private String avatar; // avatar URL
+    private String lastMessage; // nội dung rút gọn của tin cuối
+    private String lastMessageAt;
+    private int unreadCount; // số tin của khách chưa được đọc/trả lời
 }
 
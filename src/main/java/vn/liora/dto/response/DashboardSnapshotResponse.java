@@ -0,0 +1,49 @@
+package vn.liora.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Toàn bộ chỉ số của trang Analytics cho một khoảng thời gian, trả về trong một lần gọi.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DashboardSnapshotResponse {
+    LocalDateTime startDate;
+    LocalDateTime endDate;
+    LocalDateTime generatedAt;
+
+    // Doanh thu (chỉ đơn COMPLETED)
+    BigDecimal totalRevenue;
+    BigDecimal grossRevenue;
+    BigDecimal marketingSpend;
+    BigDecimal netRevenue;
+    BigDecimal averageOrderValue;
+    BigDecimal revenuePerCustomer; // nguồn thu dự kiến từ đơn đang xử lý
+    Map<String, BigDecimal> revenueByPaymentMethod;
+
+    // Đơn hàng
+    long totalOrders;
+    Map<String, Long> orderStatusDistribution;
+    double returnRate;
+
+    // Khách hàng
+    long totalCustomers;
+    long newCustomers;
+    double returningCustomers;
+    double repeatPurchaseRate;
+    List<TopCustomerResponse> topCustomers;
+
+    // Sản phẩm
+    long totalProductsSold;
+    long totalBrandsSold;
+    List<TopProductResponse> topProducts;
+}
@@ -0,0 +1,30 @@
+package vn.liora.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+import vn.liora.enums.ImageJobStatus;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ImageUploadJobResponse {
+
+    private String jobId;
+    private ImageJobStatus status; // COMPLETED khi mọi ảnh đã xử lý xong (kể cả ảnh lỗi)
+    private int total;
+    private int completed;
+    private int failed;
+
+    private List<Item> images;
+
+    @Data
+    @Builder
+    public static class Item {
+        private String filename;
+        private String originalUrl;
+        private String thumbnailUrl;
+        private ImageJobStatus status;
+        private String error;
+    }
+}
@@ -0,0 +1,23 @@
+package vn.liora.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * Một nhóm (trạng thái × danh mục × thương hiệu) trong khoảng thời gian:
+ * tổng số lượng và doanh thu của các dòng sản phẩm.
+ * categoryId/brandId là 0 (bảng tổng hợp) hoặc null (truy vấn trực tiếp) khi sản phẩm không có.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductSalesSummaryRow {
+    String orderStatus;
+    Long categoryId;
+    Long brandId;
+    Long quantity;
+    BigDecimal revenue;
+}
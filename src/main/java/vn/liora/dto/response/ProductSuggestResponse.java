@@ -0,0 +1,16 @@
+package vn.liora.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductSuggestResponse {
+    private List<SuggestionResponse> products;
+    private List<SuggestionResponse> brands;
+    private List<SuggestionResponse> categories;
+}
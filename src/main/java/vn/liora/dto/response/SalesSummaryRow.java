@@ -0,0 +1,23 @@
+package vn.liora.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * Một nhóm (trạng thái × phương thức thanh toán) trong khoảng thời gian:
+ * số đơn, tổng tiền, tổng giảm giá (voucher) và tổng xu đã dùng.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SalesSummaryRow {
+    String orderStatus;
+    String paymentMethod;
+    Long orderCount;
+    BigDecimal total;
+    BigDecimal discount;
+    BigDecimal xuUsed;
+}
@@ -0,0 +1,21 @@
+package vn.liora.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import vn.liora.enums.StockReservationStatus;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StockReservationLine {
+    private Long productId;
+    private String productName;
+    private Integer quantity;
+    private StockReservationStatus status;
+
+    public boolean isReserved() {
+        return status == StockReservationStatus.RESERVED;
+    }
+}
@@ -0,0 +1,18 @@
+package vn.liora.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SuggestionResponse {
+    private Long id;
+    private String name;
+    private String imageUrl; // ảnh chính (chỉ với sản phẩm)
+    private Integer soldCount;
+    private BigDecimal averageRating;
+}
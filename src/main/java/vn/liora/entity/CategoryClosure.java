@@ -0,0 +1,42 @@
+package vn.liora.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+
+/**
+ * Bảng closure của cây danh mục: mỗi cặp (tổ tiên, hậu duệ) một dòng, kể cả chính nó (Depth = 0).
+ * Lấy cả cây con hoặc mọi tổ tiên của một danh mục bằng một truy vấn.
+ * Được dựng lại từ bảng Categories mỗi khi danh mục thay đổi (CategoryTreeCache).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@IdClass(CategoryClosure.Key.class)
+@Table(name = "CategoryClosure", indexes = {
+        @Index(name = "IX_CategoryClosure_DescendantId", columnList = "DescendantId")
+})
+public class CategoryClosure {
+    @Id
+    @Column(name = "AncestorId")
+    Long ancestorId;
+
+    @Id
+    @Column(name = "DescendantId")
+    Long descendantId;
+
+    @Column(name = "Depth", nullable = false)
+    int depth;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long ancestorId;
+        private Long descendantId;
+    }
+}
@@ -0,0 +1,40 @@
+package vn.liora.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tin chat chờ chuyển sang các instance khác (DatabaseChatBus). Chỉ giữ trong thời gian ngắn.
+ * CreatedAt do DB gán (SYSUTCDATETIME) để mọi instance so sánh theo cùng một đồng hồ.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "ChatBusEvent", indexes = {
+        @Index(name = "IX_ChatBusEvent_CreatedAt", columnList = "CreatedAt")
+})
+public class ChatBusEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "IdEvent")
+    Long eventId;
+
+    @Column(name = "NodeId", nullable = false, length = 64)
+    String nodeId;
+
+    @Column(name = "RoomId", nullable = false, length = 100)
+    String roomId;
+
+    @Column(name = "Payload", nullable = false, columnDefinition = "NVARCHAR(MAX)")
+    String payload;
+
+    @Column(name = "CreatedAt", insertable = false, updatable = false,
+            columnDefinition = "DATETIME2 NOT NULL DEFAULT SYSUTCDATETIME()")
+    LocalDateTime createdAt;
+}
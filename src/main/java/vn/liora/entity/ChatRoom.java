@@ -0,0 +1,83 @@
+package vn.liora.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.Persistable;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Bảng tóm tắt phòng chat cho trang quản trị: chủ phòng (khách hàng), tin nhắn cuối và số tin chưa đọc.
+ * Được cập nhật mỗi khi lưu tin nhắn (IChatRoomService.recordMessages), không tính lại từ bảng Message.
+ * Khóa RoomId tự gán nên cài Persistable: save() dòng mới là INSERT (trùng khóa thì lỗi) thay vì merge
+ * ghi đè dòng do luồng/instance khác vừa tạo.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "ChatRoom", indexes = {
+        @Index(name = "IX_ChatRoom_LastMessageAt", columnList = "LastMessageAt")
+})
+public class ChatRoom implements Persistable<String> {
+    @Id
+    @Column(name = "RoomId", length = 100)
+    String roomId;
+
+    @Column(name = "OwnerUserId")
+    Long ownerUserId;
+
+    @Column(name = "OwnerUsername", length = 100)
+    String ownerUsername;
+
+    @Column(name = "OwnerFullName", columnDefinition = "NVARCHAR(200)")
+    String ownerFullName;
+
+    @Column(name = "DisplayName", columnDefinition = "NVARCHAR(200)")
+    String displayName;
+
+    @Column(name = "Avatar", length = 500)
+    String avatar;
+
+    @Column(name = "LastMessageId")
+    Long lastMessageId;
+
+    @Column(name = "LastMessage", columnDefinition = "NVARCHAR(200)")
+    String lastMessage;
+
+    @Column(name = "LastSenderRole", length = 20)
+    String lastSenderRole;
+
+    @Column(name = "LastMessageAt")
+    OffsetDateTime lastMessageAt;
+
+    // Số tin của khách hàng từ lần cuối quản trị viên đọc/trả lời
+    @Column(name = "UnreadCount", nullable = false)
+    int unreadCount;
+
+    // Đã có trong DB (đọc lên hoặc vừa lưu)
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    boolean persisted;
+
+    @Override
+    public String getId() {
+        return roomId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
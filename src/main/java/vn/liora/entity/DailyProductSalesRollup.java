@@ -0,0 +1,47 @@
+package vn.liora.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Tổng hợp dòng sản phẩm đã đặt theo ngày đặt × trạng thái đơn × danh mục × thương hiệu.
+ * CategoryId/BrandId = 0 khi sản phẩm không có danh mục/thương hiệu.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "DailyProductSalesRollup", uniqueConstraints = {
+        @UniqueConstraint(name = "UX_DailyProductSalesRollup_Key",
+                columnNames = {"SalesDate", "OrderStatus", "CategoryId", "BrandId"})
+})
+public class DailyProductSalesRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "IdRollup")
+    Long rollupId;
+
+    @Column(name = "SalesDate", nullable = false)
+    LocalDate salesDate;
+
+    @Column(name = "OrderStatus", nullable = false, length = 20)
+    String orderStatus;
+
+    @Column(name = "CategoryId", nullable = false)
+    Long categoryId;
+
+    @Column(name = "BrandId", nullable = false)
+    Long brandId;
+
+    @Column(name = "Quantity", nullable = false)
+    Long quantity;
+
+    @Column(name = "Revenue", nullable = false, precision = 19, scale = 2)
+    BigDecimal revenue;
+}
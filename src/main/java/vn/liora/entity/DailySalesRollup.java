@@ -0,0 +1,50 @@
+package vn.liora.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Tổng hợp đơn hàng theo ngày đặt × trạng thái × phương thức thanh toán.
+ * Cập nhật tăng dần khi đơn hàng thay đổi (OrderSalesRollupListener) và có thể tính lại
+ * từ bảng Orders bằng ISalesRollupService.rebuild.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "DailySalesRollup", uniqueConstraints = {
+        @UniqueConstraint(name = "UX_DailySalesRollup_Key", columnNames = {"SalesDate", "OrderStatus", "PaymentMethod"})
+})
+public class DailySalesRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "IdRollup")
+    Long rollupId;
+
+    @Column(name = "SalesDate", nullable = false)
+    LocalDate salesDate;
+
+    @Column(name = "OrderStatus", nullable = false, length = 20)
+    String orderStatus;
+
+    @Column(name = "PaymentMethod", nullable = false, length = 20)
+    String paymentMethod;
+
+    @Column(name = "OrderCount", nullable = false)
+    Long orderCount;
+
+    @Column(name = "TotalAmount", nullable = false, precision = 19, scale = 2)
+    BigDecimal totalAmount;
+
+    @Column(name = "DiscountAmount", nullable = false, precision = 19, scale = 2)
+    BigDecimal discountAmount;
+
+    @Column(name = "XuAmount", nullable = false, precision = 19, scale = 2)
+    BigDecimal xuAmount;
+}
@@ -0,0 +1,67 @@
+package vn.liora.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import vn.liora.enums.EmailOutboxStatus;
+import vn.liora.enums.EmailTemplate;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "EmailOutbox", indexes = {
+        @Index(name = "IX_EmailOutbox_Template_Status_NextAttemptAt", columnList = "Template, Status, NextAttemptAt"),
+        @Index(name = "IX_EmailOutbox_ClaimToken", columnList = "ClaimToken")
+})
+public class EmailOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "IdEmail")
+    Long emailId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "Template", nullable = false, length = 30)
+    EmailTemplate template;
+
+    @Column(name = "Recipient", nullable = false, length = 255)
+    String recipient;
+
+    @Column(name = "Subject", nullable = false, columnDefinition = "NVARCHAR(255)")
+    String subject;
+
+    @Column(name = "Body", nullable = false, columnDefinition = "NVARCHAR(MAX)")
+    String body;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "Status", nullable = false, length = 10)
+    EmailOutboxStatus status;
+
+    @Column(name = "Attempts", nullable = false)
+    Integer attempts;
+
+    @Column(name = "NextAttemptAt", nullable = false)
+    LocalDateTime nextAttemptAt;
+
+    // Mã lượt nhận của dispatcher đang gửi email này (null khi không ở trạng thái SENDING)
+    @Column(name = "ClaimToken", length = 36)
+    String claimToken;
+
+    @Column(name = "LastError", columnDefinition = "NVARCHAR(1000)")
+    String lastError;
+
+    @Column(name = "CreatedDate", nullable = false)
+    LocalDateTime createdDate;
+
+    @Column(name = "SentDate")
+    LocalDateTime sentDate;
+
+    @PrePersist
+    protected void onCreate() {
+        createdDate = LocalDateTime.now();
+    }
+}
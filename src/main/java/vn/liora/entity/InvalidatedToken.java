@@ -3,6 +3,8 @@ package vn.liora.entity;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
@@ -14,8 +16,13 @@ import java.util.Date;
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+@Table(name = "InvalidatedToken", indexes = {
+        @Index(name = "IX_InvalidatedToken_ExpiryTime", columnList = "expiryTime")
+})
 public class InvalidatedToken {
     @Id
     String id;
+    // Hạn dùng (exp) của token bị thu hồi; TokenRevocationPurger xóa dòng khi token hết hạn
+    // và đã qua thời gian cho phép refresh
     Date expiryTime;
 }
@@ -1,6 +1,7 @@
 package vn.liora.entity;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -18,7 +19,9 @@ import java.time.OffsetDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "Message")
+@Table(name = "Message", indexes = {
+        @Index(name = "IX_Message_RoomId_CreatedAt", columnList = "RoomId, CreatedAt")
+})
 public class Message {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
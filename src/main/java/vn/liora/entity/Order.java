@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import vn.liora.entity.listener.OrderSalesRollupListener;
+import vn.liora.entity.listener.OrderSalesSnapshot;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -14,6 +16,7 @@ import java.time.LocalDateTime;
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+@EntityListeners(OrderSalesRollupListener.class)
 @Table(name = "Orders")
 public class Order {
     @Id
@@ -89,6 +92,13 @@ public class Order {
     @JsonIgnore
     private GhnShipping ghnShipping;
 
+    // Trạng thái lúc nạp, dùng để tính phần chênh lệch cho bảng tổng hợp doanh số
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private OrderSalesSnapshot salesSnapshot;
+
     @PrePersist
     @PreUpdate
     private void ensureNonNullMonetaryFields() {
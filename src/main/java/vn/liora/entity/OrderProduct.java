@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import vn.liora.entity.listener.OrderLineSalesRollupListener;
 
 import java.math.BigDecimal;
 
@@ -13,6 +14,7 @@ import java.math.BigDecimal;
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+@EntityListeners(OrderLineSalesRollupListener.class)
 @Table(name = "OrderProduct")
 public class OrderProduct {
     @Id
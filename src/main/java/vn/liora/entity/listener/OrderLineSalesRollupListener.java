@@ -0,0 +1,31 @@
+package vn.liora.entity.listener;
+
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import vn.liora.entity.OrderProduct;
+import vn.liora.service.ISalesRollupService;
+
+/**
+ * Trừ doanh số theo danh mục/thương hiệu khi một dòng sản phẩm bị xóa.
+ * Dòng luôn bị xóa trước đơn (khóa ngoại IdOrder), nên lúc xóa đơn không còn dòng nào để truy vấn;
+ * phần này phải được ghi lại ngay tại đây, theo ngày/trạng thái hiện tại của đơn.
+ */
+public class OrderLineSalesRollupListener {
+
+    @Autowired
+    private ObjectProvider<ISalesRollupService> salesRollupService;
+
+    @PostRemove
+    void onRemove(OrderProduct line) {
+        if (line.getOrder() == null || salesRollupService == null) {
+            return;
+        }
+        OrderSalesLine removed = OrderSalesLine.of(line, line.getOrder().getSalesSnapshot());
+        if (removed == null) {
+            return;
+        }
+        OrderSalesRollupListener.enqueue(salesRollupService,
+                new OrderSalesChange(line.getOrder().getIdOrder(), null, null, removed));
+    }
+}
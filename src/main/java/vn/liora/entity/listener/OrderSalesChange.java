@@ -0,0 +1,21 @@
+package vn.liora.entity.listener;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Thay đổi đóng góp của một đơn hàng: before = null khi đơn mới, after = null khi đơn bị xóa.
+ * removedLine khác null khi một dòng sản phẩm của đơn bị xóa (khi đó before/after đều null).
+ */
+@Getter
+@AllArgsConstructor
+public class OrderSalesChange {
+    private final Long orderId;
+    private final OrderSalesSnapshot before;
+    private final OrderSalesSnapshot after;
+    private final OrderSalesLine removedLine;
+
+    public OrderSalesChange(Long orderId, OrderSalesSnapshot before, OrderSalesSnapshot after) {
+        this(orderId, before, after, null);
+    }
+}
@@ -0,0 +1,37 @@
+package vn.liora.entity.listener;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import vn.liora.entity.OrderProduct;
+import vn.liora.entity.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Phần đóng góp của một dòng sản phẩm vào bảng tổng hợp doanh số theo danh mục/thương hiệu.
+ */
+@Value
+@AllArgsConstructor
+public class OrderSalesLine {
+    LocalDate salesDate;
+    String orderStatus;
+    Long categoryId;
+    Long brandId;
+    long quantity;
+    BigDecimal revenue;
+
+    public static OrderSalesLine of(OrderProduct line, OrderSalesSnapshot order) {
+        if (order == null) {
+            return null;
+        }
+        Product product = line.getProduct();
+        return new OrderSalesLine(
+                order.getSalesDate(),
+                order.getOrderStatus(),
+                product != null && product.getCategory() != null ? product.getCategory().getCategoryId() : 0L,
+                product != null && product.getBrand() != null ? product.getBrand().getBrandId() : 0L,
+                line.getQuantity() != null ? line.getQuantity() : 0,
+                line.getTotalPrice() != null ? line.getTotalPrice() : BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,87 @@
+package vn.liora.entity.listener;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.liora.entity.Order;
+import vn.liora.service.ISalesRollupService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Theo dõi mọi lần lưu Order (tạo mới, đổi trạng thái, hủy...) bất kể đi qua service nào.
+ * Trạng thái lúc nạp được giữ trong Order.salesSnapshot; khi lưu, phần chênh lệch được gom theo
+ * transaction và chỉ đẩy sang ISalesRollupService sau khi commit.
+ * Hibernate tạo listener qua Spring (SpringBeanContainer) nên có thể @Autowired.
+ */
+public class OrderSalesRollupListener {
+
+    @Autowired
+    private ObjectProvider<ISalesRollupService> salesRollupService;
+
+    @PostLoad
+    void onLoad(Order order) {
+        order.setSalesSnapshot(OrderSalesSnapshot.of(order));
+    }
+
+    @PostPersist
+    @PostUpdate
+    void onSave(Order order) {
+        record(order, OrderSalesSnapshot.of(order));
+    }
+
+    @PostRemove
+    void onRemove(Order order) {
+        record(order, null);
+    }
+
+    private void record(Order order, OrderSalesSnapshot after) {
+        OrderSalesSnapshot before = order.getSalesSnapshot();
+        order.setSalesSnapshot(after);
+        if (Objects.equals(before, after) || salesRollupService == null) {
+            return;
+        }
+        enqueue(salesRollupService, new OrderSalesChange(order.getIdOrder(), before, after));
+    }
+
+    /**
+     * Gom thay đổi vào transaction hiện tại (đẩy đi sau commit), không có transaction thì áp dụng ngay.
+     */
+    static void enqueue(ObjectProvider<ISalesRollupService> salesRollupService, OrderSalesChange change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingChanges(salesRollupService).add(change);
+        } else {
+            salesRollupService.getObject().apply(List.of(change));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<OrderSalesChange> pendingChanges(ObjectProvider<ISalesRollupService> salesRollupService) {
+        List<OrderSalesChange> pending =
+                (List<OrderSalesChange>) TransactionSynchronizationManager.getResource(OrderSalesRollupListener.class);
+        if (pending == null) {
+            List<OrderSalesChange> changes = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(OrderSalesRollupListener.class, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    salesRollupService.getObject().apply(new ArrayList<>(changes));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(OrderSalesRollupListener.class);
+                }
+            });
+            pending = changes;
+        }
+        return pending;
+    }
+}
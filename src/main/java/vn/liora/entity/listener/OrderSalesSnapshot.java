@@ -0,0 +1,48 @@
+package vn.liora.entity.listener;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import vn.liora.entity.Order;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Phần đóng góp của một đơn hàng vào bảng tổng hợp doanh số.
+ */
+@Value
+@AllArgsConstructor
+public class OrderSalesSnapshot {
+    public static final String UNKNOWN = "UNKNOWN";
+
+    LocalDate salesDate;
+    String orderStatus;
+    String paymentMethod;
+    BigDecimal total;
+    BigDecimal discount;
+    BigDecimal xuUsed;
+
+    public static OrderSalesSnapshot of(Order order) {
+        if (order.getOrderDate() == null) {
+            return null;
+        }
+        return new OrderSalesSnapshot(
+                order.getOrderDate().toLocalDate(),
+                order.getOrderStatus() != null ? order.getOrderStatus() : UNKNOWN,
+                order.getPaymentMethod() != null ? order.getPaymentMethod() : UNKNOWN,
+                orZero(order.getTotal()),
+                orZero(order.getTotalDiscount()),
+                orZero(order.getXuUsed()));
+    }
+
+    /**
+     * Cùng ngày và trạng thái thì các dòng sản phẩm của đơn không đổi nhóm.
+     */
+    public boolean sameProductGroup(OrderSalesSnapshot other) {
+        return other != null && salesDate.equals(other.salesDate) && orderStatus.equals(other.orderStatus);
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value.stripTrailingZeros() : BigDecimal.ZERO;
+    }
+}
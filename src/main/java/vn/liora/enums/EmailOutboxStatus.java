@@ -0,0 +1,8 @@
+package vn.liora.enums;
+
+public enum EmailOutboxStatus {
+    PENDING, // chờ gửi hoặc chờ thử lại
+    SENDING, // đã được một dispatcher nhận, đang gửi; quá hạn nhận (NextAttemptAt) thì được nhận lại
+    SENT,
+    DEAD // hết số lần thử, cần xem lại thủ công
+}
@@ -0,0 +1,8 @@
+package vn.liora.enums;
+
+public enum EmailTemplate {
+    ORDER_CONFIRMATION,
+    ORDER_CANCELLATION,
+    REGISTRATION_OTP,
+    PASSWORD_RESET_OTP
+}
@@ -0,0 +1,7 @@
+package vn.liora.enums;
+
+public enum ImageJobStatus {
+    PROCESSING, // đang chờ hoặc đang tạo các bản ảnh
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,8 @@
+package vn.liora.enums;
+
+public enum StockReservationStatus {
+    RESERVED, // Đã trừ tồn kho
+    INSUFFICIENT_STOCK, // Không đủ hàng (hoặc sản phẩm ngừng bán / không tồn tại)
+    INVALID_QUANTITY, // Số lượng <= 0
+    UNAVAILABLE // Sản phẩm đã ẩn hoặc ngừng bán, không thử giữ hàng
+}
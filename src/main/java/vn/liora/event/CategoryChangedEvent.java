@@ -0,0 +1,8 @@
+package vn.liora.event;
+
+/**
+ * Phát ra khi danh mục được tạo, sửa, xóa hoặc bật/tắt; cây danh mục trong bộ nhớ
+ * và bảng CategoryClosure được dựng lại sau khi transaction commit.
+ */
+public class CategoryChangedEvent {
+}
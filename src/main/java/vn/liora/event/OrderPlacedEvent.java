@@ -0,0 +1,14 @@
+package vn.liora.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra trong transaction tạo đơn hàng; các bước phụ (email xác nhận, lượt dùng mã giảm giá)
+ * chỉ chạy sau khi transaction đã commit.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderPlacedEvent {
+    private final Long orderId;
+}
@@ -0,0 +1,26 @@
+package vn.liora.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi dữ liệu hiển thị của sản phẩm thay đổi (thông tin, tồn kho, ảnh, thương hiệu/danh mục).
+ * productId = null nghĩa là thay đổi ảnh hưởng tới toàn bộ catalog.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+    private final Long productId;
+
+    public static ProductChangedEvent of(Long productId) {
+        return new ProductChangedEvent(productId);
+    }
+
+    public static ProductChangedEvent all() {
+        return new ProductChangedEvent(null);
+    }
+
+    public boolean isCatalogWide() {
+        return productId == null;
+    }
+}
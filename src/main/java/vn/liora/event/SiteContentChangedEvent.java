@@ -0,0 +1,8 @@
+package vn.liora.event;
+
+/**
+ * Phát ra khi menu header, footer, banner hoặc trang tĩnh thay đổi; tài liệu "site chrome"
+ * trong bộ nhớ được dựng lại sau khi transaction commit.
+ */
+public class SiteContentChangedEvent {
+}
@@ -7,6 +7,12 @@ public class AppException extends RuntimeException{
         this.errorCode = errorCode;
     }
 
+    // Thông báo chi tiết hơn thông báo mặc định của errorCode
+    public AppException(ErrorCode errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
     private  ErrorCode errorCode;
 
     public ErrorCode getErrorCode() {
@@ -6,6 +6,9 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import vn.liora.dto.request.ApiResponse;
+import vn.liora.dto.response.StockReservationLine;
+
+import java.util.List;
 
 /**
  * Global Exception Handler
@@ -46,6 +49,20 @@ public class GlobalExceptionHandler {
         }
     }
 
+    /**
+     * Đơn hàng có dòng không giữ được tồn kho: trả kết quả từng dòng (409 Conflict)
+     */
+    @ExceptionHandler(StockReservationException.class)
+    public ResponseEntity<ApiResponse<List<StockReservationLine>>> handleStockReservation(
+            StockReservationException ex) {
+        ApiResponse<List<StockReservationLine>> response = ApiResponse.<List<StockReservationLine>>builder()
+                .code(ex.getErrorCode().getCode())
+                .message(ex.getMessage())
+                .result(ex.getLines())
+                .build();
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
     /**
      * Xử lý lỗi AppException
      */
@@ -0,0 +1,23 @@
+package vn.liora.exception;
+
+import vn.liora.dto.response.StockReservationLine;
+
+import java.util.List;
+
+/**
+ * Đơn hàng bị từ chối vì có dòng không giữ được tồn kho; kèm kết quả từng dòng
+ * để client báo cho người mua dòng nào cần sửa.
+ */
+public class StockReservationException extends AppException {
+
+    private final List<StockReservationLine> lines;
+
+    public StockReservationException(String message, List<StockReservationLine> lines) {
+        super(ErrorCode.INSUFFICIENT_STOCK, message);
+        this.lines = List.copyOf(lines);
+    }
+
+    public List<StockReservationLine> getLines() {
+        return lines;
+    }
+}
@@ -13,7 +13,7 @@ public class ChatMessageMapper {
     private ChatMessageMapper() {}
 
     public static ChatMessageResponse toResponse(Message m, String type) {
-        return toResponse(m, type, null);
+        return toResponse(m, type, (String) null);
     }
 
     public static ChatMessageResponse toResponse(Message m, String type, UserRepository userRepository) {
@@ -25,7 +25,13 @@ public class ChatMessageMapper {
                 avatar = userOpt.get().getAvatar();
             }
         }
-        
+        return toResponse(m, type, avatar);
+    }
+
+    /**
+     * Dùng khi avatar đã có sẵn (ChatUserProfileCache), không truy vấn User.
+     */
+    public static ChatMessageResponse toResponse(Message m, String type, String avatar) {
         return ChatMessageResponse.builder()
                 .type(type)
                 .room(m.getRoomId())
@@ -21,6 +21,7 @@ public interface OrderMapper {
     @Mapping(target = "user", ignore = true)
     @Mapping(target = "orderStatus", ignore = true)
     @Mapping(target = "discount", ignore = true)
+    @Mapping(target = "salesSnapshot", ignore = true)
     Order toOrder(OrderCreationRequest request);
 
     @Mapping(target = "userId", source = "user.userId")
@@ -35,6 +36,7 @@ public interface OrderMapper {
     @Mapping(target = "orderStatus", source = "orderStatus")
     @Mapping(target = "paymentStatus", source = "paymentStatus")
     @Mapping(target = "discount", ignore = true)
+    @Mapping(target = "salesSnapshot", ignore = true)
     void updateOrder(@MappingTarget Order order, OrderUpdateRequest request);
 
     @Named("mapCustomerName")
@@ -0,0 +1,21 @@
+package vn.liora.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.liora.entity.CategoryClosure;
+
+import java.util.List;
+
+@Repository
+public interface CategoryClosureRepository extends JpaRepository<CategoryClosure, CategoryClosure.Key> {
+
+    // Danh mục và toàn bộ cây con của nó
+    @Query("SELECT cc.descendantId FROM CategoryClosure cc WHERE cc.ancestorId = :categoryId")
+    List<Long> findSubtreeIds(@Param("categoryId") Long categoryId);
+
+    // Các tổ tiên của danh mục, cha trực tiếp trước
+    @Query("SELECT cc.ancestorId FROM CategoryClosure cc WHERE cc.descendantId = :categoryId AND cc.depth > 0 ORDER BY cc.depth")
+    List<Long> findAncestorIds(@Param("categoryId") Long categoryId);
+}
@@ -0,0 +1,27 @@
+package vn.liora.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.liora.entity.ChatBusEvent;
+
+import java.util.List;
+
+@Repository
+public interface ChatBusEventRepository extends JpaRepository<ChatBusEvent, Long> {
+
+    // Tin của instance khác trong cửa sổ gần đây, tính theo đồng hồ DB
+    @Query(value = "SELECT TOP (:limit) * FROM ChatBusEvent " +
+                   "WHERE CreatedAt > DATEADD(MILLISECOND, -:windowMillis, SYSUTCDATETIME()) AND NodeId <> :nodeId " +
+                   "ORDER BY IdEvent", nativeQuery = true)
+    List<ChatBusEvent> findRecentFromOtherNodes(@Param("nodeId") String nodeId,
+                                                @Param("windowMillis") int windowMillis,
+                                                @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "DELETE TOP (:limit) FROM ChatBusEvent " +
+                   "WHERE CreatedAt < DATEADD(SECOND, -:retentionSeconds, SYSUTCDATETIME())", nativeQuery = true)
+    int deleteExpiredBatch(@Param("retentionSeconds") int retentionSeconds, @Param("limit") int limit);
+}
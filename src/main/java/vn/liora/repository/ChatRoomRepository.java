@@ -0,0 +1,54 @@
+package vn.liora.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.liora.entity.ChatRoom;
+
+import java.time.OffsetDateTime;
+
+@Repository
+public interface ChatRoomRepository extends JpaRepository<ChatRoom, String> {
+
+    Page<ChatRoom> findAllByOrderByLastMessageAtDesc(Pageable pageable);
+
+    /**
+     * Ghi nhận tin mới: cập nhật số chưa đọc, và tin cuối nếu lô này không cũ hơn tin cuối đang lưu
+     * (lô ghi chậm/ghi lại không ghi đè tin mới hơn). Nếu quản trị viên đã trả lời (resetUnread) trong lô mới nhất
+     * thì chưa đọc = số tin của khách sau câu trả lời đó, ngược lại cộng dồn. Trả về 0 nếu phòng chưa có.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        UPDATE ChatRoom r SET
+            r.lastMessageId = CASE WHEN r.lastMessageAt IS NULL OR r.lastMessageAt <= :createdAt
+                THEN :messageId ELSE r.lastMessageId END,
+            r.lastMessage = CASE WHEN r.lastMessageAt IS NULL OR r.lastMessageAt <= :createdAt
+                THEN :preview ELSE r.lastMessage END,
+            r.lastSenderRole = CASE WHEN r.lastMessageAt IS NULL OR r.lastMessageAt <= :createdAt
+                THEN :role ELSE r.lastSenderRole END,
+            r.lastMessageAt = CASE WHEN r.lastMessageAt IS NULL OR r.lastMessageAt <= :createdAt
+                THEN :createdAt ELSE r.lastMessageAt END,
+            r.unreadCount = CASE WHEN :resetUnread = true AND (r.lastMessageAt IS NULL OR r.lastMessageAt <= :createdAt)
+                THEN :customerMessages ELSE r.unreadCount + :customerMessages END
+        WHERE r.roomId = :roomId
+    """)
+    int recordLastMessage(@Param("roomId") String roomId,
+                          @Param("messageId") Long messageId,
+                          @Param("preview") String preview,
+                          @Param("role") String role,
+                          @Param("createdAt") OffsetDateTime createdAt,
+                          @Param("resetUnread") boolean resetUnread,
+                          @Param("customerMessages") int customerMessages);
+
+    @Modifying
+    @Query("UPDATE ChatRoom r SET r.avatar = :avatar WHERE r.ownerUserId = :userId")
+    int updateOwnerAvatar(@Param("userId") Long userId, @Param("avatar") String avatar);
+
+    @Modifying
+    @Query("UPDATE ChatRoom r SET r.unreadCount = 0 WHERE r.roomId = :roomId")
+    int markRead(@Param("roomId") String roomId);
+}
@@ -0,0 +1,46 @@
+package vn.liora.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.liora.dto.response.ProductSalesSummaryRow;
+import vn.liora.entity.DailyProductSalesRollup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyProductSalesRollupRepository extends JpaRepository<DailyProductSalesRollup, Long> {
+
+    @Query("""
+        SELECT new vn.liora.dto.response.ProductSalesSummaryRow(
+            r.orderStatus, r.categoryId, r.brandId, SUM(r.quantity), SUM(r.revenue))
+        FROM DailyProductSalesRollup r
+        WHERE r.salesDate BETWEEN :fromDate AND :toDate
+        GROUP BY r.orderStatus, r.categoryId, r.brandId
+    """)
+    List<ProductSalesSummaryRow> summarize(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    // Cộng dồn vào dòng đã có, trả về 0 nếu chưa có dòng cho khóa này
+    @Modifying
+    @Query("""
+        UPDATE DailyProductSalesRollup r
+        SET r.quantity = r.quantity + :quantity,
+            r.revenue = r.revenue + :revenue
+        WHERE r.salesDate = :salesDate AND r.orderStatus = :orderStatus
+          AND r.categoryId = :categoryId AND r.brandId = :brandId
+    """)
+    int addTo(@Param("salesDate") LocalDate salesDate,
+              @Param("orderStatus") String orderStatus,
+              @Param("categoryId") Long categoryId,
+              @Param("brandId") Long brandId,
+              @Param("quantity") long quantity,
+              @Param("revenue") BigDecimal revenue);
+
+    @Modifying
+    @Query("DELETE FROM DailyProductSalesRollup r WHERE r.salesDate BETWEEN :fromDate AND :toDate")
+    int deleteBySalesDateBetween(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+}
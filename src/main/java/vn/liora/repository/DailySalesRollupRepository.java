@@ -0,0 +1,49 @@
+package vn.liora.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.liora.dto.response.SalesSummaryRow;
+import vn.liora.entity.DailySalesRollup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailySalesRollupRepository extends JpaRepository<DailySalesRollup, Long> {
+
+    @Query("""
+        SELECT new vn.liora.dto.response.SalesSummaryRow(
+            r.orderStatus, r.paymentMethod,
+            SUM(r.orderCount), SUM(r.totalAmount), SUM(r.discountAmount), SUM(r.xuAmount))
+        FROM DailySalesRollup r
+        WHERE r.salesDate BETWEEN :fromDate AND :toDate
+        GROUP BY r.orderStatus, r.paymentMethod
+    """)
+    List<SalesSummaryRow> summarize(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    // Cộng dồn vào dòng đã có, trả về 0 nếu chưa có dòng cho khóa này
+    @Modifying
+    @Query("""
+        UPDATE DailySalesRollup r
+        SET r.orderCount = r.orderCount + :orderCount,
+            r.totalAmount = r.totalAmount + :totalAmount,
+            r.discountAmount = r.discountAmount + :discountAmount,
+            r.xuAmount = r.xuAmount + :xuAmount
+        WHERE r.salesDate = :salesDate AND r.orderStatus = :orderStatus AND r.paymentMethod = :paymentMethod
+    """)
+    int addTo(@Param("salesDate") LocalDate salesDate,
+              @Param("orderStatus") String orderStatus,
+              @Param("paymentMethod") String paymentMethod,
+              @Param("orderCount") long orderCount,
+              @Param("totalAmount") BigDecimal totalAmount,
+              @Param("discountAmount") BigDecimal discountAmount,
+              @Param("xuAmount") BigDecimal xuAmount);
+
+    @Modifying
+    @Query("DELETE FROM DailySalesRollup r WHERE r.salesDate BETWEEN :fromDate AND :toDate")
+    int deleteBySalesDateBetween(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+}
@@ -3,6 +3,7 @@ package vn.liora.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -58,4 +59,16 @@ public interface DiscountRepository extends JpaRepository<Discount, Long> {
        "AND d.startDate <= :now AND d.endDate >= :now " +
        "AND (d.usageLimit IS NULL OR d.usedCount < d.usageLimit)")
     Optional<Discount> findAvailableDiscountByName(@Param("name") String name, @Param("now") LocalDateTime now);
-}
\ No newline at end of file
+
+    // ====== USAGE ======
+    // Tăng lượt dùng ngay trong câu UPDATE, tránh mất lượt khi nhiều đơn dùng cùng mã đồng thời
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Discount d SET d.usedCount = COALESCE(d.usedCount, 0) + 1 WHERE d.discountId = :discountId")
+    int incrementUsedCount(@Param("discountId") Long discountId);
+
+    // Chỉ tăng khi còn lượt (usageLimit NULL = không giới hạn); trả 0 nếu mã đã hết lượt
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Discount d SET d.usedCount = COALESCE(d.usedCount, 0) + 1 WHERE d.discountId = :discountId " +
+           "AND (d.usageLimit IS NULL OR COALESCE(d.usedCount, 0) < d.usageLimit)")
+    int incrementUsedCountWithinLimit(@Param("discountId") Long discountId);
+}
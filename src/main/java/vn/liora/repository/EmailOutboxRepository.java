@@ -0,0 +1,47 @@
+package vn.liora.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.liora.entity.EmailOutbox;
+import vn.liora.enums.EmailOutboxStatus;
+import vn.liora.enums.EmailTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // Email đến hạn của một template: PENDING, hoặc SENDING đã quá hạn nhận (dispatcher trước bị dừng giữa chừng)
+    @Query("SELECT e.emailId FROM EmailOutbox e WHERE e.template = :template " +
+           "AND e.status IN :statuses AND e.nextAttemptAt <= :now " +
+           "ORDER BY e.nextAttemptAt ASC, e.emailId ASC")
+    List<Long> findDueIds(@Param("template") EmailTemplate template,
+                          @Param("statuses") Collection<EmailOutboxStatus> statuses,
+                          @Param("now") LocalDateTime now, Pageable pageable);
+
+    // Nhận email để gửi: điều kiện được kiểm tra lại trong chính câu UPDATE, nên khi nhiều instance
+    // cùng chọn một dòng thì chỉ một instance nhận được (dòng đã nhận có NextAttemptAt = hạn nhận > now)
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :claimed, e.claimToken = :token, e.nextAttemptAt = :claimUntil " +
+           "WHERE e.emailId IN :ids AND e.status IN :statuses AND e.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("statuses") Collection<EmailOutboxStatus> statuses,
+              @Param("now") LocalDateTime now,
+              @Param("claimed") EmailOutboxStatus claimed,
+              @Param("token") String token,
+              @Param("claimUntil") LocalDateTime claimUntil);
+
+    List<EmailOutbox> findByClaimToken(String claimToken);
+
+    long countByStatus(EmailOutboxStatus status);
+
+    @Modifying
+    @Query("DELETE FROM EmailOutbox e WHERE e.status = :status AND e.sentDate < :before")
+    int deleteSentBefore(@Param("status") EmailOutboxStatus status, @Param("before") LocalDateTime before);
+}
@@ -16,4 +16,8 @@ public interface FooterItemRepository extends JpaRepository<FooterItem, Long> {
 
     @Query("SELECT fi FROM FooterItem fi WHERE fi.column.id = :columnId ORDER BY fi.itemOrder ASC")
     List<FooterItem> findByColumnIdOrderByItemOrder(@Param("columnId") Long columnId);
+
+    // Toàn bộ item của các cột thuộc một footer trong một truy vấn
+    @Query("SELECT fi FROM FooterItem fi WHERE fi.column.footer.id = :footerId ORDER BY fi.itemOrder ASC")
+    List<FooterItem> findByFooterIdOrderByItemOrder(@Param("footerId") Long footerId);
 }
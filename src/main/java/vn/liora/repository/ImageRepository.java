@@ -19,6 +19,9 @@ public interface ImageRepository extends JpaRepository<Image, Long> {
     // Count queries
     Long countByProductProductId(Long productId);
     Long countByProductProductIdAndIsMainTrue(Long productId);
+
+    @Query("SELECT MAX(i.displayOrder) FROM Image i WHERE i.product.productId = :productId")
+    Integer findMaxDisplayOrder(@Param("productId") Long productId);
     
     // Delete queries
     @Query("DELETE FROM Image i WHERE i.product.productId = :productId")
@@ -1,9 +1,24 @@
 package vn.liora.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.liora.entity.InvalidatedToken;
 
+import java.util.Date;
+import java.util.List;
+
 @Repository
 public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedToken, String> {
+
+    // Token còn cần chặn: chưa qua mốc cutoff (hoặc không có hạn)
+    @Query("SELECT t FROM InvalidatedToken t WHERE t.expiryTime IS NULL OR t.expiryTime >= :cutoff")
+    List<InvalidatedToken> findRetained(@Param("cutoff") Date cutoff);
+
+    // Xóa theo lô để không giữ khóa bảng lâu (SQL Server: DELETE TOP)
+    @Modifying
+    @Query(value = "DELETE TOP (:limit) FROM InvalidatedToken WHERE expiryTime < :cutoff", nativeQuery = true)
+    int deleteExpiredBatch(@Param("cutoff") Date cutoff, @Param("limit") int limit);
 }
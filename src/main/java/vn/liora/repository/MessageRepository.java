@@ -4,7 +4,10 @@ import org.springframework.data.domain.Pageable;
 import vn.liora.entity.Message;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
@@ -23,5 +26,25 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
 
     @Query("SELECT m.roomId FROM Message m GROUP BY m.roomId ORDER BY MAX(m.createdAt) DESC")
     List<String> findDistinctRoomIds();
+
+    // Dựng lại bảng ChatRoom: id tin cuối của mỗi phòng
+    @Query("SELECT MAX(m.id) FROM Message m GROUP BY m.roomId")
+    List<Long> findLastMessageIdPerRoom();
+
+    // Dựng lại bảng ChatRoom: người gửi (không phải nhân viên) của mỗi phòng
+    @Query("SELECT m.roomId, MIN(m.senderId) FROM Message m WHERE m.role NOT IN :staffRoles GROUP BY m.roomId")
+    List<Object[]> findCustomerSenderPerRoom(@Param("staffRoles") Collection<String> staffRoles);
+
+    // Keyset: các tin cũ hơn tin (createdAt, id) cho trước, dùng chỉ mục (RoomId, CreatedAt)
+    @Query("""
+        SELECT m FROM Message m
+        WHERE m.roomId = :roomId
+          AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id))
+        ORDER BY m.createdAt DESC, m.id DESC
+    """)
+    List<Message> findPageBefore(@Param("roomId") String roomId,
+                                 @Param("createdAt") OffsetDateTime createdAt,
+                                 @Param("id") Long id,
+                                 Pageable pageable);
     
 }
@@ -4,6 +4,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import vn.liora.dto.response.ProductSalesSummaryRow;
 import vn.liora.entity.Order;
 import vn.liora.entity.OrderProduct;
 import vn.liora.entity.User;
@@ -101,4 +102,48 @@ public interface OrderProductRepository extends JpaRepository<OrderProduct,Long>
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate
     );
+
+    // ======================== TỔNG HỢP DOANH SỐ (DailyProductSalesRollup) ========================
+    // Cùng dạng với DailyProductSalesRollupRepository.summarize, dùng khi khoảng thời gian không trọn ngày
+    @Query("""
+        SELECT new vn.liora.dto.response.ProductSalesSummaryRow(
+            o.orderStatus, c.categoryId, b.brandId,
+            SUM(op.quantity), SUM(op.totalPrice))
+        FROM OrderProduct op
+        JOIN op.order o
+        JOIN op.product p
+        LEFT JOIN p.category c
+        LEFT JOIN p.brand b
+        WHERE o.orderDate BETWEEN :startDate AND :endDate
+        GROUP BY o.orderStatus, c.categoryId, b.brandId
+    """)
+    List<ProductSalesSummaryRow> summarizeProductSales(@Param("startDate") LocalDateTime startDate,
+                                                       @Param("endDate") LocalDateTime endDate);
+
+    // Theo ngày, dùng để tính lại bảng tổng hợp: [ngày, trạng thái, danh mục, thương hiệu, số lượng, doanh thu]
+    @Query("""
+        SELECT CAST(o.orderDate AS date), o.orderStatus, c.categoryId, b.brandId,
+               SUM(op.quantity), SUM(op.totalPrice)
+        FROM OrderProduct op
+        JOIN op.order o
+        JOIN op.product p
+        LEFT JOIN p.category c
+        LEFT JOIN p.brand b
+        WHERE o.orderDate >= :startDate AND o.orderDate < :endDate
+        GROUP BY CAST(o.orderDate AS date), o.orderStatus, c.categoryId, b.brandId
+    """)
+    List<Object[]> summarizeProductSalesByDay(@Param("startDate") LocalDateTime startDate,
+                                              @Param("endDate") LocalDateTime endDate);
+
+    // Các dòng của một đơn theo nhóm: [danh mục, thương hiệu, số lượng, doanh thu]
+    @Query("""
+        SELECT c.categoryId, b.brandId, SUM(op.quantity), SUM(op.totalPrice)
+        FROM OrderProduct op
+        JOIN op.product p
+        LEFT JOIN p.category c
+        LEFT JOIN p.brand b
+        WHERE op.order.idOrder = :orderId
+        GROUP BY c.categoryId, b.brandId
+    """)
+    List<Object[]> summarizeOrderLines(@Param("orderId") Long orderId);
 }
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import vn.liora.dto.response.SalesSummaryRow;
 import vn.liora.dto.response.TopCustomerResponse;
 import vn.liora.entity.Order;
 import vn.liora.entity.User;
@@ -33,6 +34,16 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     List<Order> findAllByOrderByIdOrderDesc();
 
+    // Các điểm giao (quận, phường) nhiều đơn nhất kể từ một thời điểm: [districtId, wardCode, số đơn]
+    @Query("""
+    SELECT o.districtId, o.wardCode, COUNT(o)
+    FROM Order o
+    WHERE o.orderDate >= :since AND o.districtId IS NOT NULL AND o.wardCode IS NOT NULL
+    GROUP BY o.districtId, o.wardCode
+    ORDER BY COUNT(o) DESC
+    """)
+    List<Object[]> findTopDestinations(@Param("since") LocalDateTime since, Pageable pageable);
+
     @Query("SELECT SUM(o.total) FROM Order o")
     BigDecimal getTotalRevenue();
 
@@ -142,4 +153,61 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // Đếm tất cả orders trừ CANCELLED (PENDING được đếm để user không thể đặt 2 đơn PENDING cùng mã)
     @Query("SELECT COUNT(o) FROM Order o WHERE o.user.userId = :userId AND o.discount.discountId = :discountId AND o.orderStatus != 'CANCELLED'")
     Long countOrdersByUserAndDiscount(@Param("userId") Long userId, @Param("discountId") Long discountId);
+
+    // ======================== TỔNG HỢP DOANH SỐ (DailySalesRollup) ========================
+    long countByOrderStatus(String orderStatus);
+
+    @Query("SELECT MIN(o.orderDate) FROM Order o")
+    LocalDateTime findFirstOrderDate();
+
+    // Cùng dạng với DailySalesRollupRepository.summarize, dùng khi khoảng thời gian không trọn ngày
+    @Query("""
+        SELECT new vn.liora.dto.response.SalesSummaryRow(
+            o.orderStatus, o.paymentMethod,
+            COUNT(o), SUM(o.total), SUM(o.totalDiscount), SUM(o.xuUsed))
+        FROM Order o
+        WHERE o.orderDate BETWEEN :startDate AND :endDate
+        GROUP BY o.orderStatus, o.paymentMethod
+    """)
+    List<SalesSummaryRow> summarizeSales(@Param("startDate") LocalDateTime startDate,
+                                         @Param("endDate") LocalDateTime endDate);
+
+    // Theo ngày, dùng để tính lại bảng tổng hợp: [ngày, trạng thái, PTTT, số đơn, tổng, giảm giá, xu]
+    @Query("""
+        SELECT CAST(o.orderDate AS date), o.orderStatus, o.paymentMethod,
+               COUNT(o), SUM(o.total), SUM(o.totalDiscount), SUM(o.xuUsed)
+        FROM Order o
+        WHERE o.orderDate >= :startDate AND o.orderDate < :endDate
+        GROUP BY CAST(o.orderDate AS date), o.orderStatus, o.paymentMethod
+    """)
+    List<Object[]> summarizeSalesByDay(@Param("startDate") LocalDateTime startDate,
+                                       @Param("endDate") LocalDateTime endDate);
+
+    // Số đơn của từng khách hàng (mỗi phần tử là một khách)
+    @Query("""
+        SELECT COUNT(o)
+        FROM Order o
+        WHERE o.orderDate BETWEEN :startDate AND :endDate
+          AND o.orderStatus = :orderStatus
+          AND o.user IS NOT NULL
+        GROUP BY o.user.userId
+    """)
+    List<Long> countOrdersPerCustomer(@Param("startDate") LocalDateTime startDate,
+                                      @Param("endDate") LocalDateTime endDate,
+                                      @Param("orderStatus") String orderStatus);
+
+    // [userId, firstname, lastname, username, email, số đơn, tổng chi]
+    @Query("""
+        SELECT u.userId, u.firstname, u.lastname, u.username, u.email, COUNT(o.idOrder), SUM(o.total)
+        FROM Order o
+        JOIN o.user u
+        WHERE o.orderDate BETWEEN :startDate AND :endDate
+          AND o.orderStatus = 'COMPLETED'
+          AND o.total IS NOT NULL
+        GROUP BY u.userId, u.firstname, u.lastname, u.username, u.email
+        ORDER BY SUM(o.total) DESC
+    """)
+    List<Object[]> findTopSpendersByDateRange(@Param("startDate") LocalDateTime startDate,
+                                                         @Param("endDate") LocalDateTime endDate,
+                                                         Pageable pageable);
 }
@@ -1,19 +1,37 @@
 package vn.liora.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.liora.entity.Product;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product,Long> {
+public interface ProductRepository extends JpaRepository<Product,Long>, JpaSpecificationExecutor<Product> {
+    // ====== PHÂN TRANG KÈM BRAND/CATEGORY ======
+    // brand, category nạp bằng join trong cùng truy vấn; images nạp theo lô (default_batch_fetch_size)
+    @Override
+    @EntityGraph(attributePaths = {"brand", "category"})
+    Page<Product> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = {"brand", "category"})
+    Page<Product> findAll(Specification<Product> spec, Pageable pageable);
+
     // ====== BASIC SEARCH ======
     List<Product> findByNameContaining(String name);
     Page<Product> findByNameContaining(String name, Pageable pageable);
@@ -30,6 +48,8 @@ public interface ProductRepository extends JpaRepository<Product,Long> {
     // ====== Lọc theo brand và category ======
     List<Product> findByBrandBrandId(Long brandId);
     List<Product> findByCategoryCategoryId(Long categoryId);
+
+    List<Product> findByCategoryCategoryIdIn(Collection<Long> categoryIds);
     List<Product> findByBrandBrandIdAndIsActiveTrue(Long brandId);
     List<Product> findByCategoryCategoryIdAndIsActiveTrue(Long categoryId);
 
@@ -87,6 +107,7 @@ public interface ProductRepository extends JpaRepository<Product,Long> {
             "AND p.stock > 0 ORDER BY p.soldCount DESC")
     List<Product> findTopSellingInStockProducts(Pageable pageable);
 
+    @EntityGraph(attributePaths = {"brand", "category"})
     @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.available = true " +
             "AND p.averageRating >= :minRating ORDER BY p.averageRating DESC")
     List<Product> findHighRatedProducts(@Param("minRating") BigDecimal minRating, Pageable pageable);
@@ -121,11 +142,13 @@ public interface ProductRepository extends JpaRepository<Product,Long> {
     
     // ====== OPTIMIZED QUERIES FOR FRONTEND ======
     // Best selling products - optimized for frontend
+    @EntityGraph(attributePaths = {"brand", "category"})
     @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.available = true " +
            "AND p.soldCount > 0 ORDER BY p.soldCount DESC")
     List<Product> findBestSellingProducts(Pageable pageable);
     
     // Newest products - optimized for frontend  
+    @EntityGraph(attributePaths = {"brand", "category"})
     @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.available = true " +
            "ORDER BY p.createdDate DESC")
     List<Product> findNewestProducts(Pageable pageable);
@@ -141,4 +164,35 @@ public interface ProductRepository extends JpaRepository<Product,Long> {
            "AND p.soldCount > 0 AND p.brand.brandId = :brandId " +
            "ORDER BY p.soldCount DESC")
     List<Product> findBestSellingByBrand(@Param("brandId") Long brandId, Pageable pageable);
+
+    // ====== CATALOG INDEX ======
+    // Nạp kèm brand, category, images trong 1 truy vấn để dựng chỉ mục catalog
+    @EntityGraph(attributePaths = {"brand", "category", "images"})
+    @Query("SELECT p FROM Product p")
+    List<Product> findAllForCatalog();
+
+    @EntityGraph(attributePaths = {"brand", "category", "images"})
+    @Query("SELECT p FROM Product p WHERE p.productId IN :ids")
+    List<Product> findAllForCatalogByIdIn(@Param("ids") Collection<Long> ids);
+
+    // ====== STOCK RESERVATION ======
+    // Trừ tồn kho nguyên tử: chỉ thành công (trả về 1) khi còn đủ hàng và sản phẩm đang bán
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock - :quantity, " +
+           "p.available = CASE WHEN p.stock - :quantity > 0 THEN true ELSE false END, " +
+           "p.updatedDate = :now " +
+           "WHERE p.productId = :productId AND p.isActive = true AND p.stock >= :quantity")
+    int reserveStock(@Param("productId") Long productId, @Param("quantity") Integer quantity,
+                     @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock + :quantity, p.available = true, " +
+           "p.updatedDate = :now WHERE p.productId = :productId")
+    int releaseStock(@Param("productId") Long productId, @Param("quantity") Integer quantity,
+                     @Param("now") LocalDateTime now);
+
+    // Khóa dòng sản phẩm tới hết transaction (lưu ảnh: tính thứ tự hiển thị không trùng)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.productId = :productId")
+    Optional<Product> findByIdForUpdate(@Param("productId") Long productId);
 }
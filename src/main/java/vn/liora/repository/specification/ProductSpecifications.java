@@ -0,0 +1,141 @@
+package vn.liora.repository.specification;
+
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import vn.liora.dto.request.ProductSearchCriteria;
+import vn.liora.entity.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Chuyển ProductSearchCriteria thành Specification<Product> + Sort,
+ * để lọc, sắp xếp và phân trang chạy trong một câu SQL (kèm một câu đếm).
+ */
+public final class ProductSpecifications {
+
+    private ProductSpecifications() {
+    }
+
+    public static Specification<Product> from(ProductSearchCriteria c) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (c.getKeyword() != null && !c.getKeyword().isBlank()) {
+                predicates.add(cb.like(cb.lower(root.get("name")),
+                        "%" + c.getKeyword().trim().toLowerCase() + "%"));
+            }
+
+            // Trạng thái
+            if (c.getActive() != null) {
+                predicates.add(cb.equal(root.get("isActive"), c.getActive()));
+            }
+            if (c.getAvailable() != null) {
+                predicates.add(cb.equal(root.get("available"), c.getAvailable()));
+            }
+            if (c.isSoldOnly()) {
+                predicates.add(cb.greaterThan(root.get("soldCount"), 0));
+            }
+
+            // Thương hiệu / danh mục
+            if (notEmpty(c.getBrandIds())) {
+                predicates.add(root.get("brand").get("brandId").in(c.getBrandIds()));
+            }
+            if (notEmpty(c.getBrandNames())) {
+                predicates.add(root.get("brand").get("name").in(c.getBrandNames()));
+            }
+            if (notEmpty(c.getCategoryIds())) {
+                predicates.add(root.get("category").get("categoryId").in(c.getCategoryIds()));
+            }
+            if (notEmpty(c.getCategoryNames())) {
+                predicates.add(root.get("category").get("name").in(c.getCategoryNames()));
+            }
+
+            // Tập sản phẩm cho trước: rỗng = không có kết quả
+            if (c.getProductIds() != null) {
+                predicates.add(c.getProductIds().isEmpty()
+                        ? cb.disjunction()
+                        : root.get("productId").in(c.getProductIds()));
+            }
+            if (c.getExcludeProductId() != null) {
+                predicates.add(cb.notEqual(root.get("productId"), c.getExcludeProductId()));
+            }
+
+            // Giá & đánh giá
+            if (c.getMinPrice() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("price"), c.getMinPrice()));
+            }
+            if (c.getMaxPrice() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("price"), c.getMaxPrice()));
+            }
+            if (c.getMinRating() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("averageRating"), c.getMinRating()));
+            }
+
+            // Tồn kho
+            if (Boolean.TRUE.equals(c.getInStock())) {
+                predicates.add(cb.greaterThan(root.get("stock"), 0));
+            } else if (Boolean.FALSE.equals(c.getInStock())) {
+                predicates.add(cb.or(cb.isNull(root.get("stock")), cb.equal(root.get("stock"), 0)));
+            }
+            if (c.getMinStock() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("stock"), c.getMinStock()));
+            }
+            if (c.getMaxStock() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("stock"), c.getMaxStock()));
+            }
+
+            // Ngày tạo
+            if (c.getCreatedFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdDate"), c.getCreatedFrom()));
+            }
+            if (c.getCreatedBefore() != null) {
+                predicates.add(cb.lessThan(root.get("createdDate"), c.getCreatedBefore()));
+            }
+
+            // Mom & Baby
+            if (notEmpty(c.getAgeRanges())) {
+                predicates.add(root.get("ageRange").in(c.getAgeRanges()));
+            }
+            if (notEmpty(c.getSizes())) {
+                predicates.add(root.get("size").in(c.getSizes()));
+            }
+            if (notEmpty(c.getOrigins())) {
+                predicates.add(root.get("origin").in(c.getOrigins()));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Sắp xếp theo sortBy/sortDir của criteria, productId làm khóa phụ để phân trang ổn định.
+     * Không có sortBy thì giữ fallback (thường là sort của Pageable).
+     */
+    public static Sort sort(ProductSearchCriteria c, Sort fallback) {
+        Sort tieBreaker = Sort.by("productId");
+        if (c.getSortBy() == null || c.getSortBy().isBlank()) {
+            return fallback != null && fallback.isSorted() ? fallback.and(tieBreaker) : tieBreaker;
+        }
+        String property = switch (c.getSortBy().toLowerCase()) {
+            case "price" -> "price";
+            case "rating" -> "averageRating";
+            case "sold", "soldcount", "sold_count" -> "soldCount";
+            case "created", "createddate", "created_date" -> "createdDate";
+            case "stock" -> "stock";
+            case "id", "productid" -> "productId";
+            default -> "name";
+        };
+        Sort.Direction direction = "desc".equalsIgnoreCase(c.getSortDir())
+                ? Sort.Direction.DESC
+                : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, property);
+        return "productId".equals(property) ? sort : sort.and(tieBreaker);
+    }
+
+    private static boolean notEmpty(Collection<?> values) {
+        return values != null && !values.isEmpty();
+    }
+}
@@ -1,6 +1,7 @@
 package vn.liora.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -10,6 +11,7 @@ import vn.liora.dto.request.BannerSortRequest;
 import vn.liora.dto.response.BannerResponse;
 import vn.liora.entity.Banner;
 import vn.liora.repository.BannerRepository;
+import vn.liora.event.SiteContentChangedEvent;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -24,6 +26,9 @@ public class BannerService {
     @Autowired
     private BannerRepository bannerRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // Tạo banner mới
     public BannerResponse createBanner(BannerRequest request) {
         Banner banner = new Banner();
@@ -36,6 +41,7 @@ public class BannerService {
         banner.setEndDate(request.getEndDate());
 
         Banner savedBanner = bannerRepository.save(banner);
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
         return new BannerResponse(savedBanner);
     }
 
@@ -53,6 +59,7 @@ public class BannerService {
         banner.setEndDate(request.getEndDate());
 
         Banner savedBanner = bannerRepository.save(banner);
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
         return new BannerResponse(savedBanner);
     }
 
@@ -108,6 +115,7 @@ public class BannerService {
             throw new RuntimeException("Không tìm thấy banner với ID: " + id);
         }
         bannerRepository.deleteById(id);
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
     }
 
     // Sắp xếp lại thứ tự banner
@@ -124,6 +132,7 @@ public class BannerService {
                 bannerRepository.save(banner);
             }
         }
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
     }
 
     // Chuyển đổi trạng thái active
@@ -133,6 +142,7 @@ public class BannerService {
 
         banner.setIsActive(!banner.getIsActive());
         Banner savedBanner = bannerRepository.save(banner);
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
         return new BannerResponse(savedBanner);
     }
 
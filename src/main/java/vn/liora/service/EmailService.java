@@ -2,20 +2,27 @@ package vn.liora.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 import vn.liora.dto.response.OrderResponse;
 import vn.liora.dto.response.OrderProductResponse;
+import vn.liora.entity.EmailOutbox;
+import vn.liora.enums.EmailOutboxStatus;
+import vn.liora.enums.EmailTemplate;
+import vn.liora.repository.EmailOutboxRepository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Random;
 
+/**
+ * Soạn nội dung email và ghi vào bảng EmailOutbox trong cùng transaction nghiệp vụ.
+ * Việc gửi SMTP do EmailOutboxDispatcher đảm nhận (theo lô, có thử lại).
+ */
 @Service
 public class EmailService {
 
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailOutboxRepository emailOutboxRepository;
 
     @Value("${APP_URL:http://localhost:8080}")
     private String appUrl;
@@ -25,20 +32,9 @@ public class EmailService {
      */
     public void sendOrderConfirmationEmail(String userEmail, String userName, OrderResponse order,
             List<OrderProductResponse> orderProducts) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(userEmail);
-            message.setSubject("Xác nhận đơn hàng #" + order.getIdOrder() + " - Liora");
-
-            String content = buildOrderConfirmationContent(userName, order, orderProducts, true);
-            message.setText(content);
-
-            mailSender.send(message);
-            System.out.println("Order confirmation email sent to: " + userEmail);
-        } catch (Exception e) {
-            System.err.println("Error sending order confirmation email: " + e.getMessage());
-            e.printStackTrace();
-        }
+        String content = buildOrderConfirmationContent(userName, order, orderProducts, true);
+        enqueue(EmailTemplate.ORDER_CONFIRMATION, userEmail,
+                "Xác nhận đơn hàng #" + order.getIdOrder() + " - Liora", content);
     }
 
     /**
@@ -46,20 +42,9 @@ public class EmailService {
      */
     public void sendGuestOrderConfirmationEmail(String guestEmail, OrderResponse order,
             List<OrderProductResponse> orderProducts) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(guestEmail);
-            message.setSubject("Xác nhận đơn hàng #" + order.getIdOrder() + " - Liora");
-
-            String content = buildOrderConfirmationContent("Khách hàng", order, orderProducts, false);
-            message.setText(content);
-
-            mailSender.send(message);
-            System.out.println("Guest order confirmation email sent to: " + guestEmail);
-        } catch (Exception e) {
-            System.err.println("Error sending guest order confirmation email: " + e.getMessage());
-            e.printStackTrace();
-        }
+        String content = buildOrderConfirmationContent("Khách hàng", order, orderProducts, false);
+        enqueue(EmailTemplate.ORDER_CONFIRMATION, guestEmail,
+                "Xác nhận đơn hàng #" + order.getIdOrder() + " - Liora", content);
     }
 
     /**
@@ -147,40 +132,33 @@ public class EmailService {
      * Gửi email OTP đăng ký
      */
     public void sendRegistrationOtpEmail(String userEmail, String otpCode) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(userEmail);
-            message.setSubject("Xác thực email đăng ký - Liora");
-
-            String content = buildRegistrationOtpContent(otpCode);
-            message.setText(content);
-
-            mailSender.send(message);
-            System.out.println("Registration OTP email sent to: " + userEmail);
-        } catch (Exception e) {
-            System.err.println("Error sending registration OTP email: " + e.getMessage());
-            e.printStackTrace();
-        }
+        String content = buildRegistrationOtpContent(otpCode);
+        enqueue(EmailTemplate.REGISTRATION_OTP, userEmail, "Xác thực email đăng ký - Liora", content);
     }
 
     /**
      * Gửi email OTP reset password
      */
     public void sendPasswordResetOtpEmail(String userEmail, String otpCode) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(userEmail);
-            message.setSubject("Mã xác thực đặt lại mật khẩu - Liora");
-
-            String content = buildPasswordResetOtpContent(otpCode);
-            message.setText(content);
-
-            mailSender.send(message);
-            System.out.println("Password reset OTP email sent to: " + userEmail);
-        } catch (Exception e) {
-            System.err.println("Error sending password reset OTP email: " + e.getMessage());
-            e.printStackTrace();
-        }
+        String content = buildPasswordResetOtpContent(otpCode);
+        enqueue(EmailTemplate.PASSWORD_RESET_OTP, userEmail,
+                "Mã xác thực đặt lại mật khẩu - Liora", content);
+    }
+
+    /**
+     * Ghi email vào outbox; tham gia transaction hiện tại nếu có, nên email chỉ được gửi
+     * khi nghiệp vụ commit thành công.
+     */
+    public void enqueue(EmailTemplate template, String recipient, String subject, String body) {
+        emailOutboxRepository.save(EmailOutbox.builder()
+                .template(template)
+                .recipient(recipient)
+                .subject(subject)
+                .body(body)
+                .status(EmailOutboxStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
     }
 
     /**
@@ -254,20 +232,9 @@ public class EmailService {
      */
     public void sendOrderCancellationEmail(String userEmail, String userName, OrderResponse order,
             List<OrderProductResponse> orderProducts) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(userEmail);
-            message.setSubject("Thông báo hủy đơn hàng #" + order.getIdOrder() + " - Liora");
-
-            String content = buildOrderCancellationContent(userName, order, orderProducts, true);
-            message.setText(content);
-
-            mailSender.send(message);
-            System.out.println("Order cancellation email sent to: " + userEmail);
-        } catch (Exception e) {
-            System.err.println("Error sending order cancellation email: " + e.getMessage());
-            e.printStackTrace();
-        }
+        String content = buildOrderCancellationContent(userName, order, orderProducts, true);
+        enqueue(EmailTemplate.ORDER_CANCELLATION, userEmail,
+                "Thông báo hủy đơn hàng #" + order.getIdOrder() + " - Liora", content);
     }
 
     /**
@@ -275,20 +242,9 @@ public class EmailService {
      */
     public void sendGuestOrderCancellationEmail(String guestEmail, OrderResponse order,
             List<OrderProductResponse> orderProducts) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(guestEmail);
-            message.setSubject("Thông báo hủy đơn hàng #" + order.getIdOrder() + " - Liora");
-
-            String content = buildOrderCancellationContent("Khách hàng", order, orderProducts, false);
-            message.setText(content);
-
-            mailSender.send(message);
-            System.out.println("Guest order cancellation email sent to: " + guestEmail);
-        } catch (Exception e) {
-            System.err.println("Error sending guest order cancellation email: " + e.getMessage());
-            e.printStackTrace();
-        }
+        String content = buildOrderCancellationContent("Khách hàng", order, orderProducts, false);
+        enqueue(EmailTemplate.ORDER_CANCELLATION, guestEmail,
+                "Thông báo hủy đơn hàng #" + order.getIdOrder() + " - Liora", content);
     }
 
     /**
@@ -1,6 +1,7 @@
 package vn.liora.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import vn.liora.dto.request.FooterRequest;
@@ -10,6 +11,7 @@ import vn.liora.dto.request.FooterSocialLinkRequest;
 import vn.liora.entity.*;
 import vn.liora.repository.*;
 import vn.liora.enums.FooterLinkType;
+import vn.liora.event.SiteContentChangedEvent;
 
 import java.util.List;
 import java.util.Optional;
@@ -33,6 +35,9 @@ public class FooterService {
     @Autowired
     private StaticPageRepository staticPageRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public Footer getActiveFooter() {
         return footerRepository.getActiveFooter().orElse(null);
     }
@@ -134,6 +139,7 @@ public class FooterService {
             }
         }
 
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
         return footer;
     }
 
@@ -239,6 +245,7 @@ public class FooterService {
             footerItemRepository.save(privacy);
             footerItemRepository.save(terms);
             footerItemRepository.save(cookies);
+            eventPublisher.publishEvent(new SiteContentChangedEvent());
 
         } catch (Exception e) {
             System.err.println("Error initializing default footer: " + e.getMessage());
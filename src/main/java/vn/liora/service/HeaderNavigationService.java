@@ -1,12 +1,14 @@
 package vn.liora.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import vn.liora.entity.HeaderNavigationItem;
 import vn.liora.entity.StaticPage;
 import vn.liora.repository.HeaderNavigationItemRepository;
 import vn.liora.repository.StaticPageRepository;
+import vn.liora.event.SiteContentChangedEvent;
 
 import java.util.*;
 
@@ -19,6 +21,9 @@ public class HeaderNavigationService {
     @Autowired
     private StaticPageRepository staticPageRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public List<HeaderNavigationItem> getAllActiveItems() {
         return headerNavigationItemRepository.findByIsActiveTrueAndParentItemIdIsNullOrderByItemOrder();
     }
@@ -33,6 +38,8 @@ public class HeaderNavigationService {
         // Clear all existing items
         headerNavigationItemRepository.deleteAll();
 
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
+
         // Handle null case
         if (navigationItems == null) {
             return;
@@ -150,5 +157,6 @@ public class HeaderNavigationService {
         contactItem.setIsCategoryParent(false);
         contactItem.setIsActive(true);
         headerNavigationItemRepository.save(contactItem);
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
     }
 }
\ No newline at end of file
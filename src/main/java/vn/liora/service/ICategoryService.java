@@ -70,5 +70,11 @@ public interface ICategoryService {
     void activateCategory(Long id);
 
     // Cây danh mục
-    List<CategoryResponse> getCategoryTree();
+    List<CategoryResponse> getCategoryTree(); // chỉ danh mục active, dùng chung giữa các request: không sửa
+
+    List<CategoryResponse> getFullCategoryTree(); // cả active và inactive, sắp theo tên
+
+    List<Long> getSubtreeIds(Long categoryId); // danh mục và toàn bộ hậu duệ
+
+    long getTreeVersion(); // tăng mỗi khi cây thay đổi
 }
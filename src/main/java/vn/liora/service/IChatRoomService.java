@@ -0,0 +1,26 @@
+package vn.liora.service;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import vn.liora.dto.response.ChatRoomInfo;
+import vn.liora.entity.Message;
+
+import java.util.List;
+
+public interface IChatRoomService {
+
+    // Cập nhật bảng tóm tắt phòng sau khi tin nhắn đã được lưu
+    void recordMessages(List<Message> savedMessages);
+
+    // Danh sách phòng, phòng có tin mới nhất trước (một truy vấn)
+    Page<ChatRoomInfo> findRooms(Pageable pageable);
+
+    ChatRoomInfo getRoom(String roomId);
+
+    void markRead(String roomId);
+
+    void updateOwnerAvatar(Long userId, String avatar);
+
+    // Dựng lại toàn bộ bảng tóm tắt từ bảng Message
+    int rebuild();
+}
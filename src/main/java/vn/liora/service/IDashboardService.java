@@ -91,4 +91,7 @@ public interface IDashboardService {
     long getTodayNewCustomers();
     long getConfirmedOrders();
 
+    // Tất cả chỉ số của trang Analytics trong một lần tính, cache theo (khoảng thời gian, phút)
+    DashboardSnapshotResponse getSnapshot(LocalDateTime startDate, LocalDateTime endDate, int topLimit);
+
 }
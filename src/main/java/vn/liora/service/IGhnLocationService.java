@@ -21,4 +21,9 @@ public interface IGhnLocationService {
      * Lấy danh sách phường/xã theo quận/huyện
      */
     List<GhnWardResponse> getWards(Integer districtId);
+
+    /**
+     * Version của bản danh mục đang dùng (dùng làm ETag), null nếu chưa có snapshot
+     */
+    String getSnapshotVersion();
 }
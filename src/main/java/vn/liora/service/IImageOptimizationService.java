@@ -4,8 +4,16 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.List;
 
 public interface IImageOptimizationService {
+
+    /**
+     * Một bản ảnh cần ghi ra: đường dẫn, khung kích thước tối đa và chất lượng nén.
+     */
+    record Derivative(Path outputPath, int maxWidth, int maxHeight, float quality) {
+    }
+
     /**
      * Tối ưu hóa và nén ảnh
      * 
@@ -29,6 +37,16 @@ public interface IImageOptimizationService {
      */
     String createThumbnail(MultipartFile file, Path outputPath, int thumbnailSize) throws IOException;
 
+    /**
+     * Giải mã ảnh một lần rồi ghi tất cả các bản (ảnh chính, thumbnail, các cỡ responsive)
+     * từ cùng một ảnh đã giải mã; bản nhỏ được thu nhỏ dần từ bản lớn hơn.
+     *
+     * @param source           nội dung file ảnh gốc
+     * @param originalFilename tên file gốc (để chọn định dạng ghi)
+     * @param derivatives      các bản cần ghi
+     */
+    void writeDerivatives(byte[] source, String originalFilename, List<Derivative> derivatives) throws IOException;
+
     /**
      * Kiểm tra file có phải là ảnh hợp lệ không
      * 
@@ -0,0 +1,57 @@
+package vn.liora.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import vn.liora.dto.response.ImageUploadJobResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface IImagePipelineService {
+
+    /**
+     * Một ảnh upload đã đọc vào bộ nhớ, kèm đường dẫn (tương đối trong thư mục upload) của các bản sẽ tạo.
+     * thumbnailPath null nếu không tạo thumbnail.
+     */
+    record ImageSource(String filename, byte[] content, String relativePath, String thumbnailPath,
+            List<String> responsivePaths) {
+
+        public String url() {
+            return "/uploads/" + relativePath;
+        }
+
+        public String thumbnailUrl() {
+            return thumbnailPath != null ? "/uploads/" + thumbnailPath : null;
+        }
+    }
+
+    // ========== PREPARE ==========
+    /**
+     * Đọc file upload (phải gọi trên luồng request, file tạm bị xóa khi request kết thúc)
+     * và sinh đường dẫn cho ảnh chính, thumbnail và các cỡ responsive.
+     */
+    ImageSource prepare(String category, String filename, MultipartFile file, boolean withThumbnail)
+            throws IOException;
+
+    // ========== PROCESS ==========
+    /**
+     * Tạo tất cả các bản của một ảnh trên luồng hiện tại, giải mã một lần.
+     */
+    void process(ImageSource source) throws IOException;
+
+    /**
+     * Tạo các bản cho nhiều ảnh song song trên pool xử lý ảnh và chờ xong.
+     * Trả về các ảnh xử lý thành công, giữ nguyên thứ tự đầu vào.
+     */
+    List<ImageSource> processAll(List<ImageSource> sources);
+
+    /**
+     * Gửi job xử lý nền và trả về ngay. onProcessed chạy (trên luồng của pool) cho từng ảnh
+     * xử lý thành công, ví dụ để lưu bản ghi Image.
+     */
+    ImageUploadJobResponse submit(List<ImageSource> sources, Consumer<ImageSource> onProcessed);
+
+    // ========== JOB STATUS ==========
+    Optional<ImageUploadJobResponse> getJob(String jobId);
+}
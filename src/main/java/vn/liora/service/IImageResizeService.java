@@ -0,0 +1,29 @@
+package vn.liora.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+public interface IImageResizeService {
+
+    /**
+     * Một bản ảnh đã thu nhỏ trong cache trên đĩa. key: hash nội dung (ảnh gốc + kích thước),
+     * đổi khi ảnh gốc đổi nên dùng được làm ETag.
+     */
+    record ResizedImage(Path file, String key) {
+    }
+
+    /**
+     * Kích thước có nằm trong danh sách cho phép (image.resize.allowed-sizes) không.
+     */
+    boolean isAllowedSize(int width, int height);
+
+    /**
+     * Lấy bản thu nhỏ vừa khung width x height (không phóng to) của ảnh trong thư mục upload.
+     * Lần đầu ảnh được tạo và lưu vào cache; các request đồng thời cho cùng bản chỉ tạo một lần.
+     *
+     * @param relativePath đường dẫn ảnh gốc, tương đối trong thư mục upload (products/2025/01/01/abc.jpg)
+     * @return rỗng nếu ảnh gốc không tồn tại hoặc không phải định dạng hỗ trợ
+     */
+    Optional<ResizedImage> resize(String relativePath, int width, int height) throws IOException;
+}
@@ -24,6 +24,8 @@ public interface IImageService {
     // ========== UPLOAD METHODS ==========
     Image uploadProductImage(Long productId, MultipartFile file, boolean isMain, Integer displayOrder);
     List<Image> uploadMultipleProductImages(Long productId, MultipartFile[] files);
+    // Lưu ảnh đã xử lý vào cuối danh sách ảnh của sản phẩm (thứ tự hiển thị = lớn nhất + 1)
+    Image appendProductImage(Long productId, String imageUrl);
     
     // ========== IMAGE MANAGEMENT ==========
     void setMainImage(Long productId, Long imageId);
@@ -0,0 +1,28 @@
+package vn.liora.service;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import vn.liora.dto.request.ProductSearchCriteria;
+import vn.liora.dto.response.ProductResponse;
+import vn.liora.dto.response.ProductSuggestResponse;
+
+import java.util.List;
+
+/**
+ * Chỉ mục catalog sản phẩm trong bộ nhớ cho các API danh sách phía người dùng.
+ * Trả lời mọi tổ hợp lọc/sắp xếp/phân trang mà không truy vấn database;
+ * chỉ mục được làm mới theo ProductChangedEvent.
+ */
+public interface IProductCatalogService {
+    Page<ProductResponse> search(ProductSearchCriteria criteria, Pageable pageable);
+    List<ProductResponse> findAll(ProductSearchCriteria criteria);
+
+    // Sản phẩm tương tự theo các mức fallback (category + brand + giá → ... → brand)
+    List<Long> findSimilarProductIds(ProductResponse original);
+
+    // Gợi ý khi đang gõ: top-N sản phẩm, thương hiệu, danh mục theo tiền tố
+    ProductSuggestResponse suggest(String query, int limit);
+
+    void refresh(Long productId);
+    void refreshAll();
+}
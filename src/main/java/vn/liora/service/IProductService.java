@@ -3,6 +3,7 @@ package vn.liora.service;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import vn.liora.dto.request.ProductCreationRequest;
+import vn.liora.dto.request.ProductSearchCriteria;
 import vn.liora.dto.request.ProductUpdateRequest;
 import vn.liora.dto.response.ProductResponse;
 import vn.liora.dto.response.BrandResponse;
@@ -34,6 +35,7 @@ public interface IProductService {
     Page<Product> findByNameContaining(String name, Pageable pageable);
     Optional<Product> findByName(String name);
     boolean existsByName(String name);
+    Page<Product> search(ProductSearchCriteria criteria, Pageable pageable); // lọc + sắp xếp + phân trang trong DB
 
     // ========== STATUS FILTERS ==========
     List<Product> findActiveProducts();
@@ -0,0 +1,31 @@
+package vn.liora.service;
+
+import vn.liora.dto.response.ProductSalesSummaryRow;
+import vn.liora.dto.response.SalesSummaryRow;
+import vn.liora.entity.listener.OrderSalesChange;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ISalesRollupService {
+
+    // Đơn hàng theo trạng thái × phương thức thanh toán trong khoảng thời gian
+    List<SalesSummaryRow> summarize(LocalDateTime startDate, LocalDateTime endDate);
+
+    // Dòng sản phẩm theo trạng thái × danh mục × thương hiệu trong khoảng thời gian
+    List<ProductSalesSummaryRow> summarizeProducts(LocalDateTime startDate, LocalDateTime endDate);
+
+    // Áp dụng thay đổi của các đơn hàng vừa commit vào bảng tổng hợp
+    void apply(List<OrderSalesChange> changes);
+
+    // Tính lại bảng tổng hợp cho các ngày [fromDate, toDate] từ bảng Orders
+    void rebuild(LocalDate fromDate, LocalDate toDate);
+
+    // Đối soát định kỳ vài ngày gần nhất (@Scheduled trong impl).
+    // Khai báo ở interface vì bean được bọc proxy JDK (@Async), lịch/sự kiện chỉ gọi được method của interface
+    void reconcileRecentDays();
+
+    // Tính lại toàn bộ lịch sử khi bảng tổng hợp trống (chạy khi ứng dụng khởi động xong)
+    void backfillIfEmpty();
+}
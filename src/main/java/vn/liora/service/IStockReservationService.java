@@ -0,0 +1,19 @@
+package vn.liora.service;
+
+import vn.liora.dto.response.StockReservationLine;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Giữ/hoàn tồn kho bằng câu UPDATE có điều kiện (stock = stock - q WHERE stock >= q),
+ * an toàn khi nhiều người cùng mua một sản phẩm. Phải chạy trong transaction của đơn hàng
+ * để rollback đơn thì tồn kho cũng được hoàn.
+ */
+public interface IStockReservationService {
+    // productId -> số lượng; trả về kết quả từng dòng (theo productId tăng dần)
+    List<StockReservationLine> reserve(Map<Long, Integer> quantities);
+
+    // Hoàn lại tồn kho (hủy đơn)
+    void release(Map<Long, Integer> quantities);
+}
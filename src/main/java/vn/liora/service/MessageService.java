@@ -9,8 +9,14 @@ public interface MessageService {
 
     Message save(Message message);
 
+    // Ghi theo lô ở nền (write-behind), không chờ DB
+    void saveBuffered(Message message);
+
     List<Message> findRecentByRoom(String roomId, int limit);
 
+    // Cuộn ngược lịch sử: tối đa limit tin cũ hơn tin beforeId, mới nhất ở đầu
+    List<Message> findBefore(String roomId, Long beforeId, int limit);
+
     List<String> findAllRooms();
     
     List<ChatRoomInfo> findAllRoomsWithUserInfo();
@@ -1,6 +1,7 @@
 package vn.liora.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -9,6 +10,7 @@ import vn.liora.dto.request.StaticPageRequest;
 import vn.liora.dto.response.StaticPageResponse;
 import vn.liora.entity.StaticPage;
 import vn.liora.repository.StaticPageRepository;
+import vn.liora.event.SiteContentChangedEvent;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,6 +23,9 @@ public class StaticPageService {
     @Autowired
     private StaticPageRepository staticPageRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // Tạo static page mới
     public StaticPageResponse createStaticPage(StaticPageRequest request) {
         // Kiểm tra slug đã tồn tại chưa
@@ -45,6 +50,7 @@ public class StaticPageService {
         }
 
         StaticPage savedStaticPage = staticPageRepository.save(staticPage);
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
         return new StaticPageResponse(savedStaticPage);
     }
 
@@ -74,6 +80,7 @@ public class StaticPageService {
         staticPage.setIsPublished(request.getIsPublished());
 
         StaticPage savedStaticPage = staticPageRepository.save(staticPage);
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
         return new StaticPageResponse(savedStaticPage);
     }
 
@@ -188,6 +195,7 @@ public class StaticPageService {
             throw new RuntimeException("Không tìm thấy trang với ID: " + id);
         }
         staticPageRepository.deleteById(id);
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
     }
 
     // Chuyển đổi trạng thái active
@@ -197,6 +205,7 @@ public class StaticPageService {
 
         staticPage.setIsActive(!staticPage.getIsActive());
         StaticPage savedStaticPage = staticPageRepository.save(staticPage);
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
         return new StaticPageResponse(savedStaticPage);
     }
 
@@ -214,6 +223,7 @@ public class StaticPageService {
         }
 
         StaticPage savedStaticPage = staticPageRepository.save(staticPage);
+        eventPublisher.publishEvent(new SiteContentChangedEvent());
         return new StaticPageResponse(savedStaticPage);
     }
 
@@ -45,6 +45,7 @@ public class AuthenticationServiceImpl implements IAuthenticationService {
     final UserRepository userRepository;
     final InvalidatedTokenRepository invalidatedTokenRepository;
     final IAuthorizationService authorizationService;
+    final TokenRevocationRegistry tokenRevocationRegistry;
 
     @Value("${jwt.signerKey}")
     protected String SIGNER_KEY;
@@ -108,6 +109,7 @@ public class AuthenticationServiceImpl implements IAuthenticationService {
                     .expiryTime(expiryTime)
                     .build();
             invalidatedTokenRepository.save(invalidatedToken);
+            tokenRevocationRegistry.revoke(jit, expiryTime);
         } catch (AppException exception) {
             // do nothing
         }
@@ -124,6 +126,7 @@ public class AuthenticationServiceImpl implements IAuthenticationService {
                 .expiryTime(expiryTime)
                 .build();
         invalidatedTokenRepository.save(invalidatedToken);
+        tokenRevocationRegistry.revoke(jit, expiryTime);
 
         var username = signJWT.getJWTClaimsSet().getSubject();
         var user = userRepository.findByUsername(username)
@@ -145,7 +148,7 @@ public class AuthenticationServiceImpl implements IAuthenticationService {
         var verified = signedJWT.verify(verifier);
         if (!verified && expirationTime.after(new Date()))
             throw new AppException(ErrorCode.UNAUTHENTICATED);
-        if (invalidatedTokenRepository.existsById(signedJWT.getJWTClaimsSet().getJWTID()))
+        if (tokenRevocationRegistry.isRevoked(signedJWT.getJWTClaimsSet().getJWTID()))
             throw new AppException(ErrorCode.UNAUTHENTICATED);
         return signedJWT;
     }
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -15,6 +16,7 @@ import vn.liora.dto.request.BrandUpdateRequest;
 import vn.liora.dto.response.BrandResponse;
 import vn.liora.entity.Brand;
 import vn.liora.entity.Product;
+import vn.liora.event.ProductChangedEvent;
 import vn.liora.exception.AppException;
 import vn.liora.exception.ErrorCode;
 import vn.liora.mapper.BrandMapper;
@@ -31,6 +33,8 @@ public class BrandServiceImpl implements IBrandService {
     private ProductRepository productRepository;
     @Autowired
     private BrandMapper brandMapper;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     @Override
     public void deleteAll() {
         brandRepository.deleteAll();
@@ -87,6 +91,7 @@ public class BrandServiceImpl implements IBrandService {
 
         brandMapper.updateBrand(brand, request);
         brandRepository.save(brand);
+        eventPublisher.publishEvent(ProductChangedEvent.all());
         return brandMapper.toBrandResponse(brand);
     }
 
@@ -163,6 +168,7 @@ public class BrandServiceImpl implements IBrandService {
             product.setUpdatedDate(LocalDateTime.now());
             productRepository.save(product);
         }
+        eventPublisher.publishEvent(ProductChangedEvent.all());
     }
 
     @Override
@@ -185,5 +191,6 @@ public class BrandServiceImpl implements IBrandService {
                 productRepository.save(product);
             }
         }
+        eventPublisher.publishEvent(ProductChangedEvent.all());
     }
 }
@@ -1,23 +1,29 @@
 package vn.liora.service.impl;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import vn.liora.dto.request.CategoryCreationRequest;
 import vn.liora.dto.request.CategoryUpdateRequest;
 import vn.liora.dto.response.CategoryResponse;
 import vn.liora.entity.Category;
 import vn.liora.entity.Product;
+import vn.liora.event.CategoryChangedEvent;
+import vn.liora.event.ProductChangedEvent;
 import vn.liora.exception.AppException;
 import vn.liora.exception.ErrorCode;
 import vn.liora.mapper.CategoryMapper;
+import vn.liora.repository.CategoryClosureRepository;
 import vn.liora.repository.CategoryRepository;
 import vn.liora.repository.ProductRepository;
 import vn.liora.service.ICategoryService;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,6 +35,12 @@ public class CategoryServiceImpl implements ICategoryService {
     private ProductRepository productRepository;
     @Autowired
     private CategoryMapper categoryMapper;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private CategoryClosureRepository categoryClosureRepository;
+    @Autowired
+    private CategoryTreeCache categoryTreeCache;
 
     @Override
     public Category createCategory(CategoryCreationRequest request) {
@@ -44,7 +56,9 @@ public class CategoryServiceImpl implements ICategoryService {
             category.setParentCategory(parentCategory);
         }
 
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent());
+        return saved;
     }
 
     @Override
@@ -101,20 +115,26 @@ public class CategoryServiceImpl implements ICategoryService {
 
         // 7. Lưu vào database
         categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent());
+        eventPublisher.publishEvent(ProductChangedEvent.all());
 
         return categoryMapper.toCategoryResponse(category);
     }
 
-    // Helper method để kiểm tra circular reference
+    // Helper method để kiểm tra circular reference: danh mục là tổ tiên của cha mới (một truy vấn closure)
     private boolean isCircularReference(Category category, Category potentialParent) {
-        Category current = potentialParent;
-        while (current != null) {
-            if (current.getCategoryId().equals(category.getCategoryId())) {
-                return true;
-            }
-            current = current.getParentCategory();
+        return potentialParent.getCategoryId().equals(category.getCategoryId())
+                || categoryClosureRepository.findAncestorIds(potentialParent.getCategoryId())
+                        .contains(category.getCategoryId());
+    }
+
+    // Id của danh mục và cả cây con; closure chưa có dữ liệu thì dùng cây trong bộ nhớ
+    private List<Long> subtreeIds(Long id) {
+        List<Long> ids = categoryClosureRepository.findSubtreeIds(id);
+        if (ids.isEmpty()) {
+            ids = categoryTreeCache.subtreeIds(id);
         }
-        return false;
+        return ids.isEmpty() ? List.of(id) : ids;
     }
 
     @Override
@@ -128,6 +148,7 @@ public class CategoryServiceImpl implements ICategoryService {
         }
         
         categoryRepository.deleteById(id);
+        eventPublisher.publishEvent(new CategoryChangedEvent());
     }
 
     @Override
@@ -241,32 +262,30 @@ public class CategoryServiceImpl implements ICategoryService {
     }
 
     @Override
+    @Transactional
     public void deactivateCategory(Long id) {
-        Category category = categoryRepository.findById(id)
+        categoryRepository.findById(id)
                 .orElseThrow(() -> new AppException(ErrorCode.CATEGORY_NOT_FOUND));
 
-        // Lưu thông tin parent trước khi deactivate (có thể sử dụng sau này)
-        // Category parentCategory = category.getParentCategory();
-
-        category.setIsActive(false);
-        categoryRepository.save(category);
-
-        // Cascade deactivate all children
-        List<Category> children = categoryRepository.findChildCategories(id);
-        for (Category child : children) {
-            deactivateCategory(child.getCategoryId()); // Recursive deactivate
-        }
+        // Cascade deactivate cả cây con (lấy bằng một truy vấn closure)
+        List<Long> ids = subtreeIds(id);
+        List<Category> categories = categoryRepository.findAllById(ids);
+        categories.forEach(category -> category.setIsActive(false));
+        categoryRepository.saveAll(categories);
 
-        List<Product> products = productRepository.findByCategoryCategoryId(id);
+        LocalDateTime now = LocalDateTime.now();
+        List<Product> products = productRepository.findByCategoryCategoryIdIn(ids);
         for (Product product : products) {
             product.setIsActive(false);
-            product.setUpdatedDate(LocalDateTime.now());
-            productRepository.save(product);
+            product.setUpdatedDate(now);
         }
+        productRepository.saveAll(products);
+        eventPublisher.publishEvent(new CategoryChangedEvent());
+        eventPublisher.publishEvent(ProductChangedEvent.all());
     }
 
     @Override
-    @org.springframework.transaction.annotation.Transactional
+    @Transactional
     public void activateCategory(Long id) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new AppException(ErrorCode.CATEGORY_NOT_FOUND));
@@ -285,50 +304,50 @@ public class CategoryServiceImpl implements ICategoryService {
             }
         }
 
-        category.setIsActive(true);
-        categoryRepository.save(category);
-
-        // Cascade activate all children
-        List<Category> children = categoryRepository.findChildCategories(id);
-        for (Category child : children) {
-            activateCategory(child.getCategoryId()); // Recursive activate
-        }
+        // Cascade activate cả cây con (lấy bằng một truy vấn closure)
+        List<Long> ids = subtreeIds(id);
+        List<Category> categories = categoryRepository.findAllById(ids);
+        categories.forEach(c -> c.setIsActive(true));
+        categoryRepository.saveAll(categories);
 
         // Chỉ activate products khi cả brand và category đều active
-        List<Product> products = productRepository.findByCategoryCategoryId(id);
+        LocalDateTime now = LocalDateTime.now();
+        List<Product> products = productRepository.findByCategoryCategoryIdIn(ids);
+        List<Product> activated = new ArrayList<>();
         for (Product product : products) {
             // Kiểm tra brand có active không
             if (product.getBrand() != null 
                     && product.getBrand().getIsActive() != null 
                     && product.getBrand().getIsActive()) {
                 product.setIsActive(true);
-                product.setUpdatedDate(LocalDateTime.now());
-                productRepository.save(product);
+                product.setUpdatedDate(now);
+                activated.add(product);
             }
         }
+        productRepository.saveAll(activated);
+        eventPublisher.publishEvent(new CategoryChangedEvent());
+        eventPublisher.publishEvent(ProductChangedEvent.all());
     }
 
+    // ========== CÂY DANH MỤC (bộ nhớ, xem CategoryTreeCache) ==========
     @Override
     public List<CategoryResponse> getCategoryTree() {
-        List<Category> rootCategories = categoryRepository.findActiveRootCategories();
-        return rootCategories.stream()
-                .map(this::buildCategoryTree)
-                .toList();
-    }
-
-    private CategoryResponse buildCategoryTree(Category category) {
-        CategoryResponse response = categoryMapper.toCategoryResponse(category);
-
-        // Lấy danh mục con active
-        List<Category> children = categoryRepository.findActiveChildCategoriesByParentId(category.getCategoryId());
-        if (!children.isEmpty()) {
-            List<CategoryResponse> childResponses = children.stream()
-                    .map(this::buildCategoryTree)
-                    .toList();
-            response.setChildren(childResponses);
-        }
+        return categoryTreeCache.current().activeTree();
+    }
 
-        return response;
+    @Override
+    public List<CategoryResponse> getFullCategoryTree() {
+        return categoryTreeCache.current().fullTree();
+    }
+
+    @Override
+    public List<Long> getSubtreeIds(Long categoryId) {
+        return categoryTreeCache.subtreeIds(categoryId);
+    }
+
+    @Override
+    public long getTreeVersion() {
+        return categoryTreeCache.current().version();
     }
 
     // Thêm method mới để khôi phục parent category (có thể sử dụng sau này)
@@ -0,0 +1,244 @@
+package vn.liora.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.liora.dto.response.CategoryResponse;
+import vn.liora.entity.Category;
+import vn.liora.entity.CategoryClosure;
+import vn.liora.event.CategoryChangedEvent;
+import vn.liora.mapper.CategoryMapper;
+import vn.liora.repository.CategoryClosureRepository;
+import vn.liora.repository.CategoryRepository;
+
+import java.util.*;
+
+/**
+ * Cây danh mục trong bộ nhớ, dựng từ một truy vấn trên Categories:
+ * - Mỗi bản (snapshot) là bất biến và có version; khi danh mục thay đổi (CategoryChangedEvent) bản mới
+ *   được dựng rồi thay nguyên khối, người đọc không bao giờ thấy cây dở dang.
+ * - Phục vụ cây cho trang người dùng (chỉ danh mục active), cây cho trang quản trị (tất cả)
+ *   và danh sách id cây con cho truy vấn sản phẩm theo danh mục.
+ * - Đồng thời cập nhật bảng CategoryClosure (chỉ ghi các cặp thêm/bớt).
+ * - Định kỳ đọc lại để nhận thay đổi từ instance khác; không đổi thì giữ nguyên version.
+ * Các CategoryResponse trong snapshot dùng chung giữa các request: chỉ đọc, không sửa.
+ */
+@Component
+@Slf4j
+public class CategoryTreeCache {
+
+    private final CategoryRepository categoryRepository;
+    private final CategoryClosureRepository categoryClosureRepository;
+    private final CategoryMapper categoryMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Snapshot snapshot;
+    private long lastVersion;
+
+    /**
+     * Cây danh mục tại một thời điểm.
+     */
+    public record Snapshot(long version,
+            List<CategoryResponse> activeTree,
+            List<CategoryResponse> fullTree,
+            Map<Long, List<Long>> descendantIds,
+            Map<Long, Long> parentIds) {
+    }
+
+    private static final Comparator<Category> BY_ID = Comparator.comparing(Category::getCategoryId);
+    private static final Comparator<Category> BY_NAME = Comparator
+            .comparing(Category::getName, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Category::getCategoryId);
+
+    public CategoryTreeCache(CategoryRepository categoryRepository,
+            CategoryClosureRepository categoryClosureRepository,
+            CategoryMapper categoryMapper,
+            PlatformTransactionManager transactionManager) {
+        this.categoryRepository = categoryRepository;
+        this.categoryClosureRepository = categoryClosureRepository;
+        this.categoryMapper = categoryMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // syncClosure chạy trong listener sau commit: transaction của nơi ghi đã commit xong,
+        // tham gia vào nó thì các thay đổi CategoryClosure không bao giờ được commit
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        return current != null ? current : rebuild(false);
+    }
+
+    /**
+     * Id của danh mục và toàn bộ hậu duệ (kể cả danh mục inactive). Danh mục không tồn tại thì rỗng.
+     */
+    public List<Long> subtreeIds(Long categoryId) {
+        return current().descendantIds().getOrDefault(categoryId, List.of());
+    }
+
+    // ========== REBUILD ==========
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        try {
+            rebuild(true);
+        } catch (Exception e) {
+            log.error("Failed to build category tree: {}", e.getMessage());
+        }
+    }
+
+    // Chạy sau khi transaction ghi danh mục đã commit (hoặc ngay lập tức nếu không có transaction):
+    // dựng trước commit thì snapshot có thể chứa dữ liệu bị rollback, hoặc đọc thiếu thay đổi chưa commit.
+    // SiteChromeCache dựng lại theo cùng cách.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        rebuild(true);
+    }
+
+    @Scheduled(fixedDelayString = "${category.tree.resync-ms:300000}", initialDelayString = "${category.tree.resync-ms:300000}")
+    public void resync() {
+        try {
+            rebuild(false);
+        } catch (Exception e) {
+            log.warn("Category tree resync failed: {}", e.getMessage());
+        }
+    }
+
+    private synchronized Snapshot rebuild(boolean syncClosure) {
+        List<Category> categories = categoryRepository.findAll();
+
+        Map<Long, Category> byId = new HashMap<>();
+        Map<Long, Long> parentIds = new HashMap<>();
+        Map<Long, List<Category>> children = new HashMap<>();
+        List<Category> roots = new ArrayList<>();
+        for (Category category : categories) {
+            byId.put(category.getCategoryId(), category);
+        }
+        for (Category category : categories) {
+            // Lấy id từ proxy cha, không cần nạp bản ghi cha
+            Long parentId = category.getParentCategory() != null ? category.getParentCategory().getCategoryId() : null;
+            if (parentId != null && byId.containsKey(parentId)) {
+                parentIds.put(category.getCategoryId(), parentId);
+                children.computeIfAbsent(parentId, id -> new ArrayList<>()).add(category);
+            } else {
+                roots.add(category);
+            }
+        }
+
+        Map<Long, List<Long>> descendantIds = new HashMap<>();
+        for (Category root : roots) {
+            collectSubtree(root, children, descendantIds, new HashSet<>());
+        }
+
+        List<CategoryResponse> activeTree = buildTree(roots, children, BY_ID, true);
+        List<CategoryResponse> fullTree = buildTree(roots, children, BY_NAME, false);
+
+        Snapshot previous = snapshot;
+        Snapshot next;
+        if (previous != null && previous.activeTree().equals(activeTree) && previous.fullTree().equals(fullTree)
+                && previous.parentIds().equals(parentIds)) {
+            next = previous;
+        } else {
+            next = new Snapshot(++lastVersion, activeTree, fullTree, Map.copyOf(descendantIds), Map.copyOf(parentIds));
+            snapshot = next;
+            log.debug("Category tree rebuilt: version {}, {} categories", next.version(), categories.size());
+        }
+        if (syncClosure) {
+            syncClosure(descendantIds, parentIds);
+        }
+        return next;
+    }
+
+    /**
+     * Trả về id của cây con (kể cả gốc) và ghi cho mọi nút trong cây con.
+     */
+    private List<Long> collectSubtree(Category node, Map<Long, List<Category>> children,
+            Map<Long, List<Long>> descendantIds, Set<Long> path) {
+        List<Long> ids = new ArrayList<>();
+        ids.add(node.getCategoryId());
+        // Dữ liệu lỗi có vòng lặp cha-con thì dừng tại đó
+        if (path.add(node.getCategoryId())) {
+            for (Category child : children.getOrDefault(node.getCategoryId(), List.of())) {
+                if (!path.contains(child.getCategoryId())) {
+                    ids.addAll(collectSubtree(child, children, descendantIds, path));
+                }
+            }
+            path.remove(node.getCategoryId());
+        }
+        List<Long> immutable = List.copyOf(ids);
+        descendantIds.put(node.getCategoryId(), immutable);
+        return immutable;
+    }
+
+    private List<CategoryResponse> buildTree(List<Category> nodes, Map<Long, List<Category>> children,
+            Comparator<Category> order, boolean activeOnly) {
+        return nodes.stream()
+                .filter(category -> !activeOnly || Boolean.TRUE.equals(category.getIsActive()))
+                .sorted(order)
+                .map(category -> {
+                    CategoryResponse response = categoryMapper.toCategoryResponse(category);
+                    List<CategoryResponse> childResponses = buildTree(
+                            children.getOrDefault(category.getCategoryId(), List.of()), children, order, activeOnly);
+                    if (!childResponses.isEmpty()) {
+                        response.setChildren(childResponses);
+                    }
+                    return response;
+                })
+                .toList();
+    }
+
+    /**
+     * Đồng bộ bảng CategoryClosure với cây hiện tại: chỉ xóa các cặp không còn đúng và thêm cặp mới.
+     */
+    private void syncClosure(Map<Long, List<Long>> descendantIds, Map<Long, Long> parentIds) {
+        try {
+            Map<CategoryClosure.Key, Integer> wanted = new HashMap<>();
+            for (Long descendant : descendantIds.keySet()) {
+                int depth = 0;
+                Long ancestor = descendant;
+                Set<Long> seen = new HashSet<>();
+                while (ancestor != null && seen.add(ancestor)) {
+                    wanted.put(new CategoryClosure.Key(ancestor, descendant), depth++);
+                    ancestor = parentIds.get(ancestor);
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                List<CategoryClosure> stale = new ArrayList<>();
+                Set<CategoryClosure.Key> existing = new HashSet<>();
+                for (CategoryClosure row : categoryClosureRepository.findAll()) {
+                    CategoryClosure.Key key = new CategoryClosure.Key(row.getAncestorId(), row.getDescendantId());
+                    Integer depth = wanted.get(key);
+                    if (depth == null) {
+                        stale.add(row);
+                    } else {
+                        if (depth != row.getDepth()) {
+                            row.setDepth(depth); // ghi khi commit
+                        }
+                        existing.add(key);
+                    }
+                }
+                List<CategoryClosure> added = new ArrayList<>();
+                wanted.forEach((key, depth) -> {
+                    if (!existing.contains(key)) {
+                        added.add(new CategoryClosure(key.getAncestorId(), key.getDescendantId(), depth));
+                    }
+                });
+                if (!stale.isEmpty()) {
+                    categoryClosureRepository.deleteAllInBatch(stale);
+                }
+                if (!added.isEmpty()) {
+                    categoryClosureRepository.saveAll(added);
+                }
+                if (!stale.isEmpty() || !added.isEmpty()) {
+                    log.info("Category closure updated: {} removed, {} added", stale.size(), added.size());
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to update category closure: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import vn.liora.entity.Message;
+import vn.liora.repository.MessageRepository;
+import vn.liora.util.TtlCache;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Vòng đệm (ring buffer) N tin mới nhất của mỗi phòng chat đang hoạt động, để lịch sử khi vào phòng
+ * không phải truy vấn DB. Phòng được nạp từ DB ở lần đọc đầu tiên (kèm các tin còn trong hàng đợi ghi),
+ * sau đó mỗi tin mới được thêm vào vòng đệm. Phòng lâu không dùng bị bỏ theo TTL/LRU.
+ * Vòng đệm chỉ nhận tin lưu trên instance này, nên khi chạy nhiều instance (chat.bus.type=database)
+ * vòng đệm tự tắt và lịch sử luôn đọc DB (kèm tin còn trong hàng đợi ghi của instance này).
+ */
+@Component
+@Slf4j
+public class ChatHistoryBuffer {
+
+    private final MessageRepository messageRepository;
+    private final ChatMessageBuffer chatMessageBuffer;
+    private final int capacity;
+    private final TtlCache<String, Ring> rooms;
+
+    private static final Comparator<Message> NEWEST_FIRST = Comparator
+            .comparing(Message::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Message::getId, Comparator.nullsLast(Comparator.naturalOrder()))
+            .reversed();
+
+    /**
+     * Tin của một phòng, mới nhất ở đầu.
+     */
+    private static final class Ring {
+        final ArrayDeque<Message> messages = new ArrayDeque<>();
+        boolean loaded;
+    }
+
+    public ChatHistoryBuffer(MessageRepository messageRepository,
+            ChatMessageBuffer chatMessageBuffer,
+            MeterRegistry meterRegistry,
+            @Value("${chat.history.ring-size:50}") int capacity,
+            @Value("${chat.history.max-rooms:1000}") int maxRooms,
+            @Value("${chat.history.ttl-seconds:1800}") long ttlSeconds,
+            @Value("${chat.bus.type:local}") String busType) {
+        this.messageRepository = messageRepository;
+        this.chatMessageBuffer = chatMessageBuffer;
+        boolean sharedBus = "database".equalsIgnoreCase(busType);
+        this.capacity = sharedBus ? 0 : Math.max(0, capacity);
+        if (sharedBus && capacity > 0) {
+            log.info("Chat history ring disabled: chat.bus.type=database, history is read from the database");
+        }
+        this.rooms = new TtlCache<String, Ring>(maxRooms, Duration.ofSeconds(ttlSeconds))
+                .bindTo(meterRegistry, "chatHistory");
+    }
+
+    /**
+     * Tối đa limit tin mới nhất của phòng, mới nhất ở đầu.
+     */
+    public List<Message> recent(String roomId, int limit) {
+        if (limit > capacity) {
+            return loadWithPending(roomId, limit);
+        }
+        Ring ring = rooms.getIfPresent(roomId);
+        if (ring == null) {
+            // Đặt vòng rỗng trước khi nạp để tin mới đến trong lúc nạp vẫn được thêm vào
+            ring = new Ring();
+            rooms.put(roomId, ring);
+            fill(ring, roomId);
+        }
+        synchronized (ring) {
+            if (!ring.loaded) {
+                return loadWithPending(roomId, limit);
+            }
+            List<Message> result = new ArrayList<>(Math.min(limit, ring.messages.size()));
+            Iterator<Message> it = ring.messages.iterator();
+            while (it.hasNext() && result.size() < limit) {
+                result.add(it.next());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Thêm tin mới (đã lưu hoặc đã vào hàng đợi ghi). Phòng chưa có trong bộ đệm thì bỏ qua.
+     */
+    public void append(Message message) {
+        if (capacity == 0) {
+            return;
+        }
+        Ring ring = rooms.getIfPresent(message.getRoomId());
+        if (ring == null) {
+            return;
+        }
+        synchronized (ring) {
+            if (!ring.messages.isEmpty() && NEWEST_FIRST.compare(message, ring.messages.peekFirst()) > 0) {
+                // Hiếm: tin đến trễ hơn tin đã có, sắp xếp lại
+                merge(ring, List.of(message));
+                return;
+            }
+            ring.messages.addFirst(message);
+            while (ring.messages.size() > capacity) {
+                ring.messages.removeLast();
+            }
+        }
+    }
+
+    // ========== HELPER METHODS ==========
+    private void fill(Ring ring, String roomId) {
+        List<Message> loaded = loadWithPending(roomId, capacity);
+        synchronized (ring) {
+            merge(ring, loaded);
+            ring.loaded = true;
+        }
+    }
+
+    private void merge(Ring ring, List<Message> extra) {
+        List<Message> all = new ArrayList<>(ring.messages);
+        all.addAll(extra);
+        ring.messages.clear();
+        ring.messages.addAll(newest(all, capacity));
+    }
+
+    private List<Message> loadWithPending(String roomId, int limit) {
+        // Lấy tin đang chờ ghi trước rồi mới đọc DB: tin ghi xong giữa hai bước vẫn có ở một trong hai
+        List<Message> all = new ArrayList<>(chatMessageBuffer.pendingFor(roomId));
+        all.addAll(loadFromDb(roomId, limit));
+        return newest(all, limit);
+    }
+
+    private static List<Message> newest(List<Message> messages, int limit) {
+        messages.sort(NEWEST_FIRST);
+        // Cùng một tin có thể vừa ở hàng đợi vừa đọc từ DB (khác đối tượng, cùng id)
+        Set<Long> seenIds = new HashSet<>();
+        Set<Message> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Message> result = new ArrayList<>(Math.min(limit, messages.size()));
+        for (Message message : messages) {
+            boolean fresh = seen.add(message) && (message.getId() == null || seenIds.add(message.getId()));
+            if (fresh && result.size() < limit) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    private List<Message> loadFromDb(String roomId, int limit) {
+        return messageRepository.findByRoomIdOrderByCreatedAtDesc(roomId, PageRequest.of(0, Math.max(1, limit)));
+    }
+}
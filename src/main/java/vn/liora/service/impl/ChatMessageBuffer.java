@@ -0,0 +1,175 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.liora.entity.Message;
+import vn.liora.repository.MessageRepository;
+import vn.liora.service.IChatRoomService;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Ghi tin nhắn chat xuống DB theo lô (write-behind): luồng WebSocket chỉ đưa tin vào hàng đợi,
+ * một tác vụ định kỳ lưu bằng saveAll. DB chậm/lỗi không chặn việc phát tin trong phòng.
+ * - Lô lỗi được giữ lại và thử lại ở lần sau; quá số lần thử thì lưu từng tin, tin nào vẫn lỗi thì bỏ (có log).
+ * - Hàng đợi đầy thì lưu trực tiếp trên luồng gọi (chậm lại thay vì mất tin).
+ * - Khi tắt ứng dụng, xả hết hàng đợi.
+ */
+@Component
+@Slf4j
+public class ChatMessageBuffer {
+
+    private final MessageRepository messageRepository;
+    private final IChatRoomService chatRoomService;
+    private final BlockingQueue<Message> queue;
+    private final int batchSize;
+    private final int maxAttempts;
+
+    // Lô đang chờ thử lại (chỉ ghi từ luồng scheduler / lúc shutdown)
+    private volatile List<Message> retryBatch = List.of();
+    private int retryAttempts;
+    // Lô đang được ghi (đã lấy khỏi hàng đợi nhưng chưa commit)
+    private volatile List<Message> inFlight = List.of();
+
+    private final Counter savedCounter;
+    private final Counter droppedCounter;
+    private final Timer batchTimer;
+
+    public ChatMessageBuffer(MessageRepository messageRepository,
+            IChatRoomService chatRoomService,
+            MeterRegistry meterRegistry,
+            @Value("${chat.persistence.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.persistence.batch-size:200}") int batchSize,
+            @Value("${chat.persistence.max-attempts:5}") int maxAttempts) {
+        this.messageRepository = messageRepository;
+        this.chatRoomService = chatRoomService;
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+
+        Gauge.builder("chat.persistence.queue", queue, BlockingQueue::size)
+                .description("Số tin nhắn chat đang chờ ghi xuống DB")
+                .register(meterRegistry);
+        this.savedCounter = Counter.builder("chat.persistence.saved")
+                .description("Số tin nhắn chat đã ghi xuống DB")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("chat.persistence.dropped")
+                .description("Số tin nhắn chat không ghi được sau khi đã thử lại")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("chat.persistence.batch")
+                .description("Thời gian ghi một lô tin nhắn chat")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Đưa tin vào hàng đợi ghi. createdAt được gán ngay để thời gian hiển thị khớp với DB.
+     */
+    public void enqueue(Message message) {
+        if (message.getCreatedAt() == null) {
+            message.setCreatedAt(OffsetDateTime.now());
+        }
+        if (!queue.offer(message)) {
+            log.warn("Chat persistence queue full, saving message synchronously");
+            messageRepository.save(message);
+            savedCounter.increment();
+            chatRoomService.recordMessages(List.of(message));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.persistence.flush-interval-ms:200}")
+    public synchronized void flush() {
+        if (!retryBatch.isEmpty() && !saveBatch(retryBatch)) {
+            return;
+        }
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            if (!saveBatch(batch)) {
+                return;
+            }
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    /**
+     * Tin của phòng chưa chắc đã có trong DB (đang chờ, đang ghi hoặc chờ thử lại).
+     */
+    public List<Message> pendingFor(String roomId) {
+        List<Message> pending = new ArrayList<>();
+        for (List<Message> batch : List.of(retryBatch, inFlight)) {
+            for (Message message : batch) {
+                if (roomId.equals(message.getRoomId())) pending.add(message);
+            }
+        }
+        for (Message message : queue) {
+            if (roomId.equals(message.getRoomId())) pending.add(message);
+        }
+        return pending;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+        if (!retryBatch.isEmpty() || !queue.isEmpty()) {
+            log.warn("Chat persistence: {} messages not saved at shutdown", retryBatch.size() + queue.size());
+        }
+    }
+
+    // ========== HELPER METHODS ==========
+    /**
+     * Lưu một lô. Trả về false nếu lô được giữ lại để thử lại (dừng lần flush hiện tại).
+     */
+    private boolean saveBatch(List<Message> batch) {
+        inFlight = batch;
+        try {
+            batchTimer.record(() -> messageRepository.saveAll(batch));
+            savedCounter.increment(batch.size());
+            retryBatch = List.of();
+            retryAttempts = 0;
+            chatRoomService.recordMessages(batch);
+            return true;
+        } catch (RuntimeException e) {
+            // IDENTITY đã gán id trước khi transaction rollback: xóa để lần sau là insert mới
+            batch.forEach(message -> message.setId(null));
+            retryAttempts = batch == retryBatch ? retryAttempts + 1 : 1;
+            if (retryAttempts < maxAttempts) {
+                log.warn("Chat persistence: batch of {} failed (attempt {}), will retry: {}",
+                        batch.size(), retryAttempts, e.getMessage());
+                retryBatch = batch;
+                return false;
+            }
+            saveOneByOne(batch);
+            retryBatch = List.of();
+            retryAttempts = 0;
+            return true;
+        } finally {
+            inFlight = List.of();
+        }
+    }
+
+    private void saveOneByOne(List<Message> batch) {
+        List<Message> saved = new ArrayList<>(batch.size());
+        for (Message message : batch) {
+            try {
+                messageRepository.save(message);
+                savedCounter.increment();
+                saved.add(message);
+            } catch (RuntimeException e) {
+                droppedCounter.increment();
+                log.error("Chat persistence: dropping message in room {} from {}: {}",
+                        message.getRoomId(), message.getSenderId(), e.getMessage());
+            }
+        }
+        chatRoomService.recordMessages(saved);
+    }
+}
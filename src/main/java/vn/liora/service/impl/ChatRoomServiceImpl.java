@@ -0,0 +1,282 @@
+package vn.liora.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.liora.dto.response.ChatRoomInfo;
+import vn.liora.entity.ChatRoom;
+import vn.liora.entity.Message;
+import vn.liora.entity.User;
+import vn.liora.repository.ChatRoomRepository;
+import vn.liora.repository.MessageRepository;
+import vn.liora.repository.UserRepository;
+import vn.liora.service.IChatRoomService;
+import vn.liora.websocket.bus.ChatBus;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bảng tóm tắt phòng chat (ChatRoom) cho trang quản trị.
+ * - Ghi: sau mỗi lô tin nhắn đã lưu, cập nhật tin cuối/số chưa đọc bằng một câu UPDATE mỗi phòng;
+ *   phòng mới thì xác định chủ phòng một lần (roomId là userId/username, hoặc người gửi đầu tiên
+ *   không phải nhân viên) rồi thêm dòng.
+ * - Đọc: danh sách phòng là một truy vấn phân trang trên ChatRoom, không tra User từng phòng.
+ * - Mỗi thay đổi được đẩy tới trang quản trị qua kênh ChatBus.ADMIN_INBOX (type ROOM_UPDATE).
+ */
+@Service
+@Slf4j
+public class ChatRoomServiceImpl implements IChatRoomService {
+
+    private static final Set<String> STAFF_ROLES = Set.of("ADMIN", "ROLE_ADMIN", "MANAGER", "ROLE_MANAGER");
+    private static final int PREVIEW_LENGTH = 200;
+
+    private final ChatRoomRepository chatRoomRepository;
+    private final MessageRepository messageRepository;
+    private final UserRepository userRepository;
+    private final ChatUserProfileCache chatUserProfileCache;
+    private final ChatBus chatBus;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public ChatRoomServiceImpl(ChatRoomRepository chatRoomRepository,
+            MessageRepository messageRepository,
+            UserRepository userRepository,
+            ChatUserProfileCache chatUserProfileCache,
+            ChatBus chatBus,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.chatRoomRepository = chatRoomRepository;
+        this.messageRepository = messageRepository;
+        this.userRepository = userRepository;
+        this.chatUserProfileCache = chatUserProfileCache;
+        this.chatBus = chatBus;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // ========== WRITE ==========
+    @Override
+    public void recordMessages(List<Message> savedMessages) {
+        Map<String, List<Message>> byRoom = savedMessages.stream()
+                .filter(m -> m.getRoomId() != null)
+                .sorted(Comparator.comparing(Message::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(Collectors.groupingBy(Message::getRoomId, LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<String, List<Message>> entry : byRoom.entrySet()) {
+            try {
+                recordRoom(entry.getKey(), entry.getValue());
+                publishUpdate(entry.getKey());
+            } catch (Exception e) {
+                // Tin nhắn đã lưu; bảng tóm tắt lệch sẽ được sửa ở tin kế tiếp hoặc khi dựng lại
+                log.error("Failed to update chat room summary for room {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private void recordRoom(String roomId, List<Message> messages) {
+        Message last = messages.get(messages.size() - 1);
+        int lastStaffIndex = -1;
+        for (int i = 0; i < messages.size(); i++) {
+            if (isStaff(messages.get(i).getRole())) lastStaffIndex = i;
+        }
+        boolean resetUnread = lastStaffIndex >= 0;
+        int customerMessages = messages.size() - 1 - lastStaffIndex;
+
+        Integer updated = updateLastMessage(roomId, last, resetUnread, customerMessages);
+        if (updated != null && updated > 0) {
+            return;
+        }
+        ChatRoom room = newRoom(roomId, messages);
+        applyLastMessage(room, last);
+        room.setUnreadCount(customerMessages);
+        try {
+            // ChatRoom.isNew() = true: INSERT, trùng khóa thì báo lỗi ngay khi flush
+            transactionTemplate.executeWithoutResult(status -> chatRoomRepository.saveAndFlush(room));
+        } catch (DataIntegrityViolationException e) {
+            // Phòng vừa được tạo ở luồng/instance khác: cộng vào dòng đó thay vì ghi đè
+            updateLastMessage(roomId, last, resetUnread, customerMessages);
+        }
+    }
+
+    private Integer updateLastMessage(String roomId, Message last, boolean resetUnread, int customerMessages) {
+        return transactionTemplate.execute(status -> chatRoomRepository.recordLastMessage(roomId, last.getId(),
+                preview(last), last.getRole(), last.getCreatedAt(), resetUnread, customerMessages));
+    }
+
+    @Override
+    public void markRead(String roomId) {
+        Integer updated = transactionTemplate.execute(status -> chatRoomRepository.markRead(roomId));
+        if (updated != null && updated > 0) {
+            publishUpdate(roomId);
+        }
+    }
+
+    @Override
+    public void updateOwnerAvatar(Long userId, String avatar) {
+        transactionTemplate.execute(status -> chatRoomRepository.updateOwnerAvatar(userId, avatar));
+    }
+
+    // ========== READ ==========
+    @Override
+    public Page<ChatRoomInfo> findRooms(Pageable pageable) {
+        return chatRoomRepository.findAllByOrderByLastMessageAtDesc(pageable).map(ChatRoomServiceImpl::toInfo);
+    }
+
+    @Override
+    public ChatRoomInfo getRoom(String roomId) {
+        return chatRoomRepository.findById(roomId)
+                .map(ChatRoomServiceImpl::toInfo)
+                .orElse(ChatRoomInfo.builder()
+                        .roomId(roomId)
+                        .displayName(roomId)
+                        .build());
+    }
+
+    // ========== REBUILD ==========
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            if (chatRoomRepository.count() == 0 && messageRepository.count() > 0) {
+                log.info("Chat room summary is empty, rebuilding from messages");
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.error("Failed to backfill chat room summary: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public int rebuild() {
+        List<Message> lastMessages = messageRepository.findAllById(messageRepository.findLastMessageIdPerRoom());
+        Map<String, Long> customerByRoom = new HashMap<>();
+        for (Object[] row : messageRepository.findCustomerSenderPerRoom(STAFF_ROLES)) {
+            customerByRoom.put((String) row[0], ((Number) row[1]).longValue());
+        }
+
+        // Tải một lần tất cả người dùng có thể là chủ phòng
+        Set<Long> userIds = new HashSet<>(customerByRoom.values());
+        for (Message last : lastMessages) {
+            Long id = parseUserId(last.getRoomId());
+            if (id != null) userIds.add(id);
+        }
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getUserId, Function.identity()));
+
+        List<ChatRoom> rooms = new ArrayList<>(lastMessages.size());
+        for (Message last : lastMessages) {
+            String roomId = last.getRoomId();
+            User owner = users.get(parseUserId(roomId));
+            if (owner == null) {
+                owner = users.get(customerByRoom.get(roomId));
+            }
+            ChatRoom room = ChatRoom.builder().roomId(roomId).build();
+            applyOwner(room, owner != null ? ChatUserProfileCache.toProfile(owner) : null);
+            applyLastMessage(room, last);
+            rooms.add(room);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            chatRoomRepository.deleteAllInBatch();
+            chatRoomRepository.saveAll(rooms);
+        });
+        log.info("Rebuilt chat room summary: {} rooms", rooms.size());
+        return rooms.size();
+    }
+
+    // ========== HELPER METHODS ==========
+    /**
+     * Phòng mới: chủ phòng là người dùng có id/username = roomId, nếu không có thì là
+     * người gửi đầu tiên không phải nhân viên.
+     */
+    private ChatRoom newRoom(String roomId, List<Message> messages) {
+        ChatUserProfileCache.Profile owner = null;
+        Long userId = parseUserId(roomId);
+        if (userId != null) {
+            owner = chatUserProfileCache.get(userId);
+        } else {
+            owner = userRepository.findByUsername(roomId).map(ChatUserProfileCache::toProfile).orElse(null);
+        }
+        if (owner == null || owner.getUserId() == null) {
+            owner = messages.stream()
+                    .filter(m -> !isStaff(m.getRole()))
+                    .findFirst()
+                    .map(m -> chatUserProfileCache.get(m.getSenderId()))
+                    .orElse(null);
+        }
+        ChatRoom room = ChatRoom.builder().roomId(roomId).build();
+        applyOwner(room, owner);
+        return room;
+    }
+
+    private static void applyOwner(ChatRoom room, ChatUserProfileCache.Profile owner) {
+        if (owner == null || owner.getUserId() == null) {
+            room.setDisplayName(room.getRoomId());
+            return;
+        }
+        room.setOwnerUserId(owner.getUserId());
+        room.setOwnerUsername(owner.getUsername());
+        room.setOwnerFullName(owner.getFullName());
+        room.setDisplayName(owner.getDisplayName());
+        room.setAvatar(owner.getAvatar());
+    }
+
+    private static void applyLastMessage(ChatRoom room, Message last) {
+        room.setLastMessageId(last.getId());
+        room.setLastMessage(preview(last));
+        room.setLastSenderRole(last.getRole());
+        room.setLastMessageAt(last.getCreatedAt());
+    }
+
+    private void publishUpdate(String roomId) {
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("type", "ROOM_UPDATE");
+            payload.put("room", roomId);
+            payload.put("roomInfo", getRoom(roomId));
+            chatBus.publish(ChatBus.ADMIN_INBOX, objectMapper.writeValueAsString(payload));
+        } catch (Exception e) {
+            log.debug("Failed to push chat room update for {}: {}", roomId, e.getMessage());
+        }
+    }
+
+    private static ChatRoomInfo toInfo(ChatRoom room) {
+        return ChatRoomInfo.builder()
+                .roomId(room.getRoomId())
+                .userId(room.getOwnerUserId())
+                .username(room.getOwnerUsername())
+                .fullName(room.getOwnerFullName())
+                .displayName(room.getDisplayName() != null ? room.getDisplayName() : room.getRoomId())
+                .avatar(room.getAvatar())
+                .lastMessage(room.getLastMessage())
+                .lastMessageAt(room.getLastMessageAt() != null ? room.getLastMessageAt().toString() : null)
+                .unreadCount(room.getUnreadCount())
+                .build();
+    }
+
+    private static String preview(Message message) {
+        String content = message.getContent();
+        if (content == null || content.isBlank()) {
+            return message.getImageUrl() != null ? "[Hình ảnh]" : null;
+        }
+        return content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) : content;
+    }
+
+    private static boolean isStaff(String role) {
+        return role != null && STAFF_ROLES.contains(role);
+    }
+
+    private static Long parseUserId(String roomId) {
+        try {
+            return roomId != null ? Long.parseLong(roomId) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vn.liora.entity.User;
+import vn.liora.repository.UserRepository;
+import vn.liora.util.TtlCache;
+
+import java.time.Duration;
+
+/**
+ * Cache thông tin hiển thị của người gửi tin nhắn chat (avatar, tên), để mỗi tin nhắn
+ * không phải truy vấn User. Đổi avatar thì gọi invalidate(); các thay đổi khác hết hạn theo TTL.
+ */
+@Component
+public class ChatUserProfileCache {
+
+    private final UserRepository userRepository;
+    private final TtlCache<Long, Profile> profiles;
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Profile {
+        private final Long userId;
+        private final String username;
+        private final String fullName;
+        private final String displayName;
+        private final String avatar;
+
+        static final Profile UNKNOWN = new Profile(null, null, null, null, null);
+    }
+
+    public ChatUserProfileCache(UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${chat.profile-cache.max-size:5000}") int maxSize,
+            @Value("${chat.profile-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.profiles = new TtlCache<Long, Profile>(maxSize, Duration.ofSeconds(ttlSeconds))
+                .bindTo(meterRegistry, "chatUserProfile");
+    }
+
+    public Profile get(Long userId) {
+        if (userId == null) {
+            return Profile.UNKNOWN;
+        }
+        // Người dùng không tồn tại cũng được cache (UNKNOWN) để không truy vấn lại mỗi tin nhắn
+        return profiles.get(userId, id -> userRepository.findById(id)
+                .map(ChatUserProfileCache::toProfile)
+                .orElse(Profile.UNKNOWN));
+    }
+
+    public String avatarOf(Long userId) {
+        return get(userId).getAvatar();
+    }
+
+    public void put(User user) {
+        if (user != null && user.getUserId() != null) {
+            profiles.put(user.getUserId(), toProfile(user));
+        }
+    }
+
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            profiles.invalidate(userId);
+        }
+    }
+
+    static Profile toProfile(User user) {
+        String fullName = ((user.getFirstname() != null ? user.getFirstname() : "") + " "
+                + (user.getLastname() != null ? user.getLastname() : "")).trim();
+        String displayName = fullName.isEmpty() ? user.getUsername() : fullName;
+        return new Profile(user.getUserId(), user.getUsername(), fullName, displayName, user.getAvatar());
+    }
+}
@@ -1,24 +1,40 @@
 package vn.liora.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import vn.liora.dto.response.DashboardSnapshotResponse;
 import vn.liora.dto.response.LowStockProductResponse;
+import vn.liora.dto.response.ProductSalesSummaryRow;
 import vn.liora.dto.response.RecentOrderResponse;
+import vn.liora.dto.response.SalesSummaryRow;
 import vn.liora.dto.response.TopCustomerResponse;
 import vn.liora.dto.response.TopProductResponse;
+import vn.liora.entity.Brand;
+import vn.liora.entity.Category;
 import vn.liora.entity.Order;
+import vn.liora.repository.BrandRepository;
+import vn.liora.repository.CategoryRepository;
 import vn.liora.repository.OrderRepository;
 import vn.liora.repository.ReturnRequestRepository;
 import vn.liora.service.*;
+import vn.liora.util.TtlCache;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -36,6 +52,30 @@ public class DashboardServiceImpl implements IDashboardService {
     private IOrderProductService orderProductService;
     @Autowired
     private ReturnRequestRepository returnRequestRepository;
+    @Autowired
+    private ISalesRollupService salesRollupService;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private BrandRepository brandRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private static final String COMPLETED = "COMPLETED";
+    private static final int MAX_TOP_LIMIT = 500;
+
+    // Snapshot theo (khoảng thời gian, số dòng top, phút hiện tại): trong cùng một phút các lần tải
+    // trang/bộ lọc giống nhau dùng chung kết quả
+    private final TtlCache<String, DashboardSnapshotResponse> snapshotCache =
+            new TtlCache<>(64, Duration.ofMinutes(2));
+
+    private static final Set<String> IN_PROGRESS_STATUSES = Set.of("PENDING", "CONFIRMED", "SHIPPING", "DELIVERED");
+
+    @PostConstruct
+    void bindMetrics() {
+        snapshotCache.bindTo(meterRegistry, "dashboardSnapshot");
+    }
 
     @Override
     public BigDecimal getTotalRevenue() {
@@ -45,25 +85,21 @@ public class DashboardServiceImpl implements IDashboardService {
     @Override
     public BigDecimal getTotalRevenueByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
         // Tính tổng doanh thu từ các đơn hàng đã hoàn thành trong khoảng thời gian
-        List<Order> orders = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate, "COMPLETED");
-        return orders.stream()
-                .map(o -> o.getTotal() != null ? o.getTotal() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return sumTotal(salesRollupService.summarize(startDate, endDate), COMPLETED);
     }
 
     @Override
     public long getTotalOrders() {
-        return orderService.getOrdersByOrderStatus("COMPLETED").size()
-                + orderService.getOrdersByOrderStatus("PENDING").size() +
-                orderService.getOrdersByOrderStatus("CONFIRMED").size()
-                + orderService.getOrdersByOrderStatus("CANCELLED").size();
+        return orderRepository.countByOrderStatus("COMPLETED")
+                + orderRepository.countByOrderStatus("PENDING")
+                + orderRepository.countByOrderStatus("CONFIRMED")
+                + orderRepository.countByOrderStatus("CANCELLED");
     }
 
     @Override
     public long getTotalOrdersByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
         // Đếm tổng số đơn hàng đã COMPLETED trong khoảng thời gian
-        List<Order> orders = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate, "COMPLETED");
-        return orders.size();
+        return countOrders(salesRollupService.summarize(startDate, endDate), COMPLETED);
     }
 
     @Override
@@ -79,18 +115,12 @@ public class DashboardServiceImpl implements IDashboardService {
     @Override
     public long getTotalCustomersByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
         // Đếm tổng số khách hàng CÓ ĐƠN HÀNG trong khoảng thời gian
-        List<Order> ordersInRange = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate,
-                "COMPLETED");
-        return ordersInRange.stream()
-                .map(o -> o.getUser() != null ? o.getUser().getUserId() : null)
-                .filter(userId -> userId != null)
-                .distinct()
-                .count();
+        return orderRepository.countOrdersPerCustomer(startDate, endDate, COMPLETED).size();
     }
 
     @Override
     public long getPendingOrders() {
-        return orderService.getOrdersByOrderStatus("PENDING").size();
+        return orderRepository.countByOrderStatus("PENDING");
     }
 
     @Override
@@ -264,20 +294,28 @@ public class DashboardServiceImpl implements IDashboardService {
 
     @Override
     public Map<String, Double> getRevenueByCategory(LocalDateTime startDate, LocalDateTime endDate) {
-        Map<String, Double> data = new LinkedHashMap<>();
-        List<Object[]> results = orderProductService.getRevenueByCategory(startDate, endDate);
-        for (Object[] row : results)
-            data.put((String) row[0], ((Number) row[1]).doubleValue());
-        return data;
+        Map<Long, BigDecimal> revenueById = new HashMap<>();
+        for (ProductSalesSummaryRow row : salesRollupService.summarizeProducts(startDate, endDate)) {
+            if (row.getCategoryId() != null && row.getCategoryId() > 0) {
+                revenueById.merge(row.getCategoryId(), orZero(row.getRevenue()), BigDecimal::add);
+            }
+        }
+        Map<Long, String> names = categoryRepository.findAllById(revenueById.keySet()).stream()
+                .collect(Collectors.toMap(Category::getCategoryId, Category::getName));
+        return revenueByName(revenueById, names);
     }
 
     @Override
     public Map<String, Double> getRevenueByBrand(LocalDateTime startDate, LocalDateTime endDate) {
-        Map<String, Double> data = new LinkedHashMap<>();
-        List<Object[]> results = orderProductService.getRevenueByBrand(startDate, endDate);
-        for (Object[] row : results)
-            data.put((String) row[0], ((Number) row[1]).doubleValue());
-        return data;
+        Map<Long, BigDecimal> revenueById = new HashMap<>();
+        for (ProductSalesSummaryRow row : salesRollupService.summarizeProducts(startDate, endDate)) {
+            if (row.getBrandId() != null && row.getBrandId() > 0) {
+                revenueById.merge(row.getBrandId(), orZero(row.getRevenue()), BigDecimal::add);
+            }
+        }
+        Map<Long, String> names = brandRepository.findAllById(revenueById.keySet()).stream()
+                .collect(Collectors.toMap(Brand::getBrandId, Brand::getName));
+        return revenueByName(revenueById, names);
     }
 
     @Override
@@ -302,30 +340,16 @@ public class DashboardServiceImpl implements IDashboardService {
 
     @Override
     public double getReturningCustomersByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        // Khách hàng đã đặt đơn trong khoảng thời gian (chỉ tính orders đã COMPLETED)
-        List<Order> ordersInRange = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate,
-                "COMPLETED");
-
-        // Tổng số khách hàng có đơn hàng (tính trong khoảng thời gian)
-        long totalCustomersInRange = ordersInRange.stream()
-                .map(o -> o.getUser() != null ? o.getUser().getUserId() : null)
-                .filter(userId -> userId != null)
-                .distinct()
-                .count();
-
-        if (totalCustomersInRange == 0) {
+        // Số đơn COMPLETED của từng khách hàng trong khoảng thời gian
+        List<Long> ordersPerCustomer = orderRepository.countOrdersPerCustomer(startDate, endDate, COMPLETED);
+        if (ordersPerCustomer.isEmpty()) {
             return 0;
         }
 
         // Khách hàng quay lại = khách hàng có > 1 đơn hàng trong khoảng thời gian
-        long returningCustomers = ordersInRange.stream()
-                .collect(Collectors.groupingBy(o -> o.getUser() != null ? o.getUser().getUserId() : null))
-                .values()
-                .stream()
-                .filter(orderList -> orderList.size() > 1)
-                .count();
+        long returningCustomers = ordersPerCustomer.stream().filter(count -> count > 1).count();
 
-        return ((double) returningCustomers / totalCustomersInRange) * 100;
+        return ((double) returningCustomers / ordersPerCustomer.size()) * 100;
     }
 
     @Override
@@ -337,53 +361,34 @@ public class DashboardServiceImpl implements IDashboardService {
     public List<TopCustomerResponse> getTopCustomersByDateRange(int limit, LocalDateTime startDate,
             LocalDateTime endDate) {
         // Lấy top khách hàng chi tiêu cao nhất trong khoảng thời gian (chỉ tính orders
-        // đã COMPLETED)
-        List<Order> ordersInRange = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate,
-                "COMPLETED");
-
-        // Group by user and calculate total spent
-        Map<Long, TopCustomerResponse> customerMap = new LinkedHashMap<>();
-
-        for (Order order : ordersInRange) {
-            if (order.getUser() == null || order.getTotal() == null) {
-                continue;
+        // đã COMPLETED), gom nhóm ngay trong câu truy vấn
+        List<Object[]> rows = orderRepository.findTopSpendersByDateRange(startDate, endDate,
+                PageRequest.of(0, Math.max(1, limit)));
+        List<TopCustomerResponse> customers = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            // Handle null firstname and lastname
+            String firstName = row[1] != null ? (String) row[1] : "";
+            String lastName = row[2] != null ? (String) row[2] : "";
+            String fullName = (firstName + " " + lastName).trim();
+            if (fullName.isEmpty()) {
+                fullName = row[3] != null ? (String) row[3] : "Không có tên";
             }
 
-            Long userId = order.getUser().getUserId();
-            if (!customerMap.containsKey(userId)) {
-                // Handle null firstname and lastname
-                String firstName = order.getUser().getFirstname() != null ? order.getUser().getFirstname() : "";
-                String lastName = order.getUser().getLastname() != null ? order.getUser().getLastname() : "";
-                String fullName = (firstName + " " + lastName).trim();
-                if (fullName.isEmpty()) {
-                    fullName = order.getUser().getUsername() != null ? order.getUser().getUsername() : "Không có tên";
-                }
-
-                // Handle null email
-                String email = order.getUser().getEmail();
-                if (email == null || email.isEmpty()) {
-                    email = "N/A";
-                }
-
-                customerMap.put(userId, TopCustomerResponse.builder()
-                        .userId(userId)
-                        .fullName(fullName)
-                        .email(email)
-                        .ordersCount(0L)
-                        .totalSpent(BigDecimal.ZERO)
-                        .build());
+            // Handle null email
+            String email = (String) row[4];
+            if (email == null || email.isEmpty()) {
+                email = "N/A";
             }
 
-            TopCustomerResponse customer = customerMap.get(userId);
-            customer.setOrdersCount(customer.getOrdersCount() + 1);
-            customer.setTotalSpent(customer.getTotalSpent().add(order.getTotal()));
+            customers.add(TopCustomerResponse.builder()
+                    .userId((Long) row[0])
+                    .fullName(fullName)
+                    .email(email)
+                    .ordersCount(((Number) row[5]).longValue())
+                    .totalSpent((BigDecimal) row[6])
+                    .build());
         }
-
-        // Sort by total spent descending and limit
-        return customerMap.values().stream()
-                .sorted((a, b) -> b.getTotalSpent().compareTo(a.getTotalSpent()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        return customers;
     }
 
     @Override
@@ -422,33 +427,30 @@ public class DashboardServiceImpl implements IDashboardService {
 
     @Override
     public long countSoldBrandsByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        return orderProductService.countSoldBrandsByDateRange(startDate, endDate);
+        return salesRollupService.summarizeProducts(startDate, endDate).stream()
+                .filter(row -> COMPLETED.equals(row.getOrderStatus()))
+                .filter(row -> row.getBrandId() != null && row.getBrandId() > 0)
+                .filter(row -> row.getQuantity() != null && row.getQuantity() > 0)
+                .map(ProductSalesSummaryRow::getBrandId)
+                .distinct()
+                .count();
     }
 
     @Override
     public BigDecimal getGrossRevenue(LocalDateTime startDate, LocalDateTime endDate) {
         // Gross Revenue = Subtotal + Shipping Fee = Total + Voucher + Xu
-        List<Order> orders = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate, "COMPLETED");
-        return orders.stream()
-                .map(o -> {
-                    BigDecimal total = o.getTotal() != null ? o.getTotal() : BigDecimal.ZERO;
-                    BigDecimal discount = o.getTotalDiscount() != null ? o.getTotalDiscount() : BigDecimal.ZERO;
-                    BigDecimal xuUsed = o.getXuUsed() != null ? o.getXuUsed() : BigDecimal.ZERO;
-                    return total.add(discount).add(xuUsed);
-                })
+        return salesRollupService.summarize(startDate, endDate).stream()
+                .filter(row -> COMPLETED.equals(row.getOrderStatus()))
+                .map(row -> orZero(row.getTotal()).add(orZero(row.getDiscount())).add(orZero(row.getXuUsed())))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
     @Override
     public BigDecimal getMarketingSpend(LocalDateTime startDate, LocalDateTime endDate) {
         // Marketing Spend = Voucher + Xu
-        List<Order> orders = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate, "COMPLETED");
-        return orders.stream()
-                .map(o -> {
-                    BigDecimal discount = o.getTotalDiscount() != null ? o.getTotalDiscount() : BigDecimal.ZERO;
-                    BigDecimal xuUsed = o.getXuUsed() != null ? o.getXuUsed() : BigDecimal.ZERO;
-                    return discount.add(xuUsed);
-                })
+        return salesRollupService.summarize(startDate, endDate).stream()
+                .filter(row -> COMPLETED.equals(row.getOrderStatus()))
+                .map(row -> orZero(row.getDiscount()).add(orZero(row.getXuUsed())))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
@@ -460,22 +462,20 @@ public class DashboardServiceImpl implements IDashboardService {
 
     @Override
     public BigDecimal getAverageOrderValue(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Order> orders = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate, "COMPLETED");
-        if (orders.isEmpty()) {
+        List<SalesSummaryRow> rows = salesRollupService.summarize(startDate, endDate);
+        long orderCount = countOrders(rows, COMPLETED);
+        if (orderCount == 0) {
             return BigDecimal.ZERO;
         }
-        BigDecimal totalRevenue = orders.stream()
-                .map(o -> o.getTotal() != null ? o.getTotal() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        return totalRevenue.divide(BigDecimal.valueOf(orders.size()), 2, java.math.RoundingMode.HALF_UP);
+        BigDecimal totalRevenue = sumTotal(rows, COMPLETED);
+        return totalRevenue.divide(BigDecimal.valueOf(orderCount), 2, RoundingMode.HALF_UP);
     }
 
     @Override
     public double getReturnRate(LocalDateTime startDate, LocalDateTime endDate) {
         // Đếm số đơn hàng đã hoàn thành trong khoảng thời gian
-        List<Order> completedOrders = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate,
-                "COMPLETED");
-        if (completedOrders.isEmpty()) {
+        long completedOrders = countOrders(salesRollupService.summarize(startDate, endDate), COMPLETED);
+        if (completedOrders == 0) {
             return 0.0;
         }
 
@@ -484,62 +484,44 @@ public class DashboardServiceImpl implements IDashboardService {
                 .findByStatusAndDateRange("ACCEPTED", startDate, endDate);
         long returnedOrdersCount = acceptedReturns.size();
 
-        return ((double) returnedOrdersCount / completedOrders.size()) * 100.0;
+        return ((double) returnedOrdersCount / completedOrders) * 100.0;
     }
 
     @Override
     public Map<String, BigDecimal> getRevenueByPaymentMethod(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Order> orders = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate, "COMPLETED");
-        return orders.stream()
+        return salesRollupService.summarize(startDate, endDate).stream()
+                .filter(row -> COMPLETED.equals(row.getOrderStatus()))
                 .collect(Collectors.groupingBy(
-                        o -> o.getPaymentMethod() != null ? o.getPaymentMethod() : "UNKNOWN",
+                        row -> row.getPaymentMethod() != null ? row.getPaymentMethod() : "UNKNOWN",
                         Collectors.reducing(
                                 BigDecimal.ZERO,
-                                o -> o.getTotal() != null ? o.getTotal() : BigDecimal.ZERO,
+                                row -> orZero(row.getTotal()),
                                 BigDecimal::add)));
     }
 
     @Override
     public Map<String, Long> getOrderStatusDistribution(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Order> orders = orderRepository.findByOrderDateBetween(startDate, endDate);
-        return orders.stream()
+        return salesRollupService.summarize(startDate, endDate).stream()
+                .filter(row -> row.getOrderCount() != null && row.getOrderCount() > 0)
                 .collect(Collectors.groupingBy(
-                        o -> o.getOrderStatus() != null ? o.getOrderStatus() : "UNKNOWN",
-                        Collectors.counting()));
+                        row -> row.getOrderStatus() != null ? row.getOrderStatus() : "UNKNOWN",
+                        Collectors.summingLong(SalesSummaryRow::getOrderCount)));
     }
 
     @Override
     public double getRepeatPurchaseRate(LocalDateTime startDate, LocalDateTime endDate) {
-        // Đếm số khách hàng có từ 2 đơn hàng COMPLETED trở lên trong khoảng thời gian
-        List<Order> completedOrders = orderRepository.findByOrderDateBetweenAndOrderStatus(startDate, endDate,
-                "COMPLETED");
-        if (completedOrders.isEmpty()) {
-            return 0.0;
-        }
-
-        // Đếm số khách hàng unique
-        long totalCustomers = completedOrders.stream()
-                .map(o -> o.getUser() != null ? o.getUser().getUserId() : null)
-                .filter(userId -> userId != null)
-                .distinct()
-                .count();
-
-        if (totalCustomers == 0) {
+        // Số đơn COMPLETED của từng khách hàng (chỉ khách đã đăng nhập)
+        List<Long> ordersPerCustomer = orderRepository.countOrdersPerCustomer(startDate, endDate, COMPLETED);
+        if (ordersPerCustomer.isEmpty()) {
             return 0.0;
         }
 
         // Đếm số khách hàng có từ 2 đơn hàng trở lên
-        Map<Long, Long> customerOrderCount = completedOrders.stream()
-                .filter(o -> o.getUser() != null)
-                .collect(Collectors.groupingBy(
-                        o -> o.getUser().getUserId(),
-                        Collectors.counting()));
-
-        long repeatCustomers = customerOrderCount.values().stream()
+        long repeatCustomers = ordersPerCustomer.stream()
                 .filter(count -> count >= 2)
                 .count();
 
-        return ((double) repeatCustomers / totalCustomers) * 100.0;
+        return ((double) repeatCustomers / ordersPerCustomer.size()) * 100.0;
     }
 
     @Override
@@ -547,43 +529,30 @@ public class DashboardServiceImpl implements IDashboardService {
         // Tính nguồn thu dự kiến: tổng giá trị các đơn hàng đang xử lý (chưa hoàn
         // thành)
         // Các trạng thái: PENDING, CONFIRMED, SHIPPING, DELIVERED
-        List<Order> allOrders = orderRepository.findByOrderDateBetween(startDate, endDate);
-
-        BigDecimal expectedRevenue = allOrders.stream()
-                .filter(o -> {
-                    String status = o.getOrderStatus();
-                    // Chỉ tính các đơn hàng đang xử lý, chưa hoàn thành
-                    return "PENDING".equals(status)
-                            || "CONFIRMED".equals(status)
-                            || "SHIPPING".equals(status)
-                            || "DELIVERED".equals(status);
-                })
-                .map(o -> o.getTotal() != null ? o.getTotal() : BigDecimal.ZERO)
+        return salesRollupService.summarize(startDate, endDate).stream()
+                .filter(row -> IN_PROGRESS_STATUSES.contains(row.getOrderStatus()))
+                .map(row -> orZero(row.getTotal()))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        return expectedRevenue;
     }
 
     @Override
     public BigDecimal getThisWeekRevenue() {
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startOfWeek = now.minusDays(now.getDayOfWeek().getValue() - 1).withHour(0).withMinute(0)
-                .withSecond(0);
+        LocalDateTime startOfWeek = now.toLocalDate().minusDays(now.getDayOfWeek().getValue() - 1).atStartOfDay();
         return getTotalRevenueByDateRange(startOfWeek, now);
     }
 
     @Override
     public BigDecimal getThisMonthRevenue() {
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startOfMonth = now.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0);
+        LocalDateTime startOfMonth = now.toLocalDate().withDayOfMonth(1).atStartOfDay();
         return getTotalRevenueByDateRange(startOfMonth, now);
     }
 
     @Override
     public long getTodayOrders() {
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startOfDay = now.withHour(0).withMinute(0).withSecond(0);
-        return orderRepository.findByOrderDateBetweenAndOrderStatus(startOfDay, now, "COMPLETED").size();
+        return getTotalOrdersByDateRange(now.toLocalDate().atStartOfDay(), now);
     }
 
     @Override
@@ -595,6 +564,121 @@ public class DashboardServiceImpl implements IDashboardService {
 
     @Override
     public long getConfirmedOrders() {
-        return orderService.getOrdersByOrderStatus("CONFIRMED").size();
+        return orderRepository.countByOrderStatus("CONFIRMED");
+    }
+
+    // ========== SNAPSHOT ==========
+    @Override
+    public DashboardSnapshotResponse getSnapshot(LocalDateTime startDate, LocalDateTime endDate, int topLimit) {
+        int limit = Math.max(1, Math.min(topLimit, MAX_TOP_LIMIT));
+        long minute = System.currentTimeMillis() / 60_000;
+        String key = startDate + "|" + endDate + "|" + limit + "|" + minute;
+        return snapshotCache.get(key, k -> buildSnapshot(startDate, endDate, limit));
+    }
+
+    private DashboardSnapshotResponse buildSnapshot(LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        // Một lượt qua các nhóm (trạng thái × PTTT) cho mọi chỉ số doanh thu/đơn hàng
+        long completedOrders = 0;
+        BigDecimal completedTotal = BigDecimal.ZERO;
+        BigDecimal completedDiscount = BigDecimal.ZERO;
+        BigDecimal completedXu = BigDecimal.ZERO;
+        BigDecimal inProgressTotal = BigDecimal.ZERO;
+        Map<String, BigDecimal> byPaymentMethod = new HashMap<>();
+        Map<String, Long> byStatus = new HashMap<>();
+        for (SalesSummaryRow row : salesRollupService.summarize(startDate, endDate)) {
+            long count = row.getOrderCount() != null ? row.getOrderCount() : 0L;
+            String status = row.getOrderStatus() != null ? row.getOrderStatus() : "UNKNOWN";
+            if (count > 0) {
+                byStatus.merge(status, count, Long::sum);
+            }
+            if (COMPLETED.equals(status)) {
+                completedOrders += count;
+                completedTotal = completedTotal.add(orZero(row.getTotal()));
+                completedDiscount = completedDiscount.add(orZero(row.getDiscount()));
+                completedXu = completedXu.add(orZero(row.getXuUsed()));
+                byPaymentMethod.merge(row.getPaymentMethod() != null ? row.getPaymentMethod() : "UNKNOWN",
+                        orZero(row.getTotal()), BigDecimal::add);
+            } else if (IN_PROGRESS_STATUSES.contains(status)) {
+                inProgressTotal = inProgressTotal.add(orZero(row.getTotal()));
+            }
+        }
+
+        long brandsSold = salesRollupService.summarizeProducts(startDate, endDate).stream()
+                .filter(row -> COMPLETED.equals(row.getOrderStatus()))
+                .filter(row -> row.getBrandId() != null && row.getBrandId() > 0)
+                .filter(row -> row.getQuantity() != null && row.getQuantity() > 0)
+                .map(ProductSalesSummaryRow::getBrandId)
+                .distinct()
+                .count();
+
+        // Số đơn của từng khách: dùng chung cho khách có đơn, khách quay lại và mua lặp lại
+        List<Long> ordersPerCustomer = orderRepository.countOrdersPerCustomer(startDate, endDate, COMPLETED);
+        long repeatCustomers = ordersPerCustomer.stream().filter(count -> count >= 2).count();
+        double repeatRate = ordersPerCustomer.isEmpty() ? 0.0
+                : ((double) repeatCustomers / ordersPerCustomer.size()) * 100.0;
+
+        long acceptedReturns = completedOrders == 0 ? 0
+                : returnRequestRepository.findByStatusAndDateRange("ACCEPTED", startDate, endDate).size();
+
+        return DashboardSnapshotResponse.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .generatedAt(LocalDateTime.now())
+                .totalRevenue(completedTotal)
+                .netRevenue(completedTotal)
+                .grossRevenue(completedTotal.add(completedDiscount).add(completedXu))
+                .marketingSpend(completedDiscount.add(completedXu))
+                .averageOrderValue(completedOrders == 0 ? BigDecimal.ZERO
+                        : completedTotal.divide(BigDecimal.valueOf(completedOrders), 2,
+                                RoundingMode.HALF_UP))
+                .revenuePerCustomer(inProgressTotal)
+                .revenueByPaymentMethod(byPaymentMethod)
+                .totalOrders(completedOrders)
+                .orderStatusDistribution(byStatus)
+                .returnRate(completedOrders == 0 ? 0.0 : ((double) acceptedReturns / completedOrders) * 100.0)
+                .totalCustomers(ordersPerCustomer.size())
+                .newCustomers(userService.countNewCustomersByDateRange(startDate, endDate))
+                .returningCustomers(repeatRate)
+                .repeatPurchaseRate(repeatRate)
+                .topCustomers(getTopCustomersByDateRange(limit, startDate, endDate))
+                .totalProductsSold(orderProductService.countSoldProductsByDateRange(startDate, endDate))
+                .totalBrandsSold(brandsSold)
+                .topProducts(getTopProductsByDateRange(limit, startDate, endDate))
+                .build();
+    }
+
+    // ========== HELPER METHODS ==========
+    private static long countOrders(List<SalesSummaryRow> rows, String status) {
+        return rows.stream()
+                .filter(row -> status.equals(row.getOrderStatus()))
+                .mapToLong(row -> row.getOrderCount() != null ? row.getOrderCount() : 0L)
+                .sum();
+    }
+
+    private static BigDecimal sumTotal(List<SalesSummaryRow> rows, String status) {
+        return rows.stream()
+                .filter(row -> status.equals(row.getOrderStatus()))
+                .map(row -> orZero(row.getTotal()))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    // Gộp theo tên (hai danh mục/thương hiệu trùng tên được cộng chung), sắp xếp doanh thu giảm dần
+    private static Map<String, Double> revenueByName(Map<Long, BigDecimal> revenueById, Map<Long, String> names) {
+        Map<String, BigDecimal> byName = new HashMap<>();
+        revenueById.forEach((id, revenue) -> {
+            String name = names.get(id);
+            if (name != null) {
+                byName.merge(name, revenue, BigDecimal::add);
+            }
+        });
+        Map<String, Double> data = new LinkedHashMap<>();
+        byName.entrySet().stream()
+                .sorted(Map.Entry.<String, BigDecimal>comparingByValue().reversed())
+                .forEach(e -> data.put(e.getKey(), e.getValue().doubleValue()));
+        return data;
     }
 }
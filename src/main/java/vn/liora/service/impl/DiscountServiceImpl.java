@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import vn.liora.dto.request.DiscountCreationRequest;
 import vn.liora.dto.request.DiscountUpdateRequest;
 import vn.liora.dto.response.DiscountResponse;
@@ -281,11 +282,11 @@ public class DiscountServiceImpl implements IDiscountService {
     }
     
     // ========== ORDER DISCOUNT MANAGEMENT ==========
+    @Transactional
     public void incrementUsageCount(Long discountId) {
-        Discount discount = discountRepository.findById(discountId)
-                .orElseThrow(() -> new AppException(ErrorCode.DISCOUNT_NOT_FOUND));
-        discount.setUsedCount(discount.getUsedCount() + 1);
-        discountRepository.save(discount);
+        if (discountRepository.incrementUsedCount(discountId) == 0) {
+            throw new AppException(ErrorCode.DISCOUNT_NOT_FOUND);
+        }
     }
     
     @Override
@@ -0,0 +1,261 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.liora.entity.EmailOutbox;
+import vn.liora.enums.EmailOutboxStatus;
+import vn.liora.enums.EmailTemplate;
+import vn.liora.repository.EmailOutboxRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gửi email từ bảng EmailOutbox theo lô. Mỗi lô dùng chung một kết nối SMTP
+ * (JavaMailSender.send(SimpleMailMessage...)), email lỗi được thử lại với backoff tăng gấp đôi,
+ * quá số lần thử thì chuyển sang DEAD. Mỗi template có giới hạn số email/phút riêng (tính trên từng instance)
+ * và được lấy riêng theo phần hạn mức còn lại, nên template đang bị giới hạn không chặn OTP hay email đơn hàng.
+ * Email được nhận (SENDING + ClaimToken) trước khi gửi, nhiều instance cùng chạy không gửi trùng.
+ * Chạy thử với SMTP giả lập cục bộ (MailHog, GreenMail...) bằng spring.mail.host/port.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "email.outbox.dispatcher.enabled", havingValue = "true", matchIfMissing = true)
+public class EmailOutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final List<EmailOutboxStatus> CLAIMABLE =
+            List.of(EmailOutboxStatus.PENDING, EmailOutboxStatus.SENDING);
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final JavaMailSender mailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final int ratePerMinute;
+    private final int retentionDays;
+    private final Duration claimTimeout;
+
+    // Cửa sổ đếm theo phút cho từng template (chỉ truy cập từ luồng scheduler)
+    private final Map<EmailTemplate, long[]> rateWindows = new EnumMap<>(EmailTemplate.class);
+
+    private final AtomicLong pendingDepth = new AtomicLong();
+    private final AtomicLong deadDepth = new AtomicLong();
+    private final Timer batchTimer;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+            JavaMailSender mailSender,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${email.outbox.batch-size:50}") int batchSize,
+            @Value("${email.outbox.max-attempts:6}") int maxAttempts,
+            @Value("${email.outbox.backoff-seconds:30}") long backoffSeconds,
+            @Value("${email.outbox.max-backoff-seconds:3600}") long maxBackoffSeconds,
+            @Value("${email.outbox.rate-per-minute:120}") int ratePerMinute,
+            @Value("${email.outbox.retention-days:30}") int retentionDays,
+            @Value("${email.outbox.claim-timeout-seconds:300}") long claimTimeoutSeconds) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.mailSender = mailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoff = Duration.ofSeconds(backoffSeconds);
+        this.maxBackoff = Duration.ofSeconds(maxBackoffSeconds);
+        this.ratePerMinute = ratePerMinute;
+        this.retentionDays = retentionDays;
+        this.claimTimeout = Duration.ofSeconds(claimTimeoutSeconds);
+
+        Gauge.builder("email.outbox.depth", pendingDepth, AtomicLong::get)
+                .tag("status", "pending")
+                .description("Số email đang chờ gửi")
+                .register(meterRegistry);
+        Gauge.builder("email.outbox.depth", deadDepth, AtomicLong::get)
+                .tag("status", "dead")
+                .description("Số email đã hết lượt thử")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("email.outbox.batch")
+                .description("Thời gian gửi một lô email")
+                .register(meterRegistry);
+    }
+
+    // ========== DISPATCH ==========
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            String token = UUID.randomUUID().toString();
+            boolean claimedAny = false;
+            for (EmailTemplate template : EmailTemplate.values()) {
+                int budget = Math.min(batchSize, remainingQuota(template, now));
+                if (budget <= 0) {
+                    continue;
+                }
+                List<Long> dueIds = emailOutboxRepository.findDueIds(template, CLAIMABLE, now,
+                        PageRequest.of(0, budget));
+                if (dueIds.isEmpty()) {
+                    continue;
+                }
+                int claimed = transactionTemplate.execute(status -> emailOutboxRepository.claim(dueIds, CLAIMABLE,
+                        now, EmailOutboxStatus.SENDING, token, now.plus(claimTimeout)));
+                consumeQuota(template, claimed);
+                claimedAny |= claimed > 0;
+            }
+            List<EmailOutbox> batch = claimedAny ? emailOutboxRepository.findByClaimToken(token) : List.of();
+            if (!batch.isEmpty()) {
+                batchTimer.record(() -> sendBatch(batch));
+            }
+            pendingDepth.set(emailOutboxRepository.countByStatus(EmailOutboxStatus.PENDING));
+            deadDepth.set(emailOutboxRepository.countByStatus(EmailOutboxStatus.DEAD));
+        } catch (Exception e) {
+            log.error("Email outbox dispatch failed: {}", e.getMessage());
+        }
+    }
+
+    private void sendBatch(List<EmailOutbox> batch) {
+        SimpleMailMessage[] messages = new SimpleMailMessage[batch.size()];
+        Map<SimpleMailMessage, EmailOutbox> byMessage = new IdentityHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            EmailOutbox email = batch.get(i);
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setTo(email.getRecipient());
+            message.setSubject(email.getSubject());
+            message.setText(email.getBody());
+            messages[i] = message;
+            byMessage.put(message, email);
+        }
+
+        Map<EmailOutbox, Exception> failures = new IdentityHashMap<>();
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            if (failed.isEmpty()) {
+                batch.forEach(email -> failures.put(email, e));
+            } else {
+                failed.forEach((message, cause) -> {
+                    EmailOutbox email = byMessage.get(message);
+                    if (email != null) {
+                        failures.put(email, cause);
+                    }
+                });
+            }
+        } catch (MailException e) {
+            // Lỗi kết nối/xác thực: cả lô chưa được gửi
+            batch.forEach(email -> failures.put(email, e));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (EmailOutbox email : batch) {
+            Exception failure = failures.get(email);
+            if (failure == null) {
+                email.setStatus(EmailOutboxStatus.SENT);
+                email.setClaimToken(null);
+                email.setSentDate(now);
+                email.setLastError(null);
+                record(email, "sent");
+            } else {
+                markFailed(email, failure, now);
+            }
+        }
+        emailOutboxRepository.saveAll(batch);
+        if (!failures.isEmpty()) {
+            log.warn("Email outbox: {}/{} emails failed in batch", failures.size(), batch.size());
+        }
+    }
+
+    private void markFailed(EmailOutbox email, Exception failure, LocalDateTime now) {
+        int attempts = email.getAttempts() + 1;
+        email.setAttempts(attempts);
+        email.setClaimToken(null);
+        String error = String.valueOf(failure.getMessage());
+        email.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        if (attempts >= maxAttempts) {
+            email.setStatus(EmailOutboxStatus.DEAD);
+            log.error("Email {} ({}) to {} moved to dead letter after {} attempts: {}",
+                    email.getEmailId(), email.getTemplate(), email.getRecipient(), attempts, error);
+            record(email, "dead");
+        } else {
+            email.setStatus(EmailOutboxStatus.PENDING);
+            email.setNextAttemptAt(now.plus(backoff(attempts)));
+            record(email, "retry");
+        }
+    }
+
+    // ========== MAINTENANCE ==========
+    /**
+     * Xóa email đã gửi quá thời gian lưu giữ, giữ bảng outbox nhỏ.
+     */
+    @Scheduled(cron = "${email.outbox.purge-cron:0 30 3 * * *}")
+    @Transactional
+    public void purgeSent() {
+        int deleted = emailOutboxRepository.deleteSentBefore(EmailOutboxStatus.SENT,
+                LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            log.info("Email outbox: purged {} sent emails", deleted);
+        }
+    }
+
+    // ========== HELPER METHODS ==========
+    private Duration backoff(int attempts) {
+        Duration delay = baseBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    /**
+     * Số email template còn được gửi trong phút hiện tại; email vượt giới hạn vẫn ở PENDING cho lần sau.
+     */
+    private int remainingQuota(EmailTemplate template, LocalDateTime now) {
+        if (ratePerMinute <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        long[] window = rateWindow(template, now);
+        return (int) Math.max(0, ratePerMinute - window[1]);
+    }
+
+    private void consumeQuota(EmailTemplate template, int count) {
+        if (ratePerMinute > 0) {
+            rateWindows.get(template)[1] += count;
+        }
+    }
+
+    private long[] rateWindow(EmailTemplate template, LocalDateTime now) {
+        long minute = now.toEpochSecond(ZoneOffset.UTC) / 60;
+        long[] window = rateWindows.computeIfAbsent(template, t -> new long[2]);
+        if (window[0] != minute) {
+            window[0] = minute;
+            window[1] = 0;
+        }
+        return window;
+    }
+
+    private void record(EmailOutbox email, String outcome) {
+        Counter.builder("email.outbox.dispatched")
+                .description("Số email đã xử lý theo kết quả")
+                .tag("template", email.getTemplate().name())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
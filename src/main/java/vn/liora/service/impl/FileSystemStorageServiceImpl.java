@@ -8,6 +8,7 @@ import org.springframework.web.multipart.MultipartFile;
 import vn.liora.config.StorageProperties;
 import vn.liora.exception.StorageException;
 import vn.liora.service.IStorageService;
+import vn.liora.util.ImageVariants;
 
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -37,6 +38,11 @@ public class FileSystemStorageServiceImpl implements IStorageService {
         Path destinationFile =
                 rootLocation.resolve(Paths.get(storeFilename)).normalize().toAbsolutePath();
         Files.delete(destinationFile);
+        // Xóa luôn các bản WebP/AVIF đi kèm (abc.jpg.webp...)
+        for (String format : ImageVariants.MODERN_FORMATS) {
+            Files.deleteIfExists(destinationFile.resolveSibling(
+                    ImageVariants.variantName(destinationFile.getFileName().toString(), format)));
+        }
     }
 
     @Override
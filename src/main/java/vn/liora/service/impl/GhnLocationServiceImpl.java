@@ -1,10 +1,17 @@
 package vn.liora.service.impl;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import vn.liora.dto.response.GhnApiResponse;
@@ -13,14 +20,36 @@ import vn.liora.dto.response.GhnProvinceResponse;
 import vn.liora.dto.response.GhnWardResponse;
 import vn.liora.service.IGhnLocationService;
 
-import java.util.List;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Danh mục tỉnh/quận/phường của GHN. Dữ liệu gần như không đổi nên được giữ trong bộ nhớ:
+ * - Khi khởi động nạp từ file snapshot (JSON nén gzip); chưa có file thì tải toàn bộ từ GHN ở nền.
+ * - Làm mới hằng đêm: tải lại, so sánh với bản đang dùng, chỉ thay (và ghi file) khi có thay đổi.
+ *   Tỉnh/quận nào tải lỗi thì giữ dữ liệu cũ của tỉnh/quận đó.
+ * - Mỗi bản có một version (hash nội dung) dùng làm ETag cho /api/ghn/*.
+ * Khi chưa có snapshot (lần chạy đầu), các lệnh đọc gọi thẳng GHN như trước.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class GhnLocationServiceImpl implements IGhnLocationService {
 
     private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor refreshExecutor;
+    private final Path snapshotFile;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
 
     @Value("${ghn.api.base-url}")
     private String ghnBaseUrl;
@@ -28,8 +57,209 @@ public class GhnLocationServiceImpl implements IGhnLocationService {
     @Value("${ghn.api.token}")
     private String ghnToken;
 
+    private volatile Snapshot snapshot;
+
+    /**
+     * Nội dung file snapshot (cũng là dữ liệu đang phục vụ).
+     */
+    record SnapshotData(List<GhnProvinceResponse> provinces,
+            Map<Integer, List<GhnDistrictResponse>> districts,
+            Map<Integer, List<GhnWardResponse>> wards) {
+    }
+
+    private record Snapshot(SnapshotData data, String version) {
+    }
+
+    public GhnLocationServiceImpl(@Qualifier("ghnRestTemplate") RestTemplate restTemplate,
+            ObjectMapper objectMapper,
+            @Qualifier("ghnQuoteExecutor") TaskExecutor refreshExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${ghn.location.snapshot-file:./data/ghn-locations.json.gz}") String snapshotFile) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.refreshExecutor = refreshExecutor;
+        this.snapshotFile = Path.of(snapshotFile);
+
+        Gauge.builder("ghn.location.wards", this, s -> s.snapshot != null ? s.snapshot.data().wards().size() : 0)
+                .description("Số quận/huyện đã có danh sách phường/xã trong snapshot GHN")
+                .register(meterRegistry);
+    }
+
+    // ========== SNAPSHOT ==========
+    @PostConstruct
+    void loadSnapshot() {
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshotFile))) {
+            SnapshotData data = objectMapper.readValue(in, SnapshotData.class);
+            snapshot = new Snapshot(data, versionOf(data));
+            log.info("Loaded GHN location snapshot {}: {} provinces, {} districts with wards",
+                    snapshot.version(), data.provinces().size(), data.wards().size());
+        } catch (Exception e) {
+            log.warn("Cannot read GHN location snapshot {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildSnapshotIfMissing() {
+        if (snapshot == null) {
+            refreshExecutor.execute(this::refresh);
+        }
+    }
+
+    /**
+     * Tải lại toàn bộ danh mục từ GHN và thay bản đang dùng nếu có thay đổi.
+     */
+    @Scheduled(cron = "${ghn.location.refresh-cron:0 0 3 * * *}")
+    public void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Snapshot current = snapshot;
+            SnapshotData fresh = download(current != null ? current.data() : null);
+            String version = versionOf(fresh);
+            if (current != null && current.version().equals(version)) {
+                log.info("GHN location data unchanged ({})", version);
+                return;
+            }
+            logDiff(current != null ? current.data() : null, fresh);
+            snapshot = new Snapshot(fresh, version);
+            writeSnapshot(fresh);
+        } catch (Exception e) {
+            log.warn("GHN location refresh failed, keeping current data: {}", e.getMessage());
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    @Override
+    public String getSnapshotVersion() {
+        Snapshot current = snapshot;
+        return current != null ? current.version() : null;
+    }
+
+    // ========== READ ==========
     @Override
     public List<GhnProvinceResponse> getProvinces() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current.data().provinces();
+        }
+        return fetchProvinces();
+    }
+
+    @Override
+    public List<GhnDistrictResponse> getDistricts(Integer provinceId) {
+        Snapshot current = snapshot;
+        if (current != null && current.data().districts().containsKey(provinceId)) {
+            return current.data().districts().get(provinceId);
+        }
+        return fetchDistricts(provinceId);
+    }
+
+    @Override
+    public List<GhnWardResponse> getWards(Integer districtId) {
+        Snapshot current = snapshot;
+        if (current != null && current.data().wards().containsKey(districtId)) {
+            return current.data().wards().get(districtId);
+        }
+        return fetchWards(districtId);
+    }
+
+    // ========== HELPER METHODS ==========
+    /**
+     * Tải toàn bộ cây tỉnh -> quận -> phường. Tỉnh/quận tải lỗi thì lấy lại từ bản trước (nếu có).
+     */
+    private SnapshotData download(SnapshotData previous) {
+        List<GhnProvinceResponse> provinces = fetchProvinces();
+        if (provinces.isEmpty()) {
+            throw new IllegalStateException("GHN returned no provinces");
+        }
+        Map<Integer, List<GhnDistrictResponse>> districts = new TreeMap<>();
+        Map<Integer, List<GhnWardResponse>> wards = new TreeMap<>();
+        int failures = 0;
+        for (GhnProvinceResponse province : provinces) {
+            List<GhnDistrictResponse> provinceDistricts = null;
+            try {
+                provinceDistricts = fetchDistricts(province.getProvinceId());
+            } catch (Exception e) {
+                failures++;
+            }
+            if (provinceDistricts == null || provinceDistricts.isEmpty()) {
+                // Lỗi hoặc phản hồi rỗng bất thường: giữ dữ liệu cũ của tỉnh
+                List<GhnDistrictResponse> old = previous != null ? previous.districts().get(province.getProvinceId()) : null;
+                if (old != null) provinceDistricts = old;
+                if (provinceDistricts == null) continue;
+            }
+            districts.put(province.getProvinceId(), provinceDistricts);
+            for (GhnDistrictResponse district : provinceDistricts) {
+                List<GhnWardResponse> districtWards = null;
+                try {
+                    districtWards = fetchWards(district.getDistrictId());
+                } catch (Exception e) {
+                    failures++;
+                }
+                if (districtWards == null || districtWards.isEmpty()) {
+                    List<GhnWardResponse> old = previous != null ? previous.wards().get(district.getDistrictId()) : null;
+                    if (old != null) districtWards = old;
+                }
+                if (districtWards != null) wards.put(district.getDistrictId(), districtWards);
+            }
+        }
+        if (failures > 0) {
+            log.warn("GHN location refresh: {} requests failed, previous data kept for those entries", failures);
+        }
+        return new SnapshotData(List.copyOf(provinces), districts, wards);
+    }
+
+    private void logDiff(SnapshotData previous, SnapshotData fresh) {
+        if (previous == null) {
+            log.info("Built GHN location snapshot: {} provinces, {} districts with wards",
+                    fresh.provinces().size(), fresh.wards().size());
+            return;
+        }
+        int changedDistrictLists = countChanged(previous.districts(), fresh.districts());
+        int changedWardLists = countChanged(previous.wards(), fresh.wards());
+        log.info("GHN location data changed: provinces {} -> {}, {} district lists and {} ward lists changed",
+                previous.provinces().size(), fresh.provinces().size(), changedDistrictLists, changedWardLists);
+    }
+
+    private static <T> int countChanged(Map<Integer, List<T>> before, Map<Integer, List<T>> after) {
+        Set<Integer> keys = new HashSet<>(before.keySet());
+        keys.addAll(after.keySet());
+        int changed = 0;
+        for (Integer key : keys) {
+            if (!Objects.equals(before.get(key), after.get(key))) changed++;
+        }
+        return changed;
+    }
+
+    private void writeSnapshot(SnapshotData data) {
+        try {
+            Path parent = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, "ghn-locations", ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                objectMapper.writeValue(out, data);
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Cannot write GHN location snapshot {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    private String versionOf(SnapshotData data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(data));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 16);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot compute GHN location snapshot version", e);
+        }
+    }
+
+    private List<GhnProvinceResponse> fetchProvinces() {
         try {
             String url = ghnBaseUrl + "/master-data/province";
 
@@ -48,7 +278,7 @@ public class GhnLocationServiceImpl implements IGhnLocationService {
 
             GhnApiResponse<List<GhnProvinceResponse>> body = response.getBody();
             if (body != null && body.getCode() != null && body.getCode() == 200 && body.getData() != null) {
-                log.info("Successfully fetched {} provinces from GHN", body.getData().size());
+                log.debug("Fetched {} provinces from GHN", body.getData().size());
                 return body.getData();
             }
             log.warn("No provinces returned from GHN API or invalid response");
@@ -60,8 +290,7 @@ public class GhnLocationServiceImpl implements IGhnLocationService {
         }
     }
 
-    @Override
-    public List<GhnDistrictResponse> getDistricts(Integer provinceId) {
+    private List<GhnDistrictResponse> fetchDistricts(Integer provinceId) {
         try {
             String url = ghnBaseUrl + "/master-data/district?province_id=" + provinceId;
 
@@ -80,8 +309,7 @@ public class GhnLocationServiceImpl implements IGhnLocationService {
 
             GhnApiResponse<List<GhnDistrictResponse>> body = response.getBody();
             if (body != null && body.getCode() != null && body.getCode() == 200 && body.getData() != null) {
-                log.info("Successfully fetched {} districts for province {} from GHN", body.getData().size(),
-                        provinceId);
+                log.debug("Fetched {} districts for province {} from GHN", body.getData().size(), provinceId);
                 return body.getData();
             }
             log.warn("No districts returned from GHN API for province {} or invalid response", provinceId);
@@ -93,8 +321,7 @@ public class GhnLocationServiceImpl implements IGhnLocationService {
         }
     }
 
-    @Override
-    public List<GhnWardResponse> getWards(Integer districtId) {
+    private List<GhnWardResponse> fetchWards(Integer districtId) {
         try {
             String url = ghnBaseUrl + "/master-data/ward?district_id=" + districtId;
 
@@ -113,7 +340,7 @@ public class GhnLocationServiceImpl implements IGhnLocationService {
 
             GhnApiResponse<List<GhnWardResponse>> body = response.getBody();
             if (body != null && body.getCode() != null && body.getCode() == 200 && body.getData() != null) {
-                log.info("Successfully fetched {} wards for district {} from GHN", body.getData().size(), districtId);
+                log.debug("Fetched {} wards for district {} from GHN", body.getData().size(), districtId);
                 return body.getData();
             }
             log.warn("No wards returned from GHN API for district {} or invalid response", districtId);
@@ -1,10 +1,18 @@
 package vn.liora.service.impl;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import vn.liora.dto.request.GhnShippingFeeRequest;
@@ -14,24 +22,53 @@ import vn.liora.entity.GhnShipping;
 import vn.liora.entity.Order;
 import vn.liora.repository.GhnShippingRepository;
 import vn.liora.repository.OrderProductRepository;
+import vn.liora.repository.OrderRepository;
 import vn.liora.service.IGhnShippingService;
 import vn.liora.service.IGhnLocationService;
 import vn.liora.dto.response.GhnProvinceResponse;
 import vn.liora.dto.response.GhnDistrictResponse;
+import vn.liora.util.TtlCache;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tích hợp GHN. Báo giá phí ship theo tuyến được cache để checkout không phải chờ GHN:
+ * - Khóa báo giá: (quận gửi, quận nhận, phường nhận, service_id, mức cân nặng).
+ * - Báo giá cũ hơn ghn.quote-cache.refresh-after-seconds vẫn được trả ngay và được làm mới ở nền.
+ * - Các lần hỏi cùng một tuyến chưa có trong cache dùng chung một lần gọi GHN.
+ * - service_id của từng tuyến được nhớ lại (chỉ nhớ kết quả GHN trả về, không nhớ giá trị mặc định).
+ * - Các điểm giao nhiều đơn nhất được nạp sẵn khi khởi động và làm mới định kỳ.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class GhnShippingServiceImpl implements IGhnShippingService {
 
     private final RestTemplate restTemplate;
     private final GhnShippingRepository ghnShippingRepository;
     private final OrderProductRepository orderProductRepository;
+    private final OrderRepository orderRepository;
     private final IGhnLocationService ghnLocationService;
+    private final TaskExecutor quoteExecutor;
+
+    private final TtlCache<QuoteKey, Quote> quoteCache;
+    private final TtlCache<Route, Integer> serviceIdCache;
+    private final Map<QuoteKey, CompletableFuture<Quote>> quotesInFlight = new ConcurrentHashMap<>();
+    private final Set<QuoteKey> refreshing = ConcurrentHashMap.newKeySet();
+    private final long refreshAfterMillis;
+    private final int warmRoutes;
+    private final int warmLookbackDays;
+
+    private final Counter quoteRemoteCounter;
+    private final Counter quoteRefreshCounter;
+    private final Counter quoteRefreshFailedCounter;
 
     @Value("${ghn.api.base-url}")
     private String ghnBaseUrl;
@@ -47,7 +84,7 @@ public class GhnShippingServiceImpl implements IGhnShippingService {
 
     @Value("${ghn.api.from-district-id:3695}")
     private Integer fromDistrictId;
-    private Integer cachedFromDistrictId; // auto-resolved when needed
+    private volatile Integer cachedFromDistrictId; // auto-resolved when needed
 
     // Hardcode thông tin shop theo yêu cầu
     private static final Integer SHOP_DISTRICT_ID = 3695;
@@ -56,6 +93,60 @@ public class GhnShippingServiceImpl implements IGhnShippingService {
     private static final String SHOP_PHONE = "0373801404";
     private static final String SHOP_ADDRESS = "Đ. Võ Văn Ngân, Linh Chiểu, Thủ Đức, Hồ Chí Minh, Việt Nam";
 
+    // Kiện mặc định khi báo giá theo địa chỉ (combobox FE)
+    private static final int DEFAULT_WEIGHT = 1000;
+    private static final int DEFAULT_SIZE = 15;
+    // GHN tính cước theo bậc cân nặng, làm tròn lên bậc này để các kiện gần nhau dùng chung báo giá
+    private static final int WEIGHT_STEP = 500;
+
+    private record Route(Integer fromDistrictId, Integer toDistrictId) {
+    }
+
+    private record QuoteKey(Integer fromDistrictId, Integer toDistrictId, String toWardCode,
+            Integer serviceId, int weightBucket) {
+    }
+
+    private record Quote(BigDecimal fee, long fetchedAt) {
+    }
+
+    public GhnShippingServiceImpl(@Qualifier("ghnRestTemplate") RestTemplate restTemplate,
+            GhnShippingRepository ghnShippingRepository,
+            OrderProductRepository orderProductRepository,
+            OrderRepository orderRepository,
+            IGhnLocationService ghnLocationService,
+            @Qualifier("ghnQuoteExecutor") TaskExecutor quoteExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${ghn.quote-cache.max-size:5000}") int quoteCacheSize,
+            @Value("${ghn.quote-cache.ttl-seconds:21600}") long quoteTtlSeconds,
+            @Value("${ghn.quote-cache.refresh-after-seconds:3600}") long refreshAfterSeconds,
+            @Value("${ghn.service-id-cache.ttl-seconds:86400}") long serviceIdTtlSeconds,
+            @Value("${ghn.quote-cache.warm-routes:50}") int warmRoutes,
+            @Value("${ghn.quote-cache.warm-lookback-days:90}") int warmLookbackDays) {
+        this.restTemplate = restTemplate;
+        this.ghnShippingRepository = ghnShippingRepository;
+        this.orderProductRepository = orderProductRepository;
+        this.orderRepository = orderRepository;
+        this.ghnLocationService = ghnLocationService;
+        this.quoteExecutor = quoteExecutor;
+        this.quoteCache = new TtlCache<QuoteKey, Quote>(quoteCacheSize, Duration.ofSeconds(quoteTtlSeconds))
+                .bindTo(meterRegistry, "ghnQuote");
+        this.serviceIdCache = new TtlCache<Route, Integer>(quoteCacheSize, Duration.ofSeconds(serviceIdTtlSeconds))
+                .bindTo(meterRegistry, "ghnServiceId");
+        this.refreshAfterMillis = refreshAfterSeconds * 1000;
+        this.warmRoutes = warmRoutes;
+        this.warmLookbackDays = warmLookbackDays;
+
+        this.quoteRemoteCounter = Counter.builder("ghn.quote.remote")
+                .description("Số lần gọi GHN để lấy báo giá (cache không có)")
+                .register(meterRegistry);
+        this.quoteRefreshCounter = Counter.builder("ghn.quote.refresh").tag("result", "success")
+                .description("Số lần làm mới báo giá GHN ở nền")
+                .register(meterRegistry);
+        this.quoteRefreshFailedCounter = Counter.builder("ghn.quote.refresh").tag("result", "failure")
+                .description("Số lần làm mới báo giá GHN ở nền thất bại")
+                .register(meterRegistry);
+    }
+
     @Override
     public GhnShippingFeeResponse calculateShippingFee(GhnShippingFeeRequest request) {
         try {
@@ -99,9 +190,22 @@ public class GhnShippingServiceImpl implements IGhnShippingService {
     }
 
     /**
-     * Lấy service_id hợp lệ cho tuyến from_district -> to_district từ GHN
+     * Lấy service_id hợp lệ cho tuyến from_district -> to_district (nhớ theo tuyến),
+     * GHN không trả về thì dùng service_id cấu hình.
      */
     private Integer resolveServiceId(Integer fromDistrict, Integer toDistrict) {
+        if (fromDistrict == null || toDistrict == null) {
+            return ghnServiceId;
+        }
+        Integer resolved = serviceIdCache.get(new Route(fromDistrict, toDistrict),
+                route -> fetchServiceId(route.fromDistrictId(), route.toDistrictId()));
+        return resolved != null ? resolved : ghnServiceId;
+    }
+
+    /**
+     * Gọi GHN lấy service_id cho tuyến; null nếu GHN không trả về dịch vụ nào.
+     */
+    private Integer fetchServiceId(Integer fromDistrict, Integer toDistrict) {
         try {
             String url = ghnBaseUrl + "/v2/shipping-order/available-services";
 
@@ -144,8 +248,7 @@ public class GhnShippingServiceImpl implements IGhnShippingService {
         } catch (Exception e) {
             log.warn("Failed to resolve service id: {}", e.getMessage());
         }
-        // Fallback
-        return ghnServiceId;
+        return null;
     }
 
     /**
@@ -412,29 +515,126 @@ public class GhnShippingServiceImpl implements IGhnShippingService {
             return BigDecimal.ZERO;
 
         try {
-            Integer effectiveFromDistrict = getEffectiveFromDistrictId();
-            Integer effectiveServiceId = resolveServiceId(
-                    effectiveFromDistrict != null ? effectiveFromDistrict : fromDistrictId,
-                    toDistrictId);
-
-            GhnShippingFeeRequest request = GhnShippingFeeRequest.builder()
-                    .serviceId(effectiveServiceId)
-                    .fromDistrictId(effectiveFromDistrict != null ? effectiveFromDistrict : fromDistrictId)
-                    .toDistrictId(toDistrictId)
-                    .toWardCode(toWardCode)
-                    .weight(1000)
-                    .length(15)
-                    .width(15)
-                    .height(15)
-                    .build();
-
-            GhnShippingFeeResponse response = calculateShippingFee(request);
-            if (response.getCode() == 200 && response.getData() != null) {
-                return response.getData().getTotal();
+            QuoteKey key = quoteKey(toDistrictId, toWardCode, DEFAULT_WEIGHT);
+            Quote quote = quoteCache.getIfPresent(key);
+            if (quote == null) {
+                quote = loadQuote(key);
+            } else if (System.currentTimeMillis() - quote.fetchedAt() > refreshAfterMillis) {
+                refreshInBackground(key);
             }
+            return quote.fee();
         } catch (Exception e) {
             log.warn("calculateFeeByLocation failed: {}", e.getMessage());
         }
         return BigDecimal.ZERO;
     }
+
+    // ========== QUOTE CACHE ==========
+    /**
+     * Nạp sẵn báo giá cho các điểm giao nhiều đơn nhất khi khởi động (ở nền).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        quoteExecutor.execute(this::warmUp);
+    }
+
+    /**
+     * Làm mới báo giá của các điểm giao nhiều đơn nhất, mặc định mỗi đêm.
+     */
+    @Scheduled(cron = "${ghn.quote-cache.warm-cron:0 30 3 * * *}")
+    public void warmUp() {
+        if (warmRoutes <= 0) {
+            return;
+        }
+        try {
+            List<Object[]> destinations = orderRepository.findTopDestinations(
+                    LocalDateTime.now().minusDays(warmLookbackDays), PageRequest.of(0, warmRoutes));
+            int warmed = 0;
+            for (Object[] row : destinations) {
+                try {
+                    QuoteKey key = quoteKey((Integer) row[0], (String) row[1], DEFAULT_WEIGHT);
+                    quoteCache.put(key, fetchQuote(key));
+                    warmed++;
+                } catch (Exception e) {
+                    log.debug("Warm-up quote failed for district {} ward {}: {}", row[0], row[1], e.getMessage());
+                }
+            }
+            log.info("Warmed GHN shipping quotes for {}/{} top destinations", warmed, destinations.size());
+        } catch (Exception e) {
+            log.warn("GHN quote warm-up failed: {}", e.getMessage());
+        }
+    }
+
+    private QuoteKey quoteKey(Integer toDistrictId, String toWardCode, int weight) {
+        Integer effectiveFromDistrict = getEffectiveFromDistrictId();
+        Integer from = effectiveFromDistrict != null ? effectiveFromDistrict : fromDistrictId;
+        int weightBucket = Math.max(1, (weight + WEIGHT_STEP - 1) / WEIGHT_STEP) * WEIGHT_STEP;
+        return new QuoteKey(from, toDistrictId, toWardCode, resolveServiceId(from, toDistrictId), weightBucket);
+    }
+
+    /**
+     * Lấy báo giá từ GHN và lưu cache; các luồng hỏi cùng tuyến trong lúc đó chờ chung một lần gọi.
+     */
+    private Quote loadQuote(QuoteKey key) {
+        CompletableFuture<Quote> mine = new CompletableFuture<>();
+        CompletableFuture<Quote> existing = quotesInFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            Quote quote = fetchQuote(key);
+            quoteCache.put(key, quote);
+            mine.complete(quote);
+            return quote;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            quotesInFlight.remove(key, mine);
+        }
+    }
+
+    private void refreshInBackground(QuoteKey key) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            quoteExecutor.execute(() -> {
+                try {
+                    // Lỗi thì giữ báo giá cũ tới khi hết hạn
+                    quoteCache.put(key, fetchQuote(key));
+                    quoteRefreshCounter.increment();
+                } catch (Exception e) {
+                    quoteRefreshFailedCounter.increment();
+                    log.debug("Background refresh of GHN quote failed for {}: {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // Hàng đợi đầy: bỏ lượt làm mới này, lần đọc sau thử lại
+            refreshing.remove(key);
+            log.debug("Background refresh of GHN quote skipped for {}: executor busy", key);
+        }
+    }
+
+    private Quote fetchQuote(QuoteKey key) {
+        quoteRemoteCounter.increment();
+        GhnShippingFeeRequest request = GhnShippingFeeRequest.builder()
+                .serviceId(key.serviceId())
+                .fromDistrictId(key.fromDistrictId())
+                .toDistrictId(key.toDistrictId())
+                .toWardCode(key.toWardCode())
+                .weight(key.weightBucket())
+                .length(DEFAULT_SIZE)
+                .width(DEFAULT_SIZE)
+                .height(DEFAULT_SIZE)
+                .build();
+
+        GhnShippingFeeResponse response = calculateShippingFee(request);
+        if (response.getCode() != 200 || response.getData() == null || response.getData().getTotal() == null) {
+            throw new IllegalStateException("GHN shipping fee unavailable: " + response.getMessage());
+        }
+        return new Quote(response.getData().getTotal(), System.currentTimeMillis());
+    }
 }
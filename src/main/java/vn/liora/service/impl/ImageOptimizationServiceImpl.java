@@ -1,8 +1,11 @@
 package vn.liora.service.impl;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import vn.liora.service.IImageOptimizationService;
+import vn.liora.util.ImageVariants;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
@@ -10,65 +13,36 @@ import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 
 @Service
+@Slf4j
 public class ImageOptimizationServiceImpl implements IImageOptimizationService {
 
     private static final String[] ALLOWED_EXTENSIONS = { "jpg", "jpeg", "png", "gif", "bmp", "webp" };
 
+    // Định dạng hiện đại được ghi thêm cho mỗi ảnh (nếu có encoder trên classpath)
+    @Value("${image.optimization.modern-formats:avif,webp}")
+    private List<String> modernFormats = ImageVariants.MODERN_FORMATS;
+
     @Override
     public String optimizeImage(MultipartFile file, Path outputPath, int maxWidth, int maxHeight, float quality)
             throws IOException {
-        System.out.println("=== ImageOptimizationService.optimizeImage ===");
-        System.out.println("File: " + file.getOriginalFilename());
-        System.out.println("Output path: " + outputPath.toString());
-        System.out.println("Max size: " + maxWidth + "x" + maxHeight);
-        System.out.println("Quality: " + quality);
-
         if (!isValidImageFile(file)) {
             throw new IllegalArgumentException("File không phải là ảnh hợp lệ");
         }
 
-        BufferedImage originalImage = ImageIO.read(file.getInputStream());
-        if (originalImage == null) {
-            throw new IOException("Không thể đọc file ảnh");
-        }
-
-        System.out.println("Original image size: " + originalImage.getWidth() + "x" + originalImage.getHeight());
-
-        // Tính toán kích thước mới
-        Dimension newSize = calculateNewSize(originalImage.getWidth(), originalImage.getHeight(), maxWidth, maxHeight);
-
-        // Tạo ảnh mới với kích thước đã tối ưu
-        BufferedImage optimizedImage = new BufferedImage(newSize.width, newSize.height, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = optimizedImage.createGraphics();
-
-        // Cải thiện chất lượng vẽ
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        g2d.drawImage(originalImage, 0, 0, newSize.width, newSize.height, null);
-        g2d.dispose();
-
-        // Tạo thư mục nếu chưa tồn tại
-        Files.createDirectories(outputPath.getParent());
-
-        // Lưu ảnh với chất lượng tối ưu
-        String extension = getFileExtension(file.getOriginalFilename());
-        String formatName = getImageFormat(extension);
-
-        if ("jpeg".equalsIgnoreCase(formatName) || "jpg".equalsIgnoreCase(formatName)) {
-            saveWithQuality(optimizedImage, outputPath, formatName, quality);
-        } else {
-            ImageIO.write(optimizedImage, formatName, outputPath.toFile());
-        }
-
+        writeDerivatives(file.getBytes(), file.getOriginalFilename(),
+                List.of(new Derivative(outputPath, maxWidth, maxHeight, quality)));
         return outputPath.toString();
     }
 
@@ -77,6 +51,41 @@ public class ImageOptimizationServiceImpl implements IImageOptimizationService {
         return optimizeImage(file, outputPath, thumbnailSize, thumbnailSize, 0.7f);
     }
 
+    @Override
+    public void writeDerivatives(byte[] source, String originalFilename, List<Derivative> derivatives)
+            throws IOException {
+        BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(source));
+        if (originalImage == null) {
+            throw new IOException("Không thể đọc file ảnh");
+        }
+
+        String formatName = getImageFormat(getFileExtension(originalFilename));
+
+        // Bản lớn trước, bản nhỏ thu nhỏ tiếp từ bản lớn đã có thay vì từ ảnh gốc
+        List<Derivative> ordered = new ArrayList<>(derivatives);
+        ordered.sort(Comparator.comparingLong((Derivative d) -> (long) d.maxWidth() * d.maxHeight()).reversed());
+
+        BufferedImage previous = null;
+        for (Derivative derivative : ordered) {
+            Dimension newSize = calculateNewSize(originalImage.getWidth(), originalImage.getHeight(),
+                    derivative.maxWidth(), derivative.maxHeight());
+            BufferedImage base = previous != null
+                    && previous.getWidth() >= newSize.width && previous.getHeight() >= newSize.height
+                            ? previous
+                            : originalImage;
+            BufferedImage resized = resize(base, newSize.width, newSize.height);
+
+            Files.createDirectories(derivative.outputPath().getParent());
+            if ("jpeg".equalsIgnoreCase(formatName) || "jpg".equalsIgnoreCase(formatName)) {
+                saveWithQuality(resized, derivative.outputPath(), formatName, derivative.quality());
+            } else {
+                ImageIO.write(resized, formatName, derivative.outputPath().toFile());
+            }
+            writeModernVariants(resized, derivative.outputPath(), formatName, derivative.quality());
+            previous = resized;
+        }
+    }
+
     @Override
     public boolean isValidImageFile(MultipartFile file) {
         if (file == null || file.isEmpty()) {
@@ -127,6 +136,97 @@ public class ImageOptimizationServiceImpl implements IImageOptimizationService {
         return baos.size();
     }
 
+    /**
+     * Ghi thêm bản WebP/AVIF cạnh file vừa ghi (abc.jpg -> abc.jpg.webp) nếu có encoder và bản đó nhỏ hơn;
+     * WebConfig chọn bản nhỏ nhất mà trình duyệt chấp nhận theo header Accept.
+     */
+    private void writeModernVariants(BufferedImage image, Path outputPath, String formatName, float quality) {
+        if (!ImageVariants.hasVariants(outputPath.getFileName().toString())) {
+            return;
+        }
+        for (String format : ImageVariants.MODERN_FORMATS) {
+            if (!modernFormats.contains(format) || format.equalsIgnoreCase(formatName)) {
+                continue;
+            }
+            Path variantPath = outputPath.resolveSibling(
+                    ImageVariants.variantName(outputPath.getFileName().toString(), format));
+            try {
+                byte[] encoded = encode(image, format, quality);
+                if (encoded != null && encoded.length < Files.size(outputPath)) {
+                    Files.write(variantPath, encoded);
+                } else {
+                    // Không có encoder hoặc không nhỏ hơn bản gốc: bỏ bản cũ (nếu có) để không phục vụ nhầm
+                    Files.deleteIfExists(variantPath);
+                }
+            } catch (Exception e) {
+                log.warn("Cannot write {} variant for {}: {}", format, outputPath, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Nén ảnh sang định dạng chỉ định (nén có mất mát nếu encoder hỗ trợ); null nếu không có encoder.
+     */
+    private byte[] encode(BufferedImage image, String format, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            return null;
+        }
+        ImageWriter writer = writers.next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                String[] types = param.getCompressionTypes();
+                if (types != null && types.length > 0) {
+                    param.setCompressionType(Arrays.asList(types).contains("Lossy") ? "Lossy" : types[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
+                writer.setOutput(ios);
+                writer.write(null, new javax.imageio.IIOImage(image, null, null), param);
+            }
+            return baos.toByteArray();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Thu nhỏ dần (mỗi bước một nửa) tới gần kích thước đích rồi vẽ bước cuối; nội suy bilinear
+     * một bước từ ảnh lớn xuống ảnh nhỏ bị răng cưa và mất chi tiết.
+     */
+    private BufferedImage resize(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        while (currentWidth / 2 >= width && currentHeight / 2 >= height) {
+            currentWidth /= 2;
+            currentHeight /= 2;
+            current = draw(current, currentWidth, currentHeight);
+        }
+        if (current != source && currentWidth == width && currentHeight == height) {
+            return current;
+        }
+        return draw(current, width, height);
+    }
+
+    private BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = target.createGraphics();
+
+        // Cải thiện chất lượng vẽ
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        g2d.drawImage(source, 0, 0, width, height, null);
+        g2d.dispose();
+        return target;
+    }
+
     private Dimension calculateNewSize(int originalWidth, int originalHeight, int maxWidth, int maxHeight) {
         if (originalWidth <= maxWidth && originalHeight <= maxHeight) {
             return new Dimension(originalWidth, originalHeight);
@@ -0,0 +1,245 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import vn.liora.dto.response.ImageUploadJobResponse;
+import vn.liora.enums.ImageJobStatus;
+import vn.liora.service.IDirectoryStructureService;
+import vn.liora.service.IImageOptimizationService;
+import vn.liora.service.IImageOptimizationService.Derivative;
+import vn.liora.service.IImagePipelineService;
+import vn.liora.service.IStorageService;
+import vn.liora.util.TtlCache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Xử lý ảnh upload:
+ * - Mỗi ảnh chỉ giải mã một lần; ảnh chính, thumbnail và các cỡ responsive được tạo từ cùng ảnh đã giải mã.
+ * - Nhiều ảnh được xử lý song song trên pool có giới hạn (imagePipelineExecutor), không trên luồng request.
+ * - Job nền có id; trạng thái giữ trong bộ nhớ một thời gian (image.pipeline.job-ttl-seconds) để client hỏi lại.
+ */
+@Service
+@Slf4j
+public class ImagePipelineServiceImpl implements IImagePipelineService {
+
+    private final IImageOptimizationService imageOptimizationService;
+    private final IDirectoryStructureService directoryStructureService;
+    private final IStorageService storageService;
+    private final TaskExecutor imagePipelineExecutor;
+    private final Timer processTimer;
+
+    private final int maxWidth;
+    private final int maxHeight;
+    private final int thumbnailSize;
+    private final float quality;
+    private final List<Integer> responsiveWidths;
+
+    private final TtlCache<String, Job> jobs;
+
+    public ImagePipelineServiceImpl(IImageOptimizationService imageOptimizationService,
+            IDirectoryStructureService directoryStructureService,
+            IStorageService storageService,
+            @Qualifier("imagePipelineExecutor") TaskExecutor imagePipelineExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${image.optimization.max-width:1200}") int maxWidth,
+            @Value("${image.optimization.max-height:1200}") int maxHeight,
+            @Value("${image.optimization.thumbnail-size:300}") int thumbnailSize,
+            @Value("${image.optimization.quality:0.8}") float quality,
+            @Value("${image.pipeline.responsive-widths:600}") List<Integer> responsiveWidths,
+            @Value("${image.pipeline.job-max-size:1000}") int jobMaxSize,
+            @Value("${image.pipeline.job-ttl-seconds:3600}") long jobTtlSeconds) {
+        this.imageOptimizationService = imageOptimizationService;
+        this.directoryStructureService = directoryStructureService;
+        this.storageService = storageService;
+        this.imagePipelineExecutor = imagePipelineExecutor;
+        this.processTimer = Timer.builder("image.pipeline.process")
+                .description("Thời gian tạo các bản của một ảnh upload")
+                .register(meterRegistry);
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.thumbnailSize = thumbnailSize;
+        this.quality = quality;
+        // Chỉ giữ các cỡ nhỏ hơn ảnh chính, không trùng thumbnail
+        this.responsiveWidths = responsiveWidths.stream()
+                .filter(width -> width > thumbnailSize && width < maxWidth)
+                .distinct()
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        this.jobs = new TtlCache<String, Job>(jobMaxSize, Duration.ofSeconds(jobTtlSeconds))
+                .bindTo(meterRegistry, "imageJob");
+    }
+
+    // ========== PREPARE ==========
+    @Override
+    public ImageSource prepare(String category, String filename, MultipartFile file, boolean withThumbnail)
+            throws IOException {
+        String relativePath = directoryStructureService.createFullPath(category, filename, false);
+        String thumbnailPath = withThumbnail ? directoryStructureService.createFullPath(category, filename, true) : null;
+        List<String> responsivePaths = responsiveWidths.stream()
+                .map(width -> variantPath(relativePath, "_w" + width))
+                .toList();
+        return new ImageSource(filename, file.getBytes(), relativePath, thumbnailPath, responsivePaths);
+    }
+
+    // ========== PROCESS ==========
+    @Override
+    public void process(ImageSource source) throws IOException {
+        List<Derivative> derivatives = new ArrayList<>();
+        derivatives.add(new Derivative(resolve(source.relativePath()), maxWidth, maxHeight, quality));
+        for (int i = 0; i < source.responsivePaths().size(); i++) {
+            int width = responsiveWidths.get(i);
+            derivatives.add(new Derivative(resolve(source.responsivePaths().get(i)), width, width, quality));
+        }
+        if (source.thumbnailPath() != null) {
+            derivatives.add(new Derivative(resolve(source.thumbnailPath()), thumbnailSize, thumbnailSize, 0.7f));
+        }
+
+        long start = System.nanoTime();
+        try {
+            imageOptimizationService.writeDerivatives(source.content(), source.filename(), derivatives);
+        } finally {
+            processTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    @Override
+    public List<ImageSource> processAll(List<ImageSource> sources) {
+        List<CompletableFuture<ImageSource>> futures = sources.stream()
+                .map(source -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        process(source);
+                        return source;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, imagePipelineExecutor))
+                .toList();
+
+        List<ImageSource> processed = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                processed.add(futures.get(i).join());
+            } catch (Exception e) {
+                log.warn("Image processing failed for {}: {}", sources.get(i).filename(), e.getMessage());
+            }
+        }
+        return processed;
+    }
+
+    @Override
+    public ImageUploadJobResponse submit(List<ImageSource> sources, Consumer<ImageSource> onProcessed) {
+        Job job = new Job(UUID.randomUUID().toString(), sources);
+        jobs.put(job.id, job);
+        for (int i = 0; i < sources.size(); i++) {
+            int index = i;
+            ImageSource source = sources.get(i);
+            imagePipelineExecutor.execute(() -> {
+                try {
+                    process(source);
+                    onProcessed.accept(source);
+                    job.complete(index, null);
+                } catch (Exception e) {
+                    log.warn("Image job {} failed for {}: {}", job.id, source.filename(), e.getMessage());
+                    job.complete(index, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                }
+            });
+        }
+        return job.toResponse();
+    }
+
+    // ========== JOB STATUS ==========
+    @Override
+    public Optional<ImageUploadJobResponse> getJob(String jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId)).map(Job::toResponse);
+    }
+
+    // ========== HELPER METHODS ==========
+    private Path resolve(String relativePath) {
+        return Paths.get(storageService.getStorageLocation(), relativePath);
+    }
+
+    // products/2025/01/01/abc.jpg + "_w600" -> products/2025/01/01/abc_w600.jpg
+    private String variantPath(String relativePath, String suffix) {
+        int slash = relativePath.lastIndexOf('/');
+        int dot = relativePath.lastIndexOf('.');
+        if (dot <= slash) {
+            return relativePath + suffix;
+        }
+        return relativePath.substring(0, dot) + suffix + relativePath.substring(dot);
+    }
+
+    /**
+     * Trạng thái một job; mỗi ảnh được cập nhật đúng một lần từ luồng xử lý của nó.
+     */
+    private static final class Job {
+        private final String id;
+        private final List<ImageUploadJobResponse.Item> items;
+        private int completed;
+        private int failed;
+
+        Job(String id, List<ImageSource> sources) {
+            this.id = id;
+            this.items = new ArrayList<>();
+            for (ImageSource source : sources) {
+                items.add(ImageUploadJobResponse.Item.builder()
+                        .filename(source.filename())
+                        .originalUrl(source.url())
+                        .thumbnailUrl(source.thumbnailUrl())
+                        .status(ImageJobStatus.PROCESSING)
+                        .build());
+            }
+        }
+
+        synchronized void complete(int index, String error) {
+            ImageUploadJobResponse.Item item = items.get(index);
+            if (error == null) {
+                item.setStatus(ImageJobStatus.COMPLETED);
+                completed++;
+            } else {
+                item.setStatus(ImageJobStatus.FAILED);
+                item.setError(error);
+                failed++;
+            }
+        }
+
+        synchronized ImageUploadJobResponse toResponse() {
+            ImageJobStatus status;
+            if (completed + failed < items.size()) {
+                status = ImageJobStatus.PROCESSING;
+            } else {
+                status = completed == 0 && failed > 0 ? ImageJobStatus.FAILED : ImageJobStatus.COMPLETED;
+            }
+            List<ImageUploadJobResponse.Item> copies = items.stream()
+                    .map(item -> ImageUploadJobResponse.Item.builder()
+                            .filename(item.getFilename())
+                            .originalUrl(item.getOriginalUrl())
+                            .thumbnailUrl(item.getThumbnailUrl())
+                            .status(item.getStatus())
+                            .error(item.getError())
+                            .build())
+                    .toList();
+            return ImageUploadJobResponse.builder()
+                    .jobId(id)
+                    .status(status)
+                    .total(items.size())
+                    .completed(completed)
+                    .failed(failed)
+                    .images(copies)
+                    .build();
+        }
+    }
+}
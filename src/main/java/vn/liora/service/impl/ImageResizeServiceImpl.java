@@ -0,0 +1,380 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import vn.liora.service.IImageOptimizationService;
+import vn.liora.service.IImageOptimizationService.Derivative;
+import vn.liora.service.IImageResizeService;
+import vn.liora.service.IStorageService;
+import vn.liora.util.ImageVariants;
+import vn.liora.util.TtlCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Thu nhỏ ảnh upload theo yêu cầu (GET /img/{w}x{h}/...) với cache trên đĩa:
+ * - Chỉ các kích thước trong image.resize.allowed-sizes; ảnh được thu vừa khung, không phóng to.
+ * - Cache đánh địa chỉ theo nội dung: key = hash(nội dung ảnh gốc + kích thước + chất lượng), file nằm ở
+ *   {cache-dir}/ab/abcdef....jpg (kèm bản .webp nếu nhỏ hơn). Ảnh gốc bị thay thì key đổi, bản cũ tự bị loại dần.
+ * - Tổng dung lượng giới hạn bởi image.resize.cache-max-bytes, loại bản ít dùng gần đây nhất (LRU).
+ *   Thứ tự dùng giữ trong bộ nhớ; khi khởi động dựng lại từ thời điểm tạo file.
+ * - Các request đồng thời cho cùng một bản chờ chung một lần tạo (chạy trên imagePipelineExecutor).
+ */
+@Service
+@Slf4j
+public class ImageResizeServiceImpl implements IImageResizeService {
+
+    private static final Set<String> SUPPORTED_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp");
+    private static final Pattern CACHE_FILE = Pattern.compile("([0-9a-f]{32})\\.[a-z0-9]+");
+    private static final String TMP_DIR = "tmp";
+
+    private final IImageOptimizationService imageOptimizationService;
+    private final TaskExecutor imagePipelineExecutor;
+    private final Path storageRoot;
+    private final Path cacheDir;
+    private final Set<String> allowedSizes;
+    private final float quality;
+    private final long maxBytes;
+    private final long timeoutMs;
+
+    // Hash nội dung ảnh gốc, key theo đường dẫn + thời điểm sửa + kích thước để không đọc lại file mỗi request
+    private final TtlCache<String, String> sourceHashes;
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    // Thứ tự truy cập (LRU) và dung lượng của các bản trong cache; khóa bằng chính map
+    private final LinkedHashMap<String, CacheEntry> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+    private final Timer generateTimer;
+
+    private record CacheEntry(Path file, long bytes) {
+    }
+
+    public ImageResizeServiceImpl(IImageOptimizationService imageOptimizationService,
+            IStorageService storageService,
+            @Qualifier("imagePipelineExecutor") TaskExecutor imagePipelineExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${image.resize.cache-dir:./cache/img}") String cacheDir,
+            @Value("${image.resize.allowed-sizes:150x150,300x300,400x400,600x600,800x800}") List<String> allowedSizes,
+            @Value("${image.resize.quality:0.8}") float quality,
+            @Value("${image.resize.cache-max-bytes:1073741824}") long maxBytes,
+            @Value("${image.resize.timeout-ms:15000}") long timeoutMs) {
+        this.imageOptimizationService = imageOptimizationService;
+        this.imagePipelineExecutor = imagePipelineExecutor;
+        this.storageRoot = Paths.get(storageService.getStorageLocation()).toAbsolutePath().normalize();
+        this.cacheDir = Paths.get(cacheDir).toAbsolutePath().normalize();
+        this.allowedSizes = allowedSizes.stream()
+                .map(size -> size.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.quality = quality;
+        this.maxBytes = maxBytes;
+        this.timeoutMs = timeoutMs;
+        this.sourceHashes = new TtlCache<String, String>(10_000, Duration.ofHours(1))
+                .bindTo(meterRegistry, "imageSourceHash");
+
+        this.hits = Counter.builder("image.resize.requests").tag("result", "hit")
+                .description("Số request ảnh thu nhỏ").register(meterRegistry);
+        this.misses = Counter.builder("image.resize.requests").tag("result", "miss")
+                .description("Số request ảnh thu nhỏ").register(meterRegistry);
+        this.coalesced = Counter.builder("image.resize.requests").tag("result", "coalesced")
+                .description("Số request ảnh thu nhỏ").register(meterRegistry);
+        this.evictions = Counter.builder("image.resize.evictions")
+                .description("Số bản bị loại khỏi cache ảnh thu nhỏ").register(meterRegistry);
+        this.generateTimer = Timer.builder("image.resize.generate")
+                .description("Thời gian tạo một bản ảnh thu nhỏ").register(meterRegistry);
+        Gauge.builder("image.resize.cache.bytes", this, ImageResizeServiceImpl::cacheBytes)
+                .description("Dung lượng cache ảnh thu nhỏ").register(meterRegistry);
+        Gauge.builder("image.resize.cache.entries", this, ImageResizeServiceImpl::cacheEntries)
+                .description("Số bản trong cache ảnh thu nhỏ").register(meterRegistry);
+    }
+
+    // ========== STARTUP ==========
+    // Chạy trước khi nhận request, nên xóa thư mục tạm không đụng bản đang tạo
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(cacheDir);
+            // Bản tạo dở từ lần chạy trước
+            FileSystemUtils.deleteRecursively(cacheDir.resolve(TMP_DIR));
+
+            List<Path> files;
+            try (Stream<Path> stream = Files.walk(cacheDir, 2)) {
+                files = stream.filter(Files::isRegularFile)
+                        .filter(file -> CACHE_FILE.matcher(file.getFileName().toString()).matches())
+                        .sorted(Comparator.comparingLong(this::lastModified))
+                        .toList();
+            }
+            for (Path file : files) {
+                Matcher matcher = CACHE_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    add(matcher.group(1), file, sizeOnDisk(file), false);
+                }
+            }
+            evictIfNeeded();
+            log.info("Image resize cache loaded: {} entries, {} bytes", cacheEntries(), cacheBytes());
+        } catch (Exception e) {
+            log.error("Failed to load image resize cache: {}", e.getMessage());
+        }
+    }
+
+    // ========== RESIZE ==========
+    @Override
+    public boolean isAllowedSize(int width, int height) {
+        return allowedSizes.contains(width + "x" + height);
+    }
+
+    @Override
+    public Optional<ResizedImage> resize(String relativePath, int width, int height) throws IOException {
+        if (!isAllowedSize(width, height)) {
+            throw new IllegalArgumentException("Kích thước không được hỗ trợ: " + width + "x" + height);
+        }
+        Path source = storageRoot.resolve(relativePath).normalize();
+        String extension = getFileExtension(source.getFileName() != null ? source.getFileName().toString() : "");
+        if (!source.startsWith(storageRoot) || !SUPPORTED_EXTENSIONS.contains(extension)
+                || !Files.isRegularFile(source)) {
+            return Optional.empty();
+        }
+
+        String key = cacheKey(sourceHash(source), width, height);
+        Path target = cacheDir.resolve(key.substring(0, 2)).resolve(key + "." + extension);
+        if (Files.isRegularFile(target)) {
+            hits.increment();
+            recordAccess(key, target);
+            return Optional.of(new ResizedImage(target, key));
+        }
+
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> pending = inFlight.putIfAbsent(key, created);
+        if (pending == null) {
+            misses.increment();
+            pending = created;
+            try {
+                imagePipelineExecutor.execute(() -> {
+                    try {
+                        created.complete(generate(source, target, key, width, height));
+                    } catch (Throwable e) {
+                        created.completeExceptionally(e);
+                    } finally {
+                        inFlight.remove(key, created);
+                    }
+                });
+            } catch (RuntimeException e) {
+                inFlight.remove(key, created);
+                created.completeExceptionally(e);
+            }
+        } else {
+            coalesced.increment();
+        }
+
+        try {
+            return Optional.of(new ResizedImage(pending.get(timeoutMs, TimeUnit.MILLISECONDS), key));
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out resizing " + relativePath);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resizing " + relativePath);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Cannot resize " + relativePath, cause);
+        }
+    }
+
+    /**
+     * Tạo bản thu nhỏ trong thư mục tạm rồi chuyển vào cache: bản .webp trước, ảnh chính sau cùng,
+     * nên khi ảnh chính xuất hiện thì mọi bản đi kèm đã sẵn sàng.
+     */
+    private Path generate(Path source, Path target, String key, int width, int height) throws IOException {
+        // Luồng khác có thể vừa tạo xong giữa lúc kiểm tra và lúc đăng ký
+        if (Files.isRegularFile(target)) {
+            recordAccess(key, target);
+            return target;
+        }
+
+        long start = System.nanoTime();
+        Path tmpRoot = Files.createDirectories(cacheDir.resolve(TMP_DIR));
+        Path workDir = Files.createTempDirectory(tmpRoot, key + "-");
+        try {
+            Path output = workDir.resolve(target.getFileName().toString());
+            imageOptimizationService.writeDerivatives(Files.readAllBytes(source), source.getFileName().toString(),
+                    List.of(new Derivative(output, width, height, quality)));
+
+            Files.createDirectories(target.getParent());
+            for (String format : ImageVariants.MODERN_FORMATS) {
+                String variantName = ImageVariants.variantName(output.getFileName().toString(), format);
+                Path variant = output.resolveSibling(variantName);
+                if (Files.exists(variant)) {
+                    Files.move(variant, target.resolveSibling(variantName),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            Files.move(output, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            FileSystemUtils.deleteRecursively(workDir);
+            generateTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        add(key, target, sizeOnDisk(target), true);
+        return target;
+    }
+
+    // ========== LRU ==========
+    private void recordAccess(String key, Path file) {
+        synchronized (index) {
+            // get() đưa bản này lên cuối thứ tự truy cập
+            if (index.get(key) != null) {
+                return;
+            }
+        }
+        // Có trên đĩa nhưng chưa được ghi nhận (ví dụ do instance khác dùng chung thư mục cache tạo ra)
+        add(key, file, sizeOnDisk(file), true);
+    }
+
+    private void add(String key, Path file, long bytes, boolean evict) {
+        synchronized (index) {
+            if (index.containsKey(key)) {
+                return;
+            }
+            index.put(key, new CacheEntry(file, bytes));
+            totalBytes += bytes;
+        }
+        if (evict) {
+            evictIfNeeded();
+        }
+    }
+
+    private void evictIfNeeded() {
+        List<CacheEntry> victims = new ArrayList<>();
+        synchronized (index) {
+            Iterator<CacheEntry> iterator = index.values().iterator();
+            // Luôn giữ bản mới nhất, kể cả khi một mình nó vượt giới hạn
+            while (totalBytes > maxBytes && index.size() > 1 && iterator.hasNext()) {
+                CacheEntry eldest = iterator.next();
+                iterator.remove();
+                totalBytes -= eldest.bytes();
+                victims.add(eldest);
+            }
+        }
+        for (CacheEntry victim : victims) {
+            try {
+                Files.deleteIfExists(victim.file());
+                for (String format : ImageVariants.MODERN_FORMATS) {
+                    Files.deleteIfExists(victim.file().resolveSibling(
+                            ImageVariants.variantName(victim.file().getFileName().toString(), format)));
+                }
+                evictions.increment();
+            } catch (IOException e) {
+                log.warn("Cannot evict resized image {}: {}", victim.file(), e.getMessage());
+            }
+        }
+    }
+
+    private double cacheBytes() {
+        synchronized (index) {
+            return totalBytes;
+        }
+    }
+
+    private double cacheEntries() {
+        synchronized (index) {
+            return index.size();
+        }
+    }
+
+    // ========== HELPER METHODS ==========
+    private String sourceHash(Path source) throws IOException {
+        String memoKey = source + "|" + Files.getLastModifiedTime(source).toMillis() + "|" + Files.size(source);
+        try {
+            return sourceHashes.get(memoKey, k -> {
+                try (InputStream in = Files.newInputStream(source)) {
+                    MessageDigest digest = sha256();
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
+                    }
+                    return HexFormat.of().formatHex(digest.digest());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private String cacheKey(String sourceHash, int width, int height) {
+        String material = sourceHash + ":" + width + "x" + height + ":" + quality;
+        byte[] digest = sha256().digest(material.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest, 0, 16);
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Dung lượng ảnh chính cộng các bản WebP/AVIF đi kèm
+    private long sizeOnDisk(Path file) {
+        long bytes = 0;
+        try {
+            bytes += Files.size(file);
+            for (String format : ImageVariants.MODERN_FORMATS) {
+                Path variant = file.resolveSibling(ImageVariants.variantName(file.getFileName().toString(), format));
+                if (Files.exists(variant)) {
+                    bytes += Files.size(variant);
+                }
+            }
+        } catch (IOException e) {
+            // File vừa bị xóa: tính phần đã đọc được
+        }
+        return bytes;
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private String getFileExtension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 ? filename.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
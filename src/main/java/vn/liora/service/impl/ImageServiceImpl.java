@@ -1,48 +1,66 @@
 package vn.liora.service.impl;
 
-import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import vn.liora.entity.Image;
 import vn.liora.entity.Product;
+import vn.liora.event.ProductChangedEvent;
 import vn.liora.repository.ImageRepository;
 import vn.liora.repository.ProductRepository;
 import vn.liora.service.IImageService;
-import vn.liora.service.IStorageService;
-import vn.liora.service.IDirectoryStructureService;
 import vn.liora.service.IImageOptimizationService;
+import vn.liora.service.IImagePipelineService;
+import vn.liora.service.IImagePipelineService.ImageSource;
 import vn.liora.exception.AppException;
 import vn.liora.exception.ErrorCode;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Ảnh sản phẩm. Giải mã/thu nhỏ/nén ảnh (chậm) chạy ngoài transaction; chỉ bước lưu bản ghi Image
+ * mở transaction ngắn, khóa dòng Product để thứ tự hiển thị không trùng khi nhiều lần upload chồng nhau.
+ */
 @Service
-@RequiredArgsConstructor
 public class ImageServiceImpl implements IImageService {
 
     private final ImageRepository imageRepository;
     private final ProductRepository productRepository;
-    private final IStorageService storageService;
-    private final IDirectoryStructureService directoryStructureService;
     private final IImageOptimizationService imageOptimizationService;
+    private final IImagePipelineService imagePipelineService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
 
     // Constants
-    private static final int MAX_WIDTH = 1200;
-    private static final int MAX_HEIGHT = 1200;
-    private static final float QUALITY = 0.8f;
-    private static final int THUMBNAIL_SIZE = 300;
     private static final int MAX_IMAGES_PER_PRODUCT = 10;
 
+    public ImageServiceImpl(ImageRepository imageRepository,
+            ProductRepository productRepository,
+            IImageOptimizationService imageOptimizationService,
+            IImagePipelineService imagePipelineService,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager) {
+        this.imageRepository = imageRepository;
+        this.productRepository = productRepository;
+        this.imageOptimizationService = imageOptimizationService;
+        this.imagePipelineService = imagePipelineService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
     @Override
     public Image createImage(Image image) {
-        return imageRepository.save(image);
+        Image saved = imageRepository.save(image);
+        publishProductChanged(saved);
+        return saved;
     }
 
     @Override
@@ -53,19 +71,23 @@ public class ImageServiceImpl implements IImageService {
 
     @Override
     public Image updateImage(Image image) {
-        return imageRepository.save(image);
+        Image saved = imageRepository.save(image);
+        publishProductChanged(saved);
+        return saved;
     }
 
     @Override
     public void deleteById(Long imageId) {
         Image image = findById(imageId);
         imageRepository.delete(image);
+        publishProductChanged(image);
     }
 
     @Override
     @Transactional
     public void deleteByProductId(Long productId) {
         imageRepository.deleteByProductId(productId);
+        eventPublisher.publishEvent(ProductChangedEvent.of(productId));
     }
 
     @Override
@@ -89,7 +111,6 @@ public class ImageServiceImpl implements IImageService {
     }
 
     @Override
-    @Transactional
     public Image uploadProductImage(Long productId, MultipartFile file, boolean isMain, Integer displayOrder) {
         // Validate
         if (!isValidImageFile(file)) {
@@ -105,28 +126,18 @@ public class ImageServiceImpl implements IImageService {
         }
 
         try {
-            // Generate unique filename
-            String filename = generateUniqueFilename(file.getOriginalFilename());
-            String relativePath = directoryStructureService.createFullPath("products", filename, false);
-            String thumbnailPath = directoryStructureService.createFullPath("products", filename, true);
-
-            // Optimize main image
-            Path mainImagePath = Paths.get(storageService.getStorageLocation(), relativePath);
-            imageOptimizationService.optimizeImage(file, mainImagePath, MAX_WIDTH, MAX_HEIGHT, QUALITY);
-
-            // Create thumbnail
-            Path thumbnailImagePath = Paths.get(storageService.getStorageLocation(), thumbnailPath);
-            Files.createDirectories(thumbnailImagePath.getParent());
-            imageOptimizationService.createThumbnail(file, thumbnailImagePath, THUMBNAIL_SIZE);
-
-            // Create Image entity
-            Image image = new Image();
-            image.setImageUrl("/uploads/" + relativePath);
-            image.setProduct(product);
-            image.setIsMain(isMain);
-            image.setDisplayOrder(displayOrder != null ? displayOrder : 0);
-
-            return imageRepository.save(image);
+            // Ảnh chính, thumbnail và các cỡ responsive tạo từ một lần giải mã
+            ImageSource source = imagePipelineService.prepare("products",
+                    generateUniqueFilename(file.getOriginalFilename()), file, true);
+            imagePipelineService.process(source);
+
+            Image saved = transactionTemplate.execute(status -> {
+                lockProduct(productId);
+                return saveImage(product, source, isMain,
+                        displayOrder != null ? displayOrder : nextDisplayOrder(productId));
+            });
+            eventPublisher.publishEvent(ProductChangedEvent.of(productId));
+            return saved;
 
         } catch (IOException e) {
             throw new AppException(ErrorCode.UPLOAD_FAILED);
@@ -134,22 +145,63 @@ public class ImageServiceImpl implements IImageService {
     }
 
     @Override
-    @Transactional
     public List<Image> uploadMultipleProductImages(Long productId, MultipartFile[] files) {
-        List<Image> uploadedImages = new ArrayList<>();
-        
-        for (int i = 0; i < files.length; i++) {
-            MultipartFile file = files[i];
-            if (!file.isEmpty() && isValidImageFile(file)) {
-                boolean isMain = (i == 0); // First image is main
-                Image image = uploadProductImage(productId, file, isMain, i);
-                uploadedImages.add(image);
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_FOUND));
+
+        // Đọc file trên luồng request, ghi nhớ vị trí để giữ quy tắc ảnh đầu tiên là ảnh chính
+        List<ImageSource> sources = new ArrayList<>();
+        Map<ImageSource, Integer> positions = new IdentityHashMap<>();
+        try {
+            for (int i = 0; i < files.length; i++) {
+                MultipartFile file = files[i];
+                if (!file.isEmpty() && isValidImageFile(file)) {
+                    ImageSource source = imagePipelineService.prepare("products",
+                            generateUniqueFilename(file.getOriginalFilename()), file, true);
+                    sources.add(source);
+                    positions.put(source, i);
+                }
             }
+        } catch (IOException e) {
+            throw new AppException(ErrorCode.UPLOAD_FAILED);
+        }
+
+        if (!canUploadMoreImages(productId, sources.size())) {
+            throw new AppException(ErrorCode.TOO_MANY_IMAGES);
         }
-        
+
+        // Các file được xử lý song song trên pool ảnh (ngoài transaction); file lỗi bị bỏ qua
+        List<ImageSource> processed = imagePipelineService.processAll(sources);
+        List<Image> uploadedImages = transactionTemplate.execute(status -> {
+            lockProduct(productId);
+            List<Image> saved = new ArrayList<>(processed.size());
+            for (ImageSource source : processed) {
+                int position = positions.get(source);
+                saved.add(saveImage(product, source, position == 0, position));
+            }
+            return saved;
+        });
+        if (!uploadedImages.isEmpty()) {
+            eventPublisher.publishEvent(ProductChangedEvent.of(productId));
+        }
+
         return uploadedImages;
     }
 
+    @Override
+    public Image appendProductImage(Long productId, String imageUrl) {
+        Image saved = transactionTemplate.execute(status -> {
+            Product product = lockProduct(productId);
+            Image image = new Image();
+            image.setImageUrl(imageUrl);
+            image.setProduct(product);
+            image.setDisplayOrder(nextDisplayOrder(productId));
+            return imageRepository.save(image);
+        });
+        eventPublisher.publishEvent(ProductChangedEvent.of(productId));
+        return saved;
+    }
+
     @Override
     @Transactional
     public void setMainImage(Long productId, Long imageId) {
@@ -167,6 +219,7 @@ public class ImageServiceImpl implements IImageService {
         }
         image.setIsMain(true);
         imageRepository.save(image);
+        eventPublisher.publishEvent(ProductChangedEvent.of(productId));
     }
 
     @Override
@@ -174,12 +227,14 @@ public class ImageServiceImpl implements IImageService {
         Image image = findById(imageId);
         image.setDisplayOrder(newOrder);
         imageRepository.save(image);
+        publishProductChanged(image);
     }
 
     @Override
     public void deleteImage(Long imageId) {
         Image image = findById(imageId);
         imageRepository.delete(image);
+        publishProductChanged(image);
     }
 
     @Override
@@ -203,7 +258,34 @@ public class ImageServiceImpl implements IImageService {
         return imageRepository.countByProductProductIdAndIsMainTrue(productId);
     }
 
+    private Image saveImage(Product product, ImageSource source, boolean isMain, int displayOrder) {
+        Image image = new Image();
+        image.setImageUrl(source.url());
+        image.setProduct(product);
+        image.setIsMain(isMain);
+        image.setDisplayOrder(displayOrder);
+        return imageRepository.save(image);
+    }
+
+    // Khóa dòng Product tới hết transaction: các lần lưu ảnh của cùng sản phẩm chạy lần lượt
+    private Product lockProduct(Long productId) {
+        return productRepository.findByIdForUpdate(productId)
+                .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_FOUND));
+    }
+
+    // Gọi sau lockProduct để không trùng với lần lưu đồng thời
+    private int nextDisplayOrder(Long productId) {
+        Integer max = imageRepository.findMaxDisplayOrder(productId);
+        return max != null ? max + 1 : 0;
+    }
+
     private String generateUniqueFilename(String originalFilename) {
         return System.currentTimeMillis() + "_" + originalFilename;
     }
+
+    private void publishProductChanged(Image image) {
+        if (image.getProduct() != null) {
+            eventPublisher.publishEvent(ProductChangedEvent.of(image.getProduct().getProductId()));
+        }
+    }
 }
\ No newline at end of file
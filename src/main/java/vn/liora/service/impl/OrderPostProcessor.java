@@ -0,0 +1,127 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.liora.entity.Order;
+import vn.liora.event.OrderPlacedEvent;
+import vn.liora.repository.DiscountRepository;
+import vn.liora.repository.OrderRepository;
+
+/**
+ * Xử lý sau khi đơn hàng đã commit, chạy trên orderPipelineExecutor để request checkout
+ * trả về ngay. Mỗi bước độc lập, thử lại có backoff và ghi metrics order.pipeline.stage.
+ * Email xác nhận không nằm ở đây mà được ghi vào EmailOutbox ngay trong transaction đặt hàng.
+ * Bước không hoàn thành được (hết lượt dùng mã, hết số lần thử) được ghi log ERROR và đếm ở
+ * order.pipeline.dead để cảnh báo và đối soát thủ công.
+ */
+@Component
+@Slf4j
+public class OrderPostProcessor {
+
+    private final OrderRepository orderRepository;
+    private final DiscountRepository discountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public OrderPostProcessor(OrderRepository orderRepository,
+            DiscountRepository discountRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${order.pipeline.max-attempts:3}") int maxAttempts,
+            @Value("${order.pipeline.backoff-millis:500}") long backoffMillis) {
+        this.orderRepository = orderRepository;
+        this.discountRepository = discountRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+    }
+
+    @Async("orderPipelineExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        Long orderId = event.getOrderId();
+        runStage("discount-usage", orderId, () -> incrementDiscountUsage(orderId));
+        log.info("Order {} post-processing finished", orderId);
+    }
+
+    // ========== STAGES ==========
+    private void incrementDiscountUsage(Long orderId) {
+        Long discountId = transactionTemplate.execute(status -> {
+            Order order = orderRepository.findById(orderId).orElse(null);
+            if (order == null || order.getDiscount() == null) {
+                return null;
+            }
+            Long id = order.getDiscount().getDiscountId();
+            return discountRepository.incrementUsedCountWithinLimit(id) > 0 ? null : id;
+        });
+        if (discountId != null) {
+            // Mã đã hết lượt khi đơn commit (nhiều đơn dùng cùng lượt cuối): không thử lại, chuyển đối soát
+            markDead("discount-usage", "usage-limit-reached");
+            log.error("Order {} used discount {} beyond its usage limit; usedCount not incremented",
+                    orderId, discountId);
+        }
+    }
+
+    // ========== HELPER METHODS ==========
+    /**
+     * Chạy một bước với tối đa maxAttempts lần, backoff tăng gấp đôi. Lỗi cuối cùng được ghi vào
+     * order.pipeline.dead, không ảnh hưởng các bước còn lại.
+     */
+    private void runStage(String stage, Long orderId, Runnable action) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                action.run();
+                outcome = "success";
+                break;
+            } catch (Exception e) {
+                log.warn("Order {} stage {} failed (attempt {}/{}): {}",
+                        orderId, stage, attempt, maxAttempts, e.getMessage());
+                if (attempt < maxAttempts && !sleep(backoffMillis << (attempt - 1))) {
+                    break;
+                }
+            }
+        }
+        sample.stop(Timer.builder("order.pipeline.stage")
+                .description("Thời gian xử lý từng bước sau đặt hàng")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+        if (!"success".equals(outcome)) {
+            markDead(stage, "retries-exhausted");
+            log.error("Order {} stage {} gave up after {} attempts", orderId, stage, maxAttempts);
+        }
+    }
+
+    private void markDead(String stage, String reason) {
+        Counter.builder("order.pipeline.dead")
+                .description("Số bước sau đặt hàng không hoàn thành, cần đối soát")
+                .tag("stage", stage)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
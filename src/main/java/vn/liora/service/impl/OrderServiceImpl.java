@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 // removed unused imports
 
 import java.time.LocalDate;
@@ -21,8 +22,11 @@ import vn.liora.dto.response.OrderProductResponse;
 import vn.liora.dto.response.OrderResponse;
 import vn.liora.dto.response.TopCustomerResponse;
 import vn.liora.entity.*;
+import vn.liora.event.OrderPlacedEvent;
 import vn.liora.exception.AppException;
 import vn.liora.exception.ErrorCode;
+import vn.liora.exception.StockReservationException;
+import vn.liora.enums.StockReservationStatus;
 import vn.liora.mapper.OrderMapper;
 import vn.liora.mapper.OrderProductMapper;
 import vn.liora.repository.*;
@@ -32,12 +36,16 @@ import vn.liora.service.IProductService;
 import vn.liora.service.IGhnShippingService;
 import vn.liora.service.EmailService;
 import vn.liora.service.IWalletService;
+import vn.liora.service.IStockReservationService;
+import vn.liora.dto.response.StockReservationLine;
 import vn.liora.entity.Discount;
 import vn.liora.repository.DiscountRepository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -61,6 +69,8 @@ public class OrderServiceImpl implements IOrderService {
     EmailService emailService;
     GhnShippingRepository ghnShippingRepository;
     IWalletService walletService;
+    IStockReservationService stockReservationService;
+    ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -74,21 +84,45 @@ public class OrderServiceImpl implements IOrderService {
                 throw new AppException(ErrorCode.NO_SELECTED_PRODUCT);
             }
 
-            // ✅ Lọc chỉ lấy sản phẩm hợp lệ (available=true, isActive=true, stock đủ)
-            List<CartProduct> validProducts = selected.stream()
-                    .filter(cp -> {
-                        Product product = cp.getProduct();
-                        return product != null
-                                && Boolean.TRUE.equals(product.getAvailable())
-                                && Boolean.TRUE.equals(product.getIsActive())
-                                && product.getStock() != null && cp.getQuantity() <= product.getStock();
-                    })
-                    .collect(Collectors.toList());
-
-            if (validProducts.isEmpty()) {
-                throw new AppException(ErrorCode.NO_VALID_PRODUCT);
+            // Sản phẩm đã ẩn/ngừng bán thì không thử giữ hàng
+            Map<Long, String> productNames = new LinkedHashMap<>();
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            List<StockReservationLine> unavailable = new ArrayList<>();
+            for (CartProduct cp : selected) {
+                Product product = cp.getProduct();
+                if (product == null) {
+                    throw new AppException(ErrorCode.NO_VALID_PRODUCT);
+                }
+                productNames.put(product.getProductId(), product.getName());
+                if (Boolean.TRUE.equals(product.getAvailable()) && Boolean.TRUE.equals(product.getIsActive())) {
+                    quantities.merge(product.getProductId(), cp.getQuantity(), Integer::sum);
+                } else {
+                    unavailable.add(StockReservationLine.builder()
+                            .productId(product.getProductId())
+                            .quantity(cp.getQuantity())
+                            .status(StockReservationStatus.UNAVAILABLE)
+                            .build());
+                }
             }
 
+            // Giữ tồn kho nguyên tử cho mọi dòng (UPDATE ... WHERE stock >= q), rollback cùng đơn hàng.
+            // Chỉ tạo đơn khi mọi dòng đã chọn đều giữ được; nếu không, từ chối cả đơn (transaction rollback
+            // hoàn lại các dòng đã giữ) và trả kết quả từng dòng để người mua sửa giỏ rồi đặt lại.
+            List<StockReservationLine> lines = new ArrayList<>(unavailable);
+            if (unavailable.isEmpty()) {
+                lines.addAll(stockReservationService.reserve(quantities));
+            }
+            lines.forEach(line -> line.setProductName(productNames.get(line.getProductId())));
+            List<StockReservationLine> failed = lines.stream()
+                    .filter(line -> !line.isReserved())
+                    .toList();
+            if (!failed.isEmpty()) {
+                String names = failed.stream()
+                        .map(StockReservationLine::getProductName)
+                        .collect(Collectors.joining(", "));
+                throw new StockReservationException(
+                        "Sản phẩm không đủ hàng hoặc đã ngừng bán: " + names, lines);
+            }
             Order order = orderMapper.toOrder(request);
             order.setUser(user); // user có thể null khi guest; các thao tác phía dưới phải null-safe
             order.setOrderDate(LocalDateTime.now());
@@ -106,8 +140,8 @@ public class OrderServiceImpl implements IOrderService {
                 order.setProvinceId(request.getProvinceId());
             }
 
-            // ✅ Sử dụng validProducts thay vì selected
-            List<OrderProduct> orderProducts = validProducts.stream()
+            // ✅ Mọi dòng đã chọn đều đã giữ được tồn kho
+            List<OrderProduct> orderProducts = selected.stream()
                     .map(cp -> {
                         OrderProduct op = orderProductMapper.toOrderProduct(cp);
                         op.setOrder(order);
@@ -214,41 +248,13 @@ public class OrderServiceImpl implements IOrderService {
                 }
             }
 
-            // After order persisted, increment discount usage (if a discount was applied)
-            try {
-                if (savedOrder.getDiscount() != null) {
-                    discountService.incrementUsageCount(savedOrder.getDiscount().getDiscountId());
-                }
-            } catch (Exception e) {
-                log.warn("Failed to increment discount usage after saving order {}: {}", savedOrder.getIdOrder(),
-                        e.getMessage());
-            }
             orderProducts.forEach(op -> op.setOrder(savedOrder));
             orderProductRepository.saveAll(orderProducts);
 
-            // Cập nhật stock cho từng sản phẩm trong đơn hàng (chỉ giảm stock, không tăng
-            // sold count)
-            for (OrderProduct orderProduct : orderProducts) {
-                try {
-                    Product product = orderProduct.getProduct();
-                    Integer currentStock = product.getStock();
-                    Integer orderedQuantity = orderProduct.getQuantity();
-                    Integer newStock = currentStock - orderedQuantity;
-                    // Chỉ cập nhật stock, sold count sẽ tăng khi đơn hàng hoàn tất
-                    productService.updateStock(product.getProductId(), newStock);
-
-                    log.info("Updated stock for product {}: {} -> {} (ordered: {})",
-                            product.getProductId(), currentStock, newStock, orderedQuantity);
-
-                } catch (Exception e) {
-                    log.error("Error updating stock for product {}: {}",
-                            orderProduct.getProduct().getProductId(), e.getMessage());
-                    // Không throw exception để không rollback toàn bộ đơn hàng
-                }
-            }
+            // Stock đã được trừ khi giữ hàng ở trên; sold count sẽ tăng khi đơn hàng hoàn tất
 
-            // ✅ Chỉ xóa các sản phẩm hợp lệ đã tạo order
-            cartProductRepository.deleteAll(validProducts);
+            // ✅ Chỉ xóa các sản phẩm đã tạo order
+            cartProductRepository.deleteAll(selected);
 
             // GHN shipping order sẽ chỉ được tạo khi order status = CONFIRMED
             // để đồng bộ cho tất cả hình thức thanh toán (COD, VNPAY, MOMO)
@@ -257,33 +263,29 @@ public class OrderServiceImpl implements IOrderService {
             log.info("Order created successfully. Order ID: {}, User: {}, Total: {}, Discount: {}",
                     savedOrder.getIdOrder(), userIdLog, total, totalDiscount);
 
-            // Gửi email xác nhận đơn hàng
-            try {
-                OrderResponse orderResponse = orderMapper.toOrderResponse(savedOrder);
-                List<OrderProductResponse> orderProductResponses = orderProducts.stream()
-                        .map(orderProductMapper::toOrderProductResponse)
-                        .collect(Collectors.toList());
+            OrderResponse orderResponse = orderMapper.toOrderResponse(savedOrder);
 
-                if (user != null) {
-                    // User đã đăng nhập
-                    emailService.sendOrderConfirmationEmail(
-                            user.getEmail(),
-                            user.getFirstname() + " " + user.getLastname(),
-                            orderResponse,
-                            orderProductResponses);
-                } else {
-                    // Guest user
-                    emailService.sendGuestOrderConfirmationEmail(
-                            request.getEmail(),
-                            orderResponse,
-                            orderProductResponses);
-                }
-            } catch (Exception e) {
-                log.error("Failed to send order confirmation email: {}", e.getMessage());
-                // Không throw exception để không rollback đơn hàng
+            // Email xác nhận được ghi vào outbox cùng transaction, EmailOutboxDispatcher gửi sau
+            List<OrderProductResponse> orderProductResponses = orderProducts.stream()
+                    .map(orderProductMapper::toOrderProductResponse)
+                    .collect(Collectors.toList());
+            if (user != null) {
+                emailService.sendOrderConfirmationEmail(
+                        user.getEmail(),
+                        user.getFirstname() + " " + user.getLastname(),
+                        orderResponse,
+                        orderProductResponses);
+            } else {
+                emailService.sendGuestOrderConfirmationEmail(
+                        request.getEmail(),
+                        orderResponse,
+                        orderProductResponses);
             }
 
-            return orderMapper.toOrderResponse(savedOrder);
+            // Lượt dùng mã giảm giá chạy bất đồng bộ sau khi commit (OrderPostProcessor)
+            eventPublisher.publishEvent(new OrderPlacedEvent(savedOrder.getIdOrder()));
+
+            return orderResponse;
 
         } catch (AppException e) {
             log.error("AppException in createOrder: {}", e.getMessage());
@@ -602,24 +604,11 @@ public class OrderServiceImpl implements IOrderService {
      */
     private void restoreStockForOrder(Order order) {
         try {
-            List<OrderProduct> orderProducts = orderProductRepository.findByOrder(order);
-            for (OrderProduct orderProduct : orderProducts) {
-                try {
-                    Product product = orderProduct.getProduct();
-                    Integer currentStock = product.getStock();
-                    Integer quantity = orderProduct.getQuantity();
-                    Integer newStock = currentStock + quantity;
-
-                    productService.updateStock(product.getProductId(), newStock);
-
-                    log.info("Restored stock for product {}: {} -> {} (quantity: {})",
-                            product.getProductId(), currentStock, newStock, quantity);
-
-                } catch (Exception e) {
-                    log.error("Error restoring stock for product {}: {}",
-                            orderProduct.getProduct().getProductId(), e.getMessage());
-                }
-            }
+            // Cộng lại nguyên tử (stock = stock + q), không ghi đè bằng giá trị đọc trước đó
+            Map<Long, Integer> quantities = orderProductRepository.findByOrder(order).stream()
+                    .collect(Collectors.groupingBy(op -> op.getProduct().getProductId(),
+                            Collectors.summingInt(OrderProduct::getQuantity)));
+            stockReservationService.release(quantities);
         } catch (Exception e) {
             log.error("Error restoring stock for order {}: {}", order.getIdOrder(), e.getMessage());
         }
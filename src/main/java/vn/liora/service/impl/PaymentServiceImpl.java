@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,7 +12,6 @@ import vn.liora.entity.Order;
 import vn.liora.entity.VnpayPayment;
 import vn.liora.entity.MomoPayment;
 import vn.liora.entity.Discount;
-import vn.liora.entity.Product;
 import vn.liora.entity.OrderProduct;
 import vn.liora.dto.response.OrderResponse;
 import vn.liora.dto.response.OrderProductResponse;
@@ -25,7 +25,7 @@ import vn.liora.repository.MomoPaymentRepository;
 import vn.liora.repository.OrderProductRepository;
 import vn.liora.repository.DiscountRepository;
 import vn.liora.service.PaymentService;
-import vn.liora.service.IProductService;
+import vn.liora.service.IStockReservationService;
 import vn.liora.service.EmailService;
 import vn.liora.util.VnpayUtil;
 import vn.liora.util.MomoUtil;
@@ -50,11 +50,12 @@ public class PaymentServiceImpl implements PaymentService {
     final VnpayPaymentRepository vnpayPaymentRepository;
     final MomoPaymentRepository momoPaymentRepository;
     final OrderProductRepository orderProductRepository;
-    final IProductService productService;
+    final IStockReservationService stockReservationService;
     final DiscountRepository discountRepository;
     final EmailService emailService;
     final OrderMapper orderMapper;
     final OrderProductMapper orderProductMapper;
+    @Qualifier("momoRestTemplate")
     final RestTemplate restTemplate;
 
     @Value("${vnpay.tmnCode}")
@@ -570,23 +571,12 @@ public class PaymentServiceImpl implements PaymentService {
      */
     private void restoreStockForOrder(Order order) {
         try {
-            var orderProducts = orderProductRepository.findByOrder(order);
-            for (var orderProduct : orderProducts) {
-                try {
-                    Product product = orderProduct.getProduct();
-                    Integer currentStock = product.getStock();
-                    Integer quantity = orderProduct.getQuantity();
-                    Integer newStock = currentStock + quantity;
-
-                    productService.updateStock(product.getProductId(), newStock);
-
-                    log.info("Restored stock for product {}: {} -> {} (quantity: {})",
-                            product.getProductId(), currentStock, newStock, quantity);
-                } catch (Exception e) {
-                    log.error("Error restoring stock for product {}: {}",
-                            orderProduct.getProduct().getProductId(), e.getMessage());
-                }
+            // Cộng lại nguyên tử (stock = stock + q), không ghi đè bằng giá trị đọc trước đó
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (var orderProduct : orderProductRepository.findByOrder(order)) {
+                quantities.merge(orderProduct.getProduct().getProductId(), orderProduct.getQuantity(), Integer::sum);
             }
+            stockReservationService.release(quantities);
         } catch (Exception e) {
             log.error("Error restoring stock for order {}: {}", order.getIdOrder(), e.getMessage());
         }
@@ -0,0 +1,180 @@
+package vn.liora.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.liora.dto.request.ProductSearchCriteria;
+import vn.liora.dto.response.ProductResponse;
+import vn.liora.dto.response.ProductSuggestResponse;
+import vn.liora.entity.Product;
+import vn.liora.event.ProductChangedEvent;
+import vn.liora.mapper.ProductMapper;
+import vn.liora.repository.ProductRepository;
+import vn.liora.service.IProductCatalogService;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductCatalogServiceImpl implements IProductCatalogService {
+
+    private static final int SIMILAR_MIN_RESULTS = 4;
+    private static final int SIMILAR_LIMIT = 8;
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+
+    // Dữ liệu gốc của snapshot, chỉ truy cập trong rebuildLock
+    private final Object rebuildLock = new Object();
+    private final Map<Long, ProductResponse> rows = new HashMap<>();
+
+    private final Set<Long> staleIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean fullReload = new AtomicBoolean(true);
+    private volatile ProductCatalogSnapshot snapshot = ProductCatalogSnapshot.EMPTY;
+
+    @Override
+    public Page<ProductResponse> search(ProductSearchCriteria criteria, Pageable pageable) {
+        return current().page(criteria, pageable);
+    }
+
+    @Override
+    public List<ProductResponse> findAll(ProductSearchCriteria criteria) {
+        return current().list(criteria);
+    }
+
+    @Override
+    public ProductSuggestResponse suggest(String query, int limit) {
+        return current().suggest(query, limit);
+    }
+
+    @Override
+    public List<Long> findSimilarProductIds(ProductResponse original) {
+        ProductCatalogSnapshot catalog = current();
+        Long productId = original.getProductId();
+        Long categoryId = original.getCategoryId();
+        Long brandId = original.getBrandId();
+
+        // Khoảng giá động: < 200k ±50%, 200k-1M ±40%, > 1M ±30%
+        BigDecimal price = original.getPrice() != null ? original.getPrice() : BigDecimal.ZERO;
+        double rangePercent = price.compareTo(BigDecimal.valueOf(200000)) < 0 ? 0.5
+                : price.compareTo(BigDecimal.valueOf(1000000)) < 0 ? 0.4 : 0.3;
+        BigDecimal range = price.multiply(BigDecimal.valueOf(rangePercent));
+
+        // Level 1: cùng category + brand + khoảng giá
+        List<Long> level1 = categoryId == null ? List.of() : ids(catalog.list(similarBase(productId, price, range)
+                .categoryIds(List.of(categoryId))
+                .brandIds(brandId != null ? List.of(brandId) : null)
+                .build()));
+        if (level1.size() >= SIMILAR_MIN_RESULTS) {
+            return level1;
+        }
+
+        // Level 2: cùng category + khoảng giá (level 3 cũ dùng cùng khoảng giá nên trùng level 2)
+        List<Long> level2 = categoryId == null ? List.of() : ids(catalog.list(similarBase(productId, price, range)
+                .categoryIds(List.of(categoryId))
+                .build()));
+        if (level1.size() + level2.size() >= SIMILAR_MIN_RESULTS) {
+            return combine(SIMILAR_LIMIT, level1, level2);
+        }
+
+        // Level 4: cùng brand + khoảng giá
+        List<Long> level4 = brandId == null ? List.of() : ids(catalog.list(similarBase(productId, price, range)
+                .brandIds(List.of(brandId))
+                .build()));
+        return combine(SIMILAR_LIMIT, level1, level2, level4);
+    }
+
+    @Override
+    public void refresh(Long productId) {
+        if (productId == null) {
+            refreshAll();
+        } else {
+            staleIds.add(productId);
+        }
+    }
+
+    @Override
+    public void refreshAll() {
+        fullReload.set(true);
+    }
+
+    // Chạy sau khi transaction ghi dữ liệu đã commit (hoặc ngay lập tức nếu không có transaction)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        refresh(event.getProductId());
+    }
+
+    // ========== SNAPSHOT MAINTENANCE ==========
+    private ProductCatalogSnapshot current() {
+        if (!fullReload.get() && staleIds.isEmpty()) {
+            return snapshot;
+        }
+        synchronized (rebuildLock) {
+            if (fullReload.getAndSet(false)) {
+                staleIds.clear();
+                try {
+                    List<Product> products = productRepository.findAllForCatalog();
+                    rows.clear();
+                    for (Product product : products) {
+                        rows.put(product.getProductId(), productMapper.toProductResponse(product));
+                    }
+                } catch (RuntimeException e) {
+                    fullReload.set(true);
+                    throw e;
+                }
+            } else if (!staleIds.isEmpty()) {
+                Set<Long> ids = new HashSet<>(staleIds);
+                staleIds.removeAll(ids);
+                try {
+                    List<Product> products = productRepository.findAllForCatalogByIdIn(ids);
+                    ids.forEach(rows::remove);
+                    for (Product product : products) {
+                        rows.put(product.getProductId(), productMapper.toProductResponse(product));
+                    }
+                } catch (RuntimeException e) {
+                    staleIds.addAll(ids);
+                    throw e;
+                }
+            } else {
+                return snapshot;
+            }
+            snapshot = ProductCatalogSnapshot.of(rows.values());
+            log.debug("Rebuilt product catalog snapshot: {} products", snapshot.size());
+            return snapshot;
+        }
+    }
+
+    private static ProductSearchCriteria.ProductSearchCriteriaBuilder similarBase(Long productId, BigDecimal price,
+                                                                                  BigDecimal range) {
+        return ProductSearchCriteria.builder()
+                .available(true)
+                .excludeProductId(productId)
+                .minPrice(price.subtract(range))
+                .maxPrice(price.add(range));
+    }
+
+    private static List<Long> ids(List<ProductResponse> products) {
+        return products.stream().map(ProductResponse::getProductId).toList();
+    }
+
+    @SafeVarargs
+    private static List<Long> combine(int limit, List<Long>... lists) {
+        LinkedHashSet<Long> combined = new LinkedHashSet<>();
+        for (List<Long> list : lists) {
+            for (Long id : list) {
+                if (combined.size() >= limit) {
+                    return new ArrayList<>(combined);
+                }
+                combined.add(id);
+            }
+        }
+        return new ArrayList<>(combined);
+    }
+}
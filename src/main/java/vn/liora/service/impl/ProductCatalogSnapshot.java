@@ -0,0 +1,393 @@
+package vn.liora.service.impl;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import vn.liora.dto.request.ProductSearchCriteria;
+import vn.liora.dto.response.ProductResponse;
+import vn.liora.dto.response.ProductSuggestResponse;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ảnh chụp bất biến của catalog sản phẩm, tối ưu cho đọc.
+ * Các thuộc tính dùng để lọc/sắp xếp được giữ trong mảng nguyên thủy (mỗi sản phẩm một dòng,
+ * dòng sắp theo productId tăng dần), các thuộc tính rời rạc được đánh chỉ mục bằng BitSet.
+ * Một truy vấn = AND/OR các BitSet + quét phần dư trên mảng, sau đó duyệt thứ tự sắp xếp
+ * đã tính sẵn để cắt trang. Keyword được tìm qua ProductTextIndex (bỏ dấu, BM25).
+ * Không truy cập JPA.
+ */
+final class ProductCatalogSnapshot {
+
+    static final ProductCatalogSnapshot EMPTY = of(List.of());
+
+    private static final int MAX_RATING = 5;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final int size;
+    private final ProductResponse[] rows;
+    private final Map<Long, Integer> rowById;
+
+    // Cột dữ liệu
+    private final String[] names;
+    private final long[] priceCents;
+    private final double[] ratings; // NaN = chưa có đánh giá
+    private final int[] soldCounts;
+    private final int[] stocks;
+    private final long[] createdAt; // NO_DATE = null
+
+    // Chỉ mục BitSet
+    private final BitSet activeRows;
+    private final BitSet availableRows;
+    private final BitSet soldRows;
+    private final BitSet[] ratingAtLeast; // ratingAtLeast[k]: averageRating >= k
+    private final Map<Long, BitSet> byBrandId;
+    private final Map<String, BitSet> byBrandName;
+    private final Map<Long, BitSet> byCategoryId;
+    private final Map<String, BitSet> byCategoryName;
+    private final Map<String, BitSet> byAgeRange;
+    private final Map<String, BitSet> bySize;
+    private final Map<String, BitSet> byOrigin;
+
+    // Chỉ mục toàn văn và trie gợi ý, dựng lười
+    private volatile ProductTextIndex textIndex;
+    private volatile ProductSuggestionIndex suggestionIndex;
+
+    // Thứ tự sắp xếp, tính lười theo từng khóa "field:dir"
+    private final Map<String, int[]> orderings = new ConcurrentHashMap<>();
+
+    private ProductCatalogSnapshot(List<ProductResponse> sorted) {
+        size = sorted.size();
+        rows = sorted.toArray(new ProductResponse[0]);
+        rowById = new HashMap<>(size * 2);
+        names = new String[size];
+        priceCents = new long[size];
+        ratings = new double[size];
+        soldCounts = new int[size];
+        stocks = new int[size];
+        createdAt = new long[size];
+        activeRows = new BitSet(size);
+        availableRows = new BitSet(size);
+        soldRows = new BitSet(size);
+        ratingAtLeast = new BitSet[MAX_RATING + 1];
+        for (int k = 0; k <= MAX_RATING; k++) {
+            ratingAtLeast[k] = new BitSet(size);
+        }
+        byBrandId = new HashMap<>();
+        byBrandName = new HashMap<>();
+        byCategoryId = new HashMap<>();
+        byCategoryName = new HashMap<>();
+        byAgeRange = new HashMap<>();
+        bySize = new HashMap<>();
+        byOrigin = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            ProductResponse p = rows[i];
+            rowById.put(p.getProductId(), i);
+
+            names[i] = p.getName() != null ? p.getName() : "";
+            priceCents[i] = p.getPrice() != null
+                    ? p.getPrice().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue()
+                    : 0L;
+            ratings[i] = p.getAverageRating() != null ? p.getAverageRating().doubleValue() : Double.NaN;
+            soldCounts[i] = p.getSoldCount() != null ? p.getSoldCount() : 0;
+            stocks[i] = p.getStock() != null ? p.getStock() : 0;
+            createdAt[i] = toEpochNanos(p.getCreatedDate());
+
+            if (Boolean.TRUE.equals(p.getIsActive())) activeRows.set(i);
+            if (Boolean.TRUE.equals(p.getAvailable())) availableRows.set(i);
+            if (soldCounts[i] > 0) soldRows.set(i);
+            for (int k = 0; k <= MAX_RATING; k++) {
+                if (ratings[i] >= k) ratingAtLeast[k].set(i);
+            }
+
+            index(byBrandId, p.getBrandId(), i);
+            index(byBrandName, p.getBrandName(), i);
+            index(byCategoryId, p.getCategoryId(), i);
+            index(byCategoryName, p.getCategoryName(), i);
+            index(byAgeRange, p.getAgeRange(), i);
+            index(bySize, p.getSize(), i);
+            index(byOrigin, p.getOrigin(), i);
+        }
+    }
+
+    static ProductCatalogSnapshot of(Collection<ProductResponse> products) {
+        List<ProductResponse> sorted = new ArrayList<>(products);
+        sorted.sort(Comparator.comparing(ProductResponse::getProductId));
+        return new ProductCatalogSnapshot(sorted);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Một trang kết quả. Không có sortBy thì xếp theo độ liên quan nếu có keyword,
+     * ngược lại giữ thứ tự productId tăng dần.
+     */
+    Page<ProductResponse> page(ProductSearchCriteria criteria, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            List<ProductResponse> all = list(criteria);
+            return new PageImpl<>(all, pageable, all.size());
+        }
+        ProductTextIndex.Hits hits = textSearch(criteria);
+        BitSet matches = match(criteria, hits);
+        int total = matches.cardinality();
+        long from = pageable.getOffset();
+        long to = Math.min(from + pageable.getPageSize(), total);
+        List<ProductResponse> content = new ArrayList<>();
+        if (from < to) {
+            int seen = 0;
+            for (PrimitiveIterator.OfInt it = iterate(matches, criteria, hits); it.hasNext() && seen < to; seen++) {
+                int row = it.nextInt();
+                if (seen >= from) {
+                    content.add(rows[row]);
+                }
+            }
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Toàn bộ kết quả đã sắp xếp (dùng cho tập nhỏ như sản phẩm tương tự).
+     */
+    List<ProductResponse> list(ProductSearchCriteria criteria) {
+        ProductTextIndex.Hits hits = textSearch(criteria);
+        BitSet matches = match(criteria, hits);
+        List<ProductResponse> result = new ArrayList<>(matches.cardinality());
+        for (PrimitiveIterator.OfInt it = iterate(matches, criteria, hits); it.hasNext(); ) {
+            result.add(rows[it.nextInt()]);
+        }
+        return result;
+    }
+
+    // ========== FULL-TEXT ==========
+    /**
+     * Chỉ mục toàn văn được dựng lười ở truy vấn có keyword đầu tiên của snapshot.
+     */
+    private ProductTextIndex textIndex() {
+        ProductTextIndex index = textIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = textIndex;
+                if (index == null) {
+                    index = ProductTextIndex.of(rows);
+                    textIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gợi ý sản phẩm/thương hiệu/danh mục theo tiền tố đang gõ.
+     */
+    ProductSuggestResponse suggest(String query, int limit) {
+        ProductSuggestionIndex index = suggestionIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = suggestionIndex;
+                if (index == null) {
+                    index = ProductSuggestionIndex.of(rows);
+                    suggestionIndex = index;
+                }
+            }
+        }
+        return index.suggest(query, limit);
+    }
+
+    private ProductTextIndex.Hits textSearch(ProductSearchCriteria c) {
+        if (c.getKeyword() == null || c.getKeyword().isBlank()) {
+            return null;
+        }
+        return textIndex().search(c.getKeyword());
+    }
+
+    // ========== FILTERING ==========
+    private BitSet match(ProductSearchCriteria c, ProductTextIndex.Hits hits) {
+        BitSet m = new BitSet(size);
+        m.set(0, size);
+        if (hits != null) {
+            m.and(hits.rows);
+        }
+
+        restrict(m, activeRows, c.getActive());
+        restrict(m, availableRows, c.getAvailable());
+        if (c.isSoldOnly()) {
+            m.and(soldRows);
+        }
+
+        andAny(m, byBrandId, c.getBrandIds());
+        andAny(m, byBrandName, c.getBrandNames());
+        andAny(m, byCategoryId, c.getCategoryIds());
+        andAny(m, byCategoryName, c.getCategoryNames());
+        andAny(m, byAgeRange, c.getAgeRanges());
+        andAny(m, bySize, c.getSizes());
+        andAny(m, byOrigin, c.getOrigins());
+
+        if (c.getProductIds() != null) {
+            BitSet allowed = new BitSet(size);
+            for (Long id : c.getProductIds()) {
+                Integer row = rowById.get(id);
+                if (row != null) allowed.set(row);
+            }
+            m.and(allowed);
+        }
+        if (c.getExcludeProductId() != null) {
+            Integer row = rowById.get(c.getExcludeProductId());
+            if (row != null) m.clear(row);
+        }
+
+        // Đánh giá nguyên 0..5 dùng bucket, còn lại kiểm tra trên mảng
+        double minRating = Double.NaN;
+        if (c.getMinRating() != null) {
+            BigDecimal r = c.getMinRating();
+            if (r.signum() >= 0 && r.compareTo(BigDecimal.valueOf(MAX_RATING)) <= 0
+                    && r.stripTrailingZeros().scale() <= 0) {
+                m.and(ratingAtLeast[r.intValue()]);
+            } else {
+                minRating = r.doubleValue();
+            }
+        }
+
+        long minCents = c.getMinPrice() != null
+                ? c.getMinPrice().movePointRight(2).setScale(0, RoundingMode.CEILING).longValue()
+                : Long.MIN_VALUE;
+        long maxCents = c.getMaxPrice() != null
+                ? c.getMaxPrice().movePointRight(2).setScale(0, RoundingMode.FLOOR).longValue()
+                : Long.MAX_VALUE;
+
+        int minStock = c.getMinStock() != null ? c.getMinStock() : Integer.MIN_VALUE;
+        int maxStock = c.getMaxStock() != null ? c.getMaxStock() : Integer.MAX_VALUE;
+        if (Boolean.TRUE.equals(c.getInStock())) {
+            minStock = Math.max(minStock, 1);
+        } else if (Boolean.FALSE.equals(c.getInStock())) {
+            maxStock = Math.min(maxStock, 0);
+        }
+        long createdFrom = c.getCreatedFrom() != null ? toEpochNanos(c.getCreatedFrom()) : NO_DATE;
+        long createdBefore = c.getCreatedBefore() != null ? toEpochNanos(c.getCreatedBefore()) : NO_DATE;
+        boolean dateFilter = createdFrom != NO_DATE || createdBefore != NO_DATE;
+
+        boolean residual = !Double.isNaN(minRating) || minCents != Long.MIN_VALUE
+                || maxCents != Long.MAX_VALUE
+                || minStock != Integer.MIN_VALUE || maxStock != Integer.MAX_VALUE || dateFilter;
+        if (residual) {
+            for (int i = m.nextSetBit(0); i >= 0; i = m.nextSetBit(i + 1)) {
+                if (priceCents[i] < minCents || priceCents[i] > maxCents
+                        || stocks[i] < minStock || stocks[i] > maxStock
+                        || (dateFilter && !createdWithin(i, createdFrom, createdBefore))
+                        || (!Double.isNaN(minRating) && !(ratings[i] >= minRating))) {
+                    m.clear(i);
+                }
+            }
+        }
+        return m;
+    }
+
+    private boolean createdWithin(int row, long from, long before) {
+        if (createdAt[row] == NO_DATE) return false;
+        if (from != NO_DATE && createdAt[row] < from) return false;
+        return before == NO_DATE || createdAt[row] < before;
+    }
+
+    private static void restrict(BitSet m, BitSet flag, Boolean required) {
+        if (Boolean.TRUE.equals(required)) {
+            m.and(flag);
+        } else if (Boolean.FALSE.equals(required)) {
+            m.andNot(flag);
+        }
+    }
+
+    private static <K> void andAny(BitSet m, Map<K, BitSet> index, Collection<K> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        BitSet union = new BitSet();
+        for (K value : values) {
+            BitSet rowsForValue = index.get(value);
+            if (rowsForValue != null) union.or(rowsForValue);
+        }
+        m.and(union);
+    }
+
+    private static <K> void index(Map<K, BitSet> index, K key, int row) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new BitSet()).set(row);
+        }
+    }
+
+    // ========== SORTING ==========
+    private PrimitiveIterator.OfInt iterate(BitSet matches, ProductSearchCriteria c, ProductTextIndex.Hits hits) {
+        if (c.getSortBy() == null || c.getSortBy().isEmpty()) {
+            if (hits != null) {
+                // Độ liên quan giảm dần, bằng điểm thì theo productId
+                float[] scores = hits.scores;
+                return matches.stream().boxed()
+                        .sorted((a, b) -> Float.compare(scores[b], scores[a]))
+                        .mapToInt(Integer::intValue)
+                        .iterator();
+            }
+            return matches.stream().iterator();
+        }
+        int[] order = ordering(c.getSortBy(), c.getSortDir());
+        return Arrays.stream(order).filter(matches::get).iterator();
+    }
+
+    private int[] ordering(String sortBy, String sortDir) {
+        boolean ascending = sortDir == null || !sortDir.equalsIgnoreCase("desc");
+        String field = switch (sortBy.toLowerCase()) {
+            case "price" -> "price";
+            case "rating" -> "rating";
+            case "sold", "soldcount", "sold_count" -> "sold";
+            case "created", "createddate", "created_date" -> "created";
+            case "stock" -> "stock";
+            case "id", "productid" -> "id";
+            default -> "name";
+        };
+        return orderings.computeIfAbsent(field + (ascending ? ":asc" : ":desc"),
+                key -> computeOrdering(field, ascending));
+    }
+
+    private int[] computeOrdering(String field, boolean ascending) {
+        Comparator<Integer> comparator = switch (field) {
+            case "price" -> (a, b) -> Long.compare(priceCents[a], priceCents[b]);
+            case "rating" -> (a, b) -> Double.compare(ratingOrZero(a), ratingOrZero(b));
+            case "sold" -> (a, b) -> Integer.compare(soldCounts[a], soldCounts[b]);
+            case "stock" -> (a, b) -> Integer.compare(stocks[a], stocks[b]);
+            case "id" -> Integer::compare; // dòng đã sắp theo productId
+            case "created" -> (a, b) -> {
+                // Giữ quy ước cũ: tăng dần thì null ở cuối, giảm dần thì null ở đầu
+                if (createdAt[a] == NO_DATE && createdAt[b] == NO_DATE) return 0;
+                if (createdAt[a] == NO_DATE) return 1;
+                if (createdAt[b] == NO_DATE) return -1;
+                return Long.compare(createdAt[a], createdAt[b]);
+            };
+            default -> (a, b) -> names[a].compareToIgnoreCase(names[b]);
+        };
+        Comparator<Integer> directed = ascending ? comparator : (a, b) -> -comparator.compare(a, b);
+
+        // TimSort ổn định: các dòng bằng nhau giữ thứ tự productId
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) boxed[i] = i;
+        Arrays.sort(boxed, directed);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = boxed[i];
+        return order;
+    }
+
+    private double ratingOrZero(int row) {
+        return Double.isNaN(ratings[row]) ? 0d : ratings[row];
+    }
+
+    private static long toEpochNanos(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return NO_DATE;
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+    }
+}
@@ -1,11 +1,17 @@
 package vn.liora.service.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 import vn.liora.dto.request.ProductCreationRequest;
+import vn.liora.dto.request.ProductSearchCriteria;
 import vn.liora.dto.request.ProductUpdateRequest;
 import vn.liora.dto.response.ProductResponse;
 import vn.liora.dto.response.BrandResponse;
@@ -13,6 +19,7 @@ import vn.liora.dto.response.TopProductResponse;
 import vn.liora.entity.Brand;
 import vn.liora.entity.Category;
 import vn.liora.entity.Product;
+import vn.liora.event.ProductChangedEvent;
 import vn.liora.exception.AppException;
 import vn.liora.exception.ErrorCode;
 import vn.liora.mapper.ProductMapper;
@@ -20,10 +27,15 @@ import vn.liora.repository.BrandRepository;
 import vn.liora.repository.CategoryRepository;
 import vn.liora.repository.ProductRepository;
 import vn.liora.repository.ReviewRepository;
+import vn.liora.repository.specification.ProductSpecifications;
 import vn.liora.service.IProductService;
+import vn.liora.util.TtlCache;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -35,17 +47,28 @@ public class ProductServiceImpl implements IProductService {
     private final BrandRepository brandRepository;
     private final ProductMapper productMapper;
     private final ReviewRepository reviewRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Cache chi tiết sản phẩm (findById), xóa theo ProductChangedEvent
+    private final TtlCache<Long, ProductResponse> productDetailCache;
 
     public ProductServiceImpl(ProductRepository productRepository,
                               CategoryRepository categoryRepository,
                               BrandRepository brandRepository,
                               ProductMapper productMapper,
-                              ReviewRepository reviewRepository) {
+                              ReviewRepository reviewRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              MeterRegistry meterRegistry,
+                              @Value("${product.cache.max-size:1000}") int cacheMaxSize,
+                              @Value("${product.cache.ttl-seconds:300}") long cacheTtlSeconds) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
         this.brandRepository = brandRepository;
         this.productMapper = productMapper;
         this.reviewRepository = reviewRepository;
+        this.eventPublisher = eventPublisher;
+        this.productDetailCache = new TtlCache<Long, ProductResponse>(cacheMaxSize, Duration.ofSeconds(cacheTtlSeconds))
+                .bindTo(meterRegistry, "productDetail");
     }
 
     // ========== BASIC CRUD ==========
@@ -78,11 +101,20 @@ public class ProductServiceImpl implements IProductService {
         }
 
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(savedProduct.getProductId()));
         return savedProduct; // ← Trả về Product thay vì ProductResponse
     }
 
     @Override
     public ProductResponse findById(Long id) {
+        // Trả bản sao (kể cả danh sách ảnh) để caller sửa không ảnh hưởng bản trong cache
+        ProductResponse cached = productDetailCache.get(id, this::loadProductResponse);
+        return cached.toBuilder()
+                .imageUrls(cached.getImageUrls() != null ? new ArrayList<>(cached.getImageUrls()) : null)
+                .build();
+    }
+
+    private ProductResponse loadProductResponse(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new AppException(ErrorCode.PRODUCT_NOT_FOUND));
         ProductResponse response = productMapper.toProductResponse(product);
@@ -91,10 +123,23 @@ public class ProductServiceImpl implements IProductService {
         Long ratingCountLong = reviewRepository.getTotalReviewCountByProductId(id);
         Integer ratingCount = ratingCountLong != null ? ratingCountLong.intValue() : 0;
         response.setRatingCount(ratingCount);
+        // Bản trong cache dùng chung giữa các request: danh sách không sửa được
+        if (response.getImageUrls() != null) {
+            response.setImageUrls(Collections.unmodifiableList(new ArrayList<>(response.getImageUrls())));
+        }
         
         return response;
     }
 
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isCatalogWide()) {
+            productDetailCache.invalidateAll();
+        } else {
+            productDetailCache.invalidate(event.getProductId());
+        }
+    }
+
     @Transactional
     @Override
     public ProductResponse updateProduct(Long id, ProductUpdateRequest request) {
@@ -143,6 +188,7 @@ public class ProductServiceImpl implements IProductService {
         
         product.setUpdatedDate(LocalDateTime.now());
         productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
         return productMapper.toProductResponse(product);
 
     }
@@ -159,12 +205,14 @@ public class ProductServiceImpl implements IProductService {
         }
         
         productRepository.deleteById(id);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
     }
 
     @Transactional
     @Override
     public void deleteAll() {
         productRepository.deleteAll();
+        eventPublisher.publishEvent(ProductChangedEvent.all());
     }
 
     @Override
@@ -203,6 +251,15 @@ public class ProductServiceImpl implements IProductService {
         return productRepository.findByNameContaining(name, pageable);
     }
 
+    @Override
+    public Page<Product> search(ProductSearchCriteria criteria, Pageable pageable) {
+        Sort sort = ProductSpecifications.sort(criteria, pageable.getSort());
+        Pageable sortedPageable = pageable.isPaged()
+                ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort)
+                : Pageable.unpaged(sort);
+        return productRepository.findAll(ProductSpecifications.from(criteria), sortedPageable);
+    }
+
     @Override
     public Optional<Product> findByName(String name) {
         return productRepository.findByName(name);
@@ -429,6 +486,7 @@ public class ProductServiceImpl implements IProductService {
         product.setIsActive(true);
         product.setUpdatedDate(LocalDateTime.now());
         productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
     }
 
     @Transactional
@@ -439,6 +497,7 @@ public class ProductServiceImpl implements IProductService {
         product.setIsActive(false);
         product.setUpdatedDate(LocalDateTime.now());
         productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
     }
 
     @Transactional
@@ -455,6 +514,7 @@ public class ProductServiceImpl implements IProductService {
         product.setAvailable(available);
         product.setUpdatedDate(LocalDateTime.now());
         productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
     }
 
     @Transactional
@@ -477,6 +537,7 @@ public class ProductServiceImpl implements IProductService {
         }
         product.setUpdatedDate(LocalDateTime.now());
         productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
     }
 
     @Transactional
@@ -493,6 +554,7 @@ public class ProductServiceImpl implements IProductService {
         product.setSoldCount(soldCount);
         product.setUpdatedDate(LocalDateTime.now());
         productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
     }
     // ========== STATISTICS ==========
     @Override
@@ -518,7 +580,9 @@ public class ProductServiceImpl implements IProductService {
 
     @Override
     public Product save(Product product) {
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(savedProduct.getProductId()));
+        return savedProduct;
     }
 
     @Override
@@ -673,6 +737,7 @@ public class ProductServiceImpl implements IProductService {
             
             // Lưu product
             productRepository.save(product);
+            eventPublisher.publishEvent(ProductChangedEvent.of(productId));
             
             System.out.println("Updated average rating for product " + productId + ": " + product.getAverageRating());
             
@@ -708,6 +773,7 @@ public class ProductServiceImpl implements IProductService {
             
             // Lưu tất cả products
             productRepository.saveAll(products);
+            eventPublisher.publishEvent(ProductChangedEvent.all());
             
             System.out.println("Successfully updated average rating for all products");
             
@@ -0,0 +1,257 @@
+package vn.liora.service.impl;
+
+import vn.liora.dto.response.ProductResponse;
+import vn.liora.dto.response.ProductSuggestResponse;
+import vn.liora.dto.response.SuggestionResponse;
+import vn.liora.util.VietnameseTextUtil;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * Radix trie (trie nén) cho gợi ý tìm kiếm khi đang gõ.
+ * Mỗi tên sản phẩm/thương hiệu/danh mục được bỏ dấu rồi chèn từ mọi vị trí đầu từ,
+ * nên "bot" gợi ý được "Sữa bột Meiji". Mỗi nút giữ sẵn top-K mục theo từng loại,
+ * xếp theo soldCount rồi averageRating, nên một truy vấn chỉ cần đi theo tiền tố.
+ * Chỉ gồm sản phẩm đang hoạt động; thương hiệu/danh mục lấy từ các sản phẩm đó.
+ */
+final class ProductSuggestionIndex {
+
+    static final int MAX_LIMIT = 10;
+
+    private static final int PRODUCT = 0;
+    private static final int BRAND = 1;
+    private static final int CATEGORY = 2;
+    private static final int TYPES = 3;
+
+    // Mục gợi ý, chỉ số = thứ hạng (0 = tốt nhất)
+    private final int[] types;
+    private final SuggestionResponse[] entries;
+    private final Node root = new Node();
+
+    private static final class Node {
+        final List<String> labels = new ArrayList<>(2);
+        final List<Node> children = new ArrayList<>(2);
+        int[] terminals = new int[0];
+        int[][] top;
+    }
+
+    private ProductSuggestionIndex(List<SuggestionResponse> candidates, List<Integer> candidateTypes) {
+        // Xếp hạng: bán chạy hơn trước, sau đó đánh giá cao hơn, rồi theo tên
+        Integer[] order = new Integer[candidates.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Comparator<SuggestionResponse> byRank = Comparator
+                .comparing((SuggestionResponse s) -> s.getSoldCount() != null ? s.getSoldCount() : 0,
+                        Comparator.reverseOrder())
+                .thenComparing(s -> s.getAverageRating() != null ? s.getAverageRating() : BigDecimal.ZERO,
+                        Comparator.reverseOrder())
+                .thenComparing(SuggestionResponse::getName);
+        Arrays.sort(order, (a, b) -> byRank.compare(candidates.get(a), candidates.get(b)));
+
+        entries = new SuggestionResponse[order.length];
+        types = new int[order.length];
+        for (int rank = 0; rank < order.length; rank++) {
+            entries[rank] = candidates.get(order[rank]);
+            types[rank] = candidateTypes.get(order[rank]);
+        }
+
+        for (int rank = 0; rank < entries.length; rank++) {
+            List<String> tokens = VietnameseTextUtil.tokenize(entries[rank].getName());
+            Set<String> suffixes = new HashSet<>();
+            for (int i = 0; i < tokens.size(); i++) {
+                String suffix = String.join(" ", tokens.subList(i, tokens.size()));
+                if (suffixes.add(suffix)) {
+                    insert(suffix, rank);
+                }
+            }
+        }
+        computeTop(root);
+    }
+
+    static ProductSuggestionIndex of(ProductResponse[] rows) {
+        List<SuggestionResponse> candidates = new ArrayList<>();
+        List<Integer> candidateTypes = new ArrayList<>();
+        Map<Long, Aggregate> brands = new LinkedHashMap<>();
+        Map<Long, Aggregate> categories = new LinkedHashMap<>();
+
+        for (ProductResponse p : rows) {
+            if (!Boolean.TRUE.equals(p.getIsActive()) || p.getName() == null) {
+                continue;
+            }
+            candidates.add(SuggestionResponse.builder()
+                    .id(p.getProductId())
+                    .name(p.getName())
+                    .imageUrl(p.getMainImageUrl())
+                    .soldCount(p.getSoldCount())
+                    .averageRating(p.getAverageRating())
+                    .build());
+            candidateTypes.add(PRODUCT);
+            if (p.getBrandId() != null && p.getBrandName() != null) {
+                brands.computeIfAbsent(p.getBrandId(), id -> new Aggregate(id, p.getBrandName())).add(p);
+            }
+            if (p.getCategoryId() != null && p.getCategoryName() != null) {
+                categories.computeIfAbsent(p.getCategoryId(), id -> new Aggregate(id, p.getCategoryName())).add(p);
+            }
+        }
+        for (Aggregate brand : brands.values()) {
+            candidates.add(brand.toSuggestion());
+            candidateTypes.add(BRAND);
+        }
+        for (Aggregate category : categories.values()) {
+            candidates.add(category.toSuggestion());
+            candidateTypes.add(CATEGORY);
+        }
+        return new ProductSuggestionIndex(candidates, candidateTypes);
+    }
+
+    /**
+     * Tổng lượt bán và đánh giá trung bình của các sản phẩm thuộc một thương hiệu/danh mục.
+     */
+    private static final class Aggregate {
+        final Long id;
+        final String name;
+        int soldCount;
+        BigDecimal ratingSum = BigDecimal.ZERO;
+        int ratedCount;
+
+        Aggregate(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        void add(ProductResponse p) {
+            soldCount += p.getSoldCount() != null ? p.getSoldCount() : 0;
+            if (p.getAverageRating() != null && p.getAverageRating().signum() > 0) {
+                ratingSum = ratingSum.add(p.getAverageRating());
+                ratedCount++;
+            }
+        }
+
+        SuggestionResponse toSuggestion() {
+            return SuggestionResponse.builder()
+                    .id(id)
+                    .name(name)
+                    .soldCount(soldCount)
+                    .averageRating(ratedCount > 0
+                            ? ratingSum.divide(BigDecimal.valueOf(ratedCount), 1, RoundingMode.HALF_UP)
+                            : BigDecimal.ZERO)
+                    .build();
+        }
+    }
+
+    // ========== BUILD ==========
+    private void insert(String key, int rank) {
+        Node node = root;
+        while (!key.isEmpty()) {
+            int i = childIndex(node, key.charAt(0));
+            if (i < 0) {
+                Node leaf = new Node();
+                leaf.terminals = new int[]{rank};
+                node.labels.add(key);
+                node.children.add(leaf);
+                return;
+            }
+            String label = node.labels.get(i);
+            int common = commonPrefix(label, key);
+            if (common < label.length()) {
+                // Tách cạnh: label = label[0..common) + label[common..)
+                Node middle = new Node();
+                middle.labels.add(label.substring(common));
+                middle.children.add(node.children.get(i));
+                node.labels.set(i, label.substring(0, common));
+                node.children.set(i, middle);
+            }
+            node = node.children.get(i);
+            key = key.substring(common);
+        }
+        node.terminals = Arrays.copyOf(node.terminals, node.terminals.length + 1);
+        node.terminals[node.terminals.length - 1] = rank;
+    }
+
+    /**
+     * Top-K thứ hạng theo từng loại cho cả cây con (thứ hạng nhỏ = tốt hơn).
+     */
+    private int[][] computeTop(Node node) {
+        TreeSet<Integer> ranks = new TreeSet<>();
+        for (int rank : node.terminals) ranks.add(rank);
+        for (Node child : node.children) {
+            for (int[] childTop : computeTop(child)) {
+                for (int rank : childTop) ranks.add(rank);
+            }
+        }
+        int[][] top = new int[TYPES][];
+        int[] counts = new int[TYPES];
+        int[][] buffers = new int[TYPES][MAX_LIMIT];
+        for (int rank : ranks) {
+            int type = types[rank];
+            if (counts[type] < MAX_LIMIT) {
+                buffers[type][counts[type]++] = rank;
+            }
+        }
+        for (int type = 0; type < TYPES; type++) {
+            top[type] = Arrays.copyOf(buffers[type], counts[type]);
+        }
+        node.top = top;
+        node.terminals = null; // không cần sau khi dựng
+        return top;
+    }
+
+    // ========== LOOKUP ==========
+    ProductSuggestResponse suggest(String query, int limit) {
+        int n = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String key = String.join(" ", VietnameseTextUtil.tokenize(query));
+        Node node = key.isEmpty() ? null : find(key);
+        return ProductSuggestResponse.builder()
+                .products(collect(node, PRODUCT, n))
+                .brands(collect(node, BRAND, n))
+                .categories(collect(node, CATEGORY, n))
+                .build();
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        while (!key.isEmpty()) {
+            int i = childIndex(node, key.charAt(0));
+            if (i < 0) {
+                return null;
+            }
+            String label = node.labels.get(i);
+            if (key.length() <= label.length()) {
+                return label.startsWith(key) ? node.children.get(i) : null;
+            }
+            if (!key.startsWith(label)) {
+                return null;
+            }
+            node = node.children.get(i);
+            key = key.substring(label.length());
+        }
+        return node;
+    }
+
+    private List<SuggestionResponse> collect(Node node, int type, int limit) {
+        if (node == null) {
+            return List.of();
+        }
+        int[] ranks = node.top[type];
+        List<SuggestionResponse> result = new ArrayList<>(Math.min(limit, ranks.length));
+        for (int i = 0; i < ranks.length && i < limit; i++) {
+            result.add(entries[ranks[i]]);
+        }
+        return result;
+    }
+
+    private static int childIndex(Node node, char first) {
+        for (int i = 0; i < node.labels.size(); i++) {
+            if (node.labels.get(i).charAt(0) == first) return i;
+        }
+        return -1;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) i++;
+        return i;
+    }
+}
@@ -0,0 +1,214 @@
+package vn.liora.service.impl;
+
+import vn.liora.dto.response.ProductResponse;
+import vn.liora.util.VietnameseTextUtil;
+
+import java.util.*;
+
+/**
+ * Chỉ mục đảo (inverted index) trên tên, thương hiệu, danh mục và mô tả sản phẩm.
+ * Từ được bỏ dấu tiếng Việt trước khi đánh chỉ mục nên "sua" khớp "sữa".
+ * Xếp hạng BM25 có trọng số theo trường; mỗi từ trong truy vấn khớp chính xác,
+ * theo tiền tố (đang gõ dở) hoặc sai chính tả nhẹ (khoảng cách sửa 1-2).
+ * Dòng (row) trùng với dòng của ProductCatalogSnapshot.
+ */
+final class ProductTextIndex {
+
+    // Trọng số trường: tên quan trọng nhất, mô tả ít nhất
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float BRAND_WEIGHT = 2.0f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    // Tham số BM25
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // Hệ số cho từ khớp không chính xác
+    private static final float PREFIX_BOOST = 0.7f;
+    private static final float TYPO_BOOST = 0.5f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MIN_TYPO_LENGTH = 4;
+    private static final int MAX_EXPANSIONS = 64;
+
+    private final int size;
+    private final String[] terms;      // sắp xếp tăng dần để tìm tiền tố bằng nhị phân
+    private final int[][] postingRows; // postingRows[t]: các dòng chứa terms[t], tăng dần
+    private final float[][] postingTfs; // tần suất có trọng số tương ứng
+    private final float[] idf;
+    private final float[] lengthNorm;  // K1 * (1 - B + B * dl / avgdl) cho từng dòng
+
+    /**
+     * Kết quả tìm kiếm: tập dòng khớp mọi từ và điểm BM25 của từng dòng.
+     */
+    static final class Hits {
+        final BitSet rows;
+        final float[] scores;
+
+        private Hits(BitSet rows, float[] scores) {
+            this.rows = rows;
+            this.scores = scores;
+        }
+    }
+
+    private ProductTextIndex(ProductResponse[] rows) {
+        size = rows.length;
+        Map<String, Map<Integer, Float>> postings = new HashMap<>();
+        float[] docLengths = new float[size];
+        double totalLength = 0;
+
+        for (int row = 0; row < size; row++) {
+            ProductResponse p = rows[row];
+            Map<String, Float> tf = new HashMap<>();
+            docLengths[row] = addField(tf, p.getName(), NAME_WEIGHT)
+                    + addField(tf, p.getBrandName(), BRAND_WEIGHT)
+                    + addField(tf, p.getCategoryName(), CATEGORY_WEIGHT)
+                    + addField(tf, p.getDescription(), DESCRIPTION_WEIGHT);
+            totalLength += docLengths[row];
+            final int r = row;
+            tf.forEach((term, weight) -> postings.computeIfAbsent(term, k -> new HashMap<>()).put(r, weight));
+        }
+
+        terms = postings.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        postingRows = new int[terms.length][];
+        postingTfs = new float[terms.length][];
+        idf = new float[terms.length];
+        for (int t = 0; t < terms.length; t++) {
+            Map<Integer, Float> posting = postings.get(terms[t]);
+            int[] docs = posting.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            float[] tfs = new float[docs.length];
+            for (int i = 0; i < docs.length; i++) {
+                tfs[i] = posting.get(docs[i]);
+            }
+            postingRows[t] = docs;
+            postingTfs[t] = tfs;
+            int df = docs.length;
+            idf[t] = (float) Math.log(1 + (size - df + 0.5) / (df + 0.5));
+        }
+
+        float avgLength = size > 0 ? (float) (totalLength / size) : 0f;
+        lengthNorm = new float[size];
+        for (int row = 0; row < size; row++) {
+            float ratio = avgLength > 0 ? docLengths[row] / avgLength : 1f;
+            lengthNorm[row] = K1 * (1 - B + B * ratio);
+        }
+    }
+
+    static ProductTextIndex of(ProductResponse[] rows) {
+        return new ProductTextIndex(rows);
+    }
+
+    private static float addField(Map<String, Float> tf, String text, float weight) {
+        List<String> tokens = VietnameseTextUtil.tokenize(text);
+        for (String token : tokens) {
+            tf.merge(token, weight, Float::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    // ========== SEARCH ==========
+    /**
+     * Dòng khớp tất cả các từ trong truy vấn (AND), điểm = tổng điểm tốt nhất của từng từ.
+     */
+    Hits search(String query) {
+        List<String> tokens = VietnameseTextUtil.tokenize(query);
+        BitSet matched = new BitSet(size);
+        float[] scores = new float[size];
+        if (tokens.isEmpty()) {
+            return new Hits(matched, scores);
+        }
+        matched.set(0, size);
+
+        for (String token : new LinkedHashSet<>(tokens)) {
+            BitSet tokenRows = new BitSet(size);
+            float[] tokenScores = new float[size];
+            for (Map.Entry<Integer, Float> expansion : expand(token).entrySet()) {
+                int t = expansion.getKey();
+                float boost = expansion.getValue();
+                int[] docs = postingRows[t];
+                float[] tfs = postingTfs[t];
+                for (int i = 0; i < docs.length; i++) {
+                    int row = docs[i];
+                    float score = boost * idf[t] * tfs[i] * (K1 + 1) / (tfs[i] + lengthNorm[row]);
+                    if (score > tokenScores[row]) tokenScores[row] = score;
+                    tokenRows.set(row);
+                }
+            }
+            matched.and(tokenRows);
+            if (matched.isEmpty()) {
+                break;
+            }
+            for (int row = matched.nextSetBit(0); row >= 0; row = matched.nextSetBit(row + 1)) {
+                scores[row] += tokenScores[row];
+            }
+        }
+        return new Hits(matched, scores);
+    }
+
+    /**
+     * Các từ trong chỉ mục ứng với một từ truy vấn -> hệ số: khớp chính xác, tiền tố,
+     * hoặc (khi không có hai loại trên) sai chính tả.
+     */
+    private Map<Integer, Float> expand(String token) {
+        Map<Integer, Float> expansions = new LinkedHashMap<>();
+        int exact = Arrays.binarySearch(terms, token);
+        if (exact >= 0) {
+            expansions.put(exact, 1.0f);
+        }
+
+        if (token.length() >= MIN_PREFIX_LENGTH) {
+            int from = exact >= 0 ? exact + 1 : -exact - 1;
+            for (int t = from; t < terms.length && terms[t].startsWith(token)
+                    && expansions.size() < MAX_EXPANSIONS; t++) {
+                expansions.put(t, PREFIX_BOOST);
+            }
+        }
+
+        if (expansions.isEmpty() && token.length() >= MIN_TYPO_LENGTH) {
+            int maxDistance = token.length() >= 8 ? 2 : 1;
+            for (int t = 0; t < terms.length && expansions.size() < MAX_EXPANSIONS; t++) {
+                if (Math.abs(terms[t].length() - token.length()) <= maxDistance
+                        && editDistance(token, terms[t], maxDistance) <= maxDistance) {
+                    expansions.put(t, TYPO_BOOST);
+                }
+            }
+        }
+        return expansions;
+    }
+
+    /**
+     * Khoảng cách Damerau-Levenshtein (có hoán vị hai ký tự kề nhau),
+     * dừng sớm khi vượt quá max.
+     */
+    private static int editDistance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        int[] prevPrev = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+
+        for (int i = 1; i <= n; i++) {
+            curr[0] = i;
+            int rowMin = curr[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, prevPrev[j - 2] + 1);
+                }
+                curr[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] tmp = prevPrev;
+            prevPrev = prev;
+            prev = curr;
+            curr = tmp;
+        }
+        return prev[m];
+    }
+}
@@ -0,0 +1,305 @@
+package vn.liora.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.liora.dto.response.ProductSalesSummaryRow;
+import vn.liora.dto.response.SalesSummaryRow;
+import vn.liora.entity.DailyProductSalesRollup;
+import vn.liora.entity.DailySalesRollup;
+import vn.liora.entity.listener.OrderSalesChange;
+import vn.liora.entity.listener.OrderSalesLine;
+import vn.liora.entity.listener.OrderSalesSnapshot;
+import vn.liora.repository.DailyProductSalesRollupRepository;
+import vn.liora.repository.DailySalesRollupRepository;
+import vn.liora.repository.OrderProductRepository;
+import vn.liora.repository.OrderRepository;
+import vn.liora.service.ISalesRollupService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bảng tổng hợp doanh số theo ngày cho dashboard.
+ * - Đọc: khoảng thời gian trọn ngày (00:00 đến 23:59:59 hoặc đến hiện tại) đọc từ bảng tổng hợp;
+ *   khoảng lẻ giờ thì tổng hợp trực tiếp bằng GROUP BY trên Orders, cùng dạng kết quả.
+ * - Ghi: OrderSalesRollupListener gửi phần chênh lệch sau khi commit, áp dụng bất đồng bộ.
+ * - Đối soát: hằng đêm tính lại vài ngày gần nhất; lần đầu chạy (bảng trống) tính lại toàn bộ.
+ */
+@Service
+@Slf4j
+public class SalesRollupServiceImpl implements ISalesRollupService {
+
+    private static final LocalTime END_OF_DAY = LocalTime.of(23, 59, 59);
+
+    private final DailySalesRollupRepository salesRollupRepository;
+    private final DailyProductSalesRollupRepository productSalesRollupRepository;
+    private final OrderRepository orderRepository;
+    private final OrderProductRepository orderProductRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int reconcileDays;
+
+    // Tránh áp dụng chênh lệch trong lúc đang tính lại
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public SalesRollupServiceImpl(DailySalesRollupRepository salesRollupRepository,
+            DailyProductSalesRollupRepository productSalesRollupRepository,
+            OrderRepository orderRepository,
+            OrderProductRepository orderProductRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${dashboard.rollup.reconcile-days:7}") int reconcileDays) {
+        this.salesRollupRepository = salesRollupRepository;
+        this.productSalesRollupRepository = productSalesRollupRepository;
+        this.orderRepository = orderRepository;
+        this.orderProductRepository = orderProductRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconcileDays = reconcileDays;
+    }
+
+    // ========== READ ==========
+    @Override
+    public List<SalesSummaryRow> summarize(LocalDateTime startDate, LocalDateTime endDate) {
+        if (coversWholeDays(startDate, endDate)) {
+            return salesRollupRepository.summarize(startDate.toLocalDate(), endDate.toLocalDate());
+        }
+        return orderRepository.summarizeSales(startDate, endDate);
+    }
+
+    @Override
+    public List<ProductSalesSummaryRow> summarizeProducts(LocalDateTime startDate, LocalDateTime endDate) {
+        if (coversWholeDays(startDate, endDate)) {
+            return productSalesRollupRepository.summarize(startDate.toLocalDate(), endDate.toLocalDate());
+        }
+        return orderProductRepository.summarizeProductSales(startDate, endDate);
+    }
+
+    private static boolean coversWholeDays(LocalDateTime startDate, LocalDateTime endDate) {
+        if (startDate == null || endDate == null || !startDate.toLocalTime().equals(LocalTime.MIDNIGHT)) {
+            return false;
+        }
+        // Không có đơn nào sau thời điểm hiện tại nên "đến bây giờ" cũng là trọn ngày
+        return !endDate.toLocalTime().isBefore(END_OF_DAY)
+                || !endDate.isBefore(LocalDateTime.now().minusMinutes(1));
+    }
+
+    // ========== INCREMENTAL ==========
+    @Override
+    @Async("orderPipelineExecutor")
+    public void apply(List<OrderSalesChange> changes) {
+        writeLock.lock();
+        try {
+            for (OrderSalesChange change : changes) {
+                try {
+                    applyChange(change);
+                } catch (Exception e) {
+                    // Lệch sẽ được sửa ở lần đối soát kế tiếp
+                    log.error("Failed to apply sales rollup for order {}: {}", change.getOrderId(), e.getMessage());
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void applyChange(OrderSalesChange change) {
+        OrderSalesLine removedLine = change.getRemovedLine();
+        if (removedLine != null) {
+            addProductSales(removedLine.getSalesDate(), removedLine.getOrderStatus(), removedLine.getCategoryId(),
+                    removedLine.getBrandId(), -removedLine.getQuantity(), removedLine.getRevenue().negate());
+            return;
+        }
+        OrderSalesSnapshot before = change.getBefore();
+        OrderSalesSnapshot after = change.getAfter();
+        if (before != null) {
+            addSales(before.getSalesDate(), before.getOrderStatus(), before.getPaymentMethod(), -1,
+                    before.getTotal().negate(), before.getDiscount().negate(), before.getXuUsed().negate());
+        }
+        if (after != null) {
+            addSales(after.getSalesDate(), after.getOrderStatus(), after.getPaymentMethod(), 1,
+                    after.getTotal(), after.getDiscount(), after.getXuUsed());
+        }
+        if (after != null && after.sameProductGroup(before)) {
+            return;
+        }
+        // Đơn bị xóa thì các dòng sản phẩm đã được trừ lúc xóa dòng (OrderLineSalesRollupListener)
+        if (after == null || change.getOrderId() == null) {
+            return;
+        }
+        for (Object[] line : orderProductRepository.summarizeOrderLines(change.getOrderId())) {
+            Long categoryId = toLong(line[0]);
+            Long brandId = toLong(line[1]);
+            long quantity = toLong(line[2]);
+            BigDecimal revenue = toDecimal(line[3]);
+            if (before != null) {
+                addProductSales(before.getSalesDate(), before.getOrderStatus(), categoryId, brandId,
+                        -quantity, revenue.negate());
+            }
+            addProductSales(after.getSalesDate(), after.getOrderStatus(), categoryId, brandId, quantity, revenue);
+        }
+    }
+
+    /**
+     * UPDATE cộng dồn; nếu chưa có dòng thì INSERT, trùng khóa (instance khác vừa chèn) thì UPDATE lại.
+     */
+    private void addSales(LocalDate date, String status, String paymentMethod, long count,
+            BigDecimal total, BigDecimal discount, BigDecimal xuUsed) {
+        if (updateSales(date, status, paymentMethod, count, total, discount, xuUsed)) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(s -> salesRollupRepository.saveAndFlush(DailySalesRollup.builder()
+                    .salesDate(date)
+                    .orderStatus(status)
+                    .paymentMethod(paymentMethod)
+                    .orderCount(count)
+                    .totalAmount(total)
+                    .discountAmount(discount)
+                    .xuAmount(xuUsed)
+                    .build()));
+        } catch (DataIntegrityViolationException e) {
+            updateSales(date, status, paymentMethod, count, total, discount, xuUsed);
+        }
+    }
+
+    private boolean updateSales(LocalDate date, String status, String paymentMethod, long count,
+            BigDecimal total, BigDecimal discount, BigDecimal xuUsed) {
+        Integer updated = transactionTemplate.execute(s ->
+                salesRollupRepository.addTo(date, status, paymentMethod, count, total, discount, xuUsed));
+        return updated != null && updated > 0;
+    }
+
+    private void addProductSales(LocalDate date, String status, Long categoryId, Long brandId,
+            long quantity, BigDecimal revenue) {
+        if (updateProductSales(date, status, categoryId, brandId, quantity, revenue)) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(s -> productSalesRollupRepository.saveAndFlush(
+                    DailyProductSalesRollup.builder()
+                            .salesDate(date)
+                            .orderStatus(status)
+                            .categoryId(categoryId)
+                            .brandId(brandId)
+                            .quantity(quantity)
+                            .revenue(revenue)
+                            .build()));
+        } catch (DataIntegrityViolationException e) {
+            updateProductSales(date, status, categoryId, brandId, quantity, revenue);
+        }
+    }
+
+    private boolean updateProductSales(LocalDate date, String status, Long categoryId, Long brandId,
+            long quantity, BigDecimal revenue) {
+        Integer updated = transactionTemplate.execute(s ->
+                productSalesRollupRepository.addTo(date, status, categoryId, brandId, quantity, revenue));
+        return updated != null && updated > 0;
+    }
+
+    // ========== REBUILD ==========
+    @Override
+    public void rebuild(LocalDate fromDate, LocalDate toDate) {
+        if (fromDate == null || toDate == null || fromDate.isAfter(toDate)) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            LocalDateTime start = fromDate.atStartOfDay();
+            LocalDateTime end = toDate.plusDays(1).atStartOfDay();
+            transactionTemplate.executeWithoutResult(s -> {
+                salesRollupRepository.deleteBySalesDateBetween(fromDate, toDate);
+                productSalesRollupRepository.deleteBySalesDateBetween(fromDate, toDate);
+
+                for (Object[] row : orderRepository.summarizeSalesByDay(start, end)) {
+                    salesRollupRepository.save(DailySalesRollup.builder()
+                            .salesDate(toLocalDate(row[0]))
+                            .orderStatus(row[1] != null ? (String) row[1] : OrderSalesSnapshot.UNKNOWN)
+                            .paymentMethod(row[2] != null ? (String) row[2] : OrderSalesSnapshot.UNKNOWN)
+                            .orderCount(toLong(row[3]))
+                            .totalAmount(toDecimal(row[4]))
+                            .discountAmount(toDecimal(row[5]))
+                            .xuAmount(toDecimal(row[6]))
+                            .build());
+                }
+                for (Object[] row : orderProductRepository.summarizeProductSalesByDay(start, end)) {
+                    productSalesRollupRepository.save(DailyProductSalesRollup.builder()
+                            .salesDate(toLocalDate(row[0]))
+                            .orderStatus(row[1] != null ? (String) row[1] : OrderSalesSnapshot.UNKNOWN)
+                            .categoryId(toLong(row[2]))
+                            .brandId(toLong(row[3]))
+                            .quantity(toLong(row[4]))
+                            .revenue(toDecimal(row[5]))
+                            .build());
+                }
+            });
+            log.info("Sales rollup rebuilt for {} .. {}", fromDate, toDate);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Đối soát hằng đêm: tính lại vài ngày gần nhất để sửa mọi lệch do lỗi/khởi động lại.
+     */
+    @Override
+    @Scheduled(cron = "${dashboard.rollup.reconcile-cron:0 15 2 * * *}")
+    public void reconcileRecentDays() {
+        LocalDate today = LocalDate.now();
+        rebuild(today.minusDays(Math.max(0, reconcileDays - 1)), today);
+    }
+
+    /**
+     * Lần đầu triển khai: bảng tổng hợp trống thì tính lại toàn bộ lịch sử đơn hàng.
+     */
+    @Override
+    @Async("orderPipelineExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (salesRollupRepository.count() > 0) {
+                return;
+            }
+            LocalDateTime firstOrderDate = orderRepository.findFirstOrderDate();
+            if (firstOrderDate != null) {
+                rebuild(firstOrderDate.toLocalDate(), LocalDate.now());
+            }
+        } catch (Exception e) {
+            log.error("Sales rollup backfill failed: {}", e.getMessage());
+        }
+    }
+
+    // ========== HELPER METHODS ==========
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.toLocalDate();
+        }
+        return LocalDate.parse(value.toString());
+    }
+
+    private static Long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal decimal ? decimal : BigDecimal.valueOf(((Number) value).doubleValue());
+    }
+}
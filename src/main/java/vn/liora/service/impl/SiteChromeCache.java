@@ -0,0 +1,275 @@
+package vn.liora.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.liora.dto.response.BannerResponse;
+import vn.liora.dto.response.StaticPageResponse;
+import vn.liora.entity.*;
+import vn.liora.enums.FooterLinkType;
+import vn.liora.event.SiteContentChangedEvent;
+import vn.liora.repository.*;
+
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Tài liệu "site chrome" của trang người dùng, dựng sẵn trong bộ nhớ:
+ * menu header (kèm menu con), footer (cột, item, mạng xã hội), banner đang trong lịch hiển thị
+ * và các trang tĩnh đã publish.
+ * - Mỗi phần được serialize sẵn thành JSON kèm ETag mạnh (hash nội dung); request chỉ ghi byte ra.
+ * - Dựng lại sau khi HeaderNavigationService, FooterService, BannerService hoặc StaticPageService
+ *   ghi dữ liệu (SiteContentChangedEvent), và khi tới mốc bắt đầu/kết thúc gần nhất của một banner.
+ * - Định kỳ đọc lại để nhận thay đổi từ instance khác; nội dung không đổi thì giữ nguyên version.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SiteChromeCache {
+
+    private final HeaderNavigationItemRepository headerNavigationItemRepository;
+    private final FooterRepository footerRepository;
+    private final FooterColumnRepository footerColumnRepository;
+    private final FooterItemRepository footerItemRepository;
+    private final FooterSocialLinkRepository footerSocialLinkRepository;
+    private final BannerRepository bannerRepository;
+    private final StaticPageRepository staticPageRepository;
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot snapshot;
+    private long lastVersion;
+
+    /**
+     * Một phần tài liệu đã serialize, kèm ETag mạnh.
+     */
+    public record Part(byte[] body, String etag) {
+    }
+
+    /**
+     * Site chrome tại một thời điểm. validUntil: mốc lịch banner gần nhất (null nếu không có),
+     * từ thời điểm đó danh sách banner phải tính lại.
+     */
+    public record Snapshot(long version,
+            Part chrome,
+            Part header,
+            Part footer,
+            Part banners,
+            Part home,
+            Map<Long, List<HeaderNavigationItem>> subItems,
+            Map<String, String> pageListTitles,
+            LocalDateTime validUntil) {
+    }
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && !isExpired(current, LocalDateTime.now())) {
+            return current;
+        }
+        return rebuildIfStale();
+    }
+
+    // ========== REBUILD ==========
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Failed to build site chrome: {}", e.getMessage());
+        }
+    }
+
+    // Dựng lại sau commit, xem CategoryTreeCache.onCategoryChanged
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSiteContentChanged(SiteContentChangedEvent event) {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // Giữ bản cũ; lần resync sau sẽ thử lại
+            log.error("Failed to rebuild site chrome: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${site.chrome.resync-ms:300000}", initialDelayString = "${site.chrome.resync-ms:300000}")
+    public void resync() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("Site chrome resync failed: {}", e.getMessage());
+        }
+    }
+
+    private synchronized Snapshot rebuildIfStale() {
+        // Luồng khác có thể vừa dựng xong trong lúc chờ khóa
+        Snapshot current = snapshot;
+        if (current != null && !isExpired(current, LocalDateTime.now())) {
+            return current;
+        }
+        return rebuild();
+    }
+
+    private boolean isExpired(Snapshot snapshot, LocalDateTime now) {
+        return snapshot.validUntil() != null && !now.isBefore(snapshot.validUntil());
+    }
+
+    private synchronized Snapshot rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+
+        // Header: một truy vấn cho cả menu cha và menu con
+        List<HeaderNavigationItem> topItems = new ArrayList<>();
+        Map<Long, List<HeaderNavigationItem>> subItems = new HashMap<>();
+        for (HeaderNavigationItem item : headerNavigationItemRepository.findByIsActiveTrueOrderByItemOrder()) {
+            if (item.getParentItemId() == null) {
+                topItems.add(item);
+            } else {
+                subItems.computeIfAbsent(item.getParentItemId(), id -> new ArrayList<>()).add(item);
+            }
+        }
+        Map<String, String> pageListTitles = new HashMap<>();
+        for (HeaderNavigationItem item : topItems) {
+            List<HeaderNavigationItem> children = List.copyOf(subItems.getOrDefault(item.getId(), List.of()));
+            item.setSubItems(children);
+            addPageListTitle(pageListTitles, item);
+            children.forEach(child -> addPageListTitle(pageListTitles, child));
+        }
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("navigationItems", topItems);
+
+        Map<String, Object> footer = buildFooter();
+
+        // Banner: lọc theo lịch hiển thị, ghi lại mốc thay đổi gần nhất
+        List<BannerResponse> banners = new ArrayList<>();
+        LocalDateTime validUntil = null;
+        for (Banner banner : bannerRepository.findByIsActiveTrueOrderBySortOrderAsc()) {
+            LocalDateTime start = banner.getStartDate();
+            LocalDateTime end = banner.getEndDate();
+            boolean started = start == null || !start.isAfter(now);
+            boolean ended = end != null && end.isBefore(now);
+            if (started && !ended) {
+                banners.add(new BannerResponse(banner));
+            }
+            if (!started) {
+                validUntil = earliest(validUntil, start);
+            } else if (end != null && !ended) {
+                validUntil = earliest(validUntil, end.plusNanos(1));
+            }
+        }
+
+        List<StaticPageResponse> pages = staticPageRepository.findByIsActiveTrueAndIsPublishedTrueOrderByTitleAsc()
+                .stream()
+                .map(StaticPageResponse::new)
+                .toList();
+        // Tài liệu chrome chỉ cần thông tin liên kết, không kèm nội dung trang
+        List<Map<String, Object>> pageLinks = new ArrayList<>();
+        for (StaticPageResponse page : pages) {
+            Map<String, Object> link = new LinkedHashMap<>();
+            link.put("id", page.getId());
+            link.put("title", page.getTitle());
+            link.put("slug", page.getSlug());
+            link.put("sectionSlug", page.getSectionSlug());
+            link.put("thumbnailUrl", page.getThumbnailUrl());
+            link.put("publishedAt", page.getPublishedAt());
+            pageLinks.add(link);
+        }
+
+        Map<String, Object> home = new LinkedHashMap<>();
+        home.put("banners", banners);
+        home.put("staticPages", pages);
+
+        Map<String, Object> chrome = new LinkedHashMap<>();
+        chrome.put("header", header);
+        chrome.put("footer", footer);
+        chrome.put("banners", banners);
+        chrome.put("pages", pageLinks);
+
+        Part chromePart = part(chrome);
+        Snapshot previous = snapshot;
+        long version = previous != null && previous.chrome().etag().equals(chromePart.etag())
+                ? previous.version()
+                : ++lastVersion;
+        Snapshot next = new Snapshot(version, chromePart, part(header), part(footer), part(banners), part(home),
+                Map.copyOf(subItems), Map.copyOf(pageListTitles), validUntil);
+        snapshot = next;
+        if (previous == null || previous.version() != version) {
+            log.debug("Site chrome rebuilt: version {}, {} banners, {} pages", version, banners.size(), pages.size());
+        }
+        return next;
+    }
+
+    private Map<String, Object> buildFooter() {
+        Map<String, Object> footerContent = new LinkedHashMap<>();
+        Footer footer = footerRepository.findActiveFooter().orElse(null);
+        if (footer == null) {
+            return footerContent;
+        }
+
+        Map<String, Object> footerData = new LinkedHashMap<>();
+        footerData.put("id", footer.getId());
+        footerData.put("brandName", footer.getBrandName());
+        footerData.put("brandDescription", footer.getBrandDescription());
+        footerData.put("isActive", footer.getIsActive());
+        footerContent.put("footer", footerData);
+
+        Map<Long, List<Map<String, Object>>> itemsByColumn = new HashMap<>();
+        for (FooterItem item : footerItemRepository.findByFooterIdOrderByItemOrder(footer.getId())) {
+            Map<String, Object> itemData = new LinkedHashMap<>();
+            itemData.put("id", item.getId());
+            itemData.put("title", item.getTitle());
+            itemData.put("url", item.getUrl());
+            itemData.put("linkType", item.getLinkType().toString());
+            itemData.put("sortOrder", item.getItemOrder());
+            itemsByColumn.computeIfAbsent(item.getColumn().getId(), id -> new ArrayList<>()).add(itemData);
+        }
+
+        List<Map<String, Object>> columnsData = new ArrayList<>();
+        for (FooterColumn column : footerColumnRepository.findActiveColumnsByFooterId(footer.getId())) {
+            Map<String, Object> columnData = new LinkedHashMap<>();
+            columnData.put("id", column.getId());
+            columnData.put("title", column.getTitle());
+            columnData.put("sortOrder", column.getColumnOrder());
+            columnData.put("items", itemsByColumn.getOrDefault(column.getId(), List.of()));
+            columnsData.add(columnData);
+        }
+        footerContent.put("columns", columnsData);
+
+        List<Map<String, Object>> socialLinksData = new ArrayList<>();
+        for (FooterSocialLink link : footerSocialLinkRepository.findActiveSocialLinksByFooterId(footer.getId())) {
+            Map<String, Object> linkData = new LinkedHashMap<>();
+            linkData.put("id", link.getId());
+            linkData.put("platform", link.getPlatform());
+            linkData.put("url", link.getUrl());
+            linkData.put("iconClass", link.getIconClass());
+            linkData.put("sortOrder", link.getDisplayOrder());
+            socialLinksData.add(linkData);
+        }
+        footerContent.put("socialLinks", socialLinksData);
+        return footerContent;
+    }
+
+    // ========== HELPER METHODS ==========
+    // Tiêu đề cho trang /content/list/{sectionSlug}: item đầu tiên theo thứ tự menu thắng
+    private void addPageListTitle(Map<String, String> titles, HeaderNavigationItem item) {
+        if (item.getLinkType() == FooterLinkType.PAGE_LIST && item.getUrl() != null) {
+            titles.putIfAbsent(item.getUrl(), item.getTitle());
+        }
+    }
+
+    private LocalDateTime earliest(LocalDateTime current, LocalDateTime candidate) {
+        return current == null || candidate.isBefore(current) ? candidate : current;
+    }
+
+    private Part part(Object value) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(value);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return new Part(body, "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"");
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot serialize site chrome", e);
+        }
+    }
+}
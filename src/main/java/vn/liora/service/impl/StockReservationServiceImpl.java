@@ -0,0 +1,74 @@
+package vn.liora.service.impl;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import vn.liora.dto.response.StockReservationLine;
+import vn.liora.enums.StockReservationStatus;
+import vn.liora.event.ProductChangedEvent;
+import vn.liora.repository.ProductRepository;
+import vn.liora.service.IStockReservationService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class StockReservationServiceImpl implements IStockReservationService {
+
+    ProductRepository productRepository;
+    ApplicationEventPublisher eventPublisher;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<StockReservationLine> reserve(Map<Long, Integer> quantities) {
+        List<StockReservationLine> lines = new ArrayList<>();
+        // Khóa dòng theo productId tăng dần để hai đơn cùng sản phẩm không deadlock
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            Long productId = entry.getKey();
+            Integer quantity = entry.getValue();
+            StockReservationStatus status;
+            if (quantity == null || quantity <= 0) {
+                status = StockReservationStatus.INVALID_QUANTITY;
+            } else if (productRepository.reserveStock(productId, quantity, LocalDateTime.now()) == 1) {
+                status = StockReservationStatus.RESERVED;
+                eventPublisher.publishEvent(ProductChangedEvent.of(productId));
+            } else {
+                status = StockReservationStatus.INSUFFICIENT_STOCK;
+            }
+            log.info("Stock reservation product {} x{}: {}", productId, quantity, status);
+            lines.add(StockReservationLine.builder()
+                    .productId(productId)
+                    .quantity(quantity)
+                    .status(status)
+                    .build());
+        }
+        return lines;
+    }
+
+    @Override
+    @Transactional
+    public void release(Map<Long, Integer> quantities) {
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                continue;
+            }
+            if (productRepository.releaseStock(entry.getKey(), entry.getValue(), LocalDateTime.now()) == 1) {
+                eventPublisher.publishEvent(ProductChangedEvent.of(entry.getKey()));
+                log.info("Released stock for product {}: +{}", entry.getKey(), entry.getValue());
+            } else {
+                log.warn("Cannot release stock for product {}: product not found", entry.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.liora.repository.InvalidatedTokenRepository;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dọn bảng InvalidatedToken: xóa các token đã hết hạn và đã qua thời gian cho phép refresh,
+ * theo từng lô nhỏ (mỗi lô một transaction) để không khóa bảng lâu.
+ * Metrics: auth.invalidated_tokens.rows (số dòng sau lần dọn gần nhất),
+ * auth.invalidated_tokens.purged (số dòng đã xóa), auth.invalidated_tokens.purge (thời gian một lần dọn).
+ */
+@Component
+@Slf4j
+public class TokenRevocationPurger {
+
+    private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatches;
+
+    private final AtomicLong tableRows = new AtomicLong();
+    private final Counter purgedCounter;
+    private final Timer purgeTimer;
+
+    public TokenRevocationPurger(InvalidatedTokenRepository invalidatedTokenRepository,
+            TokenRevocationRegistry tokenRevocationRegistry,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.revocation.purge-batch-size:1000}") int batchSize,
+            @Value("${jwt.revocation.purge-max-batches:50}") int maxBatches) {
+        this.invalidatedTokenRepository = invalidatedTokenRepository;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatches = Math.max(1, maxBatches);
+
+        Gauge.builder("auth.invalidated_tokens.rows", tableRows, AtomicLong::get)
+                .description("Số dòng trong bảng InvalidatedToken sau lần dọn gần nhất")
+                .register(meterRegistry);
+        this.purgedCounter = Counter.builder("auth.invalidated_tokens.purged")
+                .description("Số token hết hạn đã xóa khỏi bảng InvalidatedToken")
+                .register(meterRegistry);
+        this.purgeTimer = Timer.builder("auth.invalidated_tokens.purge")
+                .description("Thời gian một lần dọn bảng InvalidatedToken")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-millis:600000}",
+            initialDelayString = "${jwt.revocation.purge-initial-delay-millis:60000}")
+    public void purgeExpired() {
+        try {
+            int deleted = purgeTimer.record(this::deleteInBatches);
+            tableRows.set(invalidatedTokenRepository.count());
+            if (deleted > 0) {
+                log.info("Purged {} expired invalidated tokens, {} remaining", deleted, tableRows.get());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not purge expired invalidated tokens", e);
+        }
+    }
+
+    private int deleteInBatches() {
+        // Cố định mốc cho cả lần dọn để các lô không đuổi theo thời gian hiện tại
+        Date cutoff = tokenRevocationRegistry.retentionCutoff();
+        int total = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            Integer deleted = transactionTemplate.execute(
+                    status -> invalidatedTokenRepository.deleteExpiredBatch(cutoff, batchSize));
+            int count = deleted != null ? deleted : 0;
+            total += count;
+            purgedCounter.increment(count);
+            if (count < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,166 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.liora.entity.InvalidatedToken;
+import vn.liora.repository.InvalidatedTokenRepository;
+import vn.liora.util.BloomFilter;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tập JTI đã thu hồi (logout/refresh) giữ trong bộ nhớ, để kiểm tra token không cần truy vấn DB.
+ * - Bloom filter trả lời nhanh "chắc chắn chưa thu hồi" cho gần như mọi token;
+ *   khi filter báo "có thể" mới tra tập chính xác.
+ * - Nạp từ bảng InvalidatedToken khi khởi động và đồng bộ lại định kỳ: lấy thêm JTI do instance
+ *   khác thu hồi, bỏ các JTI đã hết hạn (Bloom filter không xóa được nên dựng lại từ đầu).
+ * Bảng InvalidatedToken vẫn là nguồn dữ liệu gốc; revoke() chỉ gọi sau khi đã lưu vào bảng.
+ */
+@Component
+@Slf4j
+public class TokenRevocationRegistry {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private final MeterRegistry meterRegistry;
+    private final int expectedTokens;
+    // Token đã hết hạn vẫn dùng được để refresh cho tới iat + refreshable-duration,
+    // nên JTI thu hồi phải giữ thêm khoảng này sau expiryTime
+    private final long refreshGraceMillis;
+
+    private volatile State state;
+
+    private Counter bloomNegative;
+    private Counter revokedHit;
+    private Counter falsePositive;
+
+    /**
+     * Filter và tập chính xác luôn được thay cùng nhau.
+     */
+    private static final class State {
+        final BloomFilter filter;
+        // jti -> thời điểm có thể bỏ khỏi tập (epoch millis)
+        final Map<String, Long> revoked;
+
+        State(int capacity) {
+            this.filter = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+            this.revoked = new ConcurrentHashMap<>();
+        }
+
+        void add(String jti, long expiresAt) {
+            revoked.put(jti, expiresAt);
+            filter.put(jti);
+        }
+    }
+
+    public TokenRevocationRegistry(InvalidatedTokenRepository invalidatedTokenRepository,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.revocation.expected-tokens:10000}") int expectedTokens,
+            @Value("${jwt.valid-duration}") long validDuration,
+            @Value("${jwt.refreshable-duration}") long refreshableDuration) {
+        this.invalidatedTokenRepository = invalidatedTokenRepository;
+        this.meterRegistry = meterRegistry;
+        this.expectedTokens = expectedTokens;
+        this.refreshGraceMillis = Math.max(0, refreshableDuration - validDuration) * 1000;
+        this.state = new State(expectedTokens);
+    }
+
+    @PostConstruct
+    void init() {
+        bloomNegative = check("bloom_negative");
+        revokedHit = check("revoked");
+        falsePositive = check("false_positive");
+        Gauge.builder("auth.revocation.size", this, r -> r.state.revoked.size())
+                .description("Số JTI đã thu hồi đang giữ trong bộ nhớ")
+                .register(meterRegistry);
+        reload();
+    }
+
+    private Counter check(String result) {
+        return Counter.builder("auth.revocation.checks")
+                .tag("result", result)
+                .description("Số lần kiểm tra token bị thu hồi")
+                .register(meterRegistry);
+    }
+
+    // ========== CHECK ==========
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        State current = state;
+        if (!current.filter.mightContain(jti)) {
+            bloomNegative.increment();
+            return false;
+        }
+        if (current.revoked.containsKey(jti)) {
+            revokedHit.increment();
+            return true;
+        }
+        falsePositive.increment();
+        return false;
+    }
+
+    public synchronized void revoke(String jti, Date expiryTime) {
+        if (jti != null) {
+            state.add(jti, expiresAt(expiryTime));
+        }
+    }
+
+    // ========== SYNC ==========
+    /**
+     * Dựng lại filter và tập từ DB. Các JTI vừa thu hồi trong lúc đang đọc DB được giữ lại
+     * (nếu chưa hết hạn) để không bị mất do lần đọc bắt đầu trước khi chúng được lưu.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.resync-millis:300000}",
+            initialDelayString = "${jwt.revocation.resync-millis:300000}")
+    public void reload() {
+        long now = System.currentTimeMillis();
+        List<InvalidatedToken> rows;
+        try {
+            rows = invalidatedTokenRepository.findRetained(retentionCutoff());
+        } catch (RuntimeException e) {
+            log.warn("Could not load invalidated tokens, keeping current revocation set", e);
+            return;
+        }
+        synchronized (this) {
+            State previous = state;
+            State next = new State(Math.max(expectedTokens, (rows.size() + previous.revoked.size()) * 2));
+            for (InvalidatedToken row : rows) {
+                long expiresAt = expiresAt(row.getExpiryTime());
+                if (expiresAt > now) {
+                    next.add(row.getId(), expiresAt);
+                }
+            }
+            previous.revoked.forEach((jti, expiresAt) -> {
+                if (expiresAt > now) {
+                    next.add(jti, expiresAt);
+                }
+            });
+            state = next;
+        }
+        log.debug("Loaded {} revoked tokens", state.revoked.size());
+    }
+
+    /**
+     * Dòng InvalidatedToken có expiryTime trước mốc này không còn dùng được (kể cả để refresh),
+     * có thể bỏ khỏi bộ nhớ và xóa khỏi bảng.
+     */
+    public Date retentionCutoff() {
+        return new Date(System.currentTimeMillis() - refreshGraceMillis);
+    }
+
+    private long expiresAt(Date expiryTime) {
+        return expiryTime != null ? expiryTime.getTime() + refreshGraceMillis : Long.MAX_VALUE;
+    }
+}
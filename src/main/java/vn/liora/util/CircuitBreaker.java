@@ -0,0 +1,73 @@
+package vn.liora.util;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker đơn giản theo số lỗi liên tiếp:
+ * - CLOSED: cho qua; lỗi liên tiếp đạt failureThreshold thì chuyển OPEN.
+ * - OPEN: từ chối ngay trong openDuration, sau đó cho đúng một lệnh thử (HALF_OPEN).
+ * - HALF_OPEN: lệnh thử thành công thì CLOSED, lỗi thì OPEN lại.
+ * An toàn giữa nhiều luồng.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * true nếu được phép gọi. Mỗi lần trả về true phải kết thúc bằng onSuccess() hoặc onFailure().
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                // HALF_OPEN: chỉ một lệnh thử tại một thời điểm
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,99 @@
+package vn.liora.util;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Quy ước đặt tên bản định dạng hiện đại của một ảnh đã lưu: thêm đuôi định dạng vào sau tên file,
+ * ví dụ abc.jpg -> abc.jpg.webp, abc.jpg.avif. Dùng chung cho phần ghi ảnh, phục vụ /uploads và xóa file.
+ */
+public final class ImageVariants {
+
+    /**
+     * Các định dạng hiện đại theo thứ tự ưu tiên (nén tốt hơn trước).
+     */
+    public static final List<String> MODERN_FORMATS = List.of("avif", "webp");
+
+    private ImageVariants() {
+    }
+
+    public static String variantName(String filename, String format) {
+        return filename + "." + format;
+    }
+
+    /**
+     * Ảnh gốc có thể có bản định dạng hiện đại (jpg, png...) hay không.
+     */
+    public static boolean hasVariants(String filename) {
+        if (filename == null) {
+            return false;
+        }
+        String lower = filename.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png")
+                || lower.endsWith(".gif") || lower.endsWith(".bmp");
+    }
+
+    /**
+     * Chọn bản nhỏ nhất trong ảnh gốc và các bản định dạng hiện đại mà header Accept ghi rõ
+     * (image/avif, image/webp với q > 0). Accept dạng wildcard (mọi loại, image/*) không tính là chấp nhận,
+     * vì client cũ cũng gửi như vậy.
+     */
+    public static Resource selectVariant(Resource original, String acceptHeader) {
+        if (!hasVariants(original.getFilename())) {
+            return original;
+        }
+        List<MediaType> accepted = parseAccept(acceptHeader);
+        Resource best = original;
+        long bestSize = contentLength(original);
+        for (String format : MODERN_FORMATS) {
+            if (!accepts(accepted, format)) {
+                continue;
+            }
+            try {
+                Resource variant = original.createRelative(variantName(original.getFilename(), format));
+                if (variant.isReadable()) {
+                    long size = contentLength(variant);
+                    if (size >= 0 && (bestSize < 0 || size < bestSize)) {
+                        best = variant;
+                        bestSize = size;
+                    }
+                }
+            } catch (IOException e) {
+                // Không đọc được bản này thì dùng bản khác
+            }
+        }
+        return best;
+    }
+
+    private static List<MediaType> parseAccept(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return List.of();
+        }
+        try {
+            return MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return List.of();
+        }
+    }
+
+    private static boolean accepts(List<MediaType> accepted, String format) {
+        for (MediaType mediaType : accepted) {
+            if ("image".equalsIgnoreCase(mediaType.getType()) && format.equalsIgnoreCase(mediaType.getSubtype())) {
+                return mediaType.getQualityValue() > 0;
+            }
+        }
+        return false;
+    }
+
+    private static long contentLength(Resource resource) {
+        try {
+            return resource.contentLength();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package vn.liora.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chuẩn hóa văn bản tiếng Việt cho tìm kiếm: bỏ dấu thanh/dấu phụ, chữ thường, tách từ.
+ * VD: "Sữa bột Đức" -> ["sua", "bot", "duc"]
+ */
+public class VietnameseTextUtil {
+
+    private VietnameseTextUtil() {
+    }
+
+    /**
+     * Bỏ dấu và chuyển chữ thường: "Sữa Mẹ" -> "sua me"
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char ch = decomposed.charAt(i);
+            if (Character.getType(ch) == Character.NON_SPACING_MARK) {
+                continue; // dấu thanh, dấu mũ, dấu móc...
+            }
+            if (ch == 'đ' || ch == 'Đ') {
+                ch = 'd';
+            }
+            sb.append(Character.toLowerCase(ch));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Tách từ sau khi bỏ dấu. Thẻ HTML (mô tả sản phẩm) được bỏ qua.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String folded = fold(text.replaceAll("<[^>]*>", " "));
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,18 @@
+package vn.liora.websocket.bus;
+
+/**
+ * Kênh phát tin chat tới mọi session của một phòng, trên mọi instance.
+ * - local (mặc định): chỉ trong JVM hiện tại, dùng khi chạy một instance.
+ * - database: dùng bảng ChatBusEvent trên DB chung làm broker, cho nhiều instance sau load balancer.
+ * Chọn bằng chat.bus.type.
+ */
+public interface ChatBus {
+
+    // Kênh riêng cho trang quản trị: cập nhật danh sách phòng/số chưa đọc (ROOM_UPDATE)
+    String ADMIN_INBOX = "admin-inbox";
+
+    /**
+     * Phát payload (JSON đã serialize) tới phòng. Không chặn luồng gọi.
+     */
+    void publish(String room, String payload);
+}
@@ -0,0 +1,147 @@
+package vn.liora.websocket.bus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.liora.entity.ChatBusEvent;
+import vn.liora.repository.ChatBusEventRepository;
+import vn.liora.websocket.session.ChatSessionRegistry;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * ChatBus cho nhiều instance, dùng DB chung làm broker (không cần thêm Redis/MQ):
+ * - publish(): phát ngay cho session trên instance này, đồng thời đưa vào hàng đợi ghi bảng ChatBusEvent.
+ * - Mỗi chu kỳ: ghi các tin đang chờ theo lô, rồi đọc tin của instance khác trong cửa sổ gần đây
+ *   (theo đồng hồ DB) và phát cho session cục bộ. Đọc theo cửa sổ + nhớ id đã phát để không bỏ sót
+ *   tin commit trễ (id IDENTITY có thể commit không theo thứ tự) và không phát trùng.
+ * - Tin trong bảng chỉ giữ ngắn hạn, được xóa định kỳ theo lô.
+ * Độ trễ giữa các instance xấp xỉ chat.bus.poll-interval-ms.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "database")
+public class DatabaseChatBus implements ChatBus {
+
+    private static final int OUTGOING_BATCH = 200;
+    private static final int PURGE_BATCH = 1000;
+
+    private final ChatSessionRegistry chatSessionRegistry;
+    private final ChatBusEventRepository chatBusEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String nodeId;
+    private final int windowMillis;
+    private final int pollLimit;
+    private final int retentionSeconds;
+
+    private final BlockingQueue<ChatBusEvent> outgoing = new LinkedBlockingQueue<>(10_000);
+    // id đã phát -> thời điểm thấy (chỉ truy cập từ luồng poll)
+    private final Map<Long, Long> delivered = new LinkedHashMap<>();
+
+    private final Counter publishedCounter;
+    private final Counter receivedCounter;
+    private final Counter droppedCounter;
+
+    public DatabaseChatBus(ChatSessionRegistry chatSessionRegistry,
+            ChatBusEventRepository chatBusEventRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${chat.bus.node-id:}") String nodeId,
+            @Value("${chat.bus.window-ms:5000}") int windowMillis,
+            @Value("${chat.bus.poll-limit:500}") int pollLimit,
+            @Value("${chat.bus.retention-seconds:60}") int retentionSeconds) {
+        this.chatSessionRegistry = chatSessionRegistry;
+        this.chatBusEventRepository = chatBusEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.windowMillis = windowMillis;
+        this.pollLimit = pollLimit;
+        this.retentionSeconds = Math.max(retentionSeconds, windowMillis / 1000 + 1);
+
+        this.publishedCounter = Counter.builder("chat.bus.events").tag("direction", "out")
+                .description("Số tin chat gửi sang instance khác")
+                .register(meterRegistry);
+        this.receivedCounter = Counter.builder("chat.bus.events").tag("direction", "in")
+                .description("Số tin chat nhận từ instance khác")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("chat.bus.events").tag("direction", "dropped")
+                .description("Số tin chat không gửi được sang instance khác (hàng đợi đầy)")
+                .register(meterRegistry);
+        log.info("Chat bus: database-backed, node {}", this.nodeId);
+    }
+
+    @Override
+    public void publish(String room, String payload) {
+        chatSessionRegistry.broadcast(room, payload);
+        ChatBusEvent event = ChatBusEvent.builder()
+                .nodeId(nodeId)
+                .roomId(room)
+                .payload(payload)
+                .build();
+        if (!outgoing.offer(event)) {
+            droppedCounter.increment();
+            log.warn("Chat bus: outgoing queue full, message for room {} not relayed", room);
+        }
+    }
+
+    // ========== RELAY ==========
+    @Scheduled(fixedDelayString = "${chat.bus.poll-interval-ms:250}")
+    public void relay() {
+        try {
+            flushOutgoing();
+            deliverIncoming();
+        } catch (RuntimeException e) {
+            log.warn("Chat bus relay failed: {}", e.getMessage());
+        }
+    }
+
+    private void flushOutgoing() {
+        List<ChatBusEvent> batch = new ArrayList<>(OUTGOING_BATCH);
+        while (outgoing.drainTo(batch, OUTGOING_BATCH) > 0) {
+            chatBusEventRepository.saveAll(batch);
+            publishedCounter.increment(batch.size());
+            batch = new ArrayList<>(OUTGOING_BATCH);
+        }
+    }
+
+    private void deliverIncoming() {
+        long now = System.currentTimeMillis();
+        for (ChatBusEvent event : chatBusEventRepository.findRecentFromOtherNodes(nodeId, windowMillis, pollLimit)) {
+            if (delivered.putIfAbsent(event.getEventId(), now) == null) {
+                chatSessionRegistry.broadcast(event.getRoomId(), event.getPayload());
+                receivedCounter.increment();
+            }
+        }
+        // Id cũ hơn cửa sổ đọc sẽ không xuất hiện lại
+        Iterator<Long> seenAt = delivered.values().iterator();
+        while (seenAt.hasNext() && now - seenAt.next() > 2L * windowMillis) {
+            seenAt.remove();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.bus.purge-interval-ms:60000}")
+    public void purge() {
+        try {
+            Integer deleted;
+            do {
+                deleted = transactionTemplate.execute(
+                        status -> chatBusEventRepository.deleteExpiredBatch(retentionSeconds, PURGE_BATCH));
+            } while (deleted != null && deleted == PURGE_BATCH);
+        } catch (RuntimeException e) {
+            log.warn("Chat bus purge failed: {}", e.getMessage());
+        }
+    }
+}
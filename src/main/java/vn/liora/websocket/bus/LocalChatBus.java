@@ -0,0 +1,19 @@
+package vn.liora.websocket.bus;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import vn.liora.websocket.session.ChatSessionRegistry;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "local", matchIfMissing = true)
+public class LocalChatBus implements ChatBus {
+
+    private final ChatSessionRegistry chatSessionRegistry;
+
+    @Override
+    public void publish(String room, String payload) {
+        chatSessionRegistry.broadcast(room, payload);
+    }
+}
@@ -2,6 +2,7 @@ package vn.liora.websocket.handler;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
@@ -12,22 +13,33 @@ import vn.liora.entity.Message;
 import vn.liora.entity.User;
 import vn.liora.mapper.ChatMessageMapper;
 import vn.liora.service.MessageService;
+import vn.liora.service.impl.ChatUserProfileCache;
+import vn.liora.websocket.bus.ChatBus;
+import vn.liora.websocket.session.ChatSessionRegistry;
 
 import jakarta.servlet.http.HttpSession;
 import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Phòng chat WebSocket. Luồng nhận tin không làm I/O chặn: tin nhắn được ghi DB theo lô ở nền
+ * (MessageService.saveBuffered), avatar lấy từ cache, việc gửi tới các session do ChatSessionRegistry đảm nhận.
+ * Tin phát qua ChatBus nên tới được session ở mọi instance.
+ */
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class ChatWebSocketHandler extends TextWebSocketHandler {
 
     private final MessageService messageService;
     private final ObjectMapper objectMapper;
-    private final vn.liora.repository.UserRepository userRepository;
+    private final ChatUserProfileCache chatUserProfileCache;
+    private final ChatSessionRegistry chatSessionRegistry;
+    private final ChatBus chatBus;
 
-    private static final Map<String, Set<WebSocketSession>> ROOMS = new ConcurrentHashMap<>();
-    private static final Map<WebSocketSession, UserCtx> CONTEXT = new ConcurrentHashMap<>();
+    // Session trên instance này -> người dùng/phòng
+    private final Map<WebSocketSession, UserCtx> context = new ConcurrentHashMap<>();
 
     private static class UserCtx {
         String room;
@@ -49,40 +61,45 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         User currentUser = (User) session.getAttributes().get("currentUser");
         if (currentUser == null) {
-            System.err.println("[WS] currentUser is null, closing session " + session.getId());
+            log.warn("[WS] currentUser is null, closing session {}", session.getId());
             session.close();
             return;
         }
-        System.out.println("[WS] User connected: " + currentUser.getUsername() + ", session: " + session.getId());
+        log.debug("[WS] User connected: {}, session: {}", currentUser.getUsername(), session.getId());
 
         String room = null;
         try {
             room = Objects.requireNonNull(session.getUri()).getPath().replaceAll(".*/", "");
         } catch (Exception e) {
-            System.err.println("[WS] Cannot extract room from URI: " + session.getUri());
+            log.warn("[WS] Cannot extract room from URI: {}", session.getUri());
             session.close();
             return;
         }
         if (room == null || room.isEmpty()) {
-            System.err.println("[WS] Room is null or empty, closing session " + session.getId());
+            log.warn("[WS] Room is null or empty, closing session {}", session.getId());
             session.close();
             return;
         }
 
+        if (ChatBus.ADMIN_INBOX.equals(room)) {
+            joinAdminInbox(session, currentUser);
+            return;
+        }
+
         UserCtx ctx = new UserCtx();
         ctx.room = room;
         ctx.userId = currentUser.getUserId();
         ctx.username = currentUser.getUsername();
         ctx.role = currentUser.getRoles().stream().findFirst().map(r -> r.getName()).orElse("USER");
 
-        CONTEXT.put(session, ctx);
-        ROOMS.computeIfAbsent(room, k -> ConcurrentHashMap.newKeySet()).add(session);
-        System.out.println("[WS] User " + ctx.username + " joined room: " + room);
+        context.put(session, ctx);
+        chatUserProfileCache.put(currentUser);
+        chatSessionRegistry.register(room, session);
 
         // SEND HISTORY
         var historyMessages = messageService.findRecentByRoom(room, 50)
                 .stream()
-                .map(m -> ChatMessageMapper.toResponse(m, "CHAT", userRepository))
+                .map(m -> ChatMessageMapper.toResponse(m, "CHAT", chatUserProfileCache.avatarOf(m.getSenderId())))
                 .toList();
 
         ChatHistoryResponse historyResponse = ChatHistoryResponse.builder()
@@ -92,15 +109,17 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                 .build();
 
         try {
-            session.sendMessage(
-                new TextMessage(objectMapper.writeValueAsString(historyResponse))
-            );
+            // Lịch sử đi qua cùng hàng đợi gửi nên luôn tới trước các tin phát sau khi vào phòng
+            chatSessionRegistry.send(session, objectMapper.writeValueAsString(historyResponse));
         } catch (Exception e) {
-            System.err.println("[WS] Error sending history to user " + ctx.username + ": " + e.getMessage());
-            e.printStackTrace();
+            log.warn("[WS] Error sending history to user {}: {}", ctx.username, e.getMessage());
+            context.remove(session);
+            chatSessionRegistry.leave(session);
             session.close();
             return;
         }
+        chatSessionRegistry.join(session);
+        log.debug("[WS] User {} joined room: {}", ctx.username, room);
 
         // ===== BROADCAST JOIN =====
         broadcast(room, ChatMessageResponse.builder()
@@ -117,8 +136,8 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     // MESSAGE
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        UserCtx ctx = CONTEXT.get(session);
-        if (ctx == null) return;
+        UserCtx ctx = context.get(session);
+        if (ctx == null || ChatBus.ADMIN_INBOX.equals(ctx.room)) return;
 
         ChatMessageRequest request =
                 objectMapper.readValue(message.getPayload(), ChatMessageRequest.class);
@@ -141,11 +160,12 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                 .seen(false)
                 .build();
 
-        messageService.save(entity);
+        // Ghi DB ở nền theo lô; phát tin ngay không chờ DB
+        messageService.saveBuffered(entity);
 
         // BROADCAST CHAT
         ChatMessageResponse response =
-                ChatMessageMapper.toResponse(entity, "CHAT", userRepository);
+                ChatMessageMapper.toResponse(entity, "CHAT", chatUserProfileCache.avatarOf(ctx.userId));
 
         broadcast(ctx.room, response);
     }
@@ -153,9 +173,9 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     // DISCONNECT
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        UserCtx ctx = CONTEXT.remove(session);
-        if (ctx != null) {
-            ROOMS.getOrDefault(ctx.room, Set.of()).remove(session);
+        UserCtx ctx = context.remove(session);
+        chatSessionRegistry.leave(session);
+        if (ctx != null && !ChatBus.ADMIN_INBOX.equals(ctx.room)) {
 
             broadcast(ctx.room, ChatMessageResponse.builder()
                     .type("LEAVE")
@@ -169,6 +189,27 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    /**
+     * Kênh cập nhật danh sách phòng cho trang quản trị (ROOM_UPDATE): chỉ nhân viên được vào,
+     * không gửi lịch sử, không phát JOIN/LEAVE, không nhận tin từ client.
+     */
+    private void joinAdminInbox(WebSocketSession session, User currentUser) throws Exception {
+        boolean staff = currentUser.getRoles().stream()
+                .anyMatch(r -> "ADMIN".equals(r.getName()) || "MANAGER".equals(r.getName()));
+        if (!staff) {
+            log.warn("[WS] User {} is not staff, closing admin inbox session", currentUser.getUsername());
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        UserCtx ctx = new UserCtx();
+        ctx.room = ChatBus.ADMIN_INBOX;
+        ctx.userId = currentUser.getUserId();
+        ctx.username = currentUser.getUsername();
+        context.put(session, ctx);
+        chatSessionRegistry.register(ChatBus.ADMIN_INBOX, session);
+        chatSessionRegistry.join(session);
+    }
+
     // PUBLIC METHOD để admin controller có thể gọi
     public void broadcastMessage(String room, Object payload) {
         broadcast(room, payload);
@@ -177,28 +218,9 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     // BROADCAST
     private void broadcast(String room, Object payload) {
         try {
-            String json = objectMapper.writeValueAsString(payload);
-            Set<WebSocketSession> sessions = ROOMS.getOrDefault(room, Set.of());
-            System.out.println("[WS] Broadcasting to room: " + room + ", sessions: " + sessions.size());
-            
-            for (WebSocketSession s : sessions) {
-                try {
-                    if (s.isOpen()) {
-                        s.sendMessage(new TextMessage(json));
-                        System.out.println("[WS] Message sent to session: " + s.getId());
-                    } else {
-                        System.out.println("[WS] Session " + s.getId() + " is closed, removing from room");
-                        ROOMS.getOrDefault(room, Set.of()).remove(s);
-                    }
-                } catch (Exception e) {
-                    System.err.println("[WS] Error sending to session " + s.getId() + ": " + e.getMessage());
-                    // Remove closed session
-                    ROOMS.getOrDefault(room, Set.of()).remove(s);
-                }
-            }
+            chatBus.publish(room, objectMapper.writeValueAsString(payload));
         } catch (Exception e) {
-            System.err.println("[WS] Error in broadcast: " + e.getMessage());
-            e.printStackTrace();
+            log.error("[WS] Error in broadcast to room {}", room, e);
         }
     }
 }
@@ -0,0 +1,218 @@
+package vn.liora.websocket.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Quản lý session WebSocket theo phòng chat và gửi tin ra không chặn luồng gọi.
+ * - Mỗi phòng phát tin theo đúng thứ tự: tin được đưa vào hàng đợi của từng session dưới khóa của phòng,
+ *   nên mọi session trong phòng nhận cùng một thứ tự.
+ * - Mỗi session có hàng đợi gửi riêng, được xả trên chatOutboundExecutor (mỗi lúc tối đa một luồng);
+ *   executor quá tải thì session bị đóng, không bao giờ gửi trên luồng gọi.
+ * - Session bọc bằng ConcurrentWebSocketSessionDecorator (giới hạn thời gian gửi/bộ đệm); session quá chậm
+ *   (hàng đợi quá dài hoặc một lần gửi quá lâu) bị đóng thay vì làm chậm cả phòng.
+ */
+@Component
+@Slf4j
+public class ChatSessionRegistry {
+
+    private final TaskExecutor executor;
+    private final int sendTimeLimitMillis;
+    private final int bufferSizeLimit;
+    private final int maxQueuedMessages;
+
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Map<String, ChatSession> sessions = new ConcurrentHashMap<>();
+
+    private final Counter slowSessionsClosed;
+
+    private static final class Room {
+        final Set<ChatSession> members = ConcurrentHashMap.newKeySet();
+    }
+
+    private static final class ChatSession {
+        final String room;
+        final ConcurrentWebSocketSessionDecorator session;
+        final Queue<TextMessage> outbox = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        ChatSession(String room, ConcurrentWebSocketSessionDecorator session) {
+            this.room = room;
+            this.session = session;
+        }
+    }
+
+    public ChatSessionRegistry(@Qualifier("chatOutboundExecutor") TaskExecutor executor,
+            MeterRegistry meterRegistry,
+            @Value("${chat.outbound.send-time-limit-ms:5000}") int sendTimeLimitMillis,
+            @Value("${chat.outbound.buffer-size-limit:524288}") int bufferSizeLimit,
+            @Value("${chat.outbound.max-queued-messages:500}") int maxQueuedMessages) {
+        this.executor = executor;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.maxQueuedMessages = maxQueuedMessages;
+
+        Gauge.builder("chat.sessions", sessions, Map::size)
+                .description("Số session WebSocket chat đang mở trên instance này")
+                .register(meterRegistry);
+        Gauge.builder("chat.rooms", rooms, Map::size)
+                .description("Số phòng chat đang có session trên instance này")
+                .register(meterRegistry);
+        this.slowSessionsClosed = Counter.builder("chat.outbound.slow_sessions_closed")
+                .description("Số session bị đóng vì nhận tin quá chậm")
+                .register(meterRegistry);
+    }
+
+    // ========== MEMBERSHIP ==========
+    /**
+     * Đăng ký session (chưa vào phòng): tin gửi bằng send() sẽ đi trước mọi tin phát sau khi join().
+     */
+    public void register(String room, WebSocketSession session) {
+        var decorated = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMillis, bufferSizeLimit,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+        sessions.put(session.getId(), new ChatSession(room, decorated));
+    }
+
+    public void join(WebSocketSession session) {
+        ChatSession chatSession = sessions.get(session.getId());
+        if (chatSession == null) {
+            return;
+        }
+        rooms.compute(chatSession.room, (key, room) -> {
+            Room target = room != null ? room : new Room();
+            target.members.add(chatSession);
+            return target;
+        });
+    }
+
+    public void leave(WebSocketSession session) {
+        ChatSession chatSession = sessions.remove(session.getId());
+        if (chatSession != null) {
+            removeFromRoom(chatSession);
+        }
+    }
+
+    private void removeFromRoom(ChatSession chatSession) {
+        rooms.computeIfPresent(chatSession.room, (key, room) -> {
+            room.members.remove(chatSession);
+            return room.members.isEmpty() ? null : room;
+        });
+    }
+
+    // ========== SEND ==========
+    public void send(WebSocketSession session, String json) {
+        ChatSession chatSession = sessions.get(session.getId());
+        if (chatSession != null) {
+            enqueue(chatSession, new TextMessage(json));
+        }
+    }
+
+    public void broadcast(String roomId, String json) {
+        Room room = rooms.get(roomId);
+        if (room == null) {
+            return;
+        }
+        TextMessage message = new TextMessage(json);
+        synchronized (room) {
+            for (ChatSession member : room.members) {
+                enqueue(member, message);
+            }
+        }
+    }
+
+    private void enqueue(ChatSession chatSession, TextMessage message) {
+        if (!chatSession.session.isOpen()) {
+            leave(chatSession.session);
+            return;
+        }
+        if (chatSession.queued.incrementAndGet() > maxQueuedMessages
+                || chatSession.session.getTimeSinceSendStarted() > sendTimeLimitMillis) {
+            // Tin này không được đưa vào hàng đợi
+            chatSession.queued.decrementAndGet();
+            closeSlow(chatSession);
+            return;
+        }
+        chatSession.outbox.offer(message);
+        scheduleDrain(chatSession);
+    }
+
+    private void scheduleDrain(ChatSession chatSession) {
+        if (chatSession.draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> drain(chatSession));
+            } catch (TaskRejectedException e) {
+                // Executor quá tải (AbortPolicy): không gửi trên luồng gọi, đóng session để client kết nối lại
+                chatSession.draining.set(false);
+                closeSlow(chatSession);
+            }
+        }
+    }
+
+    private void drain(ChatSession chatSession) {
+        try {
+            TextMessage message;
+            while ((message = chatSession.outbox.poll()) != null) {
+                chatSession.queued.decrementAndGet();
+                chatSession.session.sendMessage(message);
+            }
+        } catch (Exception e) {
+            log.debug("[WS] Send to session {} failed: {}", chatSession.session.getId(), e.getMessage());
+            discardQueued(chatSession);
+            leave(chatSession.session);
+            closeQuietly(chatSession, CloseStatus.SESSION_NOT_RELIABLE);
+        } finally {
+            chatSession.draining.set(false);
+        }
+        // Tin được thêm sau lần poll cuối nhưng trước khi bỏ cờ
+        if (!chatSession.outbox.isEmpty() && chatSession.session.isOpen()) {
+            scheduleDrain(chatSession);
+        }
+    }
+
+    private void closeSlow(ChatSession chatSession) {
+        log.warn("[WS] Closing slow session {} in room {}", chatSession.session.getId(), chatSession.room);
+        slowSessionsClosed.increment();
+        discardQueued(chatSession);
+        leave(chatSession.session);
+        // Gửi close frame cũng có thể bị chặn bởi chính client chậm, nên đóng trên executor
+        try {
+            executor.execute(() -> closeQuietly(chatSession, CloseStatus.SESSION_NOT_RELIABLE));
+        } catch (TaskRejectedException e) {
+            // Session đã rời phòng; kết nối sẽ bị container đóng khi hết thời gian chờ
+            log.debug("[WS] Close of session {} rejected by busy executor", chatSession.session.getId());
+        }
+    }
+
+    private void discardQueued(ChatSession chatSession) {
+        chatSession.outbox.clear();
+        chatSession.queued.set(0);
+    }
+
+    private void closeQuietly(ChatSession chatSession, CloseStatus status) {
+        try {
+            chatSession.session.close(status);
+        } catch (Exception e) {
+            log.debug("[WS] Error closing session {}: {}", chatSession.session.getId(), e.getMessage());
+        }
+    }
+}
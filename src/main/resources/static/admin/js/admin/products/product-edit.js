@@ -429,7 +429,13 @@ class ProductEditManager {
             const data = await response.json();
 
             if (data.result) {
-                this.showNotification('Upload hình ảnh thành công', 'success');
+                // Ảnh được xử lý ở nền: chờ job xong rồi mới tải lại danh sách ảnh
+                const job = await this.waitForUploadJob(data.result.jobId);
+                if (job && job.failed > 0) {
+                    this.showNotification(`Có ${job.failed} ảnh xử lý thất bại`, 'error');
+                } else {
+                    this.showNotification('Upload hình ảnh thành công', 'success');
+                }
                 this.loadCurrentImages(); // Reload current images
                 fileInput.value = ''; // Clear file input
                 this.clearImagePreview(); // Clear preview
@@ -441,6 +447,31 @@ class ProductEditManager {
             this.showNotification('Có lỗi xảy ra khi upload', 'error');
         }
     }
+    // Hỏi trạng thái job xử lý ảnh cho tới khi xong (hoặc hết thời gian chờ)
+    async waitForUploadJob(jobId, timeoutMs = 60000) {
+        if (!jobId) {
+            return null;
+        }
+        const deadline = Date.now() + timeoutMs;
+        while (Date.now() < deadline) {
+            try {
+                const response = await fetch(`/admin/api/upload/jobs/${jobId}`);
+                if (!response.ok) {
+                    return null;
+                }
+                const data = await response.json();
+                if (data.result && data.result.status !== 'PROCESSING') {
+                    return data.result;
+                }
+            } catch (error) {
+                console.error('Error checking upload job:', error);
+                return null;
+            }
+            await new Promise(resolve => setTimeout(resolve, 500));
+        }
+        return null;
+    }
+
     // Clear image preview
     clearImagePreview() {
         const preview = document.getElementById('newImagePreview');
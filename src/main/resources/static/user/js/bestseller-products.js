@@ -130,7 +130,7 @@ class BestsellerProductsManager {
         return `
             <div class="product-card ${statusClass}" data-product-id="${product.productId}">
                 <div class="position-relative">
-                    <img src="${product.mainImageUrl || '/user/img/default-product.jpg'}" 
+                    <img src="${window.resizedImageUrl(product.mainImageUrl) || '/user/img/default-product.jpg'}" 
                          class="card-img-top" 
                          alt="${product.name}"
                          onerror="this.src='/user/img/default-product.jpg'"
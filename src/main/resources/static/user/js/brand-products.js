@@ -284,7 +284,7 @@ class BrandProductsManager {
         return `
             <div class="product-card ${statusClass}">
                     <div class="position-relative">
-                        <img src="${product.mainImageUrl || '/user/img/default-product.jpg'}" 
+                        <img src="${window.resizedImageUrl(product.mainImageUrl) || '/user/img/default-product.jpg'}" 
                              class="card-img-top" 
                              alt="${product.name}"
                              onerror="this.src='/user/img/default-product.jpg'"
@@ -238,7 +238,11 @@ class CartUtils {
 
         if (!response.ok) {
             const errorData = await response.json().catch(() => ({}));
-            throw new Error(errorData.message || `HTTP error! status: ${response.status}`);
+            const error = new Error(errorData.message || `HTTP error! status: ${response.status}`);
+            // Giữ status và body để nơi gọi xử lý lỗi cụ thể (vd. 409 khi không giữ được hàng)
+            error.status = response.status;
+            error.data = errorData;
+            throw error;
         }
 
         // Với DELETE request, response có thể là empty body
@@ -1671,7 +1671,12 @@ class CheckoutPage {
         } catch (error) {
             console.error('Error placing order:', error);
             this.showLoading(false);
-            this.showToast('Không thể đặt hàng. Vui lòng thử lại!', 'error');
+            if (error.status === 409) {
+                // Có sản phẩm không giữ được hàng: đơn không được tạo, báo tên sản phẩm để người mua sửa giỏ
+                this.showToast(`${error.message}. Vui lòng cập nhật giỏ hàng rồi đặt lại.`, 'warning');
+            } else {
+                this.showToast('Không thể đặt hàng. Vui lòng thử lại!', 'error');
+            }
         }
     }
 
@@ -2244,6 +2244,15 @@ window.reloadProductRatings = function () {
     }
 };
 
+// Global function: URL ảnh thu nhỏ cho ô lưới sản phẩm (/uploads/x.jpg -> /img/400x400/x.jpg).
+// Kích thước phải nằm trong image.resize.allowed-sizes; URL không phải ảnh upload được giữ nguyên.
+window.resizedImageUrl = function (url, size = '400x400') {
+    if (typeof url !== 'string' || !url.startsWith('/uploads/')) {
+        return url;
+    }
+    return `/img/${size}/${url.substring('/uploads/'.length)}`;
+};
+
 // Export for use in other scripts
 window.LioraApp = LioraApp;
 
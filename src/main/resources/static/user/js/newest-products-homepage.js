@@ -104,7 +104,7 @@ class NewestProductsHomepageManager {
         const price = product.price || 0;
         const rating = product.averageRating || product.rating || 0;
         const reviewCount = product.reviewCount || 0;
-        const mainImageUrl = this.getMainImageUrl(product);
+        const mainImageUrl = window.resizedImageUrl(this.getMainImageUrl(product));
         const status = this.getProductStatus(product);
         const statusClass = this.getProductStatusClass(product);
         const statusBadge = this.getProductStatusBadge(product);
@@ -318,7 +318,7 @@ class NewestProductsPageManager {
         const brandName = product.brandName || 'Thương hiệu';
         const brandId = product.brandId || '';
         const price = product.price || 0;
-        const imageUrl = product.mainImageUrl || '/user/img/default-product.jpg';
+        const imageUrl = window.resizedImageUrl(product.mainImageUrl) || '/user/img/default-product.jpg';
 
         return `
             <div class="col-lg-3 col-md-4 col-sm-6 mb-4">
@@ -308,7 +308,7 @@ class SearchResultsManager {
         const brandName = product.brandName || 'Thương hiệu';
         const brandId = product.brandId || '';
         const price = product.price || 0;
-        const imageUrl = product.mainImageUrl || '/user/img/default-product.jpg';
+        const imageUrl = window.resizedImageUrl(product.mainImageUrl) || '/user/img/default-product.jpg';
 
         // Get product status and apply appropriate styling
         const productStatus = this.getProductStatus(product);
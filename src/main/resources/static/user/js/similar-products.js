@@ -153,7 +153,7 @@ class SimilarProductsManager {
             <div class="product-card ${statusClass}" data-product-id="${product.productId}">
                 <div class="position-relative">
                     <a href="/product/${product.productId}?from=similar&productId=${this.productId}" class="product-image-link">
-                        <img src="${product.mainImageUrl || '/user/img/default-product.jpg'}" 
+                        <img src="${window.resizedImageUrl(product.mainImageUrl) || '/user/img/default-product.jpg'}" 
                              class="card-img-top" 
                              alt="${product.name}"
                              onerror="this.src='/user/img/default-product.jpg'">
@@ -0,0 +1,57 @@
+package vn.liora.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Đếm số câu SQL Hibernate chạy trên từng thread để phát hiện N+1 trong test.
+ * Được Hibernate khởi tạo qua hibernate.session_factory.statement_inspector của profile "test"
+ * (src/test/resources/application-test.properties), không phải Spring bean.
+ *
+ * Dùng để ghim số truy vấn của một thao tác:
+ * <pre>
+ * QueryCountInspector.expectAtMost(3, () -> mockMvc.perform(get("/api/products/newest")));
+ * </pre>
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNTER = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNTER.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNTER.get()[0] = 0;
+    }
+
+    public static int count() {
+        return COUNTER.get()[0];
+    }
+
+    /**
+     * Số câu SQL action đã chạy trên thread hiện tại.
+     */
+    public static int countDuring(Callable<?> action) throws Exception {
+        int before = count();
+        action.call();
+        return count() - before;
+    }
+
+    /**
+     * Chạy action và báo lỗi nếu số câu SQL vượt quá maxStatements.
+     */
+    public static <T> T expectAtMost(int maxStatements, Callable<T> action) throws Exception {
+        int before = count();
+        T result = action.call();
+        int executed = count() - before;
+        if (executed > maxStatements) {
+            throw new AssertionError(
+                    "Expected at most " + maxStatements + " SQL statements but " + executed + " were executed");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,134 @@
+package vn.liora.controller;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import vn.liora.config.QueryCountInspector;
+import vn.liora.entity.Brand;
+import vn.liora.entity.Category;
+import vn.liora.entity.Image;
+import vn.liora.entity.Product;
+import vn.liora.repository.BrandRepository;
+import vn.liora.repository.CategoryRepository;
+import vn.liora.repository.ImageRepository;
+import vn.liora.repository.ProductRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Ghim số câu SQL của các endpoint danh sách sản phẩm: số câu không được tăng theo số sản phẩm
+ * trong trang (N+1 khi map brand, category, images) và không vượt mức đã ghim.
+ */
+@SpringBootTest(properties = "catalog.search.in-memory=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductListingQueryCountTest {
+
+    private static final int PRODUCTS = 24;
+
+    // Số câu SQL tối đa đã ghim cho một trang sản phẩm: truy vấn trang (kèm brand, category),
+    // câu đếm nếu có phân trang, một câu nạp images theo lô
+    private static final int NEWEST_MAX = 2;
+    private static final int BEST_SELLING_MAX = 2;
+    private static final int SEARCH_MAX = 3;
+    private static final int ADMIN_LIST_MAX = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private BrandRepository brandRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @BeforeAll
+    void seedProducts() {
+        List<Brand> brands = new ArrayList<>();
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Brand brand = new Brand();
+            brand.setName("Brand " + i);
+            brands.add(brandRepository.save(brand));
+            Category category = new Category();
+            category.setName("Category " + i);
+            category.setIsParent(false);
+            categories.add(categoryRepository.save(category));
+        }
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setDescription("Description " + i);
+            product.setPrice(BigDecimal.valueOf(100_000 + i));
+            product.setBrand(brands.get(i % brands.size()));
+            product.setCategory(categories.get(i % categories.size()));
+            product.setStock(10);
+            product.setSoldCount(i + 1);
+            product.setCreatedDate(LocalDateTime.now().minusDays(i));
+            product = productRepository.save(product);
+            for (int j = 0; j < 2; j++) {
+                Image image = new Image();
+                image.setImageUrl("/uploads/products/p" + i + "_" + j + ".jpg");
+                image.setIsMain(j == 0);
+                image.setDisplayOrder(j);
+                image.setProduct(product);
+                imageRepository.save(image);
+            }
+        }
+    }
+
+    @Test
+    void newestProductsDoNotScaleWithPageSize() throws Exception {
+        assertPinned(get("/api/products/newest").param("limit", "5"),
+                get("/api/products/newest").param("limit", "20"), NEWEST_MAX);
+    }
+
+    @Test
+    void bestSellingProductsDoNotScaleWithPageSize() throws Exception {
+        assertPinned(get("/api/products/best-selling").param("limit", "5"),
+                get("/api/products/best-selling").param("limit", "20"), BEST_SELLING_MAX);
+    }
+
+    @Test
+    void productSearchDoesNotScaleWithPageSize() throws Exception {
+        assertPinned(get("/api/products/search").param("size", "5"),
+                get("/api/products/search").param("size", "20"), SEARCH_MAX);
+    }
+
+    @Test
+    void adminProductListDoesNotScaleWithPageSize() throws Exception {
+        SimpleGrantedAuthority view = new SimpleGrantedAuthority("product.view");
+        assertPinned(get("/admin/api/products").param("size", "5").with(jwt().authorities(view)),
+                get("/admin/api/products").param("size", "20").with(jwt().authorities(view)), ADMIN_LIST_MAX);
+    }
+
+    private void assertPinned(RequestBuilder smallPage, RequestBuilder largePage, int maxStatements)
+            throws Exception {
+        // Lượt đầu làm nóng các cache dùng chung (danh mục, site chrome...) để số đếm ổn định
+        mockMvc.perform(largePage).andExpect(status().isOk());
+
+        int small = QueryCountInspector.countDuring(() -> mockMvc.perform(smallPage).andExpect(status().isOk()));
+        int large = QueryCountInspector.countDuring(() -> mockMvc.perform(largePage).andExpect(status().isOk()));
+        assertThat(large).as("SQL statements for 20 products vs 5").isEqualTo(small);
+        QueryCountInspector.expectAtMost(maxStatements,
+                () -> mockMvc.perform(largePage).andExpect(status().isOk()));
+    }
+}
@@ -0,0 +1,79 @@
+package vn.liora.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Upload ảnh thương hiệu/danh mục xử lý đồng bộ: URL trả về đã có file, file hỏng bị từ chối ngay.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UploadFileControllerTest {
+
+    private static final SimpleGrantedAuthority MANAGE_IMAGES = new SimpleGrantedAuthority("product.manage_images");
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${storage.location}")
+    private String storageLocation;
+
+    @Test
+    void brandUploadReturnsUrlOfWrittenFile() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "logo.png", "image/png", png(640, 480));
+
+        String body = mockMvc.perform(multipart("/admin/api/upload/brands").file(file)
+                        .with(jwt().authorities(MANAGE_IMAGES)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode result = objectMapper.readTree(body).path("result");
+        assertThat(uploaded(result.path("originalUrl").asText())).exists();
+        assertThat(uploaded(result.path("thumbnailUrl").asText())).exists();
+    }
+
+    @Test
+    void undecodableCategoryImageIsRejected() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "broken.jpg", "image/jpeg",
+                "không phải ảnh".getBytes());
+
+        mockMvc.perform(multipart("/admin/api/upload/categories").file(file)
+                        .with(jwt().authorities(MANAGE_IMAGES)))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Path uploaded(String url) {
+        assertThat(url).startsWith("/uploads/");
+        return Paths.get(storageLocation, url.substring("/uploads/".length()));
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
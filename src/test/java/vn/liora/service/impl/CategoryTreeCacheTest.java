@@ -0,0 +1,61 @@
+package vn.liora.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.liora.entity.Category;
+import vn.liora.event.CategoryChangedEvent;
+import vn.liora.repository.CategoryClosureRepository;
+import vn.liora.repository.CategoryRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bảng CategoryClosure được đồng bộ (và commit) khi danh mục thay đổi trong một transaction.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CategoryTreeCacheTest {
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private CategoryClosureRepository categoryClosureRepository;
+    @Autowired
+    private CategoryTreeCache categoryTreeCache;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void closureWrittenAfterTransactionalChangeIsCommitted() {
+        Long[] ids = new Long[2];
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Category parent = new Category();
+            parent.setName("Closure cha");
+            parent.setIsParent(true);
+            parent.setIsActive(true);
+            parent = categoryRepository.save(parent);
+
+            Category child = new Category();
+            child.setName("Closure con");
+            child.setIsParent(false);
+            child.setIsActive(true);
+            child.setParentCategory(parent);
+            child = categoryRepository.save(child);
+
+            ids[0] = parent.getCategoryId();
+            ids[1] = child.getCategoryId();
+            eventPublisher.publishEvent(new CategoryChangedEvent());
+        });
+
+        assertThat(categoryTreeCache.subtreeIds(ids[0])).containsExactlyInAnyOrder(ids[0], ids[1]);
+        assertThat(categoryClosureRepository.findSubtreeIds(ids[0])).containsExactlyInAnyOrder(ids[0], ids[1]);
+        assertThat(categoryClosureRepository.findAncestorIds(ids[1])).containsExactly(ids[0]);
+    }
+}
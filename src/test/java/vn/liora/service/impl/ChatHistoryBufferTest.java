@@ -0,0 +1,74 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import vn.liora.entity.Message;
+import vn.liora.repository.MessageRepository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChatHistoryBufferTest {
+
+    private MessageRepository messageRepository;
+    private ChatMessageBuffer chatMessageBuffer;
+    private final OffsetDateTime now = OffsetDateTime.now();
+
+    @BeforeEach
+    void setUp() {
+        messageRepository = mock(MessageRepository.class);
+        chatMessageBuffer = mock(ChatMessageBuffer.class);
+        when(messageRepository.findByRoomIdOrderByCreatedAtDesc(eq("room-1"), any(Pageable.class)))
+                .thenReturn(List.of(message(1L, "cũ", now.minusMinutes(1))));
+    }
+
+    @Test
+    void localBusServesHistoryFromRing() {
+        ChatHistoryBuffer buffer = buffer("local");
+
+        buffer.recent("room-1", 20);
+        buffer.append(message(2L, "mới", now));
+        List<Message> history = buffer.recent("room-1", 20);
+
+        assertThat(history).extracting(Message::getContent).containsExactly("mới", "cũ");
+        verify(messageRepository, times(1)).findByRoomIdOrderByCreatedAtDesc(eq("room-1"), any(Pageable.class));
+    }
+
+    @Test
+    void databaseBusAlwaysReadsSharedHistory() {
+        ChatHistoryBuffer buffer = buffer("database");
+        when(chatMessageBuffer.pendingFor("room-1")).thenReturn(List.of(message(null, "đang chờ ghi", now)));
+
+        buffer.recent("room-1", 20);
+        // Tin do instance khác lưu chỉ có trong DB
+        when(messageRepository.findByRoomIdOrderByCreatedAtDesc(eq("room-1"), any(Pageable.class)))
+                .thenReturn(List.of(message(3L, "từ instance khác", now.minusSeconds(10)),
+                        message(1L, "cũ", now.minusMinutes(1))));
+        List<Message> history = buffer.recent("room-1", 20);
+
+        assertThat(history).extracting(Message::getContent)
+                .containsExactly("đang chờ ghi", "từ instance khác", "cũ");
+        verify(messageRepository, times(2)).findByRoomIdOrderByCreatedAtDesc(eq("room-1"), any(Pageable.class));
+    }
+
+    private ChatHistoryBuffer buffer(String busType) {
+        return new ChatHistoryBuffer(messageRepository, chatMessageBuffer, new SimpleMeterRegistry(),
+                50, 100, 1800, busType);
+    }
+
+    private Message message(Long id, String content, OffsetDateTime createdAt) {
+        return Message.builder()
+                .id(id)
+                .roomId("room-1")
+                .content(content)
+                .createdAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,88 @@
+package vn.liora.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import vn.liora.entity.ChatRoom;
+import vn.liora.entity.Message;
+import vn.liora.repository.ChatRoomRepository;
+import vn.liora.service.IChatRoomService;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bảng tóm tắt phòng chat khi nhiều luồng ghi cùng lúc hoặc lô ghi đến không theo thứ tự.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ChatRoomServiceConcurrencyTest {
+
+    private static final int WRITERS = 16;
+    private static final AtomicLong IDS = new AtomicLong(1000);
+
+    @Autowired
+    private IChatRoomService chatRoomService;
+    @Autowired
+    private ChatRoomRepository chatRoomRepository;
+
+    @Test
+    void concurrentFirstMessagesAreAllCounted() throws Exception {
+        String roomId = "guest-concurrent";
+        OffsetDateTime base = OffsetDateTime.now();
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        try {
+            for (int i = 0; i < WRITERS; i++) {
+                Message message = customerMessage(roomId, "tin " + i, base.plusNanos(i * 1000L));
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    chatRoomService.recordMessages(List.of(message));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ChatRoom room = chatRoomRepository.findById(roomId).orElseThrow();
+        assertThat(room.getUnreadCount()).isEqualTo(WRITERS);
+        assertThat(room.getLastMessage()).isEqualTo("tin " + (WRITERS - 1));
+    }
+
+    @Test
+    void lateBatchDoesNotOverwriteNewerPreview() {
+        String roomId = "guest-late";
+        OffsetDateTime now = OffsetDateTime.now();
+
+        chatRoomService.recordMessages(List.of(customerMessage(roomId, "mới hơn", now)));
+        chatRoomService.recordMessages(List.of(customerMessage(roomId, "cũ hơn", now.minusMinutes(1))));
+
+        ChatRoom room = chatRoomRepository.findById(roomId).orElseThrow();
+        assertThat(room.getLastMessage()).isEqualTo("mới hơn");
+        assertThat(room.getUnreadCount()).isEqualTo(2);
+    }
+
+    private Message customerMessage(String roomId, String content, OffsetDateTime createdAt) {
+        return Message.builder()
+                .id(IDS.incrementAndGet())
+                .roomId(roomId)
+                .senderName(roomId)
+                .role("USER")
+                .content(content)
+                .createdAt(createdAt)
+                .build();
+    }
+}
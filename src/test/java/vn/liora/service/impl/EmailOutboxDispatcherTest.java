@@ -0,0 +1,163 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import vn.liora.entity.EmailOutbox;
+import vn.liora.enums.EmailOutboxStatus;
+import vn.liora.enums.EmailTemplate;
+import vn.liora.repository.EmailOutboxRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dispatcher gửi thật qua SMTP giả lập cục bộ (FakeSmtpServer) trên CSDL H2 của profile test.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class EmailOutboxDispatcherTest {
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private FakeSmtpServer smtp;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        emailOutboxRepository.deleteAll();
+        smtp = new FakeSmtpServer("reject");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        smtp.close();
+        emailOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void throttledTemplateDoesNotStarveOtherTemplates() {
+        LocalDateTime older = LocalDateTime.now().minusMinutes(10);
+        for (int i = 0; i < 20; i++) {
+            queue(EmailTemplate.ORDER_CONFIRMATION, "order" + i + "@liora.test", older);
+        }
+        queue(EmailTemplate.REGISTRATION_OTP, "otp1@liora.test", LocalDateTime.now());
+        queue(EmailTemplate.REGISTRATION_OTP, "otp2@liora.test", LocalDateTime.now());
+
+        // Lô 10, tối đa 5 email/phút mỗi template: 20 email đơn hàng cũ hơn không được chặn OTP
+        dispatcher(10, 5).dispatch();
+
+        List<String> delivered = smtp.getDeliveredRecipients();
+        assertThat(delivered).contains("otp1@liora.test", "otp2@liora.test");
+        assertThat(delivered).hasSize(7);
+        assertThat(emailOutboxRepository.countByStatus(EmailOutboxStatus.SENT)).isEqualTo(7);
+        assertThat(emailOutboxRepository.countByStatus(EmailOutboxStatus.PENDING)).isEqualTo(15);
+    }
+
+    @Test
+    void concurrentDispatchersSendEachEmailOnce() throws Exception {
+        int total = 100;
+        for (int i = 0; i < total; i++) {
+            queue(EmailTemplate.ORDER_CONFIRMATION, "buyer" + i + "@liora.test", LocalDateTime.now().minusSeconds(1));
+        }
+        List<EmailOutboxDispatcher> dispatchers = List.of(dispatcher(20, 0), dispatcher(20, 0), dispatcher(20, 0),
+                dispatcher(20, 0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(dispatchers.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> runs = new ArrayList<>();
+        try {
+            for (EmailOutboxDispatcher dispatcher : dispatchers) {
+                runs.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < 10; round++) {
+                        dispatcher.dispatch();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> run : runs) {
+                run.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<String> delivered = smtp.getDeliveredRecipients();
+        assertThat(delivered).hasSize(total);
+        assertThat(new HashSet<>(delivered)).hasSize(total);
+        assertThat(emailOutboxRepository.countByStatus(EmailOutboxStatus.SENT)).isEqualTo(total);
+    }
+
+    @Test
+    void rejectedRecipientIsRetriedLaterAndOthersAreSent() {
+        queue(EmailTemplate.ORDER_CONFIRMATION, "ok1@liora.test", LocalDateTime.now().minusSeconds(1));
+        EmailOutbox rejected = queue(EmailTemplate.ORDER_CONFIRMATION, "reject@liora.test",
+                LocalDateTime.now().minusSeconds(1));
+        queue(EmailTemplate.ORDER_CONFIRMATION, "ok2@liora.test", LocalDateTime.now().minusSeconds(1));
+
+        dispatcher(50, 0).dispatch();
+
+        assertThat(smtp.getDeliveredRecipients()).containsExactlyInAnyOrder("ok1@liora.test", "ok2@liora.test");
+        EmailOutbox retry = emailOutboxRepository.findById(rejected.getEmailId()).orElseThrow();
+        assertThat(retry.getStatus()).isEqualTo(EmailOutboxStatus.PENDING);
+        assertThat(retry.getAttempts()).isEqualTo(1);
+        assertThat(retry.getClaimToken()).isNull();
+        assertThat(retry.getLastError()).isNotBlank();
+        assertThat(retry.getNextAttemptAt()).isAfter(LocalDateTime.now());
+    }
+
+    @Test
+    void expiredClaimIsPickedUpAgain() {
+        EmailOutbox stale = queue(EmailTemplate.PASSWORD_RESET_OTP, "stale@liora.test",
+                LocalDateTime.now().minusMinutes(1));
+        stale.setStatus(EmailOutboxStatus.SENDING);
+        stale.setClaimToken("crashed-instance");
+        emailOutboxRepository.save(stale);
+
+        dispatcher(50, 0).dispatch();
+
+        assertThat(smtp.getDeliveredRecipients()).containsExactly("stale@liora.test");
+        assertThat(emailOutboxRepository.findById(stale.getEmailId()).orElseThrow().getStatus())
+                .isEqualTo(EmailOutboxStatus.SENT);
+    }
+
+    // ========== HELPER METHODS ==========
+    private EmailOutboxDispatcher dispatcher(int batchSize, int ratePerMinute) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.getPort());
+        Properties properties = new Properties();
+        properties.put("mail.smtp.from", "noreply@liora.test");
+        mailSender.setJavaMailProperties(properties);
+        return new EmailOutboxDispatcher(emailOutboxRepository, mailSender, transactionManager,
+                new SimpleMeterRegistry(), batchSize, 3, 30, 3600, ratePerMinute, 30, 300);
+    }
+
+    private EmailOutbox queue(EmailTemplate template, String recipient, LocalDateTime nextAttemptAt) {
+        return emailOutboxRepository.save(EmailOutbox.builder()
+                .template(template)
+                .recipient(recipient)
+                .subject("Liora")
+                .body("Nội dung thử")
+                .status(EmailOutboxStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(nextAttemptAt)
+                .build());
+    }
+}
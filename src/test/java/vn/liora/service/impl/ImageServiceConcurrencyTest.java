@@ -0,0 +1,117 @@
+package vn.liora.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.multipart.MultipartFile;
+import vn.liora.entity.Brand;
+import vn.liora.entity.Category;
+import vn.liora.entity.Image;
+import vn.liora.entity.Product;
+import vn.liora.repository.BrandRepository;
+import vn.liora.repository.CategoryRepository;
+import vn.liora.repository.ImageRepository;
+import vn.liora.repository.ProductRepository;
+import vn.liora.service.IImageService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lưu ảnh sản phẩm từ nhiều lần upload chồng nhau: thứ tự hiển thị không trùng.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ImageServiceConcurrencyTest {
+
+    private static final int UPLOADS = 20;
+
+    @Autowired
+    private IImageService imageService;
+    @Autowired
+    private ImageRepository imageRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private BrandRepository brandRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Test
+    void overlappingAppendsGetDistinctDisplayOrders() throws Exception {
+        Long productId = createProduct("append").getProductId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> uploads = new ArrayList<>();
+        try {
+            for (int i = 0; i < UPLOADS; i++) {
+                String url = "/uploads/products/test-" + i + ".jpg";
+                uploads.add(executor.submit(() -> {
+                    start.await();
+                    return imageService.appendProductImage(productId, url);
+                }));
+            }
+            start.countDown();
+            for (Future<?> upload : uploads) {
+                upload.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Integer> orders = imageRepository.findByProductProductIdOrderByDisplayOrder(productId).stream()
+                .map(Image::getDisplayOrder)
+                .toList();
+        assertThat(orders).hasSize(UPLOADS).doesNotHaveDuplicates();
+        assertThat(orders).first().isEqualTo(0);
+        assertThat(orders).last().isEqualTo(UPLOADS - 1);
+    }
+
+    @Test
+    void multipleUploadSavesProcessedImagesInFileOrder() throws Exception {
+        Long productId = createProduct("multiple").getProductId();
+        MultipartFile[] files = {
+                new MockMultipartFile("files", "a.png", "image/png", png()),
+                new MockMultipartFile("files", "b.png", "image/png", png())
+        };
+
+        List<Image> saved = imageService.uploadMultipleProductImages(productId, files);
+
+        assertThat(saved).extracting(Image::getDisplayOrder).containsExactly(0, 1);
+        assertThat(saved).extracting(Image::getIsMain).containsExactly(true, false);
+        assertThat(imageRepository.countByProductProductId(productId)).isEqualTo(2);
+    }
+
+    private Product createProduct(String suffix) {
+        Brand brand = new Brand();
+        brand.setName("Brand image " + suffix);
+        Category category = new Category();
+        category.setName("Category image " + suffix);
+        category.setIsParent(false);
+
+        Product product = new Product();
+        product.setName("Sữa bột image " + suffix);
+        product.setDescription("Image test");
+        product.setPrice(BigDecimal.valueOf(250_000));
+        product.setBrand(brandRepository.save(brand));
+        product.setCategory(categoryRepository.save(category));
+        product.setStock(10);
+        return productRepository.save(product);
+    }
+
+    private static byte[] png() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import vn.liora.entity.Discount;
+import vn.liora.entity.Order;
+import vn.liora.event.OrderPlacedEvent;
+import vn.liora.repository.DiscountRepository;
+import vn.liora.repository.OrderRepository;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OrderPostProcessorTest {
+
+    private DiscountRepository discountRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private OrderPostProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        OrderRepository orderRepository = mock(OrderRepository.class);
+        discountRepository = mock(DiscountRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        meterRegistry = new SimpleMeterRegistry();
+        processor = new OrderPostProcessor(orderRepository, discountRepository, transactionManager,
+                meterRegistry, 2, 1);
+
+        Discount discount = new Discount();
+        discount.setDiscountId(7L);
+        Order order = new Order();
+        order.setIdOrder(1L);
+        order.setDiscount(discount);
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+    }
+
+    @Test
+    void incrementsDiscountUsageWithinLimit() {
+        when(discountRepository.incrementUsedCountWithinLimit(7L)).thenReturn(1);
+
+        processor.onOrderPlaced(new OrderPlacedEvent(1L));
+
+        verify(discountRepository).incrementUsedCountWithinLimit(7L);
+        verify(discountRepository, never()).incrementUsedCount(any());
+        assertThat(meterRegistry.find("order.pipeline.dead").counters()).isEmpty();
+    }
+
+    @Test
+    void usageLimitReachedIsMarkedDeadWithoutRetry() {
+        when(discountRepository.incrementUsedCountWithinLimit(7L)).thenReturn(0);
+
+        processor.onOrderPlaced(new OrderPlacedEvent(1L));
+
+        verify(discountRepository, times(1)).incrementUsedCountWithinLimit(7L);
+        assertThat(deadCount("usage-limit-reached")).isEqualTo(1.0);
+    }
+
+    @Test
+    void exhaustedRetriesAreMarkedDead() {
+        when(discountRepository.incrementUsedCountWithinLimit(7L)).thenThrow(new IllegalStateException("db down"));
+
+        processor.onOrderPlaced(new OrderPlacedEvent(1L));
+
+        verify(discountRepository, times(2)).incrementUsedCountWithinLimit(7L);
+        assertThat(deadCount("retries-exhausted")).isEqualTo(1.0);
+    }
+
+    private double deadCount(String reason) {
+        Counter counter = meterRegistry.find("order.pipeline.dead")
+                .tags("stage", "discount-usage", "reason", reason)
+                .counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
@@ -0,0 +1,67 @@
+package vn.liora.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import vn.liora.dto.response.ProductResponse;
+import vn.liora.entity.Product;
+import vn.liora.mapper.ProductMapper;
+import vn.liora.repository.BrandRepository;
+import vn.liora.repository.CategoryRepository;
+import vn.liora.repository.ProductRepository;
+import vn.liora.repository.ReviewRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ProductServiceImplTest {
+
+    private ProductRepository productRepository;
+    private ProductServiceImpl productService;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        ProductMapper productMapper = mock(ProductMapper.class);
+        ReviewRepository reviewRepository = mock(ReviewRepository.class);
+        productService = new ProductServiceImpl(productRepository, mock(CategoryRepository.class),
+                mock(BrandRepository.class), productMapper, reviewRepository,
+                mock(ApplicationEventPublisher.class), new SimpleMeterRegistry(), 100, 300);
+
+        when(productRepository.findById(1L)).thenReturn(Optional.of(new Product()));
+        when(productMapper.toProductResponse(any(Product.class))).thenAnswer(invocation -> ProductResponse.builder()
+                .productId(1L)
+                .name("Sữa bột")
+                .imageUrls(new ArrayList<>(List.of("/uploads/products/a.jpg", "/uploads/products/b.jpg")))
+                .build());
+        when(reviewRepository.getTotalReviewCountByProductId(1L)).thenReturn(3L);
+    }
+
+    @Test
+    void findByIdServesFromCache() {
+        productService.findById(1L);
+        productService.findById(1L);
+
+        verify(productRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void callerChangesDoNotLeakIntoCache() {
+        ProductResponse first = productService.findById(1L);
+        first.setName("Đã sửa");
+        first.getImageUrls().clear();
+        first.getImageUrls().add("/uploads/products/other.jpg");
+
+        ProductResponse second = productService.findById(1L);
+
+        assertThat(second.getName()).isEqualTo("Sữa bột");
+        assertThat(second.getImageUrls()).containsExactly("/uploads/products/a.jpg", "/uploads/products/b.jpg");
+        assertThat(second.getImageUrls()).isNotSameAs(first.getImageUrls());
+    }
+}
@@ -0,0 +1,122 @@
+package vn.liora.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.liora.dto.response.ProductSalesSummaryRow;
+import vn.liora.entity.Brand;
+import vn.liora.entity.Category;
+import vn.liora.entity.Order;
+import vn.liora.entity.OrderProduct;
+import vn.liora.entity.Product;
+import vn.liora.repository.BrandRepository;
+import vn.liora.repository.CategoryRepository;
+import vn.liora.repository.DailyProductSalesRollupRepository;
+import vn.liora.repository.OrderProductRepository;
+import vn.liora.repository.OrderRepository;
+import vn.liora.repository.ProductRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.function.LongPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Xóa đơn hàng trừ lại cả doanh số theo danh mục/thương hiệu, không chỉ doanh số theo ngày.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SalesRollupServiceImplTest {
+
+    private static final LocalDate SALES_DATE = LocalDate.of(2001, 3, 4);
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderProductRepository orderProductRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private BrandRepository brandRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private DailyProductSalesRollupRepository productSalesRollupRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void deletingOrderRemovesItsProductSales() throws Exception {
+        Product product = createProduct();
+        Long categoryId = product.getCategory().getCategoryId();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Long orderId = transactionTemplate.execute(status -> {
+            Order order = orderRepository.save(Order.builder()
+                    .orderDate(SALES_DATE.atTime(10, 0))
+                    .total(BigDecimal.valueOf(500_000))
+                    .paymentMethod("COD")
+                    .orderStatus("COMPLETED")
+                    .name("Rollup")
+                    .phone("0900000000")
+                    .addressDetail("1 Test")
+                    .wardCode("1")
+                    .districtId(1)
+                    .provinceId(1)
+                    .build());
+            orderProductRepository.save(OrderProduct.builder()
+                    .order(order)
+                    .product(product)
+                    .quantity(2)
+                    .totalPrice(BigDecimal.valueOf(500_000))
+                    .build());
+            return order.getIdOrder();
+        });
+        assertThat(awaitQuantity(categoryId, quantity -> quantity == 2)).isEqualTo(2);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Order order = orderRepository.findById(orderId).orElseThrow();
+            orderProductRepository.deleteAll(orderProductRepository.findByOrder(order));
+            orderRepository.delete(order);
+        });
+        assertThat(awaitQuantity(categoryId, quantity -> quantity == 0)).isZero();
+    }
+
+    // Rollup được cập nhật bất đồng bộ sau commit
+    private long awaitQuantity(Long categoryId, LongPredicate done) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        long quantity;
+        do {
+            quantity = productSalesRollupRepository.summarize(SALES_DATE, SALES_DATE).stream()
+                    .filter(row -> categoryId.equals(row.getCategoryId()))
+                    .mapToLong(ProductSalesSummaryRow::getQuantity)
+                    .sum();
+            if (done.test(quantity)) {
+                return quantity;
+            }
+            Thread.sleep(50);
+        } while (System.currentTimeMillis() < deadline);
+        return quantity;
+    }
+
+    private Product createProduct() {
+        Brand brand = new Brand();
+        brand.setName("Brand rollup");
+        Category category = new Category();
+        category.setName("Category rollup");
+        category.setIsParent(false);
+
+        Product product = new Product();
+        product.setName("Sữa bột rollup");
+        product.setDescription("Rollup test");
+        product.setPrice(BigDecimal.valueOf(250_000));
+        product.setBrand(brandRepository.save(brand));
+        product.setCategory(categoryRepository.save(category));
+        product.setStock(10);
+        return productRepository.save(product);
+    }
+}
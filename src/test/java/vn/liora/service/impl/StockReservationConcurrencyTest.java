@@ -0,0 +1,102 @@
+package vn.liora.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.liora.dto.response.StockReservationLine;
+import vn.liora.entity.Brand;
+import vn.liora.entity.Category;
+import vn.liora.entity.Product;
+import vn.liora.repository.BrandRepository;
+import vn.liora.repository.CategoryRepository;
+import vn.liora.repository.ProductRepository;
+import vn.liora.service.IStockReservationService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 500 người mua cùng lúc một sản phẩm còn 100: không bán vượt tồn kho.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class StockReservationConcurrencyTest {
+
+    private static final int BUYERS = 500;
+    private static final int INITIAL_STOCK = 100;
+
+    @Autowired
+    private IStockReservationService stockReservationService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private BrandRepository brandRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void parallelBuyersNeverOversell() throws Exception {
+        Long productId = createProduct(INITIAL_STOCK).getProductId();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        ExecutorService executor = Executors.newFixedThreadPool(BUYERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger reserved = new AtomicInteger();
+        List<Future<?>> buyers = new ArrayList<>();
+        try {
+            for (int i = 0; i < BUYERS; i++) {
+                buyers.add(executor.submit(() -> {
+                    start.await();
+                    List<StockReservationLine> lines = transaction.execute(
+                            status -> stockReservationService.reserve(Map.of(productId, 1)));
+                    if (lines != null && lines.get(0).isReserved()) {
+                        reserved.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> buyer : buyers) {
+                buyer.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int finalStock = productRepository.findById(productId).orElseThrow().getStock();
+        assertThat(finalStock).isGreaterThanOrEqualTo(0);
+        assertThat(reserved.get()).isLessThanOrEqualTo(INITIAL_STOCK);
+        assertThat(reserved.get() + finalStock).isEqualTo(INITIAL_STOCK);
+        // Đủ hàng cho 100 người đầu: không ai bị từ chối oan
+        assertThat(reserved.get()).isEqualTo(INITIAL_STOCK);
+        assertThat(productRepository.findById(productId).orElseThrow().getAvailable()).isFalse();
+    }
+
+    private Product createProduct(int stock) {
+        Brand brand = new Brand();
+        brand.setName("Brand stock test");
+        Category category = new Category();
+        category.setName("Category stock test");
+        category.setIsParent(false);
+
+        Product product = new Product();
+        product.setName("Sữa bột stock test");
+        product.setDescription("Stock test");
+        product.setPrice(BigDecimal.valueOf(250_000));
+        product.setBrand(brandRepository.save(brand));
+        product.setCategory(categoryRepository.save(category));
+        product.setStock(stock);
+        return productRepository.save(product);
+    }
+}
@@ -0,0 +1,68 @@
+package vn.liora.websocket.session;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ChatSessionRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void busyExecutorClosesSessionInsteadOfSendingOnCaller() throws Exception {
+        TaskExecutor rejecting = task -> {
+            throw new TaskRejectedException("busy");
+        };
+        ChatSessionRegistry registry = new ChatSessionRegistry(rejecting, meterRegistry, 5000, 65536, 10);
+        WebSocketSession session = openSession("s1");
+        registry.register("room-1", session);
+        registry.join(session);
+
+        registry.broadcast("room-1", "{\"content\":\"xin chào\"}");
+        registry.broadcast("room-1", "{\"content\":\"lần hai\"}");
+
+        verify(session, never()).sendMessage(any(WebSocketMessage.class));
+        assertThat(slowSessionsClosed()).isEqualTo(1.0);
+    }
+
+    @Test
+    void sessionOverQueueLimitIsClosed() throws Exception {
+        List<Runnable> pending = new ArrayList<>();
+        ChatSessionRegistry registry = new ChatSessionRegistry(pending::add, meterRegistry, 5000, 65536, 2);
+        WebSocketSession session = openSession("s1");
+        registry.register("room-1", session);
+        registry.join(session);
+
+        registry.broadcast("room-1", "{\"n\":1}");
+        registry.broadcast("room-1", "{\"n\":2}");
+        assertThat(slowSessionsClosed()).isZero();
+
+        registry.broadcast("room-1", "{\"n\":3}");
+        assertThat(slowSessionsClosed()).isEqualTo(1.0);
+
+        // Tin đã xếp hàng bị bỏ, tác vụ xả còn treo không gửi gì
+        pending.forEach(Runnable::run);
+        verify(session, never()).sendMessage(any(WebSocketMessage.class));
+    }
+
+    private WebSocketSession openSession(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    private double slowSessionsClosed() {
+        return meterRegistry.get("chat.outbound.slow_sessions_closed").counter().count();
+    }
+}